@@ -0,0 +1,226 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import fr.upmc.components.ComponentI.ComponentService;
+import fr.upmc.components.ComponentState;
+import fr.upmc.components.ComponentStateI;
+
+/**
+ * The class <code>AllocationFreeBenchmark</code> checks that the synchronous
+ * request handling of a passive component and the tests of the state of a
+ * component do not allocate.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * <code>handleRequestSync</code> submits a preallocated request to a
+ * passive provider, which executes it in the benchmark thread;
+ * <code>stateChecks</code> calls <code>isInStateAmong</code>,
+ * <code>notInStateAmong</code> (with preallocated arrays of states),
+ * <code>isShutdown</code> and <code>isTerminated</code> on the started
+ * provider.  The components run in their default configuration, request
+ * metrics included, and the benchmark is forked with assertions enabled,
+ * as on staging deployments, so that the preconditions checked on these
+ * paths are measured too.
+ * 
+ * Run through its <code>main</code> method, the benchmark is executed with
+ * the GC profiler and the run fails if the normalised allocation rate
+ * (<code>gc.alloc.rate.norm</code>) of a benchmark method rounds to more
+ * than 0 byte per operation; any allocation on these paths costs at least
+ * one object header, i.e. 16 bytes, so the rounding only absorbs the
+ * allocations of the harness amortised over the operations.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-ea")
+public class			AllocationFreeBenchmark
+{
+	/** label of the normalised allocation rate reported by the GC
+	 *  profiler, prefixed by a middle dot in JMH versions up to 1.32.	*/
+	protected static final String	ALLOC_RATE_NORM = "gc.alloc.rate.norm" ;
+	/** states tested by <code>isInStateAmong</code>.						*/
+	protected static final ComponentStateI[]	STARTED_STATES =
+				new ComponentStateI[]{ComponentState.STARTED} ;
+	/** states tested by <code>notInStateAmong</code>.					*/
+	protected static final ComponentStateI[]	ENDED_STATES =
+				new ComponentStateI[]{ComponentState.SHUTDOOWN,
+									  ComponentState.TERMINATED} ;
+
+	protected EchoProvider				provider ;
+	protected ComponentService<Integer>	request ;
+	protected int						value ;
+
+	@Setup(Level.Trial)
+	public void			setup() throws Exception
+	{
+		BenchmarkCVM.initialise() ;
+		this.provider = new EchoProvider(false) ;
+		this.provider.start() ;
+		final AllocationFreeBenchmark self = this ;
+		this.request = new ComponentService<Integer>() {
+							@Override
+							public Integer call() throws Exception
+							{
+								// small values come from the Integer cache.
+								return self.provider.echoService(
+													self.value++ & 0x7F) ;
+							}
+						} ;
+		this.value = 0 ;
+	}
+
+	@TearDown(Level.Trial)
+	public void			tearDown() throws Exception
+	{
+		this.provider.shutdown() ;
+	}
+
+	@Benchmark
+	public Integer		handleRequestSync() throws Exception
+	{
+		return this.provider.handleRequestSync(this.request) ;
+	}
+
+	@Benchmark
+	public void			stateChecks(Blackhole bh)
+	{
+		bh.consume(this.provider.isInStateAmong(STARTED_STATES)) ;
+		bh.consume(this.provider.notInStateAmong(ENDED_STATES)) ;
+		bh.consume(this.provider.isShutdown()) ;
+		bh.consume(this.provider.isTerminated()) ;
+	}
+
+	/**
+	 * run the benchmark with the GC profiler and exit with status 1 if one
+	 * of its methods allocates.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param args	JMH command line options.
+	 * @throws Exception
+	 */
+	public static void	main(String[] args) throws Exception
+	{
+		OptionsBuilder builder = new OptionsBuilder() ;
+		builder.parent(new CommandLineOptions(args)) ;
+		builder.include(AllocationFreeBenchmark.class.getName()) ;
+		builder.addProfiler(GCProfiler.class) ;
+		builder.shouldFailOnError(true) ;
+		if (!allocationFree(new Runner(builder.build()).run())) {
+			System.exit(1) ;
+		}
+	}
+
+	/**
+	 * return true if the normalised allocation rate of every result rounds
+	 * to 0 byte per operation, reporting the rate of each benchmark.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	results != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param results	results of a run with the GC profiler.
+	 * @return			true if no benchmark allocates.
+	 */
+	public static boolean	allocationFree(Collection<RunResult> results)
+	{
+		boolean allocates = false ;
+		for (RunResult r : results) {
+			String benchmark = r.getParams().getBenchmark() ;
+			Double bytesPerOp = null ;
+			for (Map.Entry<String,Result> e :
+									r.getSecondaryResults().entrySet()) {
+				if (e.getKey().endsWith(ALLOC_RATE_NORM)) {
+					bytesPerOp = e.getValue().getScore() ;
+				}
+			}
+			if (bytesPerOp == null) {
+				System.err.println(benchmark + ": no " + ALLOC_RATE_NORM +
+								   " reported by the GC profiler.") ;
+				allocates = true ;
+			} else if (Math.round(bytesPerOp) != 0L) {
+				System.err.println(benchmark + " allocates " + bytesPerOp +
+								   " B/op.") ;
+				allocates = true ;
+			} else {
+				System.out.println(benchmark + ": 0 B/op.") ;
+			}
+		}
+		return !allocates ;
+	}
+}
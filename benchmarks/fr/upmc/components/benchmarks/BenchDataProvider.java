@@ -0,0 +1,152 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import fr.upmc.components.AbstractComponent;
+import fr.upmc.components.interfaces.DataOfferedI;
+
+/**
+ * The class <code>BenchDataProvider</code> implements the component offering
+ * data in the data connection benchmarks.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The provider produces a new <code>BenchData</code> on each pull request
+ * and pushes one to its client on each call to <code>push</code>.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			BenchDataProvider
+extends		AbstractComponent
+{
+	/** the data inbound port of the provider.							*/
+	protected final BenchDataInboundPort	dataInboundPort ;
+	/** the number of data produced so far.								*/
+	protected long						counter ;
+
+	/**
+	 * create the provider and publish locally its data inbound port.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	this.isConcurrent() == isConcurrent
+	 * </pre>
+	 *
+	 * @param isConcurrent	if true, pull requests are executed by the component thread.
+	 * @throws Exception
+	 */
+	public				BenchDataProvider(boolean isConcurrent)
+	throws Exception
+	{
+		super(isConcurrent) ;
+
+		this.counter = 0 ;
+		this.addOfferedInterface(DataOfferedI.PullI.class) ;
+		this.addRequiredInterface(DataOfferedI.PushI.class) ;
+		this.dataInboundPort = new BenchDataInboundPort(this) ;
+		this.addPort(this.dataInboundPort) ;
+		this.dataInboundPort.localPublishPort() ;
+	}
+
+	public String		getDataPortURI() throws Exception
+	{
+		return this.dataInboundPort.getPortURI() ;
+	}
+
+	/**
+	 * produce the next data.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	the next data.
+	 */
+	public BenchData	produce()
+	{
+		return new BenchData(this.counter++) ;
+	}
+
+	/**
+	 * push the next data to the connected client.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.dataInboundPort.connected()
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @throws Exception
+	 */
+	public void			push() throws Exception
+	{
+		this.dataInboundPort.send(this.produce()) ;
+	}
+
+	/**
+	 * push the next <code>n</code> data to the connected client in a single
+	 * call.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.dataInboundPort.connected() && n > 0
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param n	number of data to be pushed.
+	 * @throws Exception
+	 */
+	public void			pushBatch(int n) throws Exception
+	{
+		DataOfferedI.DataI[] ds = new DataOfferedI.DataI[n] ;
+		for (int i = 0 ; i < n ; i++) {
+			ds[i] = this.produce() ;
+		}
+		this.dataInboundPort.sendBatch(ds) ;
+	}
+}
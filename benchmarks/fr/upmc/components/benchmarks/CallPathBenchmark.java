@@ -0,0 +1,121 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The class <code>CallPathBenchmark</code> measures the cost of a local call
+ * going from an outbound port through a connector to an inbound port and
+ * the request handling of its owner.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The parameter <code>concurrentOwner</code> selects a passive provider,
+ * where the call is executed by the benchmark thread, or a concurrent one,
+ * where the call is handed over to the component thread and the benchmark
+ * thread waits for the result.  The difference between the two measures the
+ * cost of the thread hand-off in <code>handleRequestSync</code>.
+ * 
+ * Both the throughput and the sampled latency are reported; the latter
+ * gives the percentiles of the call time.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class			CallPathBenchmark
+{
+	/** if true, the provider executes requests with its own thread.		*/
+	@Param({"false", "true"})
+	public boolean				concurrentOwner ;
+
+	protected EchoProvider		provider ;
+	protected EchoClient		client ;
+	protected EchoOutboundPort	outboundPort ;
+	protected int				value ;
+
+	@Setup(Level.Trial)
+	public void			setup() throws Exception
+	{
+		BenchmarkCVM.initialise() ;
+		this.provider = new EchoProvider(this.concurrentOwner) ;
+		this.client = new EchoClient() ;
+		this.provider.start() ;
+		this.client.start() ;
+		this.outboundPort = this.client.getEchoOutboundPort() ;
+		this.outboundPort.doConnection(this.provider.getEchoPortURI(),
+									   EchoConnector.class.getCanonicalName()) ;
+		this.value = 0 ;
+	}
+
+	@TearDown(Level.Trial)
+	public void			tearDown() throws Exception
+	{
+		this.outboundPort.doDisconnection() ;
+		this.client.shutdown() ;
+		this.provider.shutdown() ;
+	}
+
+	@Benchmark
+	public int			localCall() throws Exception
+	{
+		return this.outboundPort.echo(this.value++) ;
+	}
+}
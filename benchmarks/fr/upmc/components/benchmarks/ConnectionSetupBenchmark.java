@@ -0,0 +1,117 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.upmc.components.connectors.ConnectionBuilder;
+
+/**
+ * The class <code>ConnectionSetupBenchmark</code> measures the cost of
+ * connecting and disconnecting two local ports with the connection builder.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each operation creates a new connector, connects it between the ports of
+ * an echo client and provider with <code>connectWith</code>, and then
+ * disconnects it with <code>disconnectWith</code>, so that the ports are
+ * free again for the next operation.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class			ConnectionSetupBenchmark
+{
+	protected EchoProvider		provider ;
+	protected EchoClient		client ;
+	protected String			serverPortURI ;
+	protected String			clientPortURI ;
+
+	@Setup(Level.Trial)
+	public void			setup() throws Exception
+	{
+		BenchmarkCVM.initialise() ;
+		this.provider = new EchoProvider(false) ;
+		this.client = new EchoClient() ;
+		this.provider.start() ;
+		this.client.start() ;
+		this.serverPortURI = this.provider.getEchoPortURI() ;
+		this.clientPortURI = this.client.getEchoOutboundPort().getPortURI() ;
+	}
+
+	@TearDown(Level.Trial)
+	public void			tearDown() throws Exception
+	{
+		this.client.shutdown() ;
+		this.provider.shutdown() ;
+	}
+
+	@Benchmark
+	public EchoConnector	connectAndDisconnect() throws Exception
+	{
+		EchoConnector connector = new EchoConnector() ;
+		ConnectionBuilder.SINGLETON.connectWith(this.serverPortURI,
+												this.clientPortURI,
+												connector) ;
+		ConnectionBuilder.SINGLETON.disconnectWith(this.serverPortURI,
+												   this.clientPortURI,
+												   connector) ;
+		return connector ;
+	}
+}
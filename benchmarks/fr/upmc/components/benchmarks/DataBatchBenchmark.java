@@ -0,0 +1,150 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.upmc.components.connectors.DataConnector;
+import fr.upmc.components.interfaces.DataRequiredI;
+
+/**
+ * The class <code>DataBatchBenchmark</code> measures the cost of exchanging
+ * <code>batchSize</code> data over a local <code>DataConnector</code>, one
+ * by one or with the batch methods of the data interfaces.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each benchmark call moves <code>batchSize</code> data: <code>push</code>
+ * and <code>pull</code> call <code>send</code>, respectively
+ * <code>request</code>, once per datum, while <code>pushBatch</code> and
+ * <code>pullBatch</code> call <code>sendBatch</code>, respectively
+ * <code>requestBatch</code>, once, the ports handing the whole batch to their
+ * owner in a single request.  The cost per datum is the time per call
+ * divided by <code>batchSize</code>.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class			DataBatchBenchmark
+{
+	/** number of data moved by each benchmark call.					*/
+	@Param({"16", "64"})
+	public int						batchSize ;
+	/** if true, the provider executes pull requests with its own thread.	*/
+	@Param({"false", "true"})
+	public boolean					concurrentOwner ;
+
+	protected BenchDataProvider		provider ;
+	protected BenchDataConsumer		consumer ;
+	protected BenchDataOutboundPort	outboundPort ;
+
+	@Setup(Level.Trial)
+	public void			setup() throws Exception
+	{
+		BenchmarkCVM.initialise() ;
+		this.provider = new BenchDataProvider(this.concurrentOwner) ;
+		this.consumer = new BenchDataConsumer() ;
+		this.provider.start() ;
+		this.consumer.start() ;
+		this.outboundPort = this.consumer.getDataOutboundPort() ;
+		this.outboundPort.doConnection(this.provider.getDataPortURI(),
+									   DataConnector.class.getCanonicalName()) ;
+	}
+
+	@TearDown(Level.Trial)
+	public void			tearDown() throws Exception
+	{
+		this.outboundPort.doDisconnection() ;
+		this.consumer.shutdown() ;
+		this.provider.shutdown() ;
+	}
+
+	@Benchmark
+	public long			push() throws Exception
+	{
+		for (int i = 0 ; i < this.batchSize ; i++) {
+			this.provider.push() ;
+		}
+		return this.consumer.getChecksum() ;
+	}
+
+	@Benchmark
+	public long			pushBatch() throws Exception
+	{
+		this.provider.pushBatch(this.batchSize) ;
+		return this.consumer.getChecksum() ;
+	}
+
+	@Benchmark
+	public DataRequiredI.DataI	pull() throws Exception
+	{
+		DataRequiredI.DataI d = null ;
+		for (int i = 0 ; i < this.batchSize ; i++) {
+			d = this.outboundPort.request() ;
+		}
+		return d ;
+	}
+
+	@Benchmark
+	public DataRequiredI.DataI[]	pullBatch() throws Exception
+	{
+		return this.outboundPort.requestBatch(this.batchSize) ;
+	}
+}
@@ -0,0 +1,166 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.upmc.components.connectors.codec.DataCodecs;
+import fr.upmc.components.connectors.codec.EncodedData;
+import fr.upmc.components.examples.smoothing.sensor.interfaces.SensorData;
+
+/**
+ * The class <code>DataCodecBenchmark</code> compares the encodings of the
+ * data sent to remote components, in size and in time.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each benchmark call encodes a datum and decodes it back, as done by the
+ * sending and the receiving JVMs of a remote push or pull, with:
+ * <ul>
+ * <li><code>serialization</code>: Java serialization of the datum, as RMI
+ *   does when its class has no codec;</li>
+ * <li><code>encodedData</code>: Java serialization of the datum wrapped in
+ *   an <code>EncodedData</code>, as RMI does when its class has a codec;</li>
+ * <li><code>codec</code>: the codec of its class through
+ *   <code>DataCodecs</code>, as the socket transport does.</li>
+ * </ul>
+ * The payload is either a <code>SensorData</code>, carrying a
+ * <code>double</code>, or a <code>BenchData</code>, carrying a
+ * <code>long</code>.  The size of the encoded payload is printed when the
+ * trial starts.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class			DataCodecBenchmark
+{
+	/** encoding of the payload.										*/
+	@Param({"serialization", "encodedData", "codec"})
+	public String		encoding ;
+	/** class of the payload.											*/
+	@Param({"SensorData", "BenchData"})
+	public String		payload ;
+
+	protected Serializable	data ;
+
+	@Setup(Level.Trial)
+	public void			setup() throws Exception
+	{
+		if (this.payload.equals("SensorData")) {
+			this.data = new SensorData(Math.PI) ;
+		} else {
+			this.data = new BenchData(1234567890123L) ;
+		}
+		if (this.encoding.equals("serialization")) {
+			DataCodecs.unregister(this.data.getClass()) ;
+		} else {
+			DataCodecs.register(this.data.getClass()) ;
+		}
+		System.out.println(this.payload + " encoded with " + this.encoding +
+							": " + this.encode().length + " bytes") ;
+	}
+
+	@TearDown(Level.Trial)
+	public void			tearDown() throws Exception
+	{
+		DataCodecs.unregister(this.data.getClass()) ;
+	}
+
+	protected byte[]	encode() throws Exception
+	{
+		if (this.encoding.equals("codec")) {
+			return DataCodecs.toBytes(this.data) ;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+		ObjectOutputStream oos = new ObjectOutputStream(bytes) ;
+		if (this.encoding.equals("encodedData")) {
+			oos.writeObject(new EncodedData(this.data)) ;
+		} else {
+			oos.writeObject(this.data) ;
+		}
+		oos.close() ;
+		return bytes.toByteArray() ;
+	}
+
+	protected Object	decode(byte[] b) throws Exception
+	{
+		if (this.encoding.equals("codec")) {
+			return DataCodecs.fromBytes(b) ;
+		}
+		ObjectInputStream ois =
+						new ObjectInputStream(new ByteArrayInputStream(b)) ;
+		try {
+			return ois.readObject() ;
+		} finally {
+			ois.close() ;
+		}
+	}
+
+	@Benchmark
+	public Object		roundTrip() throws Exception
+	{
+		return this.decode(this.encode()) ;
+	}
+}
@@ -0,0 +1,89 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import fr.upmc.components.ComponentI;
+import fr.upmc.components.ComponentI.ComponentService;
+import fr.upmc.components.ports.AbstractInboundPort;
+
+/**
+ * The class <code>EchoInboundPort</code> implements the inbound port of the
+ * <code>EchoProvider</code> component.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * As in the other components of the model, the call is passed to the owner
+ * through <code>handleRequestSync</code>, so that the benchmark measures the
+ * same path as ordinary applications.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			EchoInboundPort
+extends		AbstractInboundPort
+implements	EchoOfferedI
+{
+	private static final long serialVersionUID = 1L;
+
+	public				EchoInboundPort(
+		ComponentI owner
+		) throws Exception
+	{
+		super(EchoOfferedI.class, owner) ;
+
+		assert	owner instanceof EchoProvider ;
+	}
+
+	/**
+	 * @see fr.upmc.components.benchmarks.EchoOfferedI#echo(int)
+	 */
+	@Override
+	public int			echo(final int value) throws Exception
+	{
+		final EchoProvider p = (EchoProvider) this.owner ;
+		return p.handleRequestSync(
+					new ComponentService<Integer>() {
+						@Override
+						public Integer call() throws Exception {
+							return p.echoService(value) ;
+						}
+					}) ;
+	}
+}
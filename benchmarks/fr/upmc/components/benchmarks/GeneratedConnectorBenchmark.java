@@ -0,0 +1,309 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import fr.upmc.components.examples.basic_cs.URIServiceConnector;
+import fr.upmc.components.examples.basic_cs.components.URIProvider;
+import fr.upmc.components.examples.basic_cs.interfaces.URIConsumerI;
+import fr.upmc.components.examples.basic_cs.interfaces.URIProviderI;
+import fr.upmc.components.examples.basic_cs.ports.URIGetterOutboundPort;
+import fr.upmc.components.generators.GenerateConnection;
+import fr.upmc.components.generators.MethodMapping;
+import fr.upmc.components.metrics.ComponentMetrics;
+import fr.upmc.components.ports.AbstractInboundPort;
+import fr.upmc.components.ports.AbstractOutboundPort;
+import fr.upmc.components.ports.AbstractPort;
+
+/**
+ * The class <code>GeneratedConnectorBenchmark</code> compares the call path
+ * through connectors and ports generated by <code>ConnectionGenerator</code>
+ * with the same path through hand-written classes.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Two connections are measured, both with
+ * <code>implementation=handwritten</code> and
+ * <code>implementation=generated</code>:
+ * 
+ * <ul>
+ * <li><code>uri</code> calls the <code>URIProvider</code> of the basic
+ *   client/server example, through <code>URIGetterOutboundPort</code>,
+ *   <code>URIServiceConnector</code> and <code>URIProviderInboundPort</code>
+ *   or through their generated counterparts;</li>
+ * <li><code>echo</code> calls an <code>EchoProvider</code>, passive or
+ *   concurrent, through the echo ports and connector of this package or
+ *   through their generated counterparts; unlike the basic example, it does
+ *   not perform any work in the provider and therefore isolates the cost of
+ *   the call path.</li>
+ * </ul>
+ * 
+ * The echo connection is also measured with request metrics disabled
+ * (<code>metrics=false</code>), in which case the generated inbound port
+ * calls a passive provider directly.  Run through its <code>main</code>
+ * method, the benchmark checks with the GC profiler that this generated
+ * path does not allocate, and exits with status 1 otherwise.
+ * 
+ * The generated classes are declared by the annotations of this class and
+ * require the benchmarks to be compiled with <code>ConnectionGenerator</code>
+ * among the annotation processors (see <code>BENCHMARKS.md</code>).
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@GenerateConnection(
+	required = URIConsumerI.class,
+	offered = URIProviderI.class,
+	owner = URIProvider.class,
+	requiredToOffered = @MethodMapping(from = "getURI", to = "provideURI"),
+	offeredToOwner = @MethodMapping(from = "provideURI",
+									to = "provideURIService"),
+	connectorName = "GeneratedURIServiceConnector",
+	outboundPortName = "GeneratedURIGetterOutboundPort",
+	inboundPortName = "GeneratedURIProviderInboundPort")
+@GenerateConnection(
+	required = EchoRequiredI.class,
+	offered = EchoOfferedI.class,
+	owner = EchoProvider.class,
+	offeredToOwner = @MethodMapping(from = "echo", to = "echoService"))
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class			GeneratedConnectorBenchmark
+{
+	/**
+	 * The class <code>URIState</code> holds the connection to the provider
+	 * of the basic client/server example.
+	 */
+	@State(Scope.Benchmark)
+	public static class	URIState
+	{
+		/** "handwritten" or "generated".									*/
+		@Param({"handwritten", "generated"})
+		public String				implementation ;
+
+		protected URIProvider			provider ;
+		protected EchoClient			client ;
+		protected AbstractInboundPort	inboundPort ;
+		protected AbstractOutboundPort	outboundPort ;
+		protected URIConsumerI			caller ;
+
+		@Setup(Level.Trial)
+		public void			setup() throws Exception
+		{
+			BenchmarkCVM.initialise() ;
+			String providerPortURI =
+						AbstractPort.generatePortURI(URIProviderI.class) ;
+			this.provider = new URIProvider("bench", providerPortURI, false) ;
+			this.client = new EchoClient() ;
+			this.provider.start() ;
+			this.client.start() ;
+			String clientPortURI =
+						AbstractPort.generatePortURI(URIConsumerI.class) ;
+			if ("generated".equals(this.implementation)) {
+				this.inboundPort =
+					new GeneratedURIProviderInboundPort(this.provider) ;
+				this.inboundPort.localPublishPort() ;
+				this.outboundPort =
+					new GeneratedURIGetterOutboundPort(clientPortURI,
+													   this.client) ;
+				this.outboundPort.localPublishPort() ;
+				this.outboundPort.doConnection(
+					this.inboundPort.getPortURI(),
+					GeneratedURIServiceConnector.class.getCanonicalName()) ;
+			} else {
+				this.inboundPort = null ;
+				this.outboundPort =
+					new URIGetterOutboundPort(clientPortURI, this.client) ;
+				this.outboundPort.localPublishPort() ;
+				this.outboundPort.doConnection(
+					providerPortURI,
+					URIServiceConnector.class.getCanonicalName()) ;
+			}
+			this.caller = (URIConsumerI) this.outboundPort ;
+		}
+
+		@TearDown(Level.Trial)
+		public void			tearDown() throws Exception
+		{
+			this.outboundPort.doDisconnection() ;
+			this.outboundPort.unpublishPort() ;
+			if (this.inboundPort != null) {
+				this.inboundPort.unpublishPort() ;
+			}
+			this.client.shutdown() ;
+			this.provider.shutdown() ;
+		}
+	}
+
+	/**
+	 * The class <code>EchoState</code> holds the connection to an echo
+	 * provider.
+	 */
+	@State(Scope.Benchmark)
+	public static class	EchoState
+	{
+		/** "handwritten" or "generated".									*/
+		@Param({"handwritten", "generated"})
+		public String				implementation ;
+		/** if true, the provider executes requests with its own thread.	*/
+		@Param({"false", "true"})
+		public boolean				concurrentOwner ;
+		/** if true, the requests of the provider are measured.				*/
+		@Param({"true", "false"})
+		public boolean				metrics ;
+
+		protected EchoProvider			provider ;
+		protected EchoClient			client ;
+		protected AbstractInboundPort	inboundPort ;
+		protected AbstractOutboundPort	outboundPort ;
+		protected EchoRequiredI			caller ;
+		protected int					value ;
+		protected boolean				metricsEnabled ;
+
+		@Setup(Level.Trial)
+		public void			setup() throws Exception
+		{
+			BenchmarkCVM.initialise() ;
+			this.metricsEnabled = ComponentMetrics.ENABLED ;
+			ComponentMetrics.ENABLED = this.metrics ;
+			this.provider = new EchoProvider(this.concurrentOwner) ;
+			this.client = new EchoClient() ;
+			this.provider.start() ;
+			this.client.start() ;
+			if ("generated".equals(this.implementation)) {
+				this.inboundPort = new EchoOfferedInboundPort(this.provider) ;
+				this.inboundPort.localPublishPort() ;
+				this.outboundPort = new EchoRequiredOutboundPort(this.client) ;
+				this.outboundPort.localPublishPort() ;
+				this.outboundPort.doConnection(
+					this.inboundPort.getPortURI(),
+					EchoRequiredConnector.class.getCanonicalName()) ;
+			} else {
+				this.inboundPort = null ;
+				this.outboundPort = this.client.getEchoOutboundPort() ;
+				this.outboundPort.doConnection(
+					this.provider.getEchoPortURI(),
+					EchoConnector.class.getCanonicalName()) ;
+			}
+			this.caller = (EchoRequiredI) this.outboundPort ;
+			this.value = 0 ;
+		}
+
+		@TearDown(Level.Trial)
+		public void			tearDown() throws Exception
+		{
+			this.outboundPort.doDisconnection() ;
+			if (this.inboundPort != null) {
+				this.outboundPort.unpublishPort() ;
+				this.inboundPort.unpublishPort() ;
+			}
+			this.client.shutdown() ;
+			this.provider.shutdown() ;
+			ComponentMetrics.ENABLED = this.metricsEnabled ;
+		}
+	}
+
+	@Benchmark
+	public String		uri(URIState s) throws Exception
+	{
+		return s.caller.getURI() ;
+	}
+
+	@Benchmark
+	public int			echo(EchoState s) throws Exception
+	{
+		return s.caller.echo(s.value++) ;
+	}
+
+	/**
+	 * run the <code>echo</code> benchmark through the generated classes to a
+	 * passive provider without request metrics, with the GC profiler, and
+	 * exit with status 1 if it allocates.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param args	JMH command line options.
+	 * @throws Exception
+	 */
+	public static void	main(String[] args) throws Exception
+	{
+		OptionsBuilder builder = new OptionsBuilder() ;
+		builder.parent(new CommandLineOptions(args)) ;
+		builder.include(GeneratedConnectorBenchmark.class.getName() +
+																".echo$") ;
+		builder.param("implementation", "generated") ;
+		builder.param("concurrentOwner", "false") ;
+		builder.param("metrics", "false") ;
+		builder.mode(Mode.Throughput) ;
+		builder.addProfiler(GCProfiler.class) ;
+		builder.shouldFailOnError(true) ;
+		if (!AllocationFreeBenchmark.allocationFree(
+										new Runner(builder.build()).run())) {
+			System.exit(1) ;
+		}
+	}
+}
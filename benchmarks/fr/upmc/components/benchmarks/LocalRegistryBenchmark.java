@@ -0,0 +1,174 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.Hashtable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.upmc.components.cvm.utils.LocalPortRegistry;
+import fr.upmc.components.ports.PortI;
+
+/**
+ * The class <code>LocalRegistryBenchmark</code> measures the local port
+ * registry under contention, with 64 threads publishing, unpublishing and
+ * looking up ports.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * With <code>registry=concurrent</code>, the benchmark uses the
+ * <code>LocalPortRegistry</code> of the CVM; with
+ * <code>registry=hashtable</code>, it uses a hash table written under a
+ * global lock, as the local registry used to be, to serve as a baseline.
+ * Lookups pick among a fixed set of ports published at setup time, while
+ * each thread publishes and unpublishes its own port.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class			LocalRegistryBenchmark
+{
+	/** number of ports published at setup time for the lookups.			*/
+	protected static final int	NB_PUBLISHED_PORTS = 1024 ;
+
+	/** registry implementation: "concurrent" or "hashtable".				*/
+	@Param({"concurrent", "hashtable"})
+	public String						registry ;
+
+	protected boolean					useConcurrent ;
+	protected LocalPortRegistry			concurrentRegistry ;
+	protected Hashtable<String,PortI>	hashtableRegistry ;
+	protected Object					hashtableLock ;
+	protected EchoProvider				owner ;
+	protected String[]					publishedURIs ;
+
+	/**
+	 * The class <code>ThreadPort</code> holds the port published and
+	 * unpublished by one benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class	ThreadPort
+	{
+		protected PortI		port ;
+		protected String	portURI ;
+
+		@Setup(Level.Trial)
+		public void			setup(LocalRegistryBenchmark b) throws Exception
+		{
+			this.port = new EchoInboundPort(b.owner) ;
+			this.portURI = this.port.getPortURI() ;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void			setup() throws Exception
+	{
+		BenchmarkCVM.initialise() ;
+		this.useConcurrent = "concurrent".equals(this.registry) ;
+		this.concurrentRegistry = new LocalPortRegistry(1000) ;
+		this.hashtableRegistry = new Hashtable<String,PortI>(1000) ;
+		this.hashtableLock = new Object() ;
+		this.owner = new EchoProvider(false) ;
+		this.owner.start() ;
+		this.publishedURIs = new String[NB_PUBLISHED_PORTS] ;
+		for (int i = 0 ; i < NB_PUBLISHED_PORTS ; i++) {
+			PortI p = new EchoInboundPort(this.owner) ;
+			this.publishedURIs[i] = p.getPortURI() ;
+			this.concurrentRegistry.publish(p) ;
+			this.hashtableRegistry.put(p.getPortURI(), p) ;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void			tearDown() throws Exception
+	{
+		this.owner.shutdown() ;
+	}
+
+	@Benchmark
+	public boolean		publishUnpublish(ThreadPort tp) throws Exception
+	{
+		if (this.useConcurrent) {
+			this.concurrentRegistry.publish(tp.port) ;
+			return this.concurrentRegistry.unpublish(tp.port) ;
+		} else {
+			synchronized (this.hashtableLock) {
+				this.hashtableRegistry.put(tp.portURI, tp.port) ;
+			}
+			synchronized (this.hashtableLock) {
+				return this.hashtableRegistry.remove(tp.portURI) != null ;
+			}
+		}
+	}
+
+	@Benchmark
+	public PortI		lookup()
+	{
+		String uri = this.publishedURIs[
+				ThreadLocalRandom.current().nextInt(NB_PUBLISHED_PORTS)] ;
+		if (this.useConcurrent) {
+			return this.concurrentRegistry.get(uri) ;
+		} else {
+			return this.hashtableRegistry.get(uri) ;
+		}
+	}
+}
@@ -0,0 +1,266 @@
+package fr.upmc.components.benchmarks;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.upmc.components.ports.PortI;
+
+/**
+ * The class <code>PortTableBenchmark</code> measures the tables of ports and
+ * interfaces of a component under contention, with 64 threads looking up,
+ * adding and removing ports.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * With <code>tables=concurrent</code>, the benchmark uses the methods of
+ * <code>AbstractComponent</code>; with <code>tables=synchronized</code>, it
+ * uses the vectors and hash tables locked per access that the component
+ * used to hold, reproduced in <code>SynchronizedTables</code>, to serve as
+ * a baseline.  Lookups test the offered interface and find the ports
+ * implementing it and a port from its URI among a fixed set of ports added
+ * at setup time, while each thread adds and removes its own port.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class			PortTableBenchmark
+{
+	/** number of ports added at setup time for the lookups.				*/
+	protected static final int	NB_ADDED_PORTS = 16 ;
+
+	/** tables implementation: "concurrent" or "synchronized".			*/
+	@Param({"concurrent", "synchronized"})
+	public String					tables ;
+
+	protected boolean				useConcurrent ;
+	protected EchoProvider			owner ;
+	protected SynchronizedTables	synchronizedTables ;
+	protected String[]				addedURIs ;
+
+	/**
+	 * The class <code>SynchronizedTables</code> reproduces the tables of
+	 * interfaces and ports of components before they became concurrent:
+	 * vectors and hash tables where each access takes the lock of the
+	 * table, then of the vector of ports of an interface.
+	 */
+	public static class	SynchronizedTables
+	{
+		protected final Vector<Class<?>>					offeredInterfaces ;
+		protected final Hashtable<Class<?>,Vector<PortI>>	interfaces2ports ;
+		protected final Hashtable<String,PortI>				portURIs2ports ;
+
+		public				SynchronizedTables()
+		{
+			this.offeredInterfaces = new Vector<Class<?>>() ;
+			this.interfaces2ports = new Hashtable<Class<?>,Vector<PortI>>() ;
+			this.portURIs2ports = new Hashtable<String,PortI>() ;
+		}
+
+		public void			addOfferedInterface(Class<?> inter)
+		{
+			synchronized (this.offeredInterfaces) {
+				this.offeredInterfaces.add(inter) ;
+			}
+		}
+
+		public boolean		isOfferedInterface(Class<?> inter)
+		{
+			synchronized (this.offeredInterfaces) {
+				return this.offeredInterfaces.contains(inter) ;
+			}
+		}
+
+		public PortI[]		findPortsFromInterface(Class<?> inter)
+		{
+			Vector<PortI> temp ;
+			synchronized (this.interfaces2ports) {
+				temp = this.interfaces2ports.get(inter) ;
+			}
+			if (temp == null) {
+				return null ;
+			}
+			synchronized (temp) {
+				return temp.toArray(new PortI[]{}) ;
+			}
+		}
+
+		public PortI		findPortFromURI(String portURI)
+		{
+			synchronized (this.portURIs2ports) {
+				return this.portURIs2ports.get(portURI) ;
+			}
+		}
+
+		public void			addPort(PortI p) throws Exception
+		{
+			Class<?> inter = p.getImplementedInterface() ;
+			synchronized (this.interfaces2ports) {
+				Vector<PortI> vps = this.interfaces2ports.get(inter) ;
+				if (vps == null) {
+					vps = new Vector<PortI>() ;
+					this.interfaces2ports.put(inter, vps) ;
+				}
+				synchronized (vps) {
+					vps.add(p) ;
+				}
+			}
+			synchronized (this.portURIs2ports) {
+				this.portURIs2ports.put(p.getPortURI(), p) ;
+			}
+		}
+
+		public void			removePort(PortI p) throws Exception
+		{
+			Class<?> inter = p.getImplementedInterface() ;
+			synchronized (this.interfaces2ports) {
+				Vector<PortI> vps = this.interfaces2ports.get(inter) ;
+				synchronized (vps) {
+					vps.remove(p) ;
+					if (vps.isEmpty()) {
+						this.interfaces2ports.remove(inter) ;
+					}
+				}
+			}
+			synchronized (this.portURIs2ports) {
+				this.portURIs2ports.remove(p.getPortURI()) ;
+			}
+		}
+	}
+
+	/**
+	 * The class <code>ThreadPort</code> holds the port added and removed
+	 * by one benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class	ThreadPort
+	{
+		protected PortI		port ;
+
+		@Setup(Level.Trial)
+		public void			setup(PortTableBenchmark b) throws Exception
+		{
+			this.port = new EchoInboundPort(b.owner) ;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void			setup() throws Exception
+	{
+		BenchmarkCVM.initialise() ;
+		this.useConcurrent = "concurrent".equals(this.tables) ;
+		this.owner = new EchoProvider(false) ;
+		this.owner.start() ;
+		this.synchronizedTables = new SynchronizedTables() ;
+		this.synchronizedTables.addOfferedInterface(EchoOfferedI.class) ;
+		this.addedURIs = new String[NB_ADDED_PORTS] ;
+		this.addedURIs[0] = this.owner.getEchoPortURI() ;
+		this.synchronizedTables.addPort(this.owner.getEchoPort()) ;
+		for (int i = 1 ; i < NB_ADDED_PORTS ; i++) {
+			PortI p = new EchoInboundPort(this.owner) ;
+			this.addedURIs[i] = p.getPortURI() ;
+			this.owner.addPort(p) ;
+			// published as the owner destroys its ports at shutdown.
+			p.localPublishPort() ;
+			this.synchronizedTables.addPort(p) ;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void			tearDown() throws Exception
+	{
+		this.owner.shutdown() ;
+	}
+
+	@Benchmark
+	public void			lookup(Blackhole bh)
+	{
+		String uri = this.addedURIs[
+					ThreadLocalRandom.current().nextInt(NB_ADDED_PORTS)] ;
+		if (this.useConcurrent) {
+			bh.consume(this.owner.isOfferedInterface(EchoOfferedI.class)) ;
+			bh.consume(this.owner.findPortsFromInterface(EchoOfferedI.class)) ;
+			bh.consume(this.owner.findPortFromURI(uri)) ;
+		} else {
+			SynchronizedTables t = this.synchronizedTables ;
+			bh.consume(t.isOfferedInterface(EchoOfferedI.class)) ;
+			bh.consume(t.findPortsFromInterface(EchoOfferedI.class)) ;
+			bh.consume(t.findPortFromURI(uri)) ;
+		}
+	}
+
+	@Benchmark
+	public void			addRemove(ThreadPort tp) throws Exception
+	{
+		if (this.useConcurrent) {
+			this.owner.addPort(tp.port) ;
+			this.owner.removePort(tp.port) ;
+		} else {
+			this.synchronizedTables.addPort(tp.port) ;
+			this.synchronizedTables.removePort(tp.port) ;
+		}
+	}
+}
@@ -36,25 +36,44 @@ package fr.upmc.components;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
-import net.jcip.annotations.GuardedBy;
+import fr.upmc.components.cvm.AbstractCVM;
+import fr.upmc.components.cvm.utils.BoundedRequestExecutor;
+import fr.upmc.components.cvm.utils.SerialLaneExecutor;
 import fr.upmc.components.exceptions.ComponentShutdownException;
 import fr.upmc.components.exceptions.ComponentStartException;
 import fr.upmc.components.interfaces.OfferedI;
+import fr.upmc.components.metrics.ComponentMetrics;
 import fr.upmc.components.interfaces.RequiredI;
+import fr.upmc.components.logging.AsyncBinaryLogger;
 import fr.upmc.components.ports.PortI;
+import fr.upmc.components.tracing.Span;
+import fr.upmc.components.tracing.TraceContext;
+import fr.upmc.components.tracing.Tracer;
 
 /**
  * The class <code>AbstractComponent</code> represents the basic information
@@ -150,8 +169,9 @@ implements		ComponentI
 	// management.
 	// ------------------------------------------------------------------------
 
-	/** current state in the component life-cycle.							*/
-	protected ComponentState			state ;
+	/** current state in the component life-cycle, only changed through
+	 *  the transition methods so that it can be read from any thread.		*/
+	protected volatile ComponentState	state ;
 	/** inner components owned by this component.							*/
 	protected final Vector<ComponentI>	innerComponents ;
 
@@ -163,11 +183,15 @@ implements		ComponentI
 	protected boolean	isConcurrent ;
 	/** true if the component can schedule tasks.							*/
 	protected boolean	canScheduleTasks ;
+	/** true if the executors of the component run tasks on virtual threads.	*/
+	protected boolean	usesVirtualThreads ;
 
 	/** the executor service in charge of handling component requests.		*/
 	protected ExecutorService			requestHandler ;
 	/** the executor service in charge of handling scheduled tasks.			*/
 	protected ScheduledExecutorService	scheduledTasksHandler ;
+	/** metrics of the requests executed by the component.					*/
+	protected final ComponentMetrics	metrics ;
 
 	// ------------------------------------------------------------------------
 	// Logging facilities
@@ -199,6 +223,11 @@ implements		ComponentI
 	/**	The buffer in which logging messages are accumulated until their
 	 *  writing on the logging file.										*/
 	protected StringBuffer	executionLog ;
+	/** file extension of binary logging files.							*/
+	protected static String	BINARY_LOG_FILE_EXTENSION = "blog" ;
+	/** asynchronous logger shared by the components of this JVM, or null
+	 *  if logging messages are accumulated in the execution logs.			*/
+	protected static volatile AsyncBinaryLogger	ASYNC_LOGGER = null ;
 
 	/**
 	 * configure the logging and tracing facility for components : must be
@@ -229,6 +258,63 @@ implements		ComponentI
 		LOGGING_SEPARATION_CHARACTER = loggingSeparationCharacter ;
 	}
 
+	/**
+	 * make the components of this JVM log their messages asynchronously in
+	 * the binary log file <code>fileName</code> of the logging directory
+	 * instead of accumulating them in their execution logs; a previously
+	 * configured binary log file is closed.
+	 *
+	 * <p><strong>Description</strong></p>
+	 *
+	 * With asynchronous logging, <code>logMessage</code> copies the message
+	 * in a preallocated buffer of the calling thread and returns; a
+	 * background thread writes the messages to the file (see
+	 * <code>AsyncBinaryLogger</code>).  The execution logs of components
+	 * then remain empty and the file is rendered as text by
+	 * <code>BinaryLogReader</code>.  Tracing on the terminal is not affected.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	fileName != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param fileName		name of the binary logging file, without extension.
+	 * @throws IOException	if the file cannot be opened.
+	 */
+	public static synchronized void	configureAsyncLogging(String fileName)
+	throws IOException
+	{
+		assert	fileName != null ;
+
+		AbstractComponent.closeAsyncLogging() ;
+		ASYNC_LOGGER = new AsyncBinaryLogger(
+						new File(LOGGING_FILES_DIRECTORY + File.separator +
+								 fileName + '.' + BINARY_LOG_FILE_EXTENSION)) ;
+	}
+
+	/**
+	 * write the pending messages to the binary log file and close it, going
+	 * back to execution logs; does nothing if asynchronous logging is not
+	 * configured.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 */
+	public static synchronized void	closeAsyncLogging()
+	{
+		if (ASYNC_LOGGER != null) {
+			AsyncBinaryLogger l = ASYNC_LOGGER ;
+			ASYNC_LOGGER = null ;
+			l.close() ;
+		}
+	}
+
 	/**
 	 * toggle the logging status; must be called before starting the component.
 	 * 
@@ -268,7 +354,8 @@ implements		ComponentI
 
 	/**
 	 * add a log message to the log buffer, tagging it with the current time
-	 * on the computer (<code>System.currentTimeMillis()</code>)
+	 * on the computer (<code>System.currentTimeMillis()</code>), or to the
+	 * binary log file when asynchronous logging is configured.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
@@ -287,9 +374,18 @@ implements		ComponentI
 								   LOGGING_SEPARATION_CHARACTER +
 								   message + "\n");
 			} else {
-				this.executionLog.append("" + System.currentTimeMillis() +
-										 LOGGING_SEPARATION_CHARACTER +
-										 message + "\n") ;
+				AsyncBinaryLogger l = ASYNC_LOGGER ;
+				if (l != null) {
+					l.log(this.metrics.getComponentId(), message) ;
+				} else {
+					// append the parts directly, without building a string,
+					// but keep the line atomic among concurrent loggers.
+					synchronized (this.executionLog) {
+						this.executionLog.append(System.currentTimeMillis()).
+							append(LOGGING_SEPARATION_CHARACTER).
+							append(message).append('\n') ;
+					}
+				}
 			}
 		}
 	}
@@ -401,31 +497,29 @@ implements		ComponentI
 
 	/**
 	 * class objects representing all the required interfaces implemented
-	 * by this component.
+	 * by this component, as a concurrent set giving O(1) membership tests.
 	 */
-	@GuardedBy("this")
-	protected Vector<Class<?>>	requiredInterfaces ;
+	protected final Set<Class<?>>	requiredInterfaces ;
 
 	/**
 	 * class objects representing all the offered interfaces implemented
-	 * by this component.
+	 * by this component, as a concurrent set giving O(1) membership tests.
 	 */
-	@GuardedBy("this")
-	protected Vector<Class<?>>	offeredInterfaces ;
+	protected final Set<Class<?>>	offeredInterfaces ;
 
 	/*
-	 * a hashtable mapping interfaces implemented by this component to
-	 * vectors of ports to which one can connect using these interfaces.
+	 * a concurrent map from interfaces implemented by this component to
+	 * the arrays of ports to which one can connect using these interfaces;
+	 * arrays are never modified once in the map but replaced by updated
+	 * copies, so readers get consistent snapshots without locking.
 	 */
-	@GuardedBy("this")
-	protected Hashtable<Class<?>,Vector<PortI>>	interfaces2ports ;
+	protected final ConcurrentHashMap<Class<?>,PortI[]>	interfaces2ports ;
 
 	/*
-	 * a hashtable mapping URIs of ports owned by this component to ports to
-	 * which one can connect.
+	 * a concurrent map from URIs of ports owned by this component to ports
+	 * to which one can connect.
 	 */
-	@GuardedBy("this")
-	protected Hashtable<String,PortI>	portURIs2ports ;
+	protected final ConcurrentHashMap<String,PortI>		portURIs2ports ;
 
 	// ------------------------------------------------------------------------
 	// Creation, constructors
@@ -449,12 +543,16 @@ implements		ComponentI
 		this.innerComponents = new Vector<ComponentI>() ;
 		this.isConcurrent = false ;
 		this.canScheduleTasks = false ;
+		this.usesVirtualThreads = false ;
 		this.requestHandler = null ;
 		this.scheduledTasksHandler = null ;
-		this.requiredInterfaces = new Vector<Class<?>>() ;
-		this.offeredInterfaces = new Vector<Class<?>>() ;
-		this.interfaces2ports = new Hashtable<Class<?>,Vector<PortI>>() ;
-		this.portURIs2ports = new Hashtable<String, PortI>() ;
+		this.metrics = new ComponentMetrics(this) ;
+		this.requiredInterfaces = Collections.newSetFromMap(
+							new ConcurrentHashMap<Class<?>,Boolean>()) ;
+		this.offeredInterfaces = Collections.newSetFromMap(
+							new ConcurrentHashMap<Class<?>,Boolean>()) ;
+		this.interfaces2ports = new ConcurrentHashMap<Class<?>,PortI[]>() ;
+		this.portURIs2ports = new ConcurrentHashMap<String,PortI>() ;
 
 		if (this.isLogging()) {
 			this.executionLog = new StringBuffer(LOGGING_BUFFER_INITIAL_SIZE) ;
@@ -486,7 +584,8 @@ implements		ComponentI
 		this();
 		this.isConcurrent = isConcurrent ;
 		if (isConcurrent) {
-			this.requestHandler = Executors.newSingleThreadExecutor() ;
+			this.requestHandler =
+					AbstractComponent.createSingleThreadRequestHandler() ;
 		}
 	}
 
@@ -513,7 +612,8 @@ implements		ComponentI
 			this.isConcurrent = true ;
 		}
 		if (nbThreads == 1) {
-			this.requestHandler = Executors.newSingleThreadExecutor() ;
+			this.requestHandler =
+					AbstractComponent.createSingleThreadRequestHandler() ;
 		} else if (nbThreads > 1) {
 			this.requestHandler = Executors.newFixedThreadPool(nbThreads) ;
 		}
@@ -582,10 +682,488 @@ implements		ComponentI
 		}
 	}
 
+	/**
+	 * create a component which executors run their tasks on virtual threads
+	 * when <code>useVirtualThreads</code> is true, and behaves as the
+	 * constructor <code>AbstractComponent(boolean,boolean)</code> otherwise.
+	 *
+	 * <p><strong>Description</strong></p>
+	 *
+	 * With virtual threads, the request handler creates one virtual thread
+	 * per submitted task, so components serving blocking calls (semaphores,
+	 * barriers, ...) through <code>handleRequestSync</code> can have
+	 * thousands of callers waiting concurrently without pinning one platform
+	 * thread each.  The scheduled tasks handler keeps a pool of
+	 * <code>VIRTUAL_SCHEDULED_POOL_SIZE</code> virtual threads.  When the
+	 * running JVM does not provide virtual threads, as with JDK 17, the
+	 * request handler falls back to an unbounded cached pool of platform
+	 * threads, which never queues a request but pins one platform thread per
+	 * blocked caller, and the scheduled tasks handler to a scheduled pool of
+	 * platform threads of the same size; the fallback is written on the log
+	 * of the component.
+	 *
+	 * Note that with several threads, requests are no longer serialised, so
+	 * the component must protect its own state as any multi-threaded one.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param isConcurrent			if true, the component is created with its own request handler.
+	 * @param canScheduleTasks		if true, the component is created with its own scheduled tasks handler.
+	 * @param useVirtualThreads		if true, the handlers run their tasks on virtual threads.
+	 */
+	public				AbstractComponent(
+		boolean isConcurrent,
+		boolean canScheduleTasks,
+		boolean useVirtualThreads
+		)
+	{
+		this() ;
+		this.isConcurrent = isConcurrent ;
+		this.canScheduleTasks = canScheduleTasks ;
+		this.usesVirtualThreads = useVirtualThreads ;
+		if (useVirtualThreads &&
+						AbstractComponent.virtualThreadFactory() == null) {
+			this.logMessage("virtual threads are not available in this JVM, " +
+							"the component uses platform threads instead.") ;
+		}
+		if (isConcurrent) {
+			if (useVirtualThreads) {
+				this.requestHandler =
+						AbstractComponent.createVirtualThreadExecutor() ;
+			} else {
+				this.requestHandler =
+					AbstractComponent.createSingleThreadRequestHandler() ;
+			}
+		}
+		if (canScheduleTasks) {
+			if (useVirtualThreads) {
+				this.scheduledTasksHandler =
+					AbstractComponent.createVirtualThreadScheduledExecutor(
+											VIRTUAL_SCHEDULED_POOL_SIZE) ;
+			} else {
+				this.scheduledTasksHandler =
+								Executors.newSingleThreadScheduledExecutor() ;
+			}
+		}
+	}
+
+	/**
+	 * create an active component which request handler has
+	 * <code>nbThreads</code> threads and a queue of at most
+	 * <code>requestQueueCapacity</code> pending requests, applying
+	 * <code>policy</code> to requests arriving when the queue is full, and
+	 * <code>nbSchedulableThreads</code> schedulable threads.
+	 *
+	 * <p><strong>Description</strong></p>
+	 *
+	 * Bounding the request queue prevents a fast producer from exhausting
+	 * the heap by calling a slow component: under overload, the component
+	 * degrades according to its policy (see <code>OverloadPolicy</code>).
+	 * The scheduled tasks handler keeps an unbounded queue, as its tasks are
+	 * created by the component itself.  As a bounded request handler owns
+	 * its threads, it is never a lane of the shared request pool of the CVM.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	nbThreads > 0 && nbSchedulableThreads >= 0
+	 * pre	requestQueueCapacity > 0 && policy != null
+	 * post	this.isConcurrent()
+	 * </pre>
+	 *
+	 * @param nbThreads				number of threads to be created in the component pool.
+	 * @param nbSchedulableThreads	number of threads to be created in the component schedulable pool.
+	 * @param requestQueueCapacity	maximum number of pending requests.
+	 * @param policy				behaviour of the component when its request queue is full.
+	 */
+	public				AbstractComponent(
+		int nbThreads,
+		int nbSchedulableThreads,
+		int requestQueueCapacity,
+		OverloadPolicy policy
+		)
+	{
+		this(0, nbSchedulableThreads) ;
+		assert	nbThreads > 0 ;
+		assert	requestQueueCapacity > 0 && policy != null ;
+
+		this.isConcurrent = true ;
+		this.requestHandler =
+				AbstractComponent.createBoundedRequestHandler(
+								nbThreads, requestQueueCapacity, policy) ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Request handlers creation
+	// ------------------------------------------------------------------------
+
+	/**
+	 * create the request handler of a single-threaded component: a serial
+	 * lane on the shared request pool if the CVM has enabled it, otherwise a
+	 * single thread executor owned by the component.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	an executor service running one task at a time.
+	 */
+	protected static ExecutorService	createSingleThreadRequestHandler()
+	{
+		if (AbstractCVM.usesSharedRequestPool()) {
+			return AbstractCVM.createRequestLane() ;
+		} else {
+			// same as Executors.newSingleThreadExecutor() but exposing its
+			// queue, so that the request queue depth can be monitored.
+			return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+										  new LinkedBlockingQueue<Runnable>()) ;
+		}
+	}
+
+	/**
+	 * create a request handler with <code>nbThreads</code> threads and a
+	 * bounded queue of pending requests.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	nbThreads > 0 && capacity > 0 && policy != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param nbThreads	number of threads of the request handler.
+	 * @param capacity	maximum number of pending requests.
+	 * @param policy	behaviour of the handler when its queue is full.
+	 * @return			a bounded executor service.
+	 */
+	protected static ExecutorService	createBoundedRequestHandler(
+		int nbThreads,
+		int capacity,
+		OverloadPolicy policy
+		)
+	{
+		return new BoundedRequestExecutor(nbThreads, capacity, policy) ;
+	}
+
+	/**
+	 * return the number of requests waiting in the queue of the request
+	 * handler, or -1 if the component has no request handler or if its
+	 * handler does not expose its queue.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return >= -1
+	 * </pre>
+	 *
+	 * @return	the number of pending requests or -1 if unknown.
+	 */
+	public int			getRequestQueueDepth()
+	{
+		if (this.requestHandler instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor)this.requestHandler).getQueue().size() ;
+		} else if (this.requestHandler instanceof SerialLaneExecutor) {
+			return ((SerialLaneExecutor)this.requestHandler).
+													getPendingTaskCount() ;
+		} else {
+			return -1 ;
+		}
+	}
+
+	/**
+	 * return the maximum number of pending requests of the request handler,
+	 * or -1 if its queue is unbounded or unknown.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return == -1 || return > 0
+	 * </pre>
+	 *
+	 * @return	the capacity of the request queue or -1 if unbounded.
+	 */
+	public int			getRequestQueueCapacity()
+	{
+		if (this.requestHandler instanceof BoundedRequestExecutor) {
+			return ((BoundedRequestExecutor)this.requestHandler).
+														getQueueCapacity() ;
+		} else {
+			return -1 ;
+		}
+	}
+
+	/**
+	 * return the highest number of pending requests observed in a bounded
+	 * request queue, or -1 if the request queue is not bounded.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return >= -1
+	 * </pre>
+	 *
+	 * @return	the peak depth of the request queue or -1 if not bounded.
+	 */
+	public int			getPeakRequestQueueDepth()
+	{
+		if (this.requestHandler instanceof BoundedRequestExecutor) {
+			return ((BoundedRequestExecutor)this.requestHandler).
+														getPeakQueueDepth() ;
+		} else {
+			return -1 ;
+		}
+	}
+
+	/**
+	 * return the number of requests dropped or refused by the overload
+	 * policy of a bounded request queue, 0 if the queue is not bounded.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return >= 0
+	 * </pre>
+	 *
+	 * @return	the number of requests lost because of overload.
+	 */
+	public long			getOverloadedRequestCount()
+	{
+		if (this.requestHandler instanceof BoundedRequestExecutor) {
+			BoundedRequestExecutor bre =
+								(BoundedRequestExecutor)this.requestHandler ;
+			return bre.getDroppedCount() + bre.getRejectedCount() ;
+		} else {
+			return 0L ;
+		}
+	}
+
+	/** number of virtual threads kept by scheduled tasks handlers.			*/
+	protected static final int	VIRTUAL_SCHEDULED_POOL_SIZE =
+								Runtime.getRuntime().availableProcessors() ;
+
+	/**
+	 * return a thread factory creating virtual threads or null if the running
+	 * JVM does not provide them; the factory is obtained reflectively so that
+	 * the code still compiles and runs on JVMs without virtual threads.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @return	a virtual thread factory or null if not available.
+	 */
+	protected static ThreadFactory	virtualThreadFactory()
+	{
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null) ;
+			Method factory =
+				Class.forName("java.lang.Thread$Builder").getMethod("factory") ;
+			return (ThreadFactory) factory.invoke(builder) ;
+		} catch (Exception e) {
+			// no virtual threads in this JVM, or only as a disabled preview.
+			return null ;
+		}
+	}
+
+	/**
+	 * create an executor service starting a new virtual thread for each
+	 * submitted task, or, if the running JVM does not provide virtual
+	 * threads, an unbounded cached pool of platform threads: as the tasks
+	 * may block until a later one runs, they must never be queued, at the
+	 * price of one platform thread per blocked task.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	a thread-per-task executor service.
+	 */
+	protected static ExecutorService	createVirtualThreadExecutor()
+	{
+		ThreadFactory tf = AbstractComponent.virtualThreadFactory() ;
+		if (tf != null) {
+			// equivalent to Executors.newVirtualThreadPerTaskExecutor() but
+			// with the standard ThreadPoolExecutor life-cycle.
+			return new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+										  0L, TimeUnit.SECONDS,
+										  new SynchronousQueue<Runnable>(),
+										  tf) ;
+		} else {
+			return Executors.newCachedThreadPool() ;
+		}
+	}
+
+	/**
+	 * create a scheduled executor service which threads are virtual ones,
+	 * or platform ones if the running JVM does not provide virtual threads.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	corePoolSize > 0
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param corePoolSize	number of threads to keep in the pool.
+	 * @return				a scheduled executor service.
+	 */
+	protected static ScheduledExecutorService
+									createVirtualThreadScheduledExecutor(
+		int corePoolSize
+		)
+	{
+		assert	corePoolSize > 0 ;
+
+		ThreadFactory tf = AbstractComponent.virtualThreadFactory() ;
+		if (tf != null) {
+			return Executors.newScheduledThreadPool(corePoolSize, tf) ;
+		} else {
+			return Executors.newScheduledThreadPool(corePoolSize) ;
+		}
+	}
+
+	/**
+	 * @return	true if the executors of the component use virtual threads.
+	 */
+	public boolean		usesVirtualThreads()
+	{
+		return this.usesVirtualThreads ;
+	}
+
 	// ------------------------------------------------------------------------
 	// Internal behaviour requests
 	// ------------------------------------------------------------------------
 
+	/** atomic updater used by the life-cycle transitions.					*/
+	protected static final AtomicReferenceFieldUpdater<AbstractComponent,
+													   ComponentState>
+		STATE_UPDATER = AtomicReferenceFieldUpdater.newUpdater(
+							AbstractComponent.class,
+							ComponentState.class,
+							"state") ;
+
+	/** set of states made of <code>INITIALISED</code> only.				*/
+	protected static final int	INITIALISED_MASK =
+									ComponentState.INITIALISED.mask() ;
+	/** set of states made of <code>STARTED</code> only.					*/
+	protected static final int	STARTED_MASK = ComponentState.STARTED.mask() ;
+	/** set of states made of <code>SHUTDOOWN</code> only.					*/
+	protected static final int	SHUTDOOWN_MASK =
+									ComponentState.SHUTDOOWN.mask() ;
+	/** set of states made of <code>TERMINATED</code> only.				*/
+	protected static final int	TERMINATED_MASK =
+									ComponentState.TERMINATED.mask() ;
+
+	/**
+	 * return true if the component is in one of the states of the set
+	 * represented by <code>stateMask</code>; unlike
+	 * <code>isInStateAmong</code>, this test does not allocate, so it is the
+	 * one to be used on the request handling paths.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param stateMask	set of states as computed by <code>ComponentState.maskOf</code>.
+	 * @return			true if the component is in one of the states.
+	 */
+	protected boolean	isInStates(int stateMask)
+	{
+		return (this.state.mask() & stateMask) != 0 ;
+	}
+
+	/**
+	 * return true if the component is in none of the states of the set
+	 * represented by <code>stateMask</code>, without allocating.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param stateMask	set of states as computed by <code>ComponentState.maskOf</code>.
+	 * @return			true if the component is in none of the states.
+	 */
+	protected boolean	notInStates(int stateMask)
+	{
+		return (this.state.mask() & stateMask) == 0 ;
+	}
+
+	/**
+	 * atomically move the component from the state <code>expected</code> to
+	 * the state <code>update</code>.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	expected != null && update != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param expected	state in which the component must be.
+	 * @param update	new state of the component.
+	 * @return			true if the transition occurred, false if the component was not in <code>expected</code>.
+	 */
+	protected boolean	compareAndSetState(
+		ComponentState expected,
+		ComponentState update
+		)
+	{
+		assert	expected != null && update != null ;
+
+		return STATE_UPDATER.compareAndSet(this, expected, update) ;
+	}
+
+	/**
+	 * atomically move the component forward to <code>target</code> in the
+	 * life-cycle, doing nothing if it already is in <code>target</code> or
+	 * in a later state; concurrent observers of the executors (e.g.
+	 * <code>isShutdown</code> and <code>isTerminated</code>) may hence race
+	 * without ever moving the component back in its life-cycle.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	target != null
+	 * post	this.state.ordinal() >= target.ordinal()
+	 * </pre>
+	 *
+	 * @param target	state to be reached.
+	 */
+	protected void		advanceState(ComponentState target)
+	{
+		assert	target != null ;
+
+		ComponentState current = this.state ;
+		while (current.ordinal() < target.ordinal() &&
+								!this.compareAndSetState(current, target)) {
+			current = this.state ;
+		}
+	}
+
 	/**
 	 * @see fr.upmc.components.ComponentI#isInStateAmong(fr.upmc.components.ComponentStateI[])
 	 */
@@ -594,9 +1172,10 @@ implements		ComponentI
 	{
 		assert	states != null ;
 
+		ComponentState current = this.state ;
 		boolean ret = false ;
 		for (int i = 0 ; !ret && i < states.length ; i++) {
-			ret = (this.state == states[i]) ;
+			ret = (current == states[i]) ;
 		}
 		return ret ;
 	}
@@ -609,9 +1188,10 @@ implements		ComponentI
 	{
 		assert	states != null ;
 
+		ComponentState current = this.state ;
 		boolean ret = true ;
 		for (int i = 0 ; ret && i < states.length ; i++) {
-			ret = (this.state != states[i]) ;
+			ret = (current != states[i]) ;
 		}
 		return ret ;
 	}
@@ -622,9 +1202,7 @@ implements		ComponentI
 	@Override
 	public boolean		isConcurrent()
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
 		return this.isConcurrent || this.canScheduleTasks() ;
 	}
@@ -635,9 +1213,7 @@ implements		ComponentI
 	@Override
 	public boolean		canScheduleTasks()
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
 		return this.canScheduleTasks ;
 	}
@@ -652,18 +1228,12 @@ implements		ComponentI
 	@Override
 	public Class<?>[]	getInterfaces()
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
-		Vector<Class<?>> temp = new Vector<Class<?>>() ;
-		synchronized (this.requiredInterfaces) {
-			temp.addAll(this.requiredInterfaces) ;
-		}
-		synchronized (this.offeredInterfaces) {
-			temp.addAll(this.offeredInterfaces) ;
-		}
-		return temp.toArray(new Class<?>[]{}) ;
+		ArrayList<Class<?>> temp = new ArrayList<Class<?>>() ;
+		temp.addAll(this.requiredInterfaces) ;
+		temp.addAll(this.offeredInterfaces) ;
+		return temp.toArray(new Class<?>[temp.size()]) ;
 	}
 
 	/**
@@ -672,15 +1242,9 @@ implements		ComponentI
 	@Override
 	public Class<?>[]	getRequiredInterfaces()
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
-		Class<?>[] ret ;
-		synchronized (this.requiredInterfaces) {
-			ret = this.requiredInterfaces.toArray(new Class<?>[]{}) ;
-		}
-		return ret ;
+		return this.requiredInterfaces.toArray(new Class<?>[]{}) ;
 	}
 
 	/**
@@ -689,15 +1253,9 @@ implements		ComponentI
 	@Override
 	public Class<?>[]	getOfferedInterfaces()
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
-		Class<?>[] ret ;
-		synchronized (this.offeredInterfaces) {
-			ret = this.offeredInterfaces.toArray(new Class<?>[]{}) ;
-		}
-		return ret ;
+		return this.offeredInterfaces.toArray(new Class<?>[]{}) ;
 	}
 
 	/**
@@ -706,15 +1264,11 @@ implements		ComponentI
 	@Override
 	public void			addRequiredInterface(Class<?> inter)
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 		assert	RequiredI.class.isAssignableFrom(inter) ;
 		assert	!this.isRequiredInterface(inter) ;
 
-		synchronized (this.requiredInterfaces) {
-			this.requiredInterfaces.add(inter) ;
-		}
+		this.requiredInterfaces.add(inter) ;
 
 		assert	this.isRequiredInterface(inter) ;
 	}
@@ -725,15 +1279,11 @@ implements		ComponentI
 	@Override
 	public void			removeRequiredInterface(Class<?> inter)
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 		assert	RequiredI.class.isAssignableFrom(inter) ;
 		assert	this.isRequiredInterface(inter) ;
 
-		synchronized (this.requiredInterfaces) {
-			this.requiredInterfaces.remove(inter) ;
-		}
+		this.requiredInterfaces.remove(inter) ;
 
 		assert	!this.isRequiredInterface(inter) ;
 	}
@@ -744,15 +1294,11 @@ implements		ComponentI
 	@Override
 	public void			addOfferedInterface(Class<?> inter)
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 		assert	OfferedI.class.isAssignableFrom(inter) ;
 		assert	!this.isOfferedInterface(inter) ;
 
-		synchronized (this.offeredInterfaces) {
-			this.offeredInterfaces.add(inter) ;
-		}
+		this.offeredInterfaces.add(inter) ;
 
 		assert	this.isOfferedInterface(inter) ;
 	}
@@ -763,15 +1309,11 @@ implements		ComponentI
 	@Override
 	public void			removeOfferedInterface(Class<?> inter)
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 		assert	OfferedI.class.isAssignableFrom(inter) ;
 		assert	this.isOfferedInterface(inter) ;
 
-		synchronized (this.offeredInterfaces) {
-			this.offeredInterfaces.remove(inter) ;
-		}
+		this.offeredInterfaces.remove(inter) ;
 
 		assert	!this.isOfferedInterface(inter) ;
 	}
@@ -782,9 +1324,7 @@ implements		ComponentI
 	@Override
 	public boolean		isInterface(Class<?> inter)
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
 		return this.isRequiredInterface(inter) ||
 											this.isOfferedInterface(inter) ;
@@ -796,13 +1336,9 @@ implements		ComponentI
 	@Override
 	public boolean		isRequiredInterface(Class<?> inter)
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
-		synchronized (this.requiredInterfaces) {
-			return this.requiredInterfaces.contains(inter) ;
-		}
+		return this.requiredInterfaces.contains(inter) ;
 	}
 
 	/**
@@ -811,13 +1347,9 @@ implements		ComponentI
 	@Override
 	public boolean		isOfferedInterface(Class<?> inter)
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
-		synchronized (this.offeredInterfaces) {
-			return this.offeredInterfaces.contains(inter) ;
-		}
+		return this.offeredInterfaces.contains(inter) ;
 	}
 
 	/**
@@ -826,22 +1358,11 @@ implements		ComponentI
 	@Override
 	public PortI[]		findPortsFromInterface(Class<?> inter)
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
-		PortI[] ret = null ;
-		Vector<PortI> temp ;
-
-		synchronized (this.interfaces2ports) {
-			temp = this.interfaces2ports.get(inter) ;
-		}
-		if (temp != null) {
-			synchronized (temp) {
-				ret = temp.toArray(new PortI[]{}) ;
-			}
-		}
-		return ret ;
+		PortI[] snapshot = this.interfaces2ports.get(inter) ;
+		// copied as callers may modify the returned array.
+		return snapshot == null ? null : snapshot.clone() ;
 	}
 
 	/**
@@ -850,13 +1371,9 @@ implements		ComponentI
 	@Override
 	public PortI		findPortFromURI(String portURI)
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 
-		synchronized (this.portURIs2ports) {
-			return this.portURIs2ports.get(portURI) ;
-		}
+		return this.portURIs2ports.get(portURI) ;
 	}
 
 	/**
@@ -865,29 +1382,25 @@ implements		ComponentI
 	@Override
 	public void			addPort(PortI p) throws Exception
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 		assert	this.equals(p.getOwner()) ;
 		assert	this.isInterface(p.getImplementedInterface()) ;
 		assert	this.portURIs2ports.get(p.getPortURI()) == null ;
 
-		Vector<PortI> vps = null ;
-		synchronized (this.interfaces2ports) {
-			vps = this.interfaces2ports.get(p.getImplementedInterface()) ;
-			if (vps == null) {
-				vps = new Vector<PortI>() ;
-				vps.add(p) ;
-				this.interfaces2ports.put(p.getImplementedInterface(), vps) ;
+		Class<?> inter = p.getImplementedInterface() ;
+		boolean done = false ;
+		while (!done) {
+			PortI[] current = this.interfaces2ports.get(inter) ;
+			if (current == null) {
+				done = this.interfaces2ports.
+								putIfAbsent(inter, new PortI[]{p}) == null ;
 			} else {
-				synchronized (vps) {
-					vps.add(p) ;
-				}
+				PortI[] updated = Arrays.copyOf(current, current.length + 1) ;
+				updated[current.length] = p ;
+				done = this.interfaces2ports.replace(inter, current, updated) ;
 			}
 		}
-		synchronized (this.portURIs2ports) {
-			this.portURIs2ports.put(p.getPortURI(), p) ;
-		}
+		this.portURIs2ports.put(p.getPortURI(), p) ;
 
 		assert	this.interfaces2ports.containsKey(p.getImplementedInterface()) ;
 		assert	this.portURIs2ports.containsKey(p.getPortURI()) ;
@@ -899,25 +1412,34 @@ implements		ComponentI
 	@Override
 	public void			removePort(PortI p) throws Exception
 	{
-		assert	this.notInStateAmong(new ComponentStateI[]{
-							ComponentState.TERMINATED
-							}) ;
+		assert	this.notInStates(TERMINATED_MASK) ;
 		assert	this.interfaces2ports.containsKey(p.getImplementedInterface()) ;
 		assert	this.portURIs2ports.containsKey(p.getPortURI()) ;
 
-		synchronized (this.interfaces2ports) {
-			Vector<PortI> vps =
-				this.interfaces2ports.get(p.getImplementedInterface()) ;
-			synchronized (vps) {
-				vps.remove(p) ;
-				if (vps.isEmpty()) {
-					this.interfaces2ports.remove(p.getImplementedInterface()) ;
+		Class<?> inter = p.getImplementedInterface() ;
+		boolean done = false ;
+		while (!done) {
+			PortI[] current = this.interfaces2ports.get(inter) ;
+			int index = -1 ;
+			for (int i = 0 ; current != null && i < current.length ; i++) {
+				if (current[i] == p) {
+					index = i ;
+					break ;
 				}
 			}
+			if (index < 0) {
+				done = true ;
+			} else if (current.length == 1) {
+				done = this.interfaces2ports.remove(inter, current) ;
+			} else {
+				PortI[] updated = new PortI[current.length - 1] ;
+				System.arraycopy(current, 0, updated, 0, index) ;
+				System.arraycopy(current, index + 1, updated, index,
+								 current.length - index - 1) ;
+				done = this.interfaces2ports.replace(inter, current, updated) ;
+			}
 		}
-		synchronized (this.portURIs2ports) {
-			this.portURIs2ports.remove(p.getPortURI()) ;
-		}
+		this.portURIs2ports.remove(p.getPortURI()) ;
 
 		assert	!this.portURIs2ports.containsKey(p.getPortURI()) ;
 	}
@@ -932,9 +1454,7 @@ implements		ComponentI
 	@Override
 	public void			start() throws ComponentStartException
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.INITIALISED
-							}) ;
+		assert	this.isInStates(INITIALISED_MASK) ;
 
 		// Start inner components
 		// assumes that the creation and publication are done
@@ -946,7 +1466,8 @@ implements		ComponentI
 		// Could create the requestHandler and the scheduledTasksHandler, but
 		// it appears safer to do so in the constructors.
 
-		this.state = ComponentState.STARTED ;
+		this.metrics.registerMBean() ;
+		this.advanceState(ComponentState.STARTED) ;
 	}
 
 	/**
@@ -955,9 +1476,7 @@ implements		ComponentI
 	@Override
 	public void			shutdown() throws ComponentShutdownException
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 
 		// Shutdown inner components
 		// assumes that all inner components are disconnected.
@@ -974,15 +1493,17 @@ implements		ComponentI
 				e.printStackTrace();
 			}
 		}
+		this.metrics.unregisterMBean() ;
 		if (this.isConcurrent) {
 			this.requestHandler.shutdown() ;
 		}
 		if (this.canScheduleTasks) {
 			this.scheduledTasksHandler.shutdown() ;
 		}
-		this.state = ComponentState.SHUTTINGDOWN ;
 		if (!this.isConcurrent && !this.canScheduleTasks) {
-			this.state = ComponentState.SHUTDOOWN ;
+			this.advanceState(ComponentState.SHUTDOOWN) ;
+		} else {
+			this.advanceState(ComponentState.SHUTTINGDOWN) ;
 		}
 	}
 
@@ -992,9 +1513,7 @@ implements		ComponentI
 	@Override
 	public void			shutdownNow() throws ComponentShutdownException
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 
 		// Shutdown inner components
 		// assumes that all inner components are disconnected.
@@ -1009,13 +1528,14 @@ implements		ComponentI
 				e.printStackTrace();
 			}
 		}
+		this.metrics.unregisterMBean() ;
 		if (this.isConcurrent) {
 			this.requestHandler.shutdownNow() ;
 		}
 		if (this.canScheduleTasks) {
 			this.scheduledTasksHandler.shutdownNow() ;
 		}
-		this.state = ComponentState.SHUTDOOWN ;
+		this.advanceState(ComponentState.SHUTDOOWN) ;
 	}
 
 	/**
@@ -1026,7 +1546,7 @@ implements		ComponentI
 	{
 		boolean isShutdown = false ;
 
-		if (this.isInStateAmong(new ComponentStateI[]{ComponentState.SHUTDOOWN})) {
+		if (this.isInStates(SHUTDOOWN_MASK)) {
 			return true ;
 		}
 
@@ -1042,7 +1562,7 @@ implements		ComponentI
 			}
 		}
 		if (isShutdown) {
-			this.state = ComponentState.SHUTDOOWN ;
+			this.advanceState(ComponentState.SHUTDOOWN) ;
 		}
 		return isShutdown ;
 	}
@@ -1055,7 +1575,7 @@ implements		ComponentI
 	{
 		boolean isTerminated = false ;
 
-		if (this.isInStateAmong(new ComponentStateI[]{ComponentState.TERMINATED})) {
+		if (this.isInStates(TERMINATED_MASK)) {
 			return true ;
 		}
 
@@ -1069,7 +1589,7 @@ implements		ComponentI
 									this.scheduledTasksHandler.isTerminated() ;
 		}
 		if (isTerminated) {
-			this.state = ComponentState.TERMINATED ;
+			this.advanceState(ComponentState.TERMINATED) ;
 		}
 		return isTerminated ;
 	}
@@ -1081,7 +1601,7 @@ implements		ComponentI
 	public boolean		awaitTermination(long timeout, TimeUnit unit)
 	throws InterruptedException
 	{
-		if (this.isInStateAmong(new ComponentStateI[]{ComponentState.TERMINATED})) {
+		if (this.isInStates(TERMINATED_MASK)) {
 			return true ;
 		}
 
@@ -1097,7 +1617,7 @@ implements		ComponentI
 			status = true ;
 		}
 		if (status) {
-			this.state = ComponentState.TERMINATED ;
+			this.advanceState(ComponentState.TERMINATED) ;
 		}
 		return status ;
 	}
@@ -1112,9 +1632,7 @@ implements		ComponentI
 	@Override
 	public Future<?>	runTask(ComponentTask t)
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	t != null ;
 
 		Future<?> f = null ;
@@ -1126,27 +1644,7 @@ implements		ComponentI
 			}
 		} else {
 			t.run() ;
-			f = new Future<Object>() {
-						@Override
-						public boolean cancel(boolean arg0) { return false; }
-						@Override
-						public Object get()
-						throws InterruptedException, ExecutionException
-						{
-							return null ;
-						}
-						@Override
-						public Object get(long arg0, TimeUnit arg1)
-						throws InterruptedException, ExecutionException,
-							   TimeoutException
-						{
-							return null;
-						}
-						@Override
-						public boolean isCancelled() { return false; }
-						@Override
-						public boolean isDone() { return true; }
-					};
+			f = CompletableFuture.completedFuture(null) ;
 		}
 		return f ;
 	}
@@ -1161,9 +1659,7 @@ implements		ComponentI
 		TimeUnit u
 		)
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	this.canScheduleTasks ;
 		assert	t != null && delay >= 0 && u != null ;
 
@@ -1181,9 +1677,7 @@ implements		ComponentI
 		TimeUnit u
 		)
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	this.canScheduleTasks() ;
 		assert	t != null && initialDelay >= 0  && period > 0 && u != null ;
 
@@ -1202,9 +1696,7 @@ implements		ComponentI
 		TimeUnit u
 		)
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	this.canScheduleTasks() ;
 		assert	t != null && initialDelay >= 0 && delay >= 0 && u != null ;
 
@@ -1216,6 +1708,118 @@ implements		ComponentI
 	// Request handling
 	// ------------------------------------------------------------------------
 
+	/**
+	 * @see fr.upmc.components.ComponentI#getMetrics()
+	 */
+	@Override
+	public ComponentMetrics	getMetrics()
+	{
+		return this.metrics ;
+	}
+
+	/**
+	 * return the request to be executed in place of <code>request</code>,
+	 * instrumented to record its metrics if <code>ComponentMetrics.ENABLED</code>
+	 * is true and to be traced if tracing is enabled.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	request != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param request	request submitted to the component.
+	 * @return			the request to be executed.
+	 */
+	protected <T> ComponentService<T>	instrumentRequest(
+		ComponentService<T> request
+		)
+	{
+		ComponentService<T> r = request ;
+		if (ComponentMetrics.ENABLED) {
+			r = this.metrics.instrument(r) ;
+		}
+		if (Tracer.isEnabled()) {
+			r = this.traceRequest(r,
+						ComponentMetrics.requestName(request.getClass())) ;
+		}
+		return r ;
+	}
+
+	/**
+	 * execute <code>request</code> in the calling thread, recording its
+	 * metrics if <code>ComponentMetrics.ENABLED</code> is true and tracing it
+	 * if tracing is enabled; unless tracing, no wrapper is allocated.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	request != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param request		request to be executed.
+	 * @return				the result of the request.
+	 * @throws Exception	if the request raises one.
+	 */
+	protected <T> T		callRequest(ComponentService<T> request)
+	throws Exception
+	{
+		if (Tracer.isEnabled()) {
+			return this.instrumentRequest(request).call() ;
+		} else if (ComponentMetrics.ENABLED) {
+			return this.metrics.call(request) ;
+		} else {
+			return request.call() ;
+		}
+	}
+
+	/**
+	 * return a request executing <code>request</code> within the trace
+	 * context of the submitting thread, recorded as a span of category
+	 * <code>request</code> which is also written in the log of the
+	 * component when logging.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	request != null && name != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param request	request submitted to the component.
+	 * @param name		name of the span.
+	 * @return			the traced request.
+	 */
+	protected <T> ComponentService<T>	traceRequest(
+		final ComponentService<T> request,
+		final String name
+		)
+	{
+		final TraceContext caller = Tracer.current() ;
+		return new ComponentService<T>() {
+					@Override
+					public T call() throws Exception
+					{
+						TraceContext previous = Tracer.attach(caller) ;
+						Span s = Tracer.startSpan(name, "request") ;
+						try {
+							return request.call() ;
+						} catch (Exception e) {
+							s.setFailed() ;
+							throw e ;
+						} finally {
+							s.finish() ;
+							Tracer.restore(previous) ;
+							if (isLogging()) {
+								logMessage(s.toString()) ;
+							}
+						}
+					}
+				} ;
+	}
+
 	/**
 	 * @see fr.upmc.components.ComponentI#handleRequest(fr.upmc.components.ComponentI.ComponentService)
 	 */
@@ -1223,40 +1827,18 @@ implements		ComponentI
 	public <T> Future<T>	handleRequest(ComponentService<T> task)
 	throws Exception
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	task != null ;
 
 		if (this.isConcurrent()) {
+			ComponentService<T> t = this.instrumentRequest(task) ;
 			if (this.isConcurrent) {
-				return this.requestHandler.submit(task) ;
+				return this.requestHandler.submit(t) ;
 			} else {
-				return this.scheduledTasksHandler.submit(task) ;
+				return this.scheduledTasksHandler.submit(t) ;
 			}
 		} else {
-			final ComponentService<T> t = task ;
-			return new Future<T>() {
-				@Override
-				public boolean cancel(boolean arg0) { return false; }
-				@Override
-				public T get() throws InterruptedException, ExecutionException {
-					try {
-						return t.call() ;
-					} catch (Exception e) {
-						throw new ExecutionException(e) ;
-					}
-				}
-				@Override
-				public T get(long arg0, TimeUnit arg1) throws InterruptedException,
-						ExecutionException, TimeoutException {
-					return null;
-				}
-				@Override
-				public boolean isCancelled() { return false; }
-				@Override
-				public boolean isDone() { return true; }
-			};
+			return this.handleRequestCompletable(task) ;
 		}
 	}
 
@@ -1267,15 +1849,13 @@ implements		ComponentI
 	public <T> T		handleRequestSync(ComponentService<T> task)
 	throws Exception
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	task != null ;
 
 		if (this.isConcurrent()) {
-			return this.handleRequest(task).get() ;
+			return SerialLaneExecutor.awaitResult(this.handleRequest(task)) ;
 		} else {
-			return task.call() ;
+			return this.callRequest(task) ;
 		}
 	}
 
@@ -1286,16 +1866,56 @@ implements		ComponentI
 	public void			handleRequestAsync(ComponentService<?> task)
 	throws Exception
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	task != null ;
 
 		if (this.isConcurrent()) {
 			this.handleRequest(task) ;
 		} else {
-			task.call();
+			this.callRequest(task) ;
+		}
+	}
+
+	/**
+	 * @see fr.upmc.components.ComponentI#handleRequestCompletable(fr.upmc.components.ComponentI.ComponentService)
+	 */
+	@Override
+	public <T> CompletableFuture<T>	handleRequestCompletable(
+		final ComponentService<T> request
+		)
+	{
+		assert	this.isInStates(STARTED_MASK) ;
+		assert	request != null ;
+
+		final CompletableFuture<T> result = new CompletableFuture<T>() ;
+		// a future task so that requests dropped by a bounded request
+		// handler are cancelled, which cancels the completable future too.
+		FutureTask<T> r =
+					new FutureTask<T>(this.instrumentRequest(request)) {
+						@Override
+						protected void done() {
+							try {
+								result.complete(this.get()) ;
+							} catch (CancellationException e) {
+								result.cancel(false) ;
+							} catch (ExecutionException e) {
+								result.completeExceptionally(e.getCause()) ;
+							} catch (InterruptedException e) {
+								// cannot happen, the task is done.
+								result.completeExceptionally(e) ;
+							}
+						}
+					} ;
+		if (this.isConcurrent()) {
+			if (this.isConcurrent) {
+				this.requestHandler.execute(r) ;
+			} else {
+				this.scheduledTasksHandler.execute(r) ;
+			}
+		} else {
+			r.run() ;
 		}
+		return result ;
 	}
 
 	/**
@@ -1308,9 +1928,7 @@ implements		ComponentI
 		TimeUnit u
 		)
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	this.canScheduleTasks ;
 		assert	request != null && delay >= 0 && u != null ;
 
@@ -1329,9 +1947,7 @@ implements		ComponentI
 		TimeUnit u
 		) throws InterruptedException, ExecutionException
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	this.canScheduleTasks ;
 		assert	request != null && delay >= 0 && u != null ;
 
@@ -1348,9 +1964,7 @@ implements		ComponentI
 		TimeUnit u
 		)
 	{
-		assert	this.isInStateAmong(new ComponentStateI[]{
-							ComponentState.STARTED
-							}) ;
+		assert	this.isInStates(STARTED_MASK) ;
 		assert	this.canScheduleTasks() ;
 		assert	request != null && delay >= 0 && u != null ;
 
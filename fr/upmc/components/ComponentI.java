@@ -35,6 +35,7 @@ package fr.upmc.components;
 // knowledge of the CeCILL-C license and that you accept its terms.
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
@@ -42,6 +43,7 @@ import java.util.concurrent.TimeUnit;
 
 import fr.upmc.components.exceptions.ComponentShutdownException;
 import fr.upmc.components.exceptions.ComponentStartException;
+import fr.upmc.components.metrics.ComponentMetrics;
 import fr.upmc.components.ports.PortI;
 
 /**
@@ -677,6 +679,70 @@ public interface		ComponentI
 	public void			handleRequestAsync(ComponentService<?> request)
 	throws Exception ;
 
+	/**
+	 * return the metrics of the requests executed by this component.
+	 * 
+	 * <p><strong>Description</strong></p>
+	 * 
+	 * For each kind of request, the metrics give the number of submitted,
+	 * completed and failed requests and the histograms of the times spent
+	 * waiting in the request queue and executing.  They are also exposed to
+	 * JMX clients while the component is started.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	the request metrics of this component.
+	 */
+	public ComponentMetrics	getMetrics() ;
+
+	/**
+	 * execute a request represented by a <code>Callable<T></code> on the
+	 * component, returning immediately a completable future that will hold
+	 * its result, so that callers can compose further processing on the
+	 * result without blocking a thread to wait for it.
+	 * 
+	 * <p><strong>Description</strong></p>
+	 * 
+	 * In concurrent components, the request is executed by the request
+	 * handler and the future is completed by the thread executing it.  In
+	 * sequential components, the request is executed immediately in the
+	 * thread of the caller and an already completed future is returned.  An
+	 * exception raised by the request completes the future exceptionally.
+	 * As completable futures are not serializable, this method is meant to
+	 * be called locally, i.e. from ports and connectors in the same JVM as
+	 * the component.
+	 * 
+	 * Only the pull path of data connections goes through this method
+	 * (<code>requestAsync</code> on data outbound ports and connectors,
+	 * <code>getAsync</code> on data inbound ports).  Calls through service
+	 * ports and connectors stay synchronous: their methods are those of
+	 * user-defined offered and required interfaces, which have no
+	 * completable variant to be translated by the connector, and an inbound
+	 * port method submitted as a request to a concurrent owner would block
+	 * its thread in <code>handleRequestSync</code>.  A client wanting an
+	 * asynchronous service call submits it to its own request handler.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.isInStateAmong(new ComponentStateI[]{ComponentState.STARTED})
+	 * pre	request != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param request	service request to be executed on the component.
+	 * @return			a completable future completed with the result of the request.
+	 * @throws RejectedExecutionException	if the task cannot be scheduled for execution
+	 */
+	public <T> CompletableFuture<T>	handleRequestCompletable(
+		ComponentService<T> request
+		) ;
+
 	/**
 	 * schedule a service for execution after a given delay.
 	 * 
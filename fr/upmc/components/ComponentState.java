@@ -23,5 +23,47 @@ implements	ComponentStateI
 	STARTED,			// may run tasks and services
 	SHUTTINGDOWN,		// engaging shutdown, do not accept further tasks or requests
 	SHUTDOOWN,			// all tasks finished
-	TERMINATED			// closed, may not be used anymore
+	TERMINATED ;		// closed, may not be used anymore
+
+	/**
+	 * return the bit representing this state in state sets encoded as
+	 * integer masks, which can be tested without allocation.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return == 1 << this.ordinal()
+	 * </pre>
+	 *
+	 * @return	the bit representing this state in state masks.
+	 */
+	public int			mask()
+	{
+		return 1 << this.ordinal() ;
+	}
+
+	/**
+	 * return the mask representing the set of the given states.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	states != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param states	states to be put in the set.
+	 * @return			the mask representing the set of states.
+	 */
+	public static int	maskOf(ComponentState... states)
+	{
+		assert	states != null ;
+
+		int mask = 0 ;
+		for (ComponentState s : states) {
+			mask |= s.mask() ;
+		}
+		return mask ;
+	}
 }
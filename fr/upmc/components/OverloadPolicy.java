@@ -0,0 +1,43 @@
+package fr.upmc.components;
+
+/**
+ * The enumeration <code>OverloadPolicy</code> defines the behaviours that a
+ * component with a bounded request queue can adopt when a request arrives
+ * while its queue is full.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * <ul>
+ * <li><code>BLOCK_CALLER</code>: the calling thread waits until the queue
+ *   has room for the request, hence slowing down producers to the pace of
+ *   the component;</li>
+ * <li><code>DROP_OLDEST</code>: the oldest pending request is cancelled to
+ *   make room for the new one, which suits components that are only
+ *   interested in the most recent data;</li>
+ * <li><code>DROP_NEWEST</code>: the new request is cancelled and the pending
+ *   ones are kept;</li>
+ * <li><code>FAIL_FAST</code>: the request is refused by throwing a
+ *   <code>RequestQueueFullException</code> to the caller.</li>
+ * </ul>
+ * 
+ * Cancelled requests have their future cancelled, so that callers waiting
+ * for their result get a <code>CancellationException</code>.  Requests
+ * submitted without a future cannot be cancelled: <code>DROP_NEWEST</code>
+ * refuses them like <code>FAIL_FAST</code>, and the executor counts those
+ * dropped by <code>DROP_OLDEST</code> as lost.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public enum				OverloadPolicy
+{
+	BLOCK_CALLER,		// wait for room in the queue
+	DROP_OLDEST,		// cancel the oldest pending request
+	DROP_NEWEST,		// cancel the incoming request, reject a plain runnable
+	FAIL_FAST ;			// throw a RequestQueueFullException
+}
@@ -34,6 +34,10 @@ package fr.upmc.components.connectors;
 // The fact that you are presently reading this means that you have had
 // knowledge of the CeCILL-C license and that you accept its terms.
 
+import java.util.concurrent.CompletableFuture;
+
+import fr.upmc.components.connectors.codec.EncodedData;
+import fr.upmc.components.connectors.primitive.AbstractChunk;
 import fr.upmc.components.interfaces.DataOfferedI;
 import fr.upmc.components.interfaces.DataRequiredI;
 import fr.upmc.components.interfaces.OfferedI;
@@ -309,4 +313,168 @@ implements	DataConnectorI
 		assert	this.connected() ;
 		assert	((PortI) this.offering).connected() ;
 	}
+
+	/**
+	 * pass the request for a new datum from the requiring component to the
+	 * offering component without blocking the caller; this default
+	 * implementation simply calls <code>request</code> and returns an already
+	 * completed future, subclasses being free to redefine it when they can
+	 * execute the request asynchronously.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	a completable future completed with the next datum.
+	 * @throws Exception 
+	 */
+	public CompletableFuture<DataRequiredI.DataI>	requestAsync()
+	throws Exception
+	{
+		assert	this.connected() ;
+
+		CompletableFuture<DataRequiredI.DataI> result =
+								new CompletableFuture<DataRequiredI.DataI>() ;
+		try {
+			result.complete(((DataRequiredI.PullI)this).request()) ;
+		} catch (Exception e) {
+			result.completeExceptionally(e) ;
+		}
+		return result ;
+	}
+
+	/**
+	 * translate an array of offered data into an array of required data,
+	 * using <code>offered2required</code> on each datum.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ds != null
+	 * post	return != null && return.length == ds.length
+	 * </pre>
+	 *
+	 * @param ds	offered data to be translated.
+	 * @return		the translated data, in the same order.
+	 */
+	protected DataRequiredI.DataI[]	offered2required(DataOfferedI.DataI[] ds)
+	{
+		DataRequiredI.DataI[] ret = new DataRequiredI.DataI[ds.length] ;
+		for (int i = 0 ; i < ds.length ; i++) {
+			ret[i] = this.offered2required(ds[i]) ;
+		}
+		return ret ;
+	}
+
+	/**
+	 * release the chunk encoded in <code>rd</code>, if any, once it has been
+	 * passed to a remote requiring component: as the requiring component
+	 * gets a copy taken from the pool of its own JVM, the chunk sent would
+	 * otherwise never return to the pool of the sender.
+	 *
+	 * @param rd	datum passed to a remote requiring component.
+	 */
+	protected static void	releaseEncodedChunk(DataRequiredI.DataI rd)
+	{
+		if (rd instanceof EncodedData &&
+				((EncodedData) rd).getData() instanceof AbstractChunk) {
+			((AbstractChunk) ((EncodedData) rd).getData()).release() ;
+		}
+	}
+
+	/**
+	 * push several data sent by the offering component to the requiring one
+	 * in a single call.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	ds != null
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.interfaces.DataOfferedI.PushI#sendBatch(fr.upmc.components.interfaces.DataOfferedI.DataI[])
+	 */
+	@Override
+	public void			sendBatch(DataOfferedI.DataI[] ds)
+	throws Exception
+	{
+		assert	this.connected() ;
+		assert	ds != null ;
+
+		((DataRequiredI.PushI) this.requiring).receiveBatch(
+												this.offered2required(ds)) ;
+	}
+
+	/**
+	 * pass the request for at most <code>max</code> data from the requiring
+	 * component to the offering component in a single call.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	max > 0
+	 * post	return != null && return.length > 0 && return.length <= max
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.interfaces.DataRequiredI.PullI#requestBatch(int)
+	 */
+	@Override
+	public DataRequiredI.DataI[]	requestBatch(int max)
+	throws Exception
+	{
+		assert	this.connected() ;
+		assert	max > 0 ;
+
+		return this.offered2required(
+							((DataOfferedI.PullI) this.offering).getBatch(max)) ;
+	}
+
+	/**
+	 * pass the credits granted by the requiring component to the offering
+	 * one, which port hands them over to its connector through
+	 * <code>creditsGranted</code>.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	n > 0
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.interfaces.DataRequiredI.PullI#grantCredits(int)
+	 */
+	@Override
+	public void			grantCredits(int n) throws Exception
+	{
+		assert	this.connected() ;
+		assert	n > 0 ;
+
+		((DataOfferedI.PullI) this.offering).grantCredits(n) ;
+	}
+
+	/**
+	 * called by the offering port when the requiring component grants
+	 * credits; connectors without flow control ignore them.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	n > 0
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 *
+	 * @param n		number of pieces of data the offering component may send.
+	 * @throws Exception 
+	 */
+	public void			creditsGranted(int n) throws Exception
+	{
+		assert	n > 0 ;
+	}
 }
@@ -34,20 +34,21 @@ package fr.upmc.components.connectors;
 // The fact that you are presently reading this means that you have had
 // knowledge of the CeCILL-C license and that you accept its terms.
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import fr.upmc.components.connectors.buffers.MPMCRingBuffer;
+import fr.upmc.components.connectors.buffers.RingBufferI;
+import fr.upmc.components.connectors.buffers.SPSCRingBuffer;
+import fr.upmc.components.connectors.buffers.WaitStrategy;
+import fr.upmc.components.connectors.codec.DataCodecs;
+import fr.upmc.components.connectors.codec.EncodedData;
 import fr.upmc.components.interfaces.DataOfferedI;
 import fr.upmc.components.interfaces.DataRequiredI;
+import fr.upmc.components.interfaces.OfferedI;
+import fr.upmc.components.interfaces.RequiredI;
 
 /**
- * The class <code>ActiveBasicDataConnector</code> partially implements an
- * active connector that can be used to connect qctive components in a
- * synchronised way, on a mix of active and passive components using a full or
- * partial pull mode.
- *
- * TODO: needs rethinking and redesign so to be used only when the two
- *       components use different push/pull mode so to connect them
- *       transparently.
+ * The class <code>ActiveDataConnector</code> implements an active data
+ * connector, decoupling the offering and the requiring components through a
+ * bounded buffer filled and emptied by threads of its own.
  * 
  * <p><strong>Description</strong></p>
  * 
@@ -55,34 +56,51 @@ import fr.upmc.components.interfaces.DataRequiredI;
  * connector establishes a two way connection between the two components,
  * implementing the offering <code>PushI</code> interface with methods calling
  * the requiring <code>PushI</code> and implementing the requiring
- * <code>PullI</code interface with methods calling the offering
+ * <code>PullI</code> interface with methods calling the offering
  * <code>PullI</code> one.
  * 
- * A fully active connector has two threads: one to actively push data to
- * the requiring component by calling its <code>receive</code> method, and
- * one to actively pull data from the offering component by calling its
- * <code>get>/code> method.
+ * A fully active connector has two threads: a pusher, that takes the data
+ * from the buffer by batches of at most <code>PUSH_BATCH_SIZE</code> and
+ * pushes each batch to the requiring component by calling its
+ * <code>receiveBatch</code> method, or each datum by calling its
+ * <code>receive</code> method when pushes are rate limited, and a puller, that prefetches data from the
+ * offering component by calling its <code>get</code> method and puts them
+ * into the buffer.  The buffer is filled by the puller when it runs, and
+ * otherwise by the offering component calling <code>send</code>; it is
+ * emptied by the pusher when it runs, and otherwise by the requiring
+ * component calling <code>request</code>.  When a thread runs, the calls
+ * of the components on its side of the buffer bypass it and are passed
+ * directly to the other component, as in <code>DataConnector</code>, so
+ * that when both threads run the buffer has exactly one producer and one
+ * consumer and a single-producer/single-consumer ring buffer is used; a
+ * multi-producer/multi-consumer one is used otherwise.
  * 
- * The connector acts as a bounded buffer between the two components.  If
- * the requiring component actively pull data from the connector, then the
- * connector can be configured as a passive pusher, while if the offering
- * component actively pushes data to the connector, then it can be configured
- * as a passive puller.
+ * The buffers never block: the threads and the components calling the
+ * connector wait for them to become non empty or non full with the wait
+ * strategy of the connector (spin, yield or park), and all of the waits end
+ * with an exception when the waiting thread is interrupted, when the
+ * connector is stopped or when the thread feeding, respectively draining,
+ * the buffer has failed.  A thread fails on the first exception raised by
+ * the component it calls; the exception is then rethrown to the components
+ * calling the connector.  The minimum intervals between pulls and between
+ * pushes limit the rate of the threads; when they are 0, the threads run as
+ * fast as the components and the buffer allow.
  * 
- * When the connector is configured as a passive pusher, then its implementation
- * of the <code>request</code> method can be used by the reauiring component
- * to obtain new datum by accessing directly and synchronizedly the buffer.
- * In the same way, when the connector is configured as a passive puller, then
- * its implementation of the <code>send</code> method can be used by the
- * offering component to push new datum by putting them into the buffer
- * in a synchronized way.
+ * The threads are started on connection, and stopped on disconnection or by
+ * calling <code>stop</code>.  With a remote connection, the server side,
+ * where the offering component lives, runs the pusher, plus the puller if
+ * the pusher runs, while the client side, where the requiring component
+ * lives, runs the puller only when the connector is not an active pusher,
+ * to prefetch the data it requests.  The pusher delivers the data remaining
+ * in the buffer before stopping, for at most <code>STOP_TIMEOUT</code>
+ * milliseconds.
  * 
  * <p><strong>Invariant</strong></p>
  * 
  * <pre>
- * invariant	isActivePuller => dataPuller != null
- * 				isActivePusher => dataPusher != null
- * 										// TODO: to be completed...
+ * invariant	pulling => isActivePuller
+ * 				pushing => isActivePusher
+ * 				pulling && pushing => buffer instanceof SPSCRingBuffer
  * </pre>
  * 
  * <p>Created on : 2011-11-02</p>
@@ -90,23 +108,42 @@ import fr.upmc.components.interfaces.DataRequiredI;
  * @author	<a href="mailto:Jacques.Malenfant@lip6.fr">Jacques Malenfant</a>
  * @version	$Name$ -- $Revision$ -- $Date$
  */
-public abstract class	ActiveDataConnector
+public class			ActiveDataConnector
 extends		AbstractDataConnector
 {
-	protected static int			DEFAULT_CAPACITY = 1 ;
-	protected static boolean		DEFAULT_ACTIVE_PUSH_BEHAVIOR = true ;
-	protected static int			DEFAULT_PUSH_INTERVAL = 100 ;
-	protected static boolean		DEFAULT_ACTIVE_PULL_BEHAVIOR = true ;
-	protected static int			DEFAULT_PULL_INTERVAL = 100 ;
-
-	protected BlockingQueue<DataOfferedI.DataI>	bq ;
-	protected boolean				isActivePuller ;
-	protected Thread				dataPuller ;
-	protected int					pullInterval ;
-	protected boolean				isActivePusher ;
-	protected Thread				dataPusher ;
-	protected int					pushInterval ;
-	protected boolean				stillActive ;
+	public static int				DEFAULT_CAPACITY = 1024 ;
+	public static boolean			DEFAULT_ACTIVE_PUSH_BEHAVIOR = true ;
+	public static int				DEFAULT_PUSH_INTERVAL = 0 ;
+	public static boolean			DEFAULT_ACTIVE_PULL_BEHAVIOR = true ;
+	public static int				DEFAULT_PULL_INTERVAL = 0 ;
+	public static WaitStrategy		DEFAULT_WAIT_STRATEGY = WaitStrategy.PARK ;
+	/** maximum number of data taken at once from the buffer by the pusher.	*/
+	public static int				PUSH_BATCH_SIZE = 64 ;
+	/** maximum time in milliseconds to wait for the threads to stop.		*/
+	public static long				STOP_TIMEOUT = 1000 ;
+
+	protected final int				capacity ;
+	protected final boolean			isActivePuller ;
+	protected final int				pullInterval ;
+	protected final boolean			isActivePusher ;
+	protected final int				pushInterval ;
+	protected final WaitStrategy	waitStrategy ;
+
+	/** buffer between the offering and the requiring components.			*/
+	protected volatile RingBufferI<DataOfferedI.DataI>	buffer ;
+	protected volatile Thread		dataPuller ;
+	protected volatile Thread		dataPusher ;
+	/** true if the puller thread has been started on this side.			*/
+	protected volatile boolean		pulling ;
+	/** true if the pusher thread has been started on this side.			*/
+	protected volatile boolean		pushing ;
+	/** true if the data sent by the offering component are buffered.		*/
+	protected volatile boolean		bufferSends ;
+	/** true if the data requested by the requiring component are buffered.	*/
+	protected volatile boolean		bufferRequests ;
+	protected volatile boolean		stillActive ;
+	/** exception that stopped one of the threads, if any.					*/
+	protected volatile Exception	failure ;
 
 	public				ActiveDataConnector() {
 		this(DEFAULT_CAPACITY) ;
@@ -114,17 +151,17 @@ extends		AbstractDataConnector
 
 	/**
 	 * creates a new connector with some data buffer capacity, and with the
-	 * default behavior of being both an active puller and pusher with
-	 * minimum intervals between each push and each pull of 100 milliseconds.
+	 * default behavior of being both an active puller and pusher without
+	 * minimum intervals between pushes and pulls.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
 	 * <pre>
-	 * pre	true			// no precondition.
+	 * pre	bufferingCapacity > 0
 	 * post	true			// no postcondition.
 	 * </pre>
 	 *
-	 * @param bufferingCapacity
+	 * @param bufferingCapacity	capacity of the data buffer.
 	 */
 	public				ActiveDataConnector(
 		int		bufferingCapacity
@@ -136,19 +173,21 @@ extends		AbstractDataConnector
 	}
 
 	/**
-	 * creates a new active connector and fully configure it.
+	 * creates a new active connector and fully configure it, with the
+	 * default wait strategy.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
 	 * <pre>
-	 * pre	true			// no precondition.
+	 * pre	bufferingCapacity > 0
+	 * pre	pullInterval >= 0 && pushInterval >= 0
 	 * post	true			// no postcondition.
 	 * </pre>
 	 *
 	 * @param bufferingCapacity	capacity of the data buffer.
 	 * @param isActivePuller	true if the connector must be an active puller.
 	 * @param pullInterval		minimum interval between pulls in milliseconds.
-	 * @param isActivePusher	true if the connector must e an active pusher.
+	 * @param isActivePusher	true if the connector must be an active pusher.
 	 * @param pushInterval		minimum interval between pushes in milliseconds.
 	 */
 	public				ActiveDataConnector(
@@ -158,83 +197,176 @@ extends		AbstractDataConnector
 		boolean	isActivePusher,
 		int		pushInterval
 		)
+	{
+		this(bufferingCapacity, isActivePuller, pullInterval,
+					isActivePusher, pushInterval, DEFAULT_WAIT_STRATEGY) ;
+	}
+
+	/**
+	 * creates a new active connector and fully configure it.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	bufferingCapacity > 0
+	 * pre	pullInterval >= 0 && pushInterval >= 0
+	 * pre	waitStrategy != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param bufferingCapacity	capacity of the data buffer.
+	 * @param isActivePuller	true if the connector must be an active puller.
+	 * @param pullInterval		minimum interval between pulls in milliseconds.
+	 * @param isActivePusher	true if the connector must be an active pusher.
+	 * @param pushInterval		minimum interval between pushes in milliseconds.
+	 * @param waitStrategy		way to wait on an empty or a full buffer.
+	 */
+	public				ActiveDataConnector(
+		int				bufferingCapacity,
+		boolean			isActivePuller,
+		int				pullInterval,
+		boolean			isActivePusher,
+		int				pushInterval,
+		WaitStrategy	waitStrategy
+		)
 	{
 		super() ;
-		this.bq = new ArrayBlockingQueue<DataOfferedI.DataI>(
-														bufferingCapacity) ;
+
+		assert	bufferingCapacity > 0 ;
+		assert	pullInterval >= 0 && pushInterval >= 0 ;
+		assert	waitStrategy != null ;
+
+		this.capacity = bufferingCapacity ;
 		this.isActivePuller = isActivePuller ;
+		this.pullInterval = pullInterval ;
 		this.isActivePusher = isActivePusher ;
-		if (isActivePuller) {
-			this.pullInterval = pullInterval ;
-			this.dataPuller = this.createPullerThread() ;
-		}
-		if (isActivePusher) {
-			this.pushInterval = pushInterval ;
-			this.dataPusher = this.createPusherThread() ;
-		}
+		this.pushInterval = pushInterval ;
+		this.waitStrategy = waitStrategy ;
 	}
 
+	// ------------------------------------------------------------------------
+	// Lifecycle
+	// ------------------------------------------------------------------------
+
 	/**
-	 * creates a pusher thread that calls the requiring component to
-	 * receive a datum when a new one is available in the data buffer, blocking
-	 * if the buffer is empty.  A new datum is pushed each
-	 * <code>pushInterval</code> milliseconds, unless the data buffer is empty
-	 * and then the pushing is delayed until a new datum becomes available in
-	 * the data buffer.
+	 * creates the data buffer; when <code>singleProducerConsumer</code> is
+	 * true, at most one thread fills the buffer and at most one empties it.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
 	 * <pre>
 	 * pre	true			// no precondition.
-	 * post	true			// no postcondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param singleProducerConsumer	true if each side of the buffer is used by only one thread.
+	 * @return							a new empty buffer.
+	 */
+	protected RingBufferI<DataOfferedI.DataI>	createBuffer(
+		boolean singleProducerConsumer
+		)
+	{
+		if (singleProducerConsumer) {
+			return new SPSCRingBuffer<DataOfferedI.DataI>(this.capacity) ;
+		} else {
+			return new MPMCRingBuffer<DataOfferedI.DataI>(this.capacity) ;
+		}
+	}
+
+	/**
+	 * creates a pusher thread that takes the data from the buffer by batches
+	 * and passes them to the requiring component, waiting with the wait
+	 * strategy while the buffer is empty.  Consecutive pushes are separated
+	 * by at least <code>pushInterval</code> milliseconds.  Once the connector
+	 * is stopped, the thread delivers the data remaining in the buffer then
+	 * ends.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.buffer != null
+	 * post	return != null
 	 * </pre>
 	 *
 	 * @return		a pushing thread.
 	 */
 	protected Thread	createPusherThread() {
-//		final ActiveDataConnector self = this ;
-		return new Thread() {
+		final ActiveDataConnector self = this ;
+		return new Thread("ActiveDataConnector-pusher") {
 			public void run() {
-//				while (self.stillActive) {
-//					DataRequiredI.DataI d = self.request() ;
-//					self.requiring.receive(d) ;
-//					try {
-//						Thread.sleep(pushInterval) ;
-//					} catch (InterruptedException e) {
-//						e.printStackTrace();
-//					}
-//				}
+				DataOfferedI.DataI[] batch =
+								new DataOfferedI.DataI[PUSH_BATCH_SIZE] ;
+				try {
+					int round = 0 ;
+					while (true) {
+						int n = self.buffer.drainTo(batch, batch.length) ;
+						if (n == 0) {
+							if (!self.stillActive) {
+								return ;
+							}
+							self.waitStrategy.idle(round++) ;
+							continue ;
+						}
+						round = 0 ;
+						if (self.pushInterval == 0) {
+							self.deliver(batch, n) ;
+						}
+						for (int i = 0 ; i < n ; i++) {
+							if (self.pushInterval > 0) {
+								self.deliver(batch[i]) ;
+								Thread.sleep(self.pushInterval) ;
+							}
+							batch[i] = null ;
+						}
+					}
+				} catch (InterruptedException e) {
+					// stopped
+				} catch (Exception e) {
+					self.fail(e) ;
+				}
 			}
 		};
 	}
 
 	/**
 	 * creates a puller thread that repeatedly calls the offering component to
-	 * get a new datum that is then put into the data buffer, blocking if it
-	 * is full.  A new datum is pulled each <code>pullInterval</code>
-	 * milliseconds, unless the data buffer is full and then the pulling is
-	 * delayed until space becomes available in the data buffer.
+	 * get a new datum that is then put into the data buffer, waiting with the
+	 * wait strategy while the buffer is full.  Consecutive pulls are separated
+	 * by at least <code>pullInterval</code> milliseconds.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
 	 * <pre>
-	 * pre	true			// no precondition.
-	 * post	true			// no postcondition.
+	 * pre	this.buffer != null
+	 * post	return != null
 	 * </pre>
 	 *
 	 * @return		a puller thread.
 	 */
 	protected Thread	createPullerThread() {
 		final ActiveDataConnector self = this ;
-		return new Thread(){
+		return new Thread("ActiveDataConnector-puller") {
 			public void run() {
-				while (self.stillActive) {
-//					OI.DataI d = self.offering.get() ;
-//					self.send(d) ;
-					try {
-						Thread.sleep(pullInterval) ;
-					} catch (InterruptedException e) {
-						e.printStackTrace();
+				try {
+					while (self.stillActive) {
+						DataOfferedI.DataI d =
+							((DataOfferedI.PullI) self.offering).get() ;
+						int round = 0 ;
+						while (!self.buffer.offer(d)) {
+							if (!self.stillActive) {
+								return ;
+							}
+							self.waitStrategy.idle(round++) ;
+						}
+						if (self.pullInterval > 0) {
+							Thread.sleep(self.pullInterval) ;
+						}
+					}
+				} catch (InterruptedException e) {
+					// stopped
+				} catch (Exception e) {
+					if (self.stillActive) {
+						self.fail(e) ;
 					}
 				}
 			}
@@ -242,75 +374,375 @@ extends		AbstractDataConnector
 	}
 
 	/**
-	 * starts the data pushing and data pulling threads depending on the
-	 * configuration of the connector.
+	 * creates the buffer and starts the threads that run on this side of the
+	 * connection.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
 	 * <pre>
-	 * pre	true			// no precondition.
-	 * post	true			// no postcondition.
+	 * pre	!this.stillActive
+	 * pre	pull => this.isActivePuller && push => this.isActivePusher
+	 * post	this.stillActive
 	 * </pre>
 	 *
+	 * @param pull			true if the puller must be started.
+	 * @param push			true if the pusher must be started.
+	 * @param bufferSends	true if the data sent by the offering component must be buffered.
+	 * @param bufferRequests	true if the requests of the requiring component must be served from the buffer.
 	 */
-	public void			start() {
+	protected synchronized void	start(
+		boolean pull,
+		boolean push,
+		boolean bufferSends,
+		boolean bufferRequests
+		)
+	{
+		assert	!this.stillActive ;
+		assert	!pull || this.isActivePuller ;
+		assert	!push || this.isActivePusher ;
+
+		this.buffer = this.createBuffer(pull && push) ;
+		this.pulling = pull ;
+		this.pushing = push ;
+		this.bufferSends = bufferSends ;
+		this.bufferRequests = bufferRequests ;
+		this.failure = null ;
 		this.stillActive = true ;
-		if (this.isActivePuller) {
-			this.dataPuller.start() ;
-		}
-		if (this.isActivePusher) {
+		if (push) {
+			this.dataPusher = this.createPusherThread() ;
+			this.dataPusher.setDaemon(true) ;
 			this.dataPusher.start() ;
 		}
+		if (pull) {
+			this.dataPuller = this.createPullerThread() ;
+			this.dataPuller.setDaemon(true) ;
+			this.dataPuller.start() ;
+		}
 	}
 
-	public void			stop() {
+	/**
+	 * stops the puller then the pusher, letting the latter deliver the data
+	 * remaining in the buffer for at most <code>STOP_TIMEOUT</code>
+	 * milliseconds; has no effect if the connector is already stopped.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	!this.stillActive
+	 * </pre>
+	 *
+	 * @throws InterruptedException	if the current thread is interrupted while waiting for the threads.
+	 */
+	public synchronized void	stop() throws InterruptedException {
+		if (!this.stillActive) {
+			return ;
+		}
 		this.stillActive = false ;
+		long deadline = System.currentTimeMillis() + STOP_TIMEOUT ;
+		if (this.dataPuller != null) {
+			this.dataPuller.interrupt() ;
+			this.dataPuller.join(Math.max(1L, deadline - System.currentTimeMillis())) ;
+			this.dataPuller = null ;
+		}
+		if (this.dataPusher != null) {
+			this.dataPusher.join(Math.max(1L, deadline - System.currentTimeMillis())) ;
+			this.dataPusher.interrupt() ;
+			this.dataPusher = null ;
+		}
+		this.pulling = false ;
+		this.pushing = false ;
+	}
+
+	/**
+	 * records the exception that stopped a thread of the connector, which is
+	 * then rethrown to the components calling it.
+	 * 
+	 * @param e	exception raised by the component called by the thread.
+	 */
+	protected void		fail(Exception e) {
+		if (this.failure == null) {
+			this.failure = e ;
+		}
+	}
+
+	/**
+	 * throws an exception if the buffer can no longer change because the
+	 * connector is stopped or one of its threads has failed.
+	 * 
+	 * @throws Exception	the failure of a thread, or if the connector is stopped.
+	 */
+	protected void		checkActive() throws Exception {
+		if (this.failure != null) {
+			throw new Exception("active data connector thread failed.",
+								this.failure) ;
+		}
+		if (!this.stillActive) {
+			throw new Exception("active data connector stopped.") ;
+		}
 	}
 
 	/**
-	 * implements the required pull interface by taking a value from the data
-	 * buffer if any, blocking if none.
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#connect(fr.upmc.components.interfaces.OfferedI, fr.upmc.components.interfaces.RequiredI)
+	 */
+	@Override
+	public synchronized void	connect(OfferedI offering, RequiredI requiring)
+	throws Exception
+	{
+		super.connect(offering, requiring) ;
+		// both components are here: the buffer is fed by the puller or by
+		// the sends, and drained by the pusher or by the requests.
+		this.start(this.isActivePuller, this.isActivePusher,
+					!this.isActivePuller, !this.isActivePusher) ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#connectClient(fr.upmc.components.interfaces.OfferedI, fr.upmc.components.interfaces.RequiredI)
+	 */
+	@Override
+	public synchronized void	connectClient(
+		OfferedI offering,
+		RequiredI requiring
+		) throws Exception
+	{
+		super.connectClient(offering, requiring) ;
+		// the data are pushed by the server side when it runs the pusher,
+		// otherwise the requests are served from prefetched data.
+		boolean prefetch = this.isActivePuller && !this.isActivePusher ;
+		this.start(prefetch, false, false, prefetch) ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#connectServer(fr.upmc.components.interfaces.OfferedI, fr.upmc.components.interfaces.RequiredI)
+	 */
+	@Override
+	public synchronized void	connectServer(
+		OfferedI offering,
+		RequiredI requiring
+		) throws Exception
+	{
+		super.connectServer(offering, requiring) ;
+		// the requests are made on the client side, so the data pulled here
+		// can only be pushed.
+		boolean pull = this.isActivePuller && this.isActivePusher ;
+		this.start(pull, this.isActivePusher,
+					this.isActivePusher && !pull, false) ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#disconnect()
+	 */
+	@Override
+	public synchronized void	disconnect() throws Exception
+	{
+		this.stop() ;
+		super.disconnect() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.AbstractConnector#disconnectClient()
+	 */
+	@Override
+	public synchronized void	disconnectClient() throws Exception
+	{
+		this.stop() ;
+		super.disconnectClient() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#disconnectServer()
+	 */
+	@Override
+	public synchronized void	disconnectServer() throws Exception
+	{
+		this.stop() ;
+		super.disconnectServer() ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Data transmission
+	// ------------------------------------------------------------------------
+
+	/**
+	 * passes a datum to the requiring component, encoding it with its codec
+	 * when the requiring component is remote.
+	 * 
+	 * @param d				datum to be passed.
+	 * @throws Exception	if the requiring component raises one.
+	 */
+	protected void		deliver(DataOfferedI.DataI d) throws Exception {
+		DataRequiredI.DataI rd = this.offered2required(d) ;
+		if (this.isRemote && DataCodecs.hasCodec(rd)) {
+			rd = new EncodedData(rd) ;
+		}
+		((DataRequiredI.PushI) this.requiring).receive(rd) ;
+		releaseEncodedChunk(rd) ;
+	}
+
+	/**
+	 * passes the first <code>n</code> data of <code>ds</code> to the requiring
+	 * component in a single call, encoding them with their codec when the
+	 * requiring component is remote.
+	 * 
+	 * @param ds			data to be passed.
+	 * @param n				number of data to be passed.
+	 * @throws Exception	if the requiring component raises one.
+	 */
+	protected void		deliver(DataOfferedI.DataI[] ds, int n)
+	throws Exception
+	{
+		DataRequiredI.DataI[] rds = new DataRequiredI.DataI[n] ;
+		for (int i = 0 ; i < n ; i++) {
+			rds[i] = this.offered2required(ds[i]) ;
+			if (this.isRemote && DataCodecs.hasCodec(rds[i])) {
+				rds[i] = new EncodedData(rds[i]) ;
+			}
+		}
+		((DataRequiredI.PushI) this.requiring).receiveBatch(rds) ;
+		for (int i = 0 ; i < n ; i++) {
+			releaseEncodedChunk(rds[i]) ;
+		}
+	}
+
+	/**
+	 * implements the required pull interface by taking a datum from the
+	 * buffer, waiting with the wait strategy while it is empty, or by getting
+	 * it directly from the offering component when the requests are not
+	 * served from the buffer.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
 	 * <pre>
-	 * pre	true				// no more preconditions.
+	 * pre	this.connected()
 	 * post	true				// no more postconditions.
 	 * </pre>
 	 * 
 	 * @see fr.upmc.components.interfaces.DataRequiredI.PullI#request()
 	 */
 	@Override
-	public DataRequiredI.DataI request() {
-		DataRequiredI.DataI ret = null ;
-		try {
-			ret = this.offered2required(this.bq.take());
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+	public DataRequiredI.DataI	request() throws Exception {
+		assert	this.connected() ;
+
+		if (!this.bufferRequests) {
+			return this.offered2required(
+								((DataOfferedI.PullI) this.offering).get()) ;
 		}
-		return ret ;
+		DataOfferedI.DataI d ;
+		int round = 0 ;
+		while ((d = this.buffer.poll()) == null) {
+			this.checkActive() ;
+			this.waitStrategy.idle(round++) ;
+		}
+		return this.offered2required(d) ;
 	}
 
 	/**
-	 * implements the offered push interface by putting a value into the data
-	 * buffer, blocking if the buffer is full.
+	 * implements the offered push interface by putting a datum into the
+	 * buffer, waiting with the wait strategy while it is full, or by passing
+	 * it directly to the requiring component when the sends are not buffered.
+	 * A buffered send is refused with an exception once the connector is
+	 * stopped or one of its threads has failed, as the buffer may never be
+	 * drained.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
 	 * <pre>
-	 * pre	true				// no more preconditions.
+	 * pre	this.connected()
+	 * pre	d != null
 	 * post	true				// no more postconditions.
 	 * </pre>
 	 * 
 	 * @see fr.upmc.components.interfaces.DataOfferedI.PushI#send(fr.upmc.components.interfaces.DataOfferedI.DataI)
 	 */
 	@Override
-	public void send(DataOfferedI.DataI d) {
-		try {
-			this.bq.put(d) ;
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+	public void			send(DataOfferedI.DataI d) throws Exception {
+		assert	this.connected() ;
+		assert	d != null ;
+
+		if (!this.bufferSends) {
+			this.deliver(d) ;
+			return ;
+		}
+		this.checkActive() ;
+		int round = 0 ;
+		while (!this.buffer.offer(d)) {
+			this.checkActive() ;
+			this.waitStrategy.idle(round++) ;
+		}
+	}
+
+	/**
+	 * implements the required batch pull interface by taking at most
+	 * <code>max</code> data from the buffer, waiting with the wait strategy
+	 * while it is empty, or by getting them directly from the offering
+	 * component when the requests are not served from the buffer.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	max > 0
+	 * post	return != null && return.length > 0 && return.length <= max
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#requestBatch(int)
+	 */
+	@Override
+	public DataRequiredI.DataI[]	requestBatch(int max) throws Exception {
+		assert	this.connected() ;
+		assert	max > 0 ;
+
+		if (!this.bufferRequests) {
+			return super.requestBatch(max) ;
+		}
+		DataOfferedI.DataI[] ds =
+					new DataOfferedI.DataI[Math.min(max, this.buffer.capacity())] ;
+		int n ;
+		int round = 0 ;
+		while ((n = this.buffer.drainTo(ds, ds.length)) == 0) {
+			this.checkActive() ;
+			this.waitStrategy.idle(round++) ;
+		}
+		DataRequiredI.DataI[] ret = new DataRequiredI.DataI[n] ;
+		for (int i = 0 ; i < n ; i++) {
+			ret[i] = this.offered2required(ds[i]) ;
 		}
+		return ret ;
 	}
 
+	/**
+	 * implements the offered batch push interface by putting the data into
+	 * the buffer, waiting with the wait strategy while it is full, or by
+	 * passing them in a single call to the requiring component when the sends
+	 * are not buffered.  As for <code>send</code>, buffered sends are refused
+	 * once the connector is stopped or one of its threads has failed.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	ds != null
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#sendBatch(fr.upmc.components.interfaces.DataOfferedI.DataI[])
+	 */
+	@Override
+	public void			sendBatch(DataOfferedI.DataI[] ds) throws Exception {
+		assert	this.connected() ;
+		assert	ds != null ;
+
+		if (!this.bufferSends) {
+			this.deliver(ds, ds.length) ;
+			return ;
+		}
+		this.checkActive() ;
+		for (int i = 0 ; i < ds.length ; i++) {
+			int round = 0 ;
+			while (!this.buffer.offer(ds[i])) {
+				this.checkActive() ;
+				this.waitStrategy.idle(round++) ;
+			}
+		}
+	}
 }
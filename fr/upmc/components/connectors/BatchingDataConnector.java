@@ -0,0 +1,402 @@
+package fr.upmc.components.connectors;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import fr.upmc.components.interfaces.DataOfferedI;
+
+/**
+ * The class <code>BatchingDataConnector</code> implements a data connector
+ * coalescing the data sent one by one by the offering component into
+ * batches passed to the requiring component in a single call.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * A datum sent by the offering component is kept in a pending batch, which
+ * is passed to the requiring component through <code>receiveBatch</code>
+ * either when it reaches <code>maxBatchSize</code> data, by the thread
+ * sending the last one, or <code>linger</code> milliseconds after its first
+ * datum was sent.  In the latter case, a daemon thread shared by all of the
+ * batching connectors only times the batches and hands their passing to a
+ * pool of at most <code>LINGER_FLUSH_THREADS</code> daemon threads, so that
+ * a requiring component slow to receive its batches, which holds at most
+ * two of these threads, does not delay the batches of the other connectors.
+ * A remote requiring component therefore receives one remote
+ * call per batch rather than one per datum, at the price of a delay of at
+ * most <code>linger</code> milliseconds on each datum.  The data are
+ * received in the order of their sends, and the pending batch is passed
+ * before disconnecting.  Data sent by batches with <code>sendBatch</code>
+ * are appended to the pending batch in the same way.  With a linger of 0,
+ * the connector behaves as a <code>DataConnector</code>.
+ * 
+ * As the batches passed at the end of their linger time have no caller to
+ * report the exceptions raised by the requiring component to, such an
+ * exception is rethrown by the next send, flush or disconnection, whichever
+ * comes first.  The pull mode is not affected.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.pending.size() < this.maxBatchSize
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			BatchingDataConnector
+extends		DataConnector
+{
+	/** default maximum delay in milliseconds before passing a datum.		*/
+	public static long				DEFAULT_LINGER = 5 ;
+	/** default maximum number of data in a batch.							*/
+	public static int				DEFAULT_MAX_BATCH_SIZE = 64 ;
+	/** maximum number of threads passing the batches which linger time
+	 *  is over, shared by all of the batching connectors.					*/
+	public static int				LINGER_FLUSH_THREADS = 4 ;
+
+	/** thread timing the batches and handing them to the flush pool.		*/
+	protected static ScheduledThreadPoolExecutor	LINGER_SCHEDULER ;
+	/** threads passing the batches which linger time is over.				*/
+	protected static ThreadPoolExecutor				LINGER_FLUSH_POOL ;
+
+	/** maximum delay in milliseconds before passing a datum.				*/
+	protected final long			linger ;
+	/** maximum number of data in a batch.									*/
+	protected final int				maxBatchSize ;
+	/** lock protecting the pending batch.									*/
+	protected final Object			batchLock ;
+	/** lock ordering the passing of the batches.							*/
+	protected final Object			flushLock ;
+	/** data sent and not yet passed to the requiring component.			*/
+	protected final ArrayList<DataOfferedI.DataI>	pending ;
+	/** passing of the pending batch at the end of its linger time.			*/
+	protected ScheduledFuture<?>	scheduledFlush ;
+	/** exception raised when passing a batch at the end of its linger time.	*/
+	protected volatile Exception	failure ;
+
+	public				BatchingDataConnector()
+	{
+		this(DEFAULT_LINGER, DEFAULT_MAX_BATCH_SIZE) ;
+	}
+
+	/**
+	 * create a batching connector.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	linger >= 0 && maxBatchSize > 0
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param linger		maximum delay in milliseconds before passing a datum.
+	 * @param maxBatchSize	maximum number of data in a batch.
+	 */
+	public				BatchingDataConnector(long linger, int maxBatchSize)
+	{
+		super() ;
+
+		assert	linger >= 0 && maxBatchSize > 0 ;
+
+		this.linger = linger ;
+		this.maxBatchSize = maxBatchSize ;
+		this.batchLock = new Object() ;
+		this.flushLock = new Object() ;
+		this.pending = new ArrayList<DataOfferedI.DataI>(maxBatchSize) ;
+	}
+
+	/**
+	 * return the thread shared by the batching connectors to time their
+	 * batches, creating it on first use; it must not run blocking tasks.
+	 * 
+	 * @return	the linger scheduler.
+	 */
+	protected static synchronized ScheduledThreadPoolExecutor	lingerScheduler()
+	{
+		if (LINGER_SCHEDULER == null) {
+			LINGER_SCHEDULER = new ScheduledThreadPoolExecutor(1,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "BatchingDataConnector-linger") ;
+						t.setDaemon(true) ;
+						return t ;
+					}
+				}) ;
+			LINGER_SCHEDULER.setRemoveOnCancelPolicy(true) ;
+		}
+		return LINGER_SCHEDULER ;
+	}
+
+	/**
+	 * return the pool shared by the batching connectors to pass their
+	 * batches which linger time is over, creating it on first use with
+	 * <code>LINGER_FLUSH_THREADS</code> threads, which terminate when idle.
+	 * 
+	 * @return	the linger flush pool.
+	 */
+	protected static synchronized ThreadPoolExecutor	lingerFlushPool()
+	{
+		if (LINGER_FLUSH_POOL == null) {
+			LINGER_FLUSH_POOL = new ThreadPoolExecutor(
+				LINGER_FLUSH_THREADS, LINGER_FLUSH_THREADS,
+				60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "BatchingDataConnector-flush") ;
+						t.setDaemon(true) ;
+						return t ;
+					}
+				}) ;
+			LINGER_FLUSH_POOL.allowCoreThreadTimeOut(true) ;
+		}
+		return LINGER_FLUSH_POOL ;
+	}
+
+	/**
+	 * add a datum to the pending batch, passing the batch when it is full.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.DataConnector#send(fr.upmc.components.interfaces.DataOfferedI.DataI)
+	 */
+	@Override
+	public void			send(DataOfferedI.DataI d) throws Exception
+	{
+		assert	this.connected() ;
+
+		if (this.linger == 0) {
+			super.send(d) ;
+			return ;
+		}
+		this.checkFailure() ;
+		boolean full ;
+		synchronized (this.batchLock) {
+			this.pending.add(d) ;
+			full = this.pending.size() >= this.maxBatchSize ;
+			if (!full && this.pending.size() == 1) {
+				this.scheduleFlush() ;
+			}
+		}
+		if (full) {
+			this.flush() ;
+		}
+	}
+
+	/**
+	 * add the data to the pending batch, passing the batch when it is full.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	ds != null
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.DataConnector#sendBatch(fr.upmc.components.interfaces.DataOfferedI.DataI[])
+	 */
+	@Override
+	public void			sendBatch(DataOfferedI.DataI[] ds) throws Exception
+	{
+		assert	this.connected() ;
+		assert	ds != null ;
+
+		if (this.linger == 0) {
+			super.sendBatch(ds) ;
+			return ;
+		}
+		this.checkFailure() ;
+		boolean full ;
+		synchronized (this.batchLock) {
+			boolean wasEmpty = this.pending.isEmpty() ;
+			for (int i = 0 ; i < ds.length ; i++) {
+				this.pending.add(ds[i]) ;
+			}
+			full = this.pending.size() >= this.maxBatchSize ;
+			if (!full && wasEmpty && !this.pending.isEmpty()) {
+				this.scheduleFlush() ;
+			}
+		}
+		if (full) {
+			this.flush() ;
+		}
+	}
+
+	/**
+	 * schedule the passing of the pending batch by the linger flush pool at
+	 * the end of its linger time; must be called with the batch lock held.
+	 */
+	protected void		scheduleFlush()
+	{
+		final BatchingDataConnector self = this ;
+		final Runnable lingerFlush =
+			new Runnable() {
+				@Override
+				public void run() {
+					try {
+						self.passPending() ;
+					} catch (Exception e) {
+						self.failure = e ;
+					}
+				}
+			} ;
+		this.scheduledFlush = lingerScheduler().schedule(
+			new Runnable() {
+				@Override
+				public void run() {
+					lingerFlushPool().execute(lingerFlush) ;
+				}
+			}, this.linger, TimeUnit.MILLISECONDS) ;
+	}
+
+	/**
+	 * pass the pending batch, if any, to the requiring component, and then
+	 * rethrow the exception raised when passing a previous batch at the end
+	 * of its linger time, if any.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @throws Exception	if the requiring component raises one.
+	 */
+	public void			flush() throws Exception
+	{
+		this.passPending() ;
+		this.checkFailure() ;
+	}
+
+	/**
+	 * pass the pending batch, if any, to the requiring component.
+	 *
+	 * @throws Exception	if the requiring component raises one.
+	 */
+	protected void		passPending() throws Exception
+	{
+		// the batches are taken and passed under the same lock so that they
+		// are received in the order of their sends.
+		synchronized (this.flushLock) {
+			DataOfferedI.DataI[] batch ;
+			synchronized (this.batchLock) {
+				if (this.pending.isEmpty()) {
+					return ;
+				}
+				batch = this.pending.toArray(
+								new DataOfferedI.DataI[this.pending.size()]) ;
+				this.pending.clear() ;
+				if (this.scheduledFlush != null) {
+					this.scheduledFlush.cancel(false) ;
+					this.scheduledFlush = null ;
+				}
+			}
+			super.sendBatch(batch) ;
+		}
+	}
+
+	/**
+	 * rethrow, once, the exception raised when passing a batch at the end of
+	 * its linger time.
+	 * 
+	 * @throws Exception	if passing a previous batch has failed.
+	 */
+	protected void		checkFailure() throws Exception
+	{
+		Exception e = this.failure ;
+		if (e != null) {
+			this.failure = null ;
+			throw new Exception("batching data connector failed to pass a batch.",
+								e) ;
+		}
+	}
+
+	/**
+	 * pass the pending batch and disconnect, even when passing the batch or
+	 * a previous one has failed, the failure being rethrown afterwards.
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#disconnect()
+	 */
+	@Override
+	public synchronized void	disconnect() throws Exception
+	{
+		Exception failure = null ;
+		try {
+			this.flush() ;
+		} catch (Exception e) {
+			failure = e ;
+		}
+		super.disconnect() ;
+		if (failure != null) {
+			throw failure ;
+		}
+	}
+
+	/**
+	 * pass the pending batch and disconnect, even when passing the batch or
+	 * a previous one has failed, the failure being rethrown afterwards.
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#disconnectServer()
+	 */
+	@Override
+	public synchronized void	disconnectServer() throws Exception
+	{
+		Exception failure = null ;
+		try {
+			this.flush() ;
+		} catch (Exception e) {
+			failure = e ;
+		}
+		super.disconnectServer() ;
+		if (failure != null) {
+			throw failure ;
+		}
+	}
+}
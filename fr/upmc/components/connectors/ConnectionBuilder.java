@@ -38,11 +38,23 @@ import java.net.MalformedURLException;
 import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import fr.upmc.components.cvm.AbstractCVM;
 import fr.upmc.components.cvm.AbstractDistributedCVM;
+import fr.upmc.components.cvm.utils.LocalPortRegistry;
 import fr.upmc.components.interfaces.ComponentImplementedI;
 import fr.upmc.components.interfaces.DataOfferedI;
+import fr.upmc.components.interfaces.DataRequiredI;
 import fr.upmc.components.interfaces.DataTwoWayI;
 import fr.upmc.components.interfaces.OfferedI;
 import fr.upmc.components.interfaces.RequiredI;
@@ -56,6 +68,9 @@ import fr.upmc.components.registry.ConnectionData;
 import fr.upmc.components.registry.ConnectionType;
 import fr.upmc.components.registry.GlobalRegistryClient;
 import fr.upmc.components.registry.simpleRegistry.SimpleRegistryClient;
+import fr.upmc.components.tracing.RemoteTracingHandler;
+import fr.upmc.components.tracing.Tracer;
+import fr.upmc.components.transport.socket.SocketTransport;
 
 /**
  * The class <code>ConnectionBuilder</code> groups all the logic for the
@@ -80,9 +95,19 @@ import fr.upmc.components.registry.simpleRegistry.SimpleRegistryClient;
 public class			ConnectionBuilder {
 
 	public static ConnectionBuilder	SINGLETON ;
+	/** maximum number of RMI lookups done in parallel by connectAll.		*/
+	public static int				PARALLEL_LOOKUPS = 16 ;
+	/** true if the remote references are kept in the cache.				*/
+	public static boolean			CACHE_REMOTE_REFERENCES = true ;
+	/** true if the data connections within a host use shared memory.	*/
+	public static boolean			SHARED_MEMORY_DATA_CONNECTIONS = true ;
 
-	protected final Hashtable<String,PortI>	localRegistry ;
+	protected final LocalPortRegistry		localRegistry ;
 	protected final GlobalRegistryClient	globalRegistryClient ;
+	/** remote references resolved in advance by the current connectAll.	*/
+	protected final Map<String,ComponentImplementedI>	resolvedReferences ;
+	/** connection data and references of the remote ports already used.	*/
+	protected final RemoteReferenceCache	referenceCache ;
 
 	/**
 	 * 
@@ -98,21 +123,105 @@ public class			ConnectionBuilder {
 	 * @param gLOBAL_REGISTRY_CLIENT
 	 */
 	public				ConnectionBuilder(
-		Hashtable<String, PortI> localRegistry,
+		LocalPortRegistry localRegistry,
 		GlobalRegistryClient gLOBAL_REGISTRY_CLIENT
 		)
 	{
 		super();
 		this.localRegistry = localRegistry;
 		this.globalRegistryClient = gLOBAL_REGISTRY_CLIENT;
+		this.resolvedReferences =
+					new ConcurrentHashMap<String,ComponentImplementedI>() ;
+		this.referenceCache = new RemoteReferenceCache() ;
+		if (this.globalRegistryClient != null) {
+			// a port republished or unpublished elsewhere must not be
+			// reached through the reference cached for its former binding.
+			this.globalRegistryClient.addInvalidationListener(
+				new GlobalRegistryClient.InvalidationListener() {
+					@Override
+					public void invalidated(String key) {
+						referenceCache.invalidate(key) ;
+					}
+				}) ;
+		}
+	}
+
+	/**
+	 * return the cache of the remote references.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	the cache of the remote references.
+	 */
+	public RemoteReferenceCache	getRemoteReferenceCache()
+	{
+		return this.referenceCache ;
+	}
+
+	/**
+	 * forget the cached connection data and reference of the port
+	 * <code>portURI</code>, so that they are looked up again on the next
+	 * connection to it.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	portURI != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param portURI	URI of a port.
+	 * @return			true if the port had cached information.
+	 */
+	public boolean		invalidateRemoteReference(String portURI)
+	{
+		assert	portURI != null ;
+
+		boolean resolved = this.resolvedReferences.remove(portURI) != null ;
+		return this.referenceCache.invalidate(portURI) || resolved ;
+	}
+
+	/**
+	 * return the connection data of the port <code>remoteURI</code>, from
+	 * the cache if possible or else from the global registry.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	remoteURI != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param remoteURI	uri identifying the port in the registry.
+	 * @return			the connection data of the port.
+	 * @throws Exception
+	 */
+	protected ConnectionData	getConnectionData(String remoteURI)
+	throws Exception
+	{
+		if (CACHE_REMOTE_REFERENCES) {
+			RemoteReferenceCache.Entry e = this.referenceCache.get(remoteURI) ;
+			if (e != null) {
+				return e.data ;
+			}
+		}
+		ConnectionData cd =
+			new ConnectionData(this.globalRegistryClient.lookup(remoteURI)) ;
+		if (CACHE_REMOTE_REFERENCES && cd.getType() == ConnectionType.SOCKET) {
+			this.referenceCache.put(remoteURI, cd, null) ;
+		}
+		return cd ;
 	}
 
 	/**
 	 * find the connection data for a socket-based communication in the
 	 * registry.
 	 * 
-	 * SOCKET COMMUNICATION NOT YET TERMINATED
-	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
 	 * <pre>
@@ -127,8 +236,7 @@ public class			ConnectionBuilder {
 	protected ConnectionData		getRemoteSocketInfo(String remoteURI)
 	throws Exception
 	{
-		String result = this.globalRegistryClient.lookup(remoteURI) ;
-		ConnectionData cd = new ConnectionData(result) ;
+		ConnectionData cd = this.getConnectionData(remoteURI) ;
 		if (cd.getType() != ConnectionType.SOCKET) {
 			throw new Exception("not a socket port!") ;
 		}
@@ -136,7 +244,9 @@ public class			ConnectionBuilder {
 	}
 
 	/**
-	 * find the remote reference corresponding to a port URI.
+	 * find the remote reference corresponding to a port URI, using first the
+	 * references resolved by the current <code>connectAll</code>, then the
+	 * cache and finally looking it up, in which case it is put in the cache.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
@@ -151,10 +261,58 @@ public class			ConnectionBuilder {
 	 */
 	protected ComponentImplementedI	getRemoteReference(String remoteURI)
 	throws Exception
+	{
+		ComponentImplementedI inter = this.resolvedReferences.get(remoteURI) ;
+		if (inter == null) {
+			RemoteReferenceCache.Entry e = null ;
+			if (CACHE_REMOTE_REFERENCES) {
+				e = this.referenceCache.get(remoteURI) ;
+			}
+			if (e != null && e.reference != null) {
+				inter = e.reference ;
+			} else {
+				ConnectionData cd =
+					e != null ?
+						e.data
+					:	new ConnectionData(
+								this.globalRegistryClient.lookup(remoteURI)) ;
+				inter = this.lookupRemoteReference(remoteURI, cd) ;
+				if (CACHE_REMOTE_REFERENCES) {
+					this.referenceCache.put(remoteURI, cd, inter) ;
+				}
+			}
+		}
+		if (Tracer.isEnabled()) {
+			// propagate the trace contexts of the calls through RMI.
+			inter = RemoteTracingHandler.wrap(inter) ;
+		}
+		return inter ;
+	}
+
+	/**
+	 * look up the reference corresponding to a port URI given its connection
+	 * data previously obtained from the global registry: an RMI stub for the
+	 * ports published as <code>rmi=</code> or a proxy of the socket transport
+	 * for the ports published as <code>socket=</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	cd != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param remoteURI	uri identifying the port in the registry.
+	 * @param cd		connection data registered for the port.
+	 * @return			reference to the component port.
+	 * @throws Exception
+	 */
+	protected ComponentImplementedI	lookupRemoteReference(
+		String remoteURI,
+		ConnectionData cd
+		) throws Exception
 	{
 		ComponentImplementedI inter = null ;
-		String info = this.globalRegistryClient.lookup(remoteURI) ;
-		ConnectionData cd = new ConnectionData(info) ;
 		if (cd.getType() == ConnectionType.RMI) {
 			try {
 				inter = (ComponentImplementedI)
@@ -173,7 +331,10 @@ public class			ConnectionBuilder {
 				throw e ;
 			}
 		} else { // cd.getType() == ConnectionType.SOCKET
-			throw new Exception("not a RMI port!") ;
+			inter = (ComponentImplementedI)
+						SocketTransport.getInstance().lookup(
+								cd.getHostname() + ":" + cd.getPort(),
+								remoteURI) ;
 		}
 		return inter ;
 	}
@@ -203,6 +364,18 @@ public class			ConnectionBuilder {
 	 * post	true			// no postcondition.
 	 * </pre>
 	 *
+	 * When the reference of the remote port comes from the cache and using
+	 * it raises a <code>RemoteException</code>, the reference is considered
+	 * stale: it is invalidated and the connection is tried again once with a
+	 * reference freshly looked up.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
 	 * @param serverPortURI	URI of the server port to connect.
 	 * @param clientPortURI	URI of the client port to connect.
 	 * @param connector		local connector to be used to connect.
@@ -213,6 +386,48 @@ public class			ConnectionBuilder {
 		String clientPortURI,
 		ConnectorI connector
 		) throws Exception
+	{
+		try {
+			this.establishConnection(serverPortURI, clientPortURI, connector) ;
+		} catch (RemoteException e) {
+			String remoteURI =
+					this.localRegistry.containsKey(serverPortURI) ?
+											clientPortURI : serverPortURI ;
+			if (this.invalidateRemoteReference(remoteURI)) {
+				if (AbstractCVM.DEBUG) {
+					System.out.println("stale reference to " + remoteURI +
+										", connecting again: " + e) ;
+				}
+				this.establishConnection(
+								serverPortURI, clientPortURI, connector) ;
+			} else {
+				throw e ;
+			}
+		}
+	}
+
+	/**
+	 * connects two components through the named port (using port URI), as
+	 * described in <code>connectWith</code> but without handling stale remote
+	 * references.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param serverPortURI	URI of the server port to connect.
+	 * @param clientPortURI	URI of the client port to connect.
+	 * @param connector		local connector to be used to connect.
+	 * @throws Exception 
+	 */
+	protected void		establishConnection(
+		String serverPortURI,
+		String clientPortURI,
+		ConnectorI connector
+		) throws Exception
 	{
 		PortI localServerPort = this.localRegistry.get(serverPortURI) ;
 		PortI localClientPort = this.localRegistry.get(clientPortURI) ;
@@ -247,6 +462,7 @@ public class			ConnectionBuilder {
 				PortI remoteClientPort =
 							(PortI) this.getRemoteReference(clientPortURI) ;
 				remoteClientPort.setServerPortURI(serverPortURI) ;
+				connector = this.sameHostConnector(connector, clientPortURI) ;
 				((DataConnectorI)connector).connectServer(
 					(OfferedI)localServerPort, (RequiredI)remoteClientPort) ;
 			} else if (localServerPort instanceof DataTwoWayI.PullI) {
@@ -276,6 +492,9 @@ public class			ConnectionBuilder {
 			PortI remoteServerPort =
 							(PortI) this.getRemoteReference(serverPortURI) ;
 			remoteServerPort.setClientPortURI(clientPortURI) ;
+			if (localClientPort instanceof DataRequiredI.PushI) {
+				connector = this.sameHostConnector(connector, serverPortURI) ;
+			}
 			connector.connectClient(
 					(OfferedI)remoteServerPort, (RequiredI)localClientPort) ;
 		} else { // localServerPort == null && localClientPort == null
@@ -284,6 +503,182 @@ public class			ConnectionBuilder {
 		}
 	}
 
+	/**
+	 * return the connector to be used for a remote data connection: when
+	 * <code>connector</code> is a <code>DataConnector</code> and the remote
+	 * port runs on the same host as the current JVM, a
+	 * <code>SharedMemoryDataConnector</code>, otherwise
+	 * <code>connector</code> itself.  As the same choice is made on both
+	 * sides of the connection, the two of them get a shared memory connector.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	connector != null && remoteURI != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param connector	connector created for the connection.
+	 * @param remoteURI	URI of the remote port.
+	 * @return			the connector to be connected.
+	 * @throws Exception
+	 */
+	protected ConnectorI	sameHostConnector(
+		ConnectorI connector,
+		String remoteURI
+		) throws Exception
+	{
+		if (SHARED_MEMORY_DATA_CONNECTIONS &&
+				connector.getClass() == DataConnector.class &&
+				AbstractDistributedCVM.thisHostname != null &&
+				AbstractDistributedCVM.thisHostname.equals(
+						this.getConnectionData(remoteURI).getHostname())) {
+			if (AbstractCVM.DEBUG) {
+				System.out.println("shared memory connection with " +
+																remoteURI) ;
+			}
+			ConnectorI c = new SharedMemoryDataConnector() ;
+			c.setRemote(connector.isRemote()) ;
+			return c ;
+		}
+		return connector ;
+	}
+
+	/**
+	 * establishes a batch of connections, each one being done as if
+	 * <code>doConnection</code> were called on its local port, and returns
+	 * the connections that failed with their exception.
+	 * 
+	 * <p><strong>Description</strong></p>
+	 * 
+	 * Before connecting, the URIs of all of the ports that are neither
+	 * published locally nor cached are resolved at once: the global registry is asked for all of
+	 * them in pipelined requests, then the RMI references are looked up in
+	 * parallel.  The connections are then done in order, using the resolved
+	 * references.  A reference that could not be resolved in advance is
+	 * looked up again when its connection is done, so that the failure is
+	 * reported with the exception of the usual sequential path.  A failed
+	 * connection does not prevent the following ones from being tried.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	specs != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param specs	connections to be established.
+	 * @return		map from the failed connections to their exception, empty if all succeeded.
+	 */
+	public synchronized Map<ConnectionSpec,Exception>	connectAll(
+		List<ConnectionSpec> specs
+		)
+	{
+		assert	specs != null ;
+
+		Map<ConnectionSpec,Exception> failures =
+							new LinkedHashMap<ConnectionSpec,Exception>() ;
+		try {
+			this.resolveRemoteReferences(specs) ;
+			for (ConnectionSpec spec : specs) {
+				try {
+					PortI p = this.localRegistry.get(spec.getLocalPortURI()) ;
+					if (p == null) {
+						throw new Exception("ConnectionBuilder: port " +
+								spec.getLocalPortURI() + " is not local!") ;
+					}
+					p.doConnection(spec.getOtherPortURI(),
+								   spec.getConnectorClassName()) ;
+				} catch (Exception e) {
+					failures.put(spec, e) ;
+				}
+			}
+		} finally {
+			this.resolvedReferences.clear() ;
+		}
+		return failures ;
+	}
+
+	/**
+	 * resolve in advance the remote references of the ports that are not
+	 * published locally nor cached among the ones given in the connection
+	 * specifications, putting them in <code>resolvedReferences</code> and in
+	 * the cache.  Failures are ignored here as the references will simply be
+	 * looked up again when connecting.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	specs != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param specs	connections to be established.
+	 */
+	protected void		resolveRemoteReferences(List<ConnectionSpec> specs)
+	{
+		if (this.globalRegistryClient == null) {
+			return ;
+		}
+		Set<String> remoteURIs = new LinkedHashSet<String>() ;
+		for (ConnectionSpec spec : specs) {
+			if (!this.localRegistry.containsKey(spec.getOtherPortURI()) &&
+					!(CACHE_REMOTE_REFERENCES &&
+						this.referenceCache.contains(spec.getOtherPortURI()))) {
+				remoteURIs.add(spec.getOtherPortURI()) ;
+			}
+		}
+		if (remoteURIs.isEmpty()) {
+			return ;
+		}
+
+		final Map<String,String> infos ;
+		try {
+			infos = this.globalRegistryClient.lookupAll(
+									new ArrayList<String>(remoteURIs)) ;
+		} catch (Exception e) {
+			if (AbstractCVM.DEBUG) {
+				System.out.println("batch lookup in the global registry " +
+												"failed: " + e.getMessage()) ;
+			}
+			return ;
+		}
+
+		ExecutorService es = Executors.newFixedThreadPool(
+							Math.max(1, Math.min(PARALLEL_LOOKUPS, infos.size()))) ;
+		try {
+			Map<String,Future<ComponentImplementedI>> lookups =
+					new LinkedHashMap<String,Future<ComponentImplementedI>>() ;
+			for (final Map.Entry<String,String> info : infos.entrySet()) {
+				lookups.put(info.getKey(), es.submit(
+					new Callable<ComponentImplementedI>() {
+						@Override
+						public ComponentImplementedI call() throws Exception {
+							ConnectionData cd =
+										new ConnectionData(info.getValue()) ;
+							ComponentImplementedI ref =
+									lookupRemoteReference(info.getKey(), cd) ;
+							if (CACHE_REMOTE_REFERENCES) {
+								referenceCache.put(info.getKey(), cd, ref) ;
+							}
+							return ref ;
+						}
+					})) ;
+			}
+			for (Map.Entry<String,Future<ComponentImplementedI>> l :
+														lookups.entrySet()) {
+				try {
+					this.resolvedReferences.put(l.getKey(),
+												l.getValue().get()) ;
+				} catch (Exception e) {
+					// looked up again and reported when connecting.
+				}
+			}
+		} finally {
+			es.shutdown() ;
+		}
+	}
+
 	/**
 	 * disconnects two components that were previously connected through
 	 * the two ports which URIs are given as parameters, and the connector
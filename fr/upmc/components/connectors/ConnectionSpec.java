@@ -0,0 +1,123 @@
+package fr.upmc.components.connectors;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+/**
+ * The class <code>ConnectionSpec</code> describes one connection to be
+ * established by <code>ConnectionBuilder#connectAll</code>.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * A connection specification gives the URI of a port published in the
+ * current virtual machine, the URI of the port to which it must be connected
+ * and the canonical name of the connector class.  The connection is done as
+ * if <code>doConnection(otherPortURI, connectorClassName)</code> were called
+ * on the local port, hence the same protocol is followed for plain, data and
+ * two-way ports.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	localPortURI != null && otherPortURI != null
+ * invariant	connectorClassName != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			ConnectionSpec
+{
+	/** URI of the port in the current virtual machine.					*/
+	protected final String	localPortURI ;
+	/** URI of the port to be connected to the local one.				*/
+	protected final String	otherPortURI ;
+	/** canonical name of the connector class.							*/
+	protected final String	connectorClassName ;
+
+	/**
+	 * create a connection specification.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	localPortURI != null && otherPortURI != null
+	 * pre	connectorClassName != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param localPortURI			URI of the port in the current virtual machine.
+	 * @param otherPortURI			URI of the port to be connected to it.
+	 * @param connectorClassName	canonical name of the connector class.
+	 */
+	public				ConnectionSpec(
+		String localPortURI,
+		String otherPortURI,
+		String connectorClassName
+		)
+	{
+		super() ;
+		assert	localPortURI != null && otherPortURI != null ;
+		assert	connectorClassName != null ;
+
+		this.localPortURI = localPortURI ;
+		this.otherPortURI = otherPortURI ;
+		this.connectorClassName = connectorClassName ;
+	}
+
+	public String		getLocalPortURI()
+	{
+		return this.localPortURI ;
+	}
+
+	public String		getOtherPortURI()
+	{
+		return this.otherPortURI ;
+	}
+
+	public String		getConnectorClassName()
+	{
+		return this.connectorClassName ;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String		toString()
+	{
+		return "ConnectionSpec[" + this.localPortURI + " -> " +
+						this.otherPortURI + " with " +
+						this.connectorClassName + "]" ;
+	}
+}
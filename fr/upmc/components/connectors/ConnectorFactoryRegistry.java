@@ -0,0 +1,249 @@
+package fr.upmc.components.connectors;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class <code>ConnectorFactoryRegistry</code> maps connector class names
+ * to the factories used by ports to create the connectors when connecting.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Ports receive the name of the connector class to be used in a connection
+ * and used to load the class and call its public no-argument constructor
+ * by reflection on each connection.  The registry resolves a class name the
+ * first time it is used into a factory calling the constructor through a
+ * method handle, and keeps this factory for the next connections, so that
+ * the class lookup and the access checks are done only once per connector
+ * class and per JVM.
+ * 
+ * Users can also register their own factories, for instance to create
+ * connectors that do not have a public no-argument constructor or to reuse
+ * preconfigured ones.  A registered factory replaces the one that could be
+ * resolved from the class name.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			ConnectorFactoryRegistry
+{
+	/** factories indexed by connector class names.						*/
+	protected static final ConcurrentHashMap<String,ConnectorFactoryI>
+						FACTORIES =
+							new ConcurrentHashMap<String,ConnectorFactoryI>() ;
+
+	/**
+	 * create a new connector for the connector class name <code>ccname</code>,
+	 * resolving and caching its factory if not already done.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ccname != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param ccname	name of the connector class.
+	 * @return			a new connector.
+	 * @throws Exception	if the class cannot be loaded or instantiated.
+	 */
+	public static ConnectorI	createConnector(String ccname)
+	throws Exception
+	{
+		assert	ccname != null ;
+
+		return ConnectorFactoryRegistry.getFactory(ccname).createConnector() ;
+	}
+
+	/**
+	 * return the factory registered for <code>ccname</code>, resolving it
+	 * from the public no-argument constructor of the class if none has been
+	 * registered yet.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ccname != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param ccname	name of the connector class.
+	 * @return			the factory creating connectors of this class.
+	 * @throws Exception	if the class cannot be loaded or has no public no-argument constructor.
+	 */
+	public static ConnectorFactoryI	getFactory(String ccname)
+	throws Exception
+	{
+		assert	ccname != null ;
+
+		ConnectorFactoryI f = FACTORIES.get(ccname) ;
+		if (f == null) {
+			f = ConnectorFactoryRegistry.resolveFactory(ccname) ;
+			ConnectorFactoryI previous = FACTORIES.putIfAbsent(ccname, f) ;
+			if (previous != null) {
+				f = previous ;
+			}
+		}
+		return f ;
+	}
+
+	/**
+	 * register <code>factory</code> as the factory for the connector class
+	 * name <code>ccname</code>, replacing any previous one.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ccname != null && factory != null
+	 * post	getFactory(ccname) == factory
+	 * </pre>
+	 *
+	 * @param ccname	name of the connector class.
+	 * @param factory	factory creating the connectors.
+	 */
+	public static void	registerFactory(
+		String ccname,
+		ConnectorFactoryI factory
+		)
+	{
+		assert	ccname != null && factory != null ;
+
+		FACTORIES.put(ccname, factory) ;
+	}
+
+	/**
+	 * register <code>factory</code> as the factory for the connector class
+	 * <code>cc</code>, replacing any previous one.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	cc != null && factory != null
+	 * post	getFactory(cc.getCanonicalName()) == factory
+	 * </pre>
+	 *
+	 * @param cc		connector class.
+	 * @param factory	factory creating the connectors.
+	 */
+	public static void	registerFactory(
+		Class<? extends ConnectorI> cc,
+		ConnectorFactoryI factory
+		)
+	{
+		assert	cc != null ;
+
+		ConnectorFactoryRegistry.registerFactory(cc.getCanonicalName(),
+												 factory) ;
+	}
+
+	/**
+	 * remove the factory registered or cached for <code>ccname</code>; the
+	 * next connection using this name will resolve it again from the class.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ccname != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param ccname	name of the connector class.
+	 */
+	public static void	unregisterFactory(String ccname)
+	{
+		assert	ccname != null ;
+
+		FACTORIES.remove(ccname) ;
+	}
+
+	/**
+	 * create a factory calling the public no-argument constructor of the
+	 * class <code>ccname</code> through a method handle.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ccname != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param ccname	name of the connector class.
+	 * @return			a factory creating connectors of this class.
+	 * @throws Exception	if the class cannot be loaded or has no public no-argument constructor.
+	 */
+	protected static ConnectorFactoryI	resolveFactory(final String ccname)
+	throws Exception
+	{
+		Class<?> cc = Class.forName(ccname) ;
+		if (!ConnectorI.class.isAssignableFrom(cc)) {
+			throw new ClassCastException(
+						ccname + " does not implement ConnectorI!") ;
+		}
+		final MethodHandle constructor =
+			MethodHandles.publicLookup().
+				findConstructor(cc, MethodType.methodType(void.class)).
+				asType(MethodType.methodType(ConnectorI.class)) ;
+		return new ConnectorFactoryI() {
+					@Override
+					public ConnectorI createConnector() throws Exception
+					{
+						try {
+							return (ConnectorI) constructor.invokeExact() ;
+						} catch (Exception | Error e) {
+							throw e ;
+						} catch (Throwable t) {
+							throw new Exception(
+									"could not create a connector " + ccname,
+									t) ;
+						}
+					}
+
+					@Override
+					public String toString()
+					{
+						return "ConnectorFactory[" + ccname + "]" ;
+					}
+				} ;
+	}
+}
@@ -0,0 +1,545 @@
+package fr.upmc.components.connectors;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.upmc.components.interfaces.DataOfferedI;
+import fr.upmc.components.interfaces.OfferedI;
+import fr.upmc.components.interfaces.RequiredI;
+
+/**
+ * The class <code>CreditDataConnector</code> implements a data connector
+ * bounding the data pushed by the offering component and not yet consumed by
+ * the requiring one through a credit-based flow control.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The offering side of the connector holds a number of credits, initially
+ * <code>initialCredits</code>, each datum passed to the requiring component
+ * consuming one of them.  The requiring component grants credits back by
+ * calling <code>grantCredits</code> on its outbound port as it consumes the
+ * data, typically once it has processed them rather than when it receives
+ * them, so that at most <code>initialCredits</code> data are in transit or
+ * waiting in the requiring component.  A requiring component connected
+ * through this connector must therefore grant credits, otherwise the
+ * offering one stops after <code>initialCredits</code> data.
+ * 
+ * While credits remain, a datum sent by the offering component is passed at
+ * once in the thread of the sender.  When they are exhausted, the datum is
+ * kept in a buffer of at most <code>bufferCapacity</code> data and the send
+ * returns; when the buffer is full, the send blocks until credits are
+ * granted.  Granting credits never passes data in the thread of the
+ * requiring component: the buffered data are passed by batches, through
+ * <code>receiveBatch</code>, by a daemon thread shared by the credit
+ * connectors.  The data are received in the order of their sends.
+ * 
+ * The credits granted by the requiring component are coalesced by its side of
+ * the connector until they reach a quarter of the initial credits before
+ * being passed to the offering side, which for a remote connection takes one
+ * remote call to the offering port per quarter of the window rather than one
+ * per datum.  In a remote connection, each side is created with the default
+ * values of its JVM, which must then be the same.
+ * 
+ * As for the <code>BatchingDataConnector</code>, an exception raised by the
+ * requiring component when passing the buffered data is rethrown by the next
+ * send.  When disconnecting, the buffered data are passed regardless of the
+ * credits and the senders still blocked raise an exception.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.credits >= 0
+ * invariant	this.pending.size() <= this.bufferCapacity
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			CreditDataConnector
+extends		DataConnector
+{
+	/** default number of credits initially held by the offering side.		*/
+	public static int				DEFAULT_CREDITS = 256 ;
+	/** default maximum number of data buffered when credits are exhausted.	*/
+	public static int				DEFAULT_BUFFER_CAPACITY = 1024 ;
+	/** maximum number of buffered data passed in one call.					*/
+	public static int				MAX_DRAIN_SIZE = 64 ;
+
+	/** threads passing the buffered data when credits are granted.			*/
+	protected static ExecutorService	DRAIN_EXECUTOR ;
+
+	/** number of credits initially held by the offering side.				*/
+	protected final int				initialCredits ;
+	/** maximum number of data buffered when credits are exhausted.			*/
+	protected final int				bufferCapacity ;
+	/** credits granted by the requiring side not yet passed to the other.	*/
+	protected final int				grantThreshold ;
+	/** lock protecting the credits and the buffer.							*/
+	protected final Object			creditLock ;
+	/** data sent and waiting for credits to be passed.						*/
+	protected final ArrayDeque<DataOfferedI.DataI>	pending ;
+	/** credits currently held by the offering side.						*/
+	protected int					credits ;
+	/** true while a thread is passing data, which orders the passings.		*/
+	protected boolean				delivering ;
+	/** true once disconnected, senders then raising an exception.			*/
+	protected boolean				closed ;
+	/** credits granted by the requiring side and not yet passed.			*/
+	protected final AtomicInteger	ungranted ;
+	/** exception raised when passing buffered data.						*/
+	protected volatile Exception	failure ;
+
+	public				CreditDataConnector()
+	{
+		this(DEFAULT_CREDITS, DEFAULT_BUFFER_CAPACITY) ;
+	}
+
+	/**
+	 * create a credit connector.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	initialCredits > 0 && bufferCapacity >= 0
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param initialCredits	number of credits initially held by the offering side.
+	 * @param bufferCapacity	maximum number of data buffered when credits are exhausted, 0 to always block.
+	 */
+	public				CreditDataConnector(
+		int initialCredits,
+		int bufferCapacity
+		)
+	{
+		super() ;
+
+		assert	initialCredits > 0 && bufferCapacity >= 0 ;
+
+		this.initialCredits = initialCredits ;
+		this.bufferCapacity = bufferCapacity ;
+		// never more than the window, otherwise the offering side could wait
+		// for credits kept by the requiring side.
+		this.grantThreshold = Math.max(1, initialCredits / 4) ;
+		this.creditLock = new Object() ;
+		this.pending = new ArrayDeque<DataOfferedI.DataI>() ;
+		this.credits = initialCredits ;
+		this.delivering = false ;
+		this.closed = false ;
+		this.ungranted = new AtomicInteger() ;
+	}
+
+	/**
+	 * return the threads shared by the credit connectors to pass their
+	 * buffered data, creating them on first use.
+	 * 
+	 * @return	the drain executor.
+	 */
+	protected static synchronized ExecutorService	drainExecutor()
+	{
+		if (DRAIN_EXECUTOR == null) {
+			DRAIN_EXECUTOR = Executors.newCachedThreadPool(
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "CreditDataConnector-drain") ;
+						t.setDaemon(true) ;
+						return t ;
+					}
+				}) ;
+		}
+		return DRAIN_EXECUTOR ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Offering side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * return the number of credits currently held by the offering side.
+	 * 
+	 * @return	the number of credits.
+	 */
+	public int			getCredits()
+	{
+		synchronized (this.creditLock) {
+			return this.credits ;
+		}
+	}
+
+	/**
+	 * return the number of data sent and waiting for credits.
+	 * 
+	 * @return	the number of buffered data.
+	 */
+	public int			getPendingCount()
+	{
+		synchronized (this.creditLock) {
+			return this.pending.size() ;
+		}
+	}
+
+	/**
+	 * pass the datum if credits remain, otherwise buffer it or block until
+	 * credits are granted.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.DataConnector#send(fr.upmc.components.interfaces.DataOfferedI.DataI)
+	 */
+	@Override
+	public void			send(DataOfferedI.DataI d) throws Exception
+	{
+		assert	this.connected() ;
+
+		this.post(new DataOfferedI.DataI[]{ d }) ;
+	}
+
+	/**
+	 * pass the data as long as credits remain, buffering or blocking on the
+	 * others until credits are granted.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	ds != null
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.DataConnector#sendBatch(fr.upmc.components.interfaces.DataOfferedI.DataI[])
+	 */
+	@Override
+	public void			sendBatch(DataOfferedI.DataI[] ds) throws Exception
+	{
+		assert	this.connected() ;
+		assert	ds != null ;
+
+		this.post(ds) ;
+	}
+
+	/**
+	 * pass, buffer or wait to pass the data in their order.
+	 * 
+	 * @param ds			data sent by the offering component.
+	 * @throws Exception	if the connector is disconnected, if passing previous data has failed or if the requiring component raises one.
+	 */
+	protected void		post(DataOfferedI.DataI[] ds) throws Exception
+	{
+		this.checkFailure() ;
+		int i = 0 ;
+		while (i < ds.length) {
+			int n ;
+			synchronized (this.creditLock) {
+				if (this.closed) {
+					throw new Exception("credit data connector disconnected.") ;
+				}
+				// the draining stops on a failure until it is rethrown, so
+				// the blocked senders must see it too.
+				this.checkFailure() ;
+				if (this.credits > 0 && this.pending.isEmpty() &&
+															!this.delivering) {
+					// pass directly in the thread of the sender
+					n = Math.min(this.credits, ds.length - i) ;
+					this.credits -= n ;
+					this.delivering = true ;
+				} else if (this.pending.size() < this.bufferCapacity) {
+					n = Math.min(this.bufferCapacity - this.pending.size(),
+								 ds.length - i) ;
+					for (int j = i ; j < i + n ; j++) {
+						this.pending.add(ds[j]) ;
+					}
+					i += n ;
+					this.drainIfPossible() ;
+					continue ;
+				} else {
+					// restart the draining stopped by a failure rethrown to
+					// another sender.
+					this.drainIfPossible() ;
+					this.creditLock.wait() ;
+					continue ;
+				}
+			}
+			try {
+				this.deliver(ds, i, n) ;
+			} finally {
+				this.delivered() ;
+			}
+			i += n ;
+		}
+	}
+
+	/**
+	 * pass <code>n</code> data starting at index <code>from</code> to the
+	 * requiring component, in a single call.
+	 * 
+	 * @param ds			data to be passed.
+	 * @param from			index of the first datum to be passed.
+	 * @param n				number of data to be passed.
+	 * @throws Exception	if the requiring component raises one.
+	 */
+	protected void		deliver(DataOfferedI.DataI[] ds, int from, int n)
+	throws Exception
+	{
+		if (n == 1) {
+			super.send(ds[from]) ;
+		} else if (from == 0 && n == ds.length) {
+			super.sendBatch(ds) ;
+		} else {
+			DataOfferedI.DataI[] batch = new DataOfferedI.DataI[n] ;
+			System.arraycopy(ds, from, batch, 0, n) ;
+			super.sendBatch(batch) ;
+		}
+	}
+
+	/**
+	 * release the right to pass data, handing the buffered data over to a
+	 * drain thread if credits remain.
+	 */
+	protected void		delivered()
+	{
+		synchronized (this.creditLock) {
+			this.delivering = false ;
+			this.drainIfPossible() ;
+			this.creditLock.notifyAll() ;
+		}
+	}
+
+	/**
+	 * submit the passing of the buffered data to a drain thread if credits
+	 * remain, no other thread is passing data and no failure is waiting to
+	 * be rethrown to a sender; must be called with the credit lock held.
+	 */
+	protected void		drainIfPossible()
+	{
+		if (!this.delivering && this.failure == null && this.credits > 0 &&
+												!this.pending.isEmpty()) {
+			this.delivering = true ;
+			final CreditDataConnector self = this ;
+			drainExecutor().execute(
+				new Runnable() {
+					@Override
+					public void run() {
+						self.drain() ;
+					}
+				}) ;
+		}
+	}
+
+	/**
+	 * pass the buffered data by batches as long as credits remain; called by
+	 * a drain thread which holds the right to pass data.
+	 */
+	protected void		drain()
+	{
+		while (true) {
+			DataOfferedI.DataI[] batch ;
+			synchronized (this.creditLock) {
+				int n = Math.min(MAX_DRAIN_SIZE,
+							Math.min(this.credits, this.pending.size())) ;
+				if (n == 0 || this.failure != null) {
+					this.delivering = false ;
+					this.creditLock.notifyAll() ;
+					return ;
+				}
+				batch = new DataOfferedI.DataI[n] ;
+				for (int i = 0 ; i < n ; i++) {
+					batch[i] = this.pending.poll() ;
+				}
+				this.credits -= n ;
+				// room has been made in the buffer
+				this.creditLock.notifyAll() ;
+			}
+			try {
+				this.deliver(batch, 0, batch.length) ;
+			} catch (Exception e) {
+				this.failure = e ;
+			}
+		}
+	}
+
+	/**
+	 * called by the offering port when the requiring component grants
+	 * credits, which are added to the ones of the offering side before
+	 * passing the buffered data in a drain thread and waking up the blocked
+	 * senders.
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#creditsGranted(int)
+	 */
+	@Override
+	public void			creditsGranted(int n) throws Exception
+	{
+		assert	n > 0 ;
+
+		synchronized (this.creditLock) {
+			this.credits += n ;
+			this.drainIfPossible() ;
+			this.creditLock.notifyAll() ;
+		}
+	}
+
+	/**
+	 * rethrow, once, the exception raised when passing buffered data.
+	 * 
+	 * @throws Exception	if passing buffered data has failed.
+	 */
+	protected void		checkFailure() throws Exception
+	{
+		Exception e = this.failure ;
+		if (e != null) {
+			this.failure = null ;
+			throw new Exception("credit data connector failed to pass data.",
+								e) ;
+		}
+	}
+
+	/**
+	 * pass the buffered data regardless of the credits, once the thread
+	 * passing data, if any, is done, then make the blocked senders raise an
+	 * exception.
+	 * 
+	 * @throws Exception	if the requiring component raises one.
+	 */
+	protected void		close() throws Exception
+	{
+		DataOfferedI.DataI[] rest ;
+		synchronized (this.creditLock) {
+			while (this.delivering) {
+				this.creditLock.wait() ;
+			}
+			this.closed = true ;
+			rest = this.pending.toArray(
+								new DataOfferedI.DataI[this.pending.size()]) ;
+			this.pending.clear() ;
+			this.creditLock.notifyAll() ;
+		}
+		if (rest.length > 0) {
+			this.deliver(rest, 0, rest.length) ;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Requiring side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * coalesce the credits granted by the requiring component, passing them
+	 * to the offering side once they reach a quarter of the initial credits.
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#grantCredits(int)
+	 */
+	@Override
+	public void			grantCredits(int n) throws Exception
+	{
+		assert	this.connected() ;
+		assert	n > 0 ;
+
+		int u = this.ungranted.addAndGet(n) ;
+		if (u >= this.grantThreshold && this.ungranted.compareAndSet(u, 0)) {
+			super.grantCredits(u) ;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Connection management
+	// ------------------------------------------------------------------------
+
+	/**
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#connect(fr.upmc.components.interfaces.OfferedI, fr.upmc.components.interfaces.RequiredI)
+	 */
+	@Override
+	public synchronized void	connect(OfferedI offering, RequiredI requiring)
+	throws Exception
+	{
+		this.reset() ;
+		super.connect(offering, requiring) ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#connectServer(fr.upmc.components.interfaces.OfferedI, fr.upmc.components.interfaces.RequiredI)
+	 */
+	@Override
+	public synchronized void	connectServer(
+		OfferedI offering,
+		RequiredI requiring
+		) throws Exception
+	{
+		this.reset() ;
+		super.connectServer(offering, requiring) ;
+	}
+
+	/**
+	 * give back the initial credits to the offering side before a
+	 * connection.
+	 */
+	protected void		reset()
+	{
+		synchronized (this.creditLock) {
+			this.credits = this.initialCredits ;
+			this.closed = false ;
+		}
+		this.ungranted.set(0) ;
+		this.failure = null ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#disconnect()
+	 */
+	@Override
+	public synchronized void	disconnect() throws Exception
+	{
+		this.close() ;
+		super.disconnect() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#disconnectServer()
+	 */
+	@Override
+	public synchronized void	disconnectServer() throws Exception
+	{
+		this.close() ;
+		super.disconnectServer() ;
+	}
+}
@@ -34,9 +34,15 @@ package fr.upmc.components.connectors;
 // The fact that you are presently reading this means that you have had
 // knowledge of the CeCILL-C license and that you accept its terms.
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import fr.upmc.components.connectors.codec.DataCodecs;
+import fr.upmc.components.connectors.codec.EncodedData;
 import fr.upmc.components.cvm.AbstractCVM;
 import fr.upmc.components.interfaces.DataOfferedI;
 import fr.upmc.components.interfaces.DataRequiredI;
+import fr.upmc.components.ports.AbstractDataInboundPort;
 
 /**
  * The class <code>DataConnector</code> partially implements a basic data
@@ -68,6 +74,10 @@ import fr.upmc.components.interfaces.DataRequiredI;
  * the case of the basic sequential data connector, both components need to
  * register it to call it in both the push and pull modes.
  * 
+ * When the requiring component is in another JVM, the data pushed which
+ * class has a codec registered in <code>DataCodecs</code> are sent wrapped
+ * in an <code>EncodedData</code>, so that they are serialized by their codec.
+ * 
  * <p><strong>Invariant</strong></p>
  * 
  * <pre>
@@ -106,6 +116,45 @@ extends		AbstractDataConnector
 		return this.offered2required(((DataOfferedI.PullI) this.offering).get()) ;
 	}
 
+	/**
+	 * pass the request for a new datum from the requiring component to the
+	 * offering component without blocking the caller; when the offering port
+	 * is in the same JVM, the request is handed over to the offering
+	 * component through its <code>getAsync</code> method and the translation
+	 * to the required data type is chained on its completion, otherwise the
+	 * synchronous version is used.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * post	return != null
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#requestAsync()
+	 */
+	@Override
+	public CompletableFuture<DataRequiredI.DataI>	requestAsync()
+	throws Exception
+	{
+		assert	this.connected() ;
+
+		if (!this.isRemote &&
+							this.offering instanceof AbstractDataInboundPort) {
+			return ((AbstractDataInboundPort) this.offering).getAsync().
+				thenApply(
+					new Function<DataOfferedI.DataI,DataRequiredI.DataI>() {
+						@Override
+						public DataRequiredI.DataI apply(DataOfferedI.DataI d)
+						{
+							return offered2required(d) ;
+						}
+					}) ;
+		} else {
+			return super.requestAsync() ;
+		}
+	}
+
 	/**
 	 * push the datum sent by the offering component to the requiring one.
 	 *
@@ -129,10 +178,52 @@ extends		AbstractDataConnector
 		if (AbstractCVM.DEBUG) {
 			System.out.println("Data connector send...") ;
 		}
-		((DataRequiredI.PushI) this.requiring).receive(
-													this.offered2required(d)) ;
+		DataRequiredI.DataI rd = this.offered2required(d) ;
+		if (this.isRemote && DataCodecs.hasCodec(rd)) {
+			// serialize the datum with its codec rather than with its
+			// class descriptor, the receiver getting the decoded datum.
+			rd = new EncodedData(rd) ;
+		}
+		((DataRequiredI.PushI) this.requiring).receive(rd) ;
+		releaseEncodedChunk(rd) ;
 		if (AbstractCVM.DEBUG) {
 			System.out.println("...Data connector sent!") ;
 		}
 	}
+
+	/**
+	 * push the data sent by the offering component to the requiring one in a
+	 * single call, encoding with their codec the data passed to a remote
+	 * requiring component.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	ds != null
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#sendBatch(fr.upmc.components.interfaces.DataOfferedI.DataI[])
+	 */
+	@Override
+	public void			sendBatch(DataOfferedI.DataI[] ds)
+	throws Exception
+	{
+		assert	this.connected() ;
+		assert	ds != null ;
+
+		DataRequiredI.DataI[] rds = this.offered2required(ds) ;
+		if (this.isRemote) {
+			for (int i = 0 ; i < rds.length ; i++) {
+				if (DataCodecs.hasCodec(rds[i])) {
+					rds[i] = new EncodedData(rds[i]) ;
+				}
+			}
+		}
+		((DataRequiredI.PushI) this.requiring).receiveBatch(rds) ;
+		for (int i = 0 ; i < rds.length ; i++) {
+			releaseEncodedChunk(rds[i]) ;
+		}
+	}
 }
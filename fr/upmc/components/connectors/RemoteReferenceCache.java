@@ -0,0 +1,411 @@
+package fr.upmc.components.connectors;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import fr.upmc.components.interfaces.ComponentImplementedI;
+import fr.upmc.components.metrics.ComponentMetrics;
+import fr.upmc.components.registry.ConnectionData;
+
+/**
+ * The class <code>RemoteReferenceCache</code> implements a bounded cache of
+ * the connection data and RMI references of remote ports, keyed by port URI,
+ * used by the connection builder to avoid a global registry lookup and an
+ * RMI lookup each time a connection is made to an already known port.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The cache keeps at most <code>capacity</code> entries, evicting the least
+ * recently used one when full.  As the global registry does not notify its
+ * clients, an entry cannot be invalidated when the port is unpublished on
+ * another JVM; the connection builder rather invalidates an entry when the
+ * port is unpublished in the current JVM and when using its reference
+ * raises a <code>RemoteException</code>, which is what happens when the
+ * remote port has been destroyed, and then looks it up again.
+ * 
+ * All methods are synchronized; the cache is only used when connecting, so
+ * the contention is negligible compared to the cost of remote calls.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.getSize() <= this.getCapacity()
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			RemoteReferenceCache
+implements	RemoteReferenceCacheMBean
+{
+	/** default maximum number of entries.								*/
+	public static int		DEFAULT_CAPACITY = 1024 ;
+
+	/**
+	 * The class <code>Entry</code> holds what is known about a remote port.
+	 *
+	 * @version	$Name$ -- $Revision$ -- $Date$
+	 */
+	public static class	Entry
+	{
+		/** connection data registered in the global registry.			*/
+		public final ConnectionData			data ;
+		/** RMI reference, null for socket ports.						*/
+		public final ComponentImplementedI	reference ;
+
+		public			Entry(
+			ConnectionData data,
+			ComponentImplementedI reference
+			)
+		{
+			super() ;
+			assert	data != null ;
+
+			this.data = data ;
+			this.reference = reference ;
+		}
+	}
+
+	/** maximum number of entries.										*/
+	protected final int						capacity ;
+	/** entries in least recently used order.								*/
+	protected final LinkedHashMap<String,Entry>	entries ;
+	protected final AtomicLong				hits ;
+	protected final AtomicLong				misses ;
+	protected final AtomicLong				invalidations ;
+	protected final AtomicLong				evictions ;
+	/** name under which the cache is registered, null if it is not.		*/
+	protected ObjectName					registeredName ;
+
+	/**
+	 * create a cache holding at most <code>capacity</code> entries.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	capacity > 0
+	 * post	this.getSize() == 0
+	 * </pre>
+	 *
+	 * @param capacity	maximum number of entries.
+	 */
+	public				RemoteReferenceCache(int capacity)
+	{
+		super() ;
+		assert	capacity > 0 ;
+
+		this.capacity = capacity ;
+		this.hits = new AtomicLong() ;
+		this.misses = new AtomicLong() ;
+		this.invalidations = new AtomicLong() ;
+		this.evictions = new AtomicLong() ;
+		this.entries = new LinkedHashMap<String,Entry>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L ;
+
+				@Override
+				protected boolean removeEldestEntry(
+					Map.Entry<String,Entry> eldest
+					)
+				{
+					if (this.size() > RemoteReferenceCache.this.capacity) {
+						RemoteReferenceCache.this.evictions.incrementAndGet() ;
+						return true ;
+					} else {
+						return false ;
+					}
+				}
+			} ;
+		this.registeredName = null ;
+	}
+
+	public				RemoteReferenceCache()
+	{
+		this(DEFAULT_CAPACITY) ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Cache operations
+	// ------------------------------------------------------------------------
+
+	/**
+	 * return the entry of the port <code>portURI</code>, counting a hit,
+	 * or null if the port is not in the cache, counting a miss.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	portURI != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param portURI	URI of a remote port.
+	 * @return			its entry or null if none.
+	 */
+	public synchronized Entry	get(String portURI)
+	{
+		assert	portURI != null ;
+
+		Entry e = this.entries.get(portURI) ;
+		if (e != null) {
+			this.hits.incrementAndGet() ;
+		} else {
+			this.misses.incrementAndGet() ;
+		}
+		return e ;
+	}
+
+	/**
+	 * return true if the port <code>portURI</code> has an entry, without
+	 * counting a hit nor a miss.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	portURI != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param portURI	URI of a remote port.
+	 * @return			true if the port has an entry.
+	 */
+	public synchronized boolean	contains(String portURI)
+	{
+		return this.entries.containsKey(portURI) ;
+	}
+
+	/**
+	 * record what is known about the port <code>portURI</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	portURI != null && data != null
+	 * post	this.getSize() <= this.getCapacity()
+	 * </pre>
+	 *
+	 * @param portURI	URI of a remote port.
+	 * @param data		connection data registered for the port.
+	 * @param reference	RMI reference of the port, null for socket ports.
+	 */
+	public synchronized void	put(
+		String portURI,
+		ConnectionData data,
+		ComponentImplementedI reference
+		)
+	{
+		assert	portURI != null && data != null ;
+
+		this.entries.put(portURI, new Entry(data, reference)) ;
+	}
+
+	/**
+	 * remove the entry of the port <code>portURI</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	portURI != null
+	 * post	!this.contains(portURI)
+	 * </pre>
+	 *
+	 * @param portURI	URI of a remote port.
+	 * @return			true if the port had an entry.
+	 */
+	public synchronized boolean	invalidate(String portURI)
+	{
+		assert	portURI != null ;
+
+		if (this.entries.remove(portURI) != null) {
+			this.invalidations.incrementAndGet() ;
+			return true ;
+		} else {
+			return false ;
+		}
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.RemoteReferenceCacheMBean#clear()
+	 */
+	@Override
+	public synchronized void	clear()
+	{
+		this.invalidations.addAndGet(this.entries.size()) ;
+		this.entries.clear() ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Metrics
+	// ------------------------------------------------------------------------
+
+	/**
+	 * @see fr.upmc.components.connectors.RemoteReferenceCacheMBean#getHitCount()
+	 */
+	@Override
+	public long			getHitCount()
+	{
+		return this.hits.get() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.RemoteReferenceCacheMBean#getMissCount()
+	 */
+	@Override
+	public long			getMissCount()
+	{
+		return this.misses.get() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.RemoteReferenceCacheMBean#getHitRatio()
+	 */
+	@Override
+	public double		getHitRatio()
+	{
+		long h = this.hits.get() ;
+		long total = h + this.misses.get() ;
+		return total == 0 ? 0.0 : (double) h / total ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.RemoteReferenceCacheMBean#getInvalidationCount()
+	 */
+	@Override
+	public long			getInvalidationCount()
+	{
+		return this.invalidations.get() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.RemoteReferenceCacheMBean#getEvictionCount()
+	 */
+	@Override
+	public long			getEvictionCount()
+	{
+		return this.evictions.get() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.RemoteReferenceCacheMBean#getSize()
+	 */
+	@Override
+	public synchronized int	getSize()
+	{
+		return this.entries.size() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.RemoteReferenceCacheMBean#getCapacity()
+	 */
+	@Override
+	public int			getCapacity()
+	{
+		return this.capacity ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.RemoteReferenceCacheMBean#reset()
+	 */
+	@Override
+	public void			reset()
+	{
+		this.hits.set(0L) ;
+		this.misses.set(0L) ;
+		this.invalidations.set(0L) ;
+		this.evictions.set(0L) ;
+	}
+
+	// ------------------------------------------------------------------------
+	// JMX registration
+	// ------------------------------------------------------------------------
+
+	/**
+	 * register the cache in the platform MBean server if
+	 * <code>ComponentMetrics.REGISTER_MBEANS</code> is true, under the name
+	 * <code>fr.upmc.components:type=RemoteReferenceCache</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 */
+	public synchronized void	registerMBean()
+	{
+		if (!ComponentMetrics.REGISTER_MBEANS || this.registeredName != null) {
+			return ;
+		}
+		try {
+			ObjectName name = new ObjectName(ComponentMetrics.JMX_DOMAIN +
+											":type=RemoteReferenceCache") ;
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer() ;
+			server.registerMBean(this, name) ;
+			this.registeredName = name ;
+		} catch (Exception e) {
+			System.err.println("RemoteReferenceCache: cannot register: " + e) ;
+		}
+	}
+
+	/**
+	 * unregister the cache from the platform MBean server if it was
+	 * registered.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 */
+	public synchronized void	unregisterMBean()
+	{
+		if (this.registeredName == null) {
+			return ;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().
+										unregisterMBean(this.registeredName) ;
+		} catch (Exception e) {
+			System.err.println("RemoteReferenceCache: cannot unregister: " + e) ;
+		}
+		this.registeredName = null ;
+	}
+}
@@ -0,0 +1,96 @@
+package fr.upmc.components.connectors;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+/**
+ * The interface <code>RemoteReferenceCacheMBean</code> defines the
+ * management interface through which the metrics of the remote reference
+ * cache of the connection builder are exposed to JMX clients.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * A hit is a remote port reference obtained from the cache, hence without
+ * any request to the global registry nor to the RMI registry; a miss is a
+ * reference that had to be looked up.
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public interface		RemoteReferenceCacheMBean
+{
+	/**
+	 * @return	the number of references obtained from the cache.
+	 */
+	public long			getHitCount() ;
+
+	/**
+	 * @return	the number of references that had to be looked up.
+	 */
+	public long			getMissCount() ;
+
+	/**
+	 * @return	the ratio of hits among all of the requests, 0 if none.
+	 */
+	public double		getHitRatio() ;
+
+	/**
+	 * @return	the number of entries invalidated.
+	 */
+	public long			getInvalidationCount() ;
+
+	/**
+	 * @return	the number of entries evicted to respect the capacity.
+	 */
+	public long			getEvictionCount() ;
+
+	/**
+	 * @return	the number of entries currently in the cache.
+	 */
+	public int			getSize() ;
+
+	/**
+	 * @return	the maximum number of entries in the cache.
+	 */
+	public int			getCapacity() ;
+
+	/**
+	 * remove all of the entries from the cache.
+	 */
+	public void			clear() ;
+
+	/**
+	 * forget the metrics recorded so far.
+	 */
+	public void			reset() ;
+}
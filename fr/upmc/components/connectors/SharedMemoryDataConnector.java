@@ -0,0 +1,569 @@
+package fr.upmc.components.connectors;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import fr.upmc.components.connectors.buffers.MappedRingBuffer;
+import fr.upmc.components.connectors.buffers.WaitStrategy;
+import fr.upmc.components.connectors.codec.ByteBufferDataInput;
+import fr.upmc.components.connectors.codec.ByteBufferDataOutput;
+import fr.upmc.components.connectors.codec.DataCodecs;
+import fr.upmc.components.interfaces.DataOfferedI;
+import fr.upmc.components.interfaces.DataRequiredI;
+import fr.upmc.components.interfaces.OfferedI;
+import fr.upmc.components.interfaces.RequiredI;
+import fr.upmc.components.ports.PortI;
+
+/**
+ * The class <code>SharedMemoryDataConnector</code> implements a data
+ * connector passing the data pushed between two JVMs of the same host
+ * through a ring buffer in a memory-mapped file rather than through RMI.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * In a remote connection, the side of the offering component attaches as
+ * the writer of a <code>MappedRingBuffer</code> in a file of
+ * <code>DIRECTORY</code> named after the URIs of the two ports, and the side
+ * of the requiring component attaches as its reader.  Each datum sent is
+ * encoded with <code>DataCodecs</code> directly in the ring, then decoded
+ * from the ring by a reader thread of the requiring side which passes it to
+ * the requiring port, so that a datum is neither serialized by RMI nor
+ * copied through a socket, and the latency of a push is a few microseconds
+ * when the reader thread busy waits.  The data sent by
+ * <code>sendBatch</code> are written in one record and passed by one call to
+ * <code>receiveBatch</code>.  The codecs of the data must hence be registered
+ * in both JVMs, as for the socket transport.
+ * 
+ * The sender waits with the wait strategy while the ring is full and the
+ * reader thread while it is empty.  As every connection within a host uses
+ * this connector, the default strategy is <code>PARK</code>, which leaves
+ * the processor to the components when the connection is idle at the price
+ * of tens of microseconds of latency; <code>YIELD</code> or
+ * <code>SPIN</code> may be preferred for the connections carrying a steady
+ * flow of data, each of them then keeping a processor busy.  A record is removed from the ring once the
+ * requiring port has received it, hence data larger than the ring are
+ * passed by RMI after the previous ones have been received, keeping the
+ * order of the sends.  When the reader is not attached once connected, for
+ * example because the hosts were wrongly declared the same, all of the data
+ * are passed by RMI.  The pull mode is not affected.
+ * 
+ * When a datum cannot be decoded or received, the reader thread records the
+ * exception, marks the ring as failed and stops, as the threads of an
+ * <code>ActiveDataConnector</code> do: the following sends of the offering
+ * side then throw an exception instead of waiting for a ring which is no
+ * longer read, and the recorded exception is rethrown to the requiring side
+ * when it disconnects.  A sender waiting for the ring also tests every
+ * <code>READER_CHECK_ROUNDS</code> rounds that the reader is still
+ * attached; when it is not, for example because its JVM has died, the
+ * sender gives up the ring and throws an exception, the data still in the
+ * ring being lost and the following ones being passed by RMI.
+ * 
+ * This connector is selected by <code>ConnectionBuilder</code> for the
+ * remote connections made with a <code>DataConnector</code> when the two
+ * ports run on the same host; used in a local connection, it behaves as a
+ * <code>DataConnector</code>.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.ring == null || this.isRemote
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			SharedMemoryDataConnector
+extends		DataConnector
+{
+	/** default capacity in bytes of the rings.								*/
+	public static int				DEFAULT_CAPACITY = 1 << 20 ;
+	/** default wait strategy of the senders and of the reader threads.		*/
+	public static WaitStrategy		DEFAULT_WAIT_STRATEGY = WaitStrategy.PARK ;
+	/** directory of the files holding the rings, in memory when possible.	*/
+	public static File				DIRECTORY =
+							new File("/dev/shm").isDirectory() ?
+								new File("/dev/shm")
+							:	new File(System.getProperty("java.io.tmpdir")) ;
+	/** maximum time in milliseconds to wait for the reader thread to end.	*/
+	public static long				STOP_TIMEOUT = 1000 ;
+	/** number of rounds a sender waits between two tests of the reader.	*/
+	public static int				READER_CHECK_ROUNDS = 1000 ;
+
+	/** capacity in bytes of the ring.										*/
+	protected final int				capacity ;
+	/** wait strategy of the sender and of the reader thread.				*/
+	protected final WaitStrategy	waitStrategy ;
+	/** ring shared with the other side, null when not attached.			*/
+	protected volatile MappedRingBuffer	ring ;
+	/** lock ordering the writes of the senders.							*/
+	protected final Object			writeLock ;
+	/** true once the writer has checked that the reader is attached.		*/
+	protected boolean				readerChecked ;
+	/** output encoding the data in the ring.								*/
+	protected ByteBufferDataOutput	out ;
+	/** data being written by the sender.									*/
+	protected DataRequiredI.DataI[]	writing ;
+	/** thread passing the data read in the ring to the requiring port.	*/
+	protected Thread				reader ;
+	/** false when the reader thread must end once the ring is empty.		*/
+	protected volatile boolean		stillActive ;
+	/** exception that stopped the reader thread, or null.					*/
+	protected volatile Exception	failure ;
+
+	public				SharedMemoryDataConnector()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_WAIT_STRATEGY) ;
+	}
+
+	/**
+	 * create a shared memory connector.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	capacity >= 8 && (capacity & (capacity - 1)) == 0
+	 * pre	waitStrategy != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param capacity		capacity in bytes of the ring, the same on both sides.
+	 * @param waitStrategy	wait strategy of the sender and of the reader thread.
+	 */
+	public				SharedMemoryDataConnector(
+		int capacity,
+		WaitStrategy waitStrategy
+		)
+	{
+		super() ;
+
+		assert	capacity >= 8 && (capacity & (capacity - 1)) == 0 ;
+		assert	waitStrategy != null ;
+
+		this.capacity = capacity ;
+		this.waitStrategy = waitStrategy ;
+		this.writeLock = new Object() ;
+	}
+
+	/**
+	 * return the file holding the ring of the connection between two ports.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	serverPortURI != null && clientPortURI != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param serverPortURI	URI of the offering port.
+	 * @param clientPortURI	URI of the requiring port.
+	 * @return				the file holding the ring.
+	 */
+	public static File	ringFile(String serverPortURI, String clientPortURI)
+	{
+		String name = serverPortURI + "--" + clientPortURI ;
+		// the hash tells apart the URIs made equal by the replacements
+		return new File(DIRECTORY, "bcm-" +
+						name.replaceAll("[^A-Za-z0-9._-]", "_") + "-" +
+						Integer.toHexString(name.hashCode()) + ".ring") ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Offering side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * write the datum in the ring, or pass it as a <code>DataConnector</code>
+	 * when the ring is not used.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.DataConnector#send(fr.upmc.components.interfaces.DataOfferedI.DataI)
+	 */
+	@Override
+	public void			send(DataOfferedI.DataI d) throws Exception
+	{
+		assert	this.connected() ;
+
+		synchronized (this.writeLock) {
+			if (d == null || !this.useRing() ||
+					!this.write(new DataRequiredI.DataI[]{
+											this.offered2required(d) })) {
+				super.send(d) ;
+			}
+		}
+	}
+
+	/**
+	 * write the data in the ring in one record, or pass them as a
+	 * <code>DataConnector</code> when the ring is not used.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	ds != null
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.connectors.DataConnector#sendBatch(fr.upmc.components.interfaces.DataOfferedI.DataI[])
+	 */
+	@Override
+	public void			sendBatch(DataOfferedI.DataI[] ds) throws Exception
+	{
+		assert	this.connected() ;
+		assert	ds != null ;
+
+		synchronized (this.writeLock) {
+			boolean hasNull = false ;
+			for (int i = 0 ; i < ds.length ; i++) {
+				hasNull |= ds[i] == null ;
+			}
+			if (ds.length == 0 || hasNull || !this.useRing() ||
+									!this.write(this.offered2required(ds))) {
+				super.sendBatch(ds) ;
+			}
+		}
+	}
+
+	/**
+	 * return true if the data are written in the ring, checking at the first
+	 * send that the reader is attached and giving up the ring otherwise;
+	 * must be called with the write lock held.
+	 * 
+	 * @return				true if the data are written in the ring.
+	 * @throws IOException	if the ring cannot be tested.
+	 */
+	protected boolean	useRing() throws IOException
+	{
+		if (this.ring != null && !this.readerChecked) {
+			this.readerChecked = true ;
+			if (!this.ring.isOtherSideAttached()) {
+				this.ring.close() ;
+				this.ring = null ;
+			}
+		}
+		return this.ring != null ;
+	}
+
+	/**
+	 * write the data in one record, waiting while the ring is full; when the
+	 * record is larger than the ring, wait until the ring is empty and return
+	 * false so that the caller passes the data by RMI after the previous
+	 * ones; must be called with the write lock held.
+	 * 
+	 * @param ds			data to be written.
+	 * @return				true if the data have been written in the ring.
+	 * @throws Exception	if a datum cannot be encoded or if the thread is interrupted.
+	 */
+	protected boolean	write(DataRequiredI.DataI[] ds) throws Exception
+	{
+		final SharedMemoryDataConnector self = this ;
+		this.writing = ds ;
+		try {
+			MappedRingBuffer.RecordWriter w =
+				new MappedRingBuffer.RecordWriter() {
+					@Override
+					public void write(ByteBuffer b) throws IOException {
+						if (self.out == null) {
+							self.out = new ByteBufferDataOutput(b) ;
+						} else {
+							self.out.setBuffer(b) ;
+						}
+						self.out.writeInt(self.writing.length) ;
+						for (int i = 0 ; i < self.writing.length ; i++) {
+							DataCodecs.encode(self.writing[i], self.out) ;
+						}
+					}
+				} ;
+			this.checkReader(0) ;
+			int round = 0 ;
+			while (!this.ring.offer(w)) {
+				this.checkReader(round) ;
+				this.waitStrategy.idle(round++) ;
+			}
+			return true ;
+		} catch (BufferOverflowException e) {
+			int round = 0 ;
+			while (!this.ring.isEmpty()) {
+				this.checkReader(round) ;
+				this.waitStrategy.idle(round++) ;
+			}
+			return false ;
+		} finally {
+			this.writing = null ;
+		}
+	}
+
+	/**
+	 * throw an exception if the reader has marked the ring as failed or,
+	 * every <code>READER_CHECK_ROUNDS</code> rounds of waiting, if it is no
+	 * longer attached, as the data written would then never be passed; a
+	 * detached reader makes the sender give up the ring.  Must be called
+	 * with the write lock held.
+	 * 
+	 * @param round			number of rounds the sender has already waited.
+	 * @throws Exception	if the reader of the ring has failed or is detached.
+	 */
+	protected void		checkReader(int round) throws Exception
+	{
+		if (this.ring.isFailed()) {
+			throw new Exception("shared memory data connector reader " +
+								"failed to pass a datum.") ;
+		}
+		if (round % READER_CHECK_ROUNDS == READER_CHECK_ROUNDS - 1 &&
+										!this.ring.isOtherSideAttached()) {
+			this.ring.close() ;
+			this.ring = null ;
+			throw new Exception("shared memory data connector reader " +
+								"detached.") ;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Requiring side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * creates the reader thread that repeatedly reads the records of the
+	 * ring and passes their data to the requiring port, waiting with the
+	 * wait strategy while the ring is empty.  Once the connector is stopped,
+	 * the thread passes the data remaining in the ring then ends.  A datum
+	 * which cannot be decoded or received stops the thread, its exception
+	 * being recorded by <code>fail</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.ring != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return		a reader thread.
+	 */
+	protected Thread	createReaderThread()
+	{
+		final SharedMemoryDataConnector self = this ;
+		final MappedRingBuffer ring = this.ring ;
+		return new Thread("SharedMemoryDataConnector-reader") {
+			public void run() {
+				MappedRingBuffer.RecordReader r =
+					new MappedRingBuffer.RecordReader() {
+						protected ByteBufferDataInput	in ;
+
+						@Override
+						public void read(ByteBuffer b) throws Exception {
+							if (this.in == null) {
+								this.in = new ByteBufferDataInput(b) ;
+							} else {
+								this.in.setBuffer(b) ;
+							}
+							self.deliver(this.in) ;
+						}
+					} ;
+				int round = 0 ;
+				try {
+					while (true) {
+						boolean read ;
+						try {
+							read = ring.poll(r) ;
+						} catch (InterruptedException e) {
+							throw e ;
+						} catch (Exception e) {
+							self.fail(ring, e) ;
+							return ;
+						}
+						if (read) {
+							round = 0 ;
+						} else if (!self.stillActive) {
+							return ;
+						} else {
+							self.waitStrategy.idle(round++) ;
+						}
+					}
+				} catch (InterruptedException e) {
+					// stopped
+				}
+			}
+		} ;
+	}
+
+	/**
+	 * records the exception that stopped the reader thread, which is then
+	 * rethrown to the requiring side when it disconnects, and marks the ring
+	 * as failed so that the offering side stops sending.
+	 * 
+	 * @param ring	ring read by the thread.
+	 * @param e		exception raised when decoding or passing a datum.
+	 */
+	protected void		fail(MappedRingBuffer ring, Exception e)
+	{
+		if (this.failure == null) {
+			this.failure = e ;
+		}
+		ring.markFailed() ;
+	}
+
+	/**
+	 * decode the data of a record and pass them to the requiring port.
+	 * 
+	 * @param in			input reading the record.
+	 * @throws Exception	if a datum cannot be decoded or if the requiring port raises one.
+	 */
+	protected void		deliver(ByteBufferDataInput in) throws Exception
+	{
+		int n = in.readInt() ;
+		if (n == 1) {
+			((DataRequiredI.PushI) this.requiring).receive(
+								(DataRequiredI.DataI) DataCodecs.decode(in)) ;
+		} else {
+			DataRequiredI.DataI[] ds = new DataRequiredI.DataI[n] ;
+			for (int i = 0 ; i < n ; i++) {
+				ds[i] = (DataRequiredI.DataI) DataCodecs.decode(in) ;
+			}
+			((DataRequiredI.PushI) this.requiring).receiveBatch(ds) ;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Connection management
+	// ------------------------------------------------------------------------
+
+	/**
+	 * connect the requiring side, attaching it as the reader of the ring and
+	 * starting the reader thread when the connection is remote.
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#connectClient(fr.upmc.components.interfaces.OfferedI, fr.upmc.components.interfaces.RequiredI)
+	 */
+	@Override
+	public synchronized void	connectClient(
+		OfferedI offering,
+		RequiredI requiring
+		) throws Exception
+	{
+		super.connectClient(offering, requiring) ;
+		if (this.isRemote) {
+			this.ring = new MappedRingBuffer(
+							ringFile(((PortI) offering).getPortURI(),
+									 ((PortI) requiring).getPortURI()),
+							this.capacity, false) ;
+			this.stillActive = true ;
+			this.reader = this.createReaderThread() ;
+			this.reader.setDaemon(true) ;
+			this.reader.start() ;
+		}
+	}
+
+	/**
+	 * connect the offering side, attaching it as the writer of the ring when
+	 * the connection is remote.
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#connectServer(fr.upmc.components.interfaces.OfferedI, fr.upmc.components.interfaces.RequiredI)
+	 */
+	@Override
+	public synchronized void	connectServer(
+		OfferedI offering,
+		RequiredI requiring
+		) throws Exception
+	{
+		super.connectServer(offering, requiring) ;
+		if (this.isRemote) {
+			synchronized (this.writeLock) {
+				this.ring = new MappedRingBuffer(
+							ringFile(((PortI) offering).getPortURI(),
+									 ((PortI) requiring).getPortURI()),
+							this.capacity, true) ;
+				this.readerChecked = false ;
+			}
+		}
+	}
+
+	/**
+	 * stop the reader thread once it has passed the data remaining in the
+	 * ring, then detach from the ring, rethrowing the exception that stopped
+	 * the reader thread, if any.
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractConnector#disconnectClient()
+	 */
+	@Override
+	public synchronized void	disconnectClient() throws Exception
+	{
+		if (this.reader != null) {
+			this.stillActive = false ;
+			this.reader.join(STOP_TIMEOUT) ;
+			if (this.reader.isAlive()) {
+				this.reader.interrupt() ;
+				this.reader.join() ;
+			}
+			this.reader = null ;
+		}
+		if (this.ring != null) {
+			this.ring.close() ;
+			this.ring = null ;
+		}
+		super.disconnectClient() ;
+		Exception e = this.failure ;
+		if (e != null) {
+			this.failure = null ;
+			throw new Exception("shared memory data connector reader " +
+								"failed to pass a datum.", e) ;
+		}
+	}
+
+	/**
+	 * detach from the ring, the data already written being still passed by
+	 * the reader thread.
+	 * 
+	 * @see fr.upmc.components.connectors.AbstractDataConnector#disconnectServer()
+	 */
+	@Override
+	public synchronized void	disconnectServer() throws Exception
+	{
+		synchronized (this.writeLock) {
+			if (this.ring != null) {
+				this.ring.close() ;
+				this.ring = null ;
+			}
+		}
+		super.disconnectServer() ;
+	}
+}
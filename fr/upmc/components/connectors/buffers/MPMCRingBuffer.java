@@ -0,0 +1,194 @@
+package fr.upmc.components.connectors.buffers;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The class <code>MPMCRingBuffer</code> implements a lock-free ring buffer
+ * for any number of producer and consumer threads.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each cell of the array carries a sequence number telling whether it is
+ * free for the producer of a given position or filled for the consumer of a
+ * given position (Vyukov's bounded queue).  Producers, respectively
+ * consumers, claim a position by a compare-and-set on the tail, respectively
+ * the head, then write, respectively read, the cell and publish it by
+ * advancing its sequence number; no thread ever waits for another one to
+ * finish its operation.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	0 <= tail - head <= capacity
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			MPMCRingBuffer<E>
+implements	RingBufferI<E>
+{
+	/** elements of the buffer.											*/
+	protected final AtomicReferenceArray<E>	elements ;
+	/** sequence number of each cell.									*/
+	protected final AtomicLongArray			sequences ;
+	/** mask giving the index of a position in the arrays.				*/
+	protected final int						mask ;
+	/** next position to be polled.										*/
+	protected final AtomicLong				head ;
+	/** next position to be offered.									*/
+	protected final AtomicLong				tail ;
+
+	/**
+	 * create a buffer holding at least <code>capacity</code> elements, the
+	 * capacity being rounded up to a power of two.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	capacity > 0 && capacity <= 1 << 30
+	 * post	this.capacity() >= capacity
+	 * </pre>
+	 *
+	 * @param capacity	minimum capacity of the buffer.
+	 */
+	public				MPMCRingBuffer(int capacity)
+	{
+		super() ;
+
+		assert	capacity > 0 && capacity <= 1 << 30 ;
+
+		int length = Integer.highestOneBit(capacity) ;
+		if (length < capacity) {
+			length <<= 1 ;
+		}
+		this.elements = new AtomicReferenceArray<E>(length) ;
+		this.sequences = new AtomicLongArray(length) ;
+		for (int i = 0 ; i < length ; i++) {
+			this.sequences.set(i, i) ;
+		}
+		this.mask = length - 1 ;
+		this.head = new AtomicLong() ;
+		this.tail = new AtomicLong() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean		offer(E e)
+	{
+		assert	e != null ;
+
+		while (true) {
+			long t = this.tail.get() ;
+			int i = (int) t & this.mask ;
+			long diff = this.sequences.get(i) - t ;
+			if (diff == 0) {
+				if (this.tail.compareAndSet(t, t + 1)) {
+					this.elements.lazySet(i, e) ;
+					this.sequences.lazySet(i, t + 1) ;
+					return true ;
+				}
+			} else if (diff < 0) {
+				// the cell still holds the element of the previous round
+				return false ;
+			}
+			// else another producer has claimed the position, retry
+		}
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#poll()
+	 */
+	@Override
+	public E			poll()
+	{
+		while (true) {
+			long h = this.head.get() ;
+			int i = (int) h & this.mask ;
+			long diff = this.sequences.get(i) - (h + 1) ;
+			if (diff == 0) {
+				if (this.head.compareAndSet(h, h + 1)) {
+					E e = this.elements.get(i) ;
+					this.elements.lazySet(i, null) ;
+					this.sequences.lazySet(i, h + this.mask + 1) ;
+					return e ;
+				}
+			} else if (diff < 0) {
+				// the cell has not been filled yet
+				return null ;
+			}
+			// else another consumer has claimed the position, retry
+		}
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#drainTo(java.lang.Object[], int)
+	 */
+	@Override
+	public int			drainTo(E[] batch, int max)
+	{
+		assert	batch != null && max <= batch.length ;
+
+		int n = 0 ;
+		E e ;
+		while (n < max && (e = this.poll()) != null) {
+			batch[n++] = e ;
+		}
+		return n ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#size()
+	 */
+	@Override
+	public int			size()
+	{
+		return (int) Math.max(0L, this.tail.get() - this.head.get()) ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#capacity()
+	 */
+	@Override
+	public int			capacity()
+	{
+		return this.mask + 1 ;
+	}
+}
@@ -0,0 +1,466 @@
+package fr.upmc.components.connectors.buffers;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The class <code>MappedRingBuffer</code> implements a ring buffer of
+ * variable length records in a memory-mapped file, shared by a writer and a
+ * reader which may run in different JVMs of the same host.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The file starts with a header holding the tail index, owned by the writer,
+ * the head index, owned by the reader, each on its own cache line, the
+ * capacity of the ring, a power of two, and a flag set by the reader when it
+ * can no longer pass the records, followed by the ring itself.  The
+ * indexes count the bytes written and read since the ring was reset.  Each
+ * record is its length, an <code>int</code>, followed by its bytes, padded
+ * to a multiple of 8 bytes; a record that does not fit before the end of
+ * the ring is preceded by a wrap marker making the reader go back to its
+ * start.  Records are written and read in place through byte buffers viewing
+ * the ring, so that their content is never copied, and each side publishes
+ * its index with a release write read by the other side with an acquire
+ * read, which orders the accesses to the records across the JVMs.
+ * 
+ * Each side holds an exclusive lock on its own byte of the file, past its
+ * end, while it is attached.  A side attaching while the lock of the other
+ * side is free, hence while no other process uses the ring, resets the
+ * indexes, discarding what a previous connection may have left in the file;
+ * a side detaching while the other is detached deletes the file.  The locks
+ * being released by the operating system when a process ends, the ring is
+ * also reset after a crash.
+ * 
+ * At most one thread may write and at most one thread may read at a time;
+ * neither side blocks, <code>offer</code> and <code>poll</code> returning
+ * false when the ring is full, respectively empty, so that the callers wait
+ * with a <code>WaitStrategy</code>.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	0 <= tail - head <= capacity
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			MappedRingBuffer
+implements	Closeable
+{
+	/**
+	 * The interface <code>RecordWriter</code> is implemented by the writers
+	 * of the content of a record.
+	 *
+	 * @version	$Name$ -- $Revision$ -- $Date$
+	 */
+	public static interface	RecordWriter
+	{
+		/**
+		 * write the content of the record at the position of
+		 * <code>b</code>, a <code>BufferOverflowException</code> telling that
+		 * the record does not fit in the room left by the reader, in which
+		 * case it is written again later.
+		 * 
+		 * @param b				buffer viewing the room available for the record.
+		 * @throws IOException	if the content cannot be written.
+		 */
+		public void		write(ByteBuffer b) throws IOException ;
+	}
+
+	/**
+	 * The interface <code>RecordReader</code> is implemented by the readers
+	 * of the content of a record.
+	 *
+	 * @version	$Name$ -- $Revision$ -- $Date$
+	 */
+	public static interface	RecordReader
+	{
+		/**
+		 * read the content of the record, from the position to the limit of
+		 * <code>b</code>; the record is removed from the ring when this
+		 * method returns, even by raising an exception.
+		 * 
+		 * @param b				buffer viewing the content of the record.
+		 * @throws Exception	if the content cannot be read.
+		 */
+		public void		read(ByteBuffer b) throws Exception ;
+	}
+
+	/** size in bytes of the header preceding the ring.					*/
+	public static final int			HEADER_SIZE = 256 ;
+	/** offset of the tail index in the header.							*/
+	protected static final int		TAIL_OFFSET = 0 ;
+	/** offset of the head index in the header.							*/
+	protected static final int		HEAD_OFFSET = 64 ;
+	/** offset of the capacity in the header.							*/
+	protected static final int		CAPACITY_OFFSET = 128 ;
+	/** offset of the failure flag in the header.							*/
+	protected static final int		FAILED_OFFSET = 192 ;
+	/** length of the marker making the reader wrap to the start.			*/
+	protected static final int		WRAP = -1 ;
+	/** position in the file of the byte locked by the attached writer.	*/
+	protected static final long		WRITER_LOCK = Long.MAX_VALUE - 2 ;
+	/** position in the file of the byte locked by the attached reader.	*/
+	protected static final long		READER_LOCK = Long.MAX_VALUE - 1 ;
+	/** access to the indexes with release and acquire semantics.			*/
+	protected static final VarHandle	LONGS =
+			MethodHandles.byteBufferViewVarHandle(long[].class,
+												  ByteOrder.nativeOrder()) ;
+
+	/** file holding the ring.											*/
+	protected final File			file ;
+	/** true for the writer side, false for the reader side.				*/
+	protected final boolean			writer ;
+	/** channel on the file, kept open to hold the lock.					*/
+	protected final FileChannel		channel ;
+	/** lock of this side on the file.									*/
+	protected final FileLock		lock ;
+	/** the header and the ring mapped in memory.							*/
+	protected final MappedByteBuffer	mapped ;
+	/** view of the ring, used for the absolute accesses to the lengths.	*/
+	protected final ByteBuffer		ring ;
+	/** view of the ring passed to the record writers and readers.		*/
+	protected final ByteBuffer		view ;
+	/** capacity of the ring in bytes, a power of two.					*/
+	protected final int				capacity ;
+	/** index of this side.												*/
+	protected long					index ;
+	/** last index of the other side read by this side.					*/
+	protected long					cachedIndex ;
+
+	/**
+	 * map the ring in <code>file</code>, creating the file if needed, and
+	 * attach as the writer or the reader.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	file != null
+	 * pre	capacity >= 8 && (capacity & (capacity - 1)) == 0
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param file			file holding the ring.
+	 * @param capacity		capacity of the ring in bytes, the same on both sides.
+	 * @param writer		true to attach as the writer, false as the reader.
+	 * @throws IOException	if the file cannot be mapped, if the side is already attached or if the other side uses another capacity.
+	 */
+	public				MappedRingBuffer(
+		File file,
+		int capacity,
+		boolean writer
+		) throws IOException
+	{
+		assert	file != null ;
+		assert	capacity >= 8 && (capacity & (capacity - 1)) == 0 ;
+
+		this.file = file ;
+		this.writer = writer ;
+		this.capacity = capacity ;
+		this.channel = FileChannel.open(file.toPath(),
+										StandardOpenOption.CREATE,
+										StandardOpenOption.READ,
+										StandardOpenOption.WRITE) ;
+		try {
+			this.lock = this.channel.tryLock(
+						writer ? WRITER_LOCK : READER_LOCK, 1, false) ;
+			if (this.lock == null) {
+				throw new IOException("the " + (writer ? "writer" : "reader") +
+						" of the ring in " + file + " is already attached.") ;
+			}
+			FileLock other = this.channel.tryLock(
+						writer ? READER_LOCK : WRITER_LOCK, 1, false) ;
+			this.mapped = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+										   HEADER_SIZE + capacity) ;
+			if (other != null) {
+				// no other side attached: the content is left by a previous
+				// connection, if any.
+				LONGS.setVolatile(this.mapped, TAIL_OFFSET, 0L) ;
+				LONGS.setVolatile(this.mapped, HEAD_OFFSET, 0L) ;
+				LONGS.setVolatile(this.mapped, CAPACITY_OFFSET, (long) capacity) ;
+				LONGS.setVolatile(this.mapped, FAILED_OFFSET, 0L) ;
+				other.release() ;
+			} else if ((long) LONGS.getVolatile(this.mapped, CAPACITY_OFFSET)
+															!= capacity) {
+				throw new IOException("the ring in " + file +
+						" is used with another capacity.") ;
+			}
+		} catch (IOException e) {
+			this.channel.close() ;
+			throw e ;
+		}
+		this.mapped.position(HEADER_SIZE) ;
+		this.ring = this.mapped.slice().order(ByteOrder.BIG_ENDIAN) ;
+		this.view = this.ring.duplicate() ;
+		this.index = (long) LONGS.getVolatile(this.mapped,
+								writer ? TAIL_OFFSET : HEAD_OFFSET) ;
+		this.cachedIndex = (long) LONGS.getVolatile(this.mapped,
+								writer ? HEAD_OFFSET : TAIL_OFFSET) ;
+	}
+
+	/**
+	 * @return	the file holding the ring.
+	 */
+	public File			getFile()
+	{
+		return this.file ;
+	}
+
+	/**
+	 * @return	the capacity of the ring in bytes.
+	 */
+	public int			capacity()
+	{
+		return this.capacity ;
+	}
+
+	/**
+	 * return the number of bytes written and not yet read, records and
+	 * padding included.
+	 * 
+	 * @return	the number of bytes used in the ring.
+	 */
+	public long			size()
+	{
+		return (long) LONGS.getAcquire(this.mapped, TAIL_OFFSET) -
+							(long) LONGS.getAcquire(this.mapped, HEAD_OFFSET) ;
+	}
+
+	/**
+	 * @return	true if all of the records written have been read.
+	 */
+	public boolean		isEmpty()
+	{
+		return this.size() == 0 ;
+	}
+
+	/**
+	 * round a record length up to the next multiple of 8 bytes.
+	 * 
+	 * @param n	number of bytes.
+	 * @return	the padded number of bytes.
+	 */
+	protected static int	align(int n)
+	{
+		return (n + 7) & ~7 ;
+	}
+
+	/**
+	 * write a record which content is written by <code>w</code>, if there is
+	 * room for it; must be called by the writer side only.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.writer
+	 * pre	w != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param w				writer of the content of the record.
+	 * @return				true if the record has been written, false if the reader must make room first.
+	 * @throws IOException	if <code>w</code> raises one.
+	 * @throws BufferOverflowException	if the record does not fit in the empty ring.
+	 */
+	public boolean		offer(RecordWriter w) throws IOException
+	{
+		assert	this.writer ;
+		assert	w != null ;
+
+		boolean refreshed = false ;
+		while (true) {
+			int pos = (int) (this.index & (this.capacity - 1)) ;
+			long free = this.capacity - (this.index - this.cachedIndex) ;
+			int contiguous = (int) Math.min(free, this.capacity - pos) ;
+			if (contiguous >= 8) {
+				this.view.limit(pos + contiguous).position(pos + 4) ;
+				try {
+					w.write(this.view) ;
+					int length = this.view.position() - pos - 4 ;
+					this.ring.putInt(pos, length) ;
+					this.index += align(4 + length) ;
+					LONGS.setRelease(this.mapped, TAIL_OFFSET, this.index) ;
+					return true ;
+				} catch (BufferOverflowException e) {
+					if (contiguous == this.capacity) {
+						// the record does not fit in the empty ring
+						throw e ;
+					}
+				}
+			}
+			if (contiguous >= 8 && this.capacity - pos <= free) {
+				// the end of the ring stops the record, the reader will
+				// find it at the start.
+				this.ring.putInt(pos, WRAP) ;
+				this.index += this.capacity - pos ;
+				LONGS.setRelease(this.mapped, TAIL_OFFSET, this.index) ;
+			} else if (!refreshed) {
+				this.cachedIndex =
+						(long) LONGS.getAcquire(this.mapped, HEAD_OFFSET) ;
+				refreshed = true ;
+			} else {
+				return false ;
+			}
+		}
+	}
+
+	/**
+	 * read the next record with <code>r</code>, if any; must be called by
+	 * the reader side only.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	!this.writer
+	 * pre	r != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param r				reader of the content of the record.
+	 * @return				true if a record has been read, false if the ring is empty.
+	 * @throws Exception	if <code>r</code> raises one.
+	 */
+	public boolean		poll(RecordReader r) throws Exception
+	{
+		assert	!this.writer ;
+		assert	r != null ;
+
+		while (true) {
+			if (this.index == this.cachedIndex) {
+				this.cachedIndex =
+						(long) LONGS.getAcquire(this.mapped, TAIL_OFFSET) ;
+				if (this.index == this.cachedIndex) {
+					return false ;
+				}
+			}
+			int pos = (int) (this.index & (this.capacity - 1)) ;
+			int length = this.ring.getInt(pos) ;
+			if (length == WRAP) {
+				this.index += this.capacity - pos ;
+				LONGS.setRelease(this.mapped, HEAD_OFFSET, this.index) ;
+				continue ;
+			}
+			this.view.limit(pos + 4 + length).position(pos + 4) ;
+			try {
+				r.read(this.view) ;
+			} finally {
+				this.index += align(4 + length) ;
+				LONGS.setRelease(this.mapped, HEAD_OFFSET, this.index) ;
+			}
+			return true ;
+		}
+	}
+
+	/**
+	 * tell the writer that the reader can no longer pass the records; must
+	 * be called by the reader side only.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	!this.writer
+	 * post	this.isFailed()
+	 * </pre>
+	 */
+	public void			markFailed()
+	{
+		assert	!this.writer ;
+
+		LONGS.setRelease(this.mapped, FAILED_OFFSET, 1L) ;
+	}
+
+	/**
+	 * @return	true if the reader has marked the ring as failed.
+	 */
+	public boolean		isFailed()
+	{
+		return (long) LONGS.getAcquire(this.mapped, FAILED_OFFSET) != 0L ;
+	}
+
+	/**
+	 * return true if the other side is attached to the ring, which fails
+	 * for example when the two sides map files of the same name on
+	 * different hosts.
+	 * 
+	 * @return				true if the other side is attached.
+	 * @throws IOException	if the lock of the other side cannot be tested.
+	 */
+	public boolean		isOtherSideAttached() throws IOException
+	{
+		FileLock other = this.channel.tryLock(
+						this.writer ? READER_LOCK : WRITER_LOCK, 1, false) ;
+		if (other != null) {
+			other.release() ;
+			return false ;
+		}
+		return true ;
+	}
+
+	/**
+	 * detach this side, deleting the file if the other side is detached.
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void			close() throws IOException
+	{
+		if (!this.channel.isOpen()) {
+			return ;
+		}
+		try {
+			this.lock.release() ;
+			FileLock other = this.channel.tryLock(
+						this.writer ? READER_LOCK : WRITER_LOCK, 1, false) ;
+			if (other != null) {
+				other.release() ;
+				this.file.delete() ;
+			}
+		} finally {
+			this.channel.close() ;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package fr.upmc.components.connectors.buffers;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+/**
+ * The interface <code>RingBufferI</code> defines the bounded, non blocking
+ * buffers used by connectors to decouple the components they connect.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The operations never block nor take a lock: <code>offer</code> fails when
+ * the buffer is full and <code>poll</code> when it is empty, the caller
+ * deciding how to wait, usually with a <code>WaitStrategy</code>.  Each
+ * implementation states how many threads may concurrently offer and poll.
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public interface		RingBufferI<E>
+{
+	/**
+	 * add <code>e</code> at the tail of the buffer if it is not full.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	e != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param e	element to be added.
+	 * @return	true if the element has been added, false if the buffer is full.
+	 */
+	public boolean		offer(E e) ;
+
+	/**
+	 * remove and return the element at the head of the buffer, if any.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @return	the element removed, or null if the buffer is empty.
+	 */
+	public E			poll() ;
+
+	/**
+	 * remove at most <code>max</code> elements from the head of the buffer
+	 * and store them in <code>batch</code> from index 0.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	batch != null && max <= batch.length
+	 * post	return >= 0 && return <= max
+	 * </pre>
+	 *
+	 * @param batch	array receiving the elements.
+	 * @param max	maximum number of elements to be removed.
+	 * @return		the number of elements removed.
+	 */
+	public int			drainTo(E[] batch, int max) ;
+
+	/**
+	 * return the number of elements in the buffer, which is only an estimate
+	 * when other threads use the buffer concurrently.
+	 * 
+	 * @return	the number of elements in the buffer.
+	 */
+	public int			size() ;
+
+	/**
+	 * @return	the maximum number of elements in the buffer.
+	 */
+	public int			capacity() ;
+}
@@ -0,0 +1,193 @@
+package fr.upmc.components.connectors.buffers;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <code>SPSCRingBuffer</code> implements a lock-free ring buffer
+ * for one producer thread and one consumer thread.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The elements are stored in an array which length is a power of two, the
+ * producer owning the tail index and the consumer the head index.  Each side
+ * publishes its index with an ordered write (<code>lazySet</code>), which is
+ * enough for the other side to see the element before the index, and keeps a
+ * cached copy of the index of the other side that it only refreshes when
+ * the buffer looks full, respectively empty, so that in the common case
+ * neither offer nor poll reads a cache line written by the other thread.
+ * 
+ * At most one thread may call <code>offer</code> at a time and at most one
+ * thread <code>poll</code> or <code>drainTo</code>; use an
+ * <code>MPMCRingBuffer</code> otherwise.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	0 <= tail - head <= capacity
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			SPSCRingBuffer<E>
+implements	RingBufferI<E>
+{
+	/** elements of the buffer.											*/
+	protected final Object[]	elements ;
+	/** mask giving the index of a sequence number in the array.			*/
+	protected final int			mask ;
+	/** sequence number of the next element to be polled.				*/
+	protected final AtomicLong	head ;
+	/** sequence number of the next element to be offered.				*/
+	protected final AtomicLong	tail ;
+	/** copy of the head index cached by the producer.					*/
+	protected long				producerHeadCache ;
+	/** copy of the tail index cached by the consumer.					*/
+	protected long				consumerTailCache ;
+
+	/**
+	 * create a buffer holding at least <code>capacity</code> elements, the
+	 * capacity being rounded up to a power of two.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	capacity > 0 && capacity <= 1 << 30
+	 * post	this.capacity() >= capacity
+	 * </pre>
+	 *
+	 * @param capacity	minimum capacity of the buffer.
+	 */
+	public				SPSCRingBuffer(int capacity)
+	{
+		super() ;
+
+		assert	capacity > 0 && capacity <= 1 << 30 ;
+
+		int length = Integer.highestOneBit(capacity) ;
+		if (length < capacity) {
+			length <<= 1 ;
+		}
+		this.elements = new Object[length] ;
+		this.mask = length - 1 ;
+		this.head = new AtomicLong() ;
+		this.tail = new AtomicLong() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean		offer(E e)
+	{
+		assert	e != null ;
+
+		long t = this.tail.get() ;
+		if (t - this.producerHeadCache >= this.elements.length) {
+			this.producerHeadCache = this.head.get() ;
+			if (t - this.producerHeadCache >= this.elements.length) {
+				return false ;
+			}
+		}
+		this.elements[(int) t & this.mask] = e ;
+		this.tail.lazySet(t + 1) ;
+		return true ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#poll()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E			poll()
+	{
+		long h = this.head.get() ;
+		if (h >= this.consumerTailCache) {
+			this.consumerTailCache = this.tail.get() ;
+			if (h >= this.consumerTailCache) {
+				return null ;
+			}
+		}
+		int i = (int) h & this.mask ;
+		E e = (E) this.elements[i] ;
+		this.elements[i] = null ;
+		this.head.lazySet(h + 1) ;
+		return e ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#drainTo(java.lang.Object[], int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public int			drainTo(E[] batch, int max)
+	{
+		assert	batch != null && max <= batch.length ;
+
+		long h = this.head.get() ;
+		if (h + max > this.consumerTailCache) {
+			this.consumerTailCache = this.tail.get() ;
+		}
+		int n = (int) Math.min(max, this.consumerTailCache - h) ;
+		for (int k = 0 ; k < n ; k++) {
+			int i = (int) (h + k) & this.mask ;
+			batch[k] = (E) this.elements[i] ;
+			this.elements[i] = null ;
+		}
+		if (n > 0) {
+			this.head.lazySet(h + n) ;
+		}
+		return n ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#size()
+	 */
+	@Override
+	public int			size()
+	{
+		return (int) Math.max(0L, this.tail.get() - this.head.get()) ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.buffers.RingBufferI#capacity()
+	 */
+	@Override
+	public int			capacity()
+	{
+		return this.elements.length ;
+	}
+}
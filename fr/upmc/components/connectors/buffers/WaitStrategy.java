@@ -0,0 +1,125 @@
+package fr.upmc.components.connectors.buffers;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The enumeration <code>WaitStrategy</code> defines how a thread waits for
+ * a ring buffer to become non empty or non full.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * A waiting thread calls <code>idle</code> in a loop with the number of
+ * rounds it has already waited, retrying its operation after each call:
+ * <code>SPIN</code> busy waits, giving the lowest latency but burning a
+ * processor, <code>YIELD</code> spins a few rounds then yields the processor
+ * to other threads, and <code>PARK</code> spins, yields, then parks the
+ * thread for <code>PARK_NANOS</code> nanoseconds, which costs a few tens of
+ * microseconds of latency but no processor time when the buffer stays idle.
+ * None of them needs the other side to signal the waiting thread, so the
+ * buffers stay free of locks and condition variables.
+ * 
+ * All of them throw <code>InterruptedException</code> when the waiting
+ * thread is interrupted.
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public enum			WaitStrategy
+{
+	SPIN {
+		@Override
+		public void		idle(int round) throws InterruptedException
+		{
+			checkInterrupted() ;
+		}
+	},
+	YIELD {
+		@Override
+		public void		idle(int round) throws InterruptedException
+		{
+			checkInterrupted() ;
+			if (round >= SPIN_ROUNDS) {
+				Thread.yield() ;
+			}
+		}
+	},
+	PARK {
+		@Override
+		public void		idle(int round) throws InterruptedException
+		{
+			checkInterrupted() ;
+			if (round >= 2 * SPIN_ROUNDS) {
+				LockSupport.parkNanos(PARK_NANOS) ;
+			} else if (round >= SPIN_ROUNDS) {
+				Thread.yield() ;
+			}
+		}
+	} ;
+
+	/** number of rounds busy waiting before yielding; is configurable.	*/
+	public static int	SPIN_ROUNDS = 100 ;
+	/** duration in nanoseconds of each park; is configurable.			*/
+	public static long	PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50) ;
+
+	/**
+	 * wait once for the condition of the caller to change.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	round >= 0
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param round					number of times the caller has already waited for the same condition.
+	 * @throws InterruptedException	if the current thread is interrupted.
+	 */
+	public abstract void	idle(int round) throws InterruptedException ;
+
+	/**
+	 * throw <code>InterruptedException</code>, clearing the interrupted status
+	 * of the current thread, if it has been interrupted.
+	 * 
+	 * @throws InterruptedException	if the current thread is interrupted.
+	 */
+	protected static void	checkInterrupted() throws InterruptedException
+	{
+		if (Thread.interrupted()) {
+			throw new InterruptedException() ;
+		}
+	}
+}
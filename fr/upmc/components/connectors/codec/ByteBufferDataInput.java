@@ -0,0 +1,294 @@
+package fr.upmc.components.connectors.codec;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The class <code>ByteBufferDataInput</code> reads the primitive values of
+ * the <code>DataInput</code> interface directly from a byte buffer, so that
+ * codecs can decode data in place, for example from a memory-mapped file.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The values are read at the position of the buffer, in the big endian
+ * order of <code>DataInputStream</code>, hence this input reads the bytes
+ * written by a <code>DataOutputStream</code> or a
+ * <code>ByteBufferDataOutput</code>.  Reading beyond the limit of the
+ * buffer raises an <code>EOFException</code>.  The buffer can be changed
+ * between reads to reuse the same input.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.buffer.order() == ByteOrder.BIG_ENDIAN
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			ByteBufferDataInput
+implements	DataInput
+{
+	/** buffer read from.												*/
+	protected ByteBuffer	buffer ;
+
+	/**
+	 * create an input reading from <code>buffer</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	buffer != null
+	 * post	this.getBuffer() == buffer
+	 * </pre>
+	 *
+	 * @param buffer	buffer to read from, its order being set to big endian.
+	 */
+	public				ByteBufferDataInput(ByteBuffer buffer)
+	{
+		this.setBuffer(buffer) ;
+	}
+
+	/**
+	 * @return	the buffer read from.
+	 */
+	public ByteBuffer	getBuffer()
+	{
+		return this.buffer ;
+	}
+
+	/**
+	 * make the following reads come from <code>buffer</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	buffer != null
+	 * post	this.getBuffer() == buffer
+	 * </pre>
+	 *
+	 * @param buffer	buffer to read from, its order being set to big endian.
+	 */
+	public void			setBuffer(ByteBuffer buffer)
+	{
+		assert	buffer != null ;
+
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN) ;
+	}
+
+	/**
+	 * check that <code>n</code> bytes remain to be read.
+	 * 
+	 * @param n				number of bytes to be read.
+	 * @throws EOFException	if less than <code>n</code> bytes remain.
+	 */
+	protected void		need(int n) throws EOFException
+	{
+		if (this.buffer.remaining() < n) {
+			throw new EOFException() ;
+		}
+	}
+
+	/**
+	 * @see java.io.DataInput#readFully(byte[])
+	 */
+	@Override
+	public void			readFully(byte[] b) throws IOException
+	{
+		this.readFully(b, 0, b.length) ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readFully(byte[], int, int)
+	 */
+	@Override
+	public void			readFully(byte[] b, int off, int len)
+	throws IOException
+	{
+		this.need(len) ;
+		this.buffer.get(b, off, len) ;
+	}
+
+	/**
+	 * @see java.io.DataInput#skipBytes(int)
+	 */
+	@Override
+	public int			skipBytes(int n)
+	{
+		int skipped = Math.max(0, Math.min(n, this.buffer.remaining())) ;
+		this.buffer.position(this.buffer.position() + skipped) ;
+		return skipped ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readBoolean()
+	 */
+	@Override
+	public boolean		readBoolean() throws IOException
+	{
+		return this.readByte() != 0 ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readByte()
+	 */
+	@Override
+	public byte			readByte() throws IOException
+	{
+		this.need(1) ;
+		return this.buffer.get() ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readUnsignedByte()
+	 */
+	@Override
+	public int			readUnsignedByte() throws IOException
+	{
+		return this.readByte() & 0xFF ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readShort()
+	 */
+	@Override
+	public short		readShort() throws IOException
+	{
+		this.need(2) ;
+		return this.buffer.getShort() ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readUnsignedShort()
+	 */
+	@Override
+	public int			readUnsignedShort() throws IOException
+	{
+		return this.readShort() & 0xFFFF ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readChar()
+	 */
+	@Override
+	public char			readChar() throws IOException
+	{
+		this.need(2) ;
+		return this.buffer.getChar() ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readInt()
+	 */
+	@Override
+	public int			readInt() throws IOException
+	{
+		this.need(4) ;
+		return this.buffer.getInt() ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readLong()
+	 */
+	@Override
+	public long			readLong() throws IOException
+	{
+		this.need(8) ;
+		return this.buffer.getLong() ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readFloat()
+	 */
+	@Override
+	public float		readFloat() throws IOException
+	{
+		this.need(4) ;
+		return this.buffer.getFloat() ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readDouble()
+	 */
+	@Override
+	public double		readDouble() throws IOException
+	{
+		this.need(8) ;
+		return this.buffer.getDouble() ;
+	}
+
+	/**
+	 * read the bytes up to the next end of line, each one being a character.
+	 * 
+	 * @see java.io.DataInput#readLine()
+	 */
+	@Override
+	public String		readLine()
+	{
+		if (!this.buffer.hasRemaining()) {
+			return null ;
+		}
+		StringBuilder sb = new StringBuilder() ;
+		while (this.buffer.hasRemaining()) {
+			int c = this.buffer.get() & 0xFF ;
+			if (c == '\n') {
+				break ;
+			}
+			if (c == '\r') {
+				int p = this.buffer.position() ;
+				if (this.buffer.hasRemaining() && this.buffer.get(p) == '\n') {
+					this.buffer.position(p + 1) ;
+				}
+				break ;
+			}
+			sb.append((char) c) ;
+		}
+		return sb.toString() ;
+	}
+
+	/**
+	 * @see java.io.DataInput#readUTF()
+	 */
+	@Override
+	public String		readUTF() throws IOException
+	{
+		return DataInputStream.readUTF(this) ;
+	}
+}
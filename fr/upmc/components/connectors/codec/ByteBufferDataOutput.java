@@ -0,0 +1,275 @@
+package fr.upmc.components.connectors.codec;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.DataOutput;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The class <code>ByteBufferDataOutput</code> writes the primitive values of
+ * the <code>DataOutput</code> interface directly into a byte buffer, so that
+ * codecs can encode data in place, for example in a memory-mapped file.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The values are written at the position of the buffer, in the big endian
+ * order of <code>DataOutputStream</code> whatever the order of the buffer,
+ * hence the bytes written are the same as with a
+ * <code>DataOutputStream</code>.  Writing beyond the limit of the buffer
+ * raises a <code>BufferOverflowException</code>, letting the caller make
+ * room and write the value again.  The buffer can be changed between writes
+ * to reuse the same output.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.buffer.order() == ByteOrder.BIG_ENDIAN
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			ByteBufferDataOutput
+implements	DataOutput
+{
+	/** buffer written to.												*/
+	protected ByteBuffer	buffer ;
+
+	/**
+	 * create an output writing to <code>buffer</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	buffer != null
+	 * post	this.getBuffer() == buffer
+	 * </pre>
+	 *
+	 * @param buffer	buffer to write to, its order being set to big endian.
+	 */
+	public				ByteBufferDataOutput(ByteBuffer buffer)
+	{
+		this.setBuffer(buffer) ;
+	}
+
+	/**
+	 * @return	the buffer written to.
+	 */
+	public ByteBuffer	getBuffer()
+	{
+		return this.buffer ;
+	}
+
+	/**
+	 * make the following writes go to <code>buffer</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	buffer != null
+	 * post	this.getBuffer() == buffer
+	 * </pre>
+	 *
+	 * @param buffer	buffer to write to, its order being set to big endian.
+	 */
+	public void			setBuffer(ByteBuffer buffer)
+	{
+		assert	buffer != null ;
+
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#write(int)
+	 */
+	@Override
+	public void			write(int b)
+	{
+		this.buffer.put((byte) b) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#write(byte[])
+	 */
+	@Override
+	public void			write(byte[] b)
+	{
+		this.buffer.put(b) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#write(byte[], int, int)
+	 */
+	@Override
+	public void			write(byte[] b, int off, int len)
+	{
+		this.buffer.put(b, off, len) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeBoolean(boolean)
+	 */
+	@Override
+	public void			writeBoolean(boolean v)
+	{
+		this.buffer.put(v ? (byte) 1 : (byte) 0) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeByte(int)
+	 */
+	@Override
+	public void			writeByte(int v)
+	{
+		this.buffer.put((byte) v) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeShort(int)
+	 */
+	@Override
+	public void			writeShort(int v)
+	{
+		this.buffer.putShort((short) v) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeChar(int)
+	 */
+	@Override
+	public void			writeChar(int v)
+	{
+		this.buffer.putChar((char) v) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeInt(int)
+	 */
+	@Override
+	public void			writeInt(int v)
+	{
+		this.buffer.putInt(v) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeLong(long)
+	 */
+	@Override
+	public void			writeLong(long v)
+	{
+		this.buffer.putLong(v) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeFloat(float)
+	 */
+	@Override
+	public void			writeFloat(float v)
+	{
+		this.buffer.putFloat(v) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeDouble(double)
+	 */
+	@Override
+	public void			writeDouble(double v)
+	{
+		this.buffer.putDouble(v) ;
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeBytes(java.lang.String)
+	 */
+	@Override
+	public void			writeBytes(String s)
+	{
+		for (int i = 0 ; i < s.length() ; i++) {
+			this.buffer.put((byte) s.charAt(i)) ;
+		}
+	}
+
+	/**
+	 * @see java.io.DataOutput#writeChars(java.lang.String)
+	 */
+	@Override
+	public void			writeChars(String s)
+	{
+		for (int i = 0 ; i < s.length() ; i++) {
+			this.buffer.putChar(s.charAt(i)) ;
+		}
+	}
+
+	/**
+	 * write <code>s</code> in the modified UTF-8 encoding of
+	 * <code>DataOutputStream</code>.
+	 * 
+	 * @see java.io.DataOutput#writeUTF(java.lang.String)
+	 */
+	@Override
+	public void			writeUTF(String s) throws UTFDataFormatException
+	{
+		int length = 0 ;
+		for (int i = 0 ; i < s.length() ; i++) {
+			char c = s.charAt(i) ;
+			if (c >= 0x0001 && c <= 0x007F) {
+				length++ ;
+			} else if (c > 0x07FF) {
+				length += 3 ;
+			} else {
+				length += 2 ;
+			}
+		}
+		if (length > 65535) {
+			throw new UTFDataFormatException(
+								"encoded string too long: " + length) ;
+		}
+		this.buffer.putShort((short) length) ;
+		for (int i = 0 ; i < s.length() ; i++) {
+			char c = s.charAt(i) ;
+			if (c >= 0x0001 && c <= 0x007F) {
+				this.buffer.put((byte) c) ;
+			} else if (c > 0x07FF) {
+				this.buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F))) ;
+				this.buffer.put((byte) (0x80 | ((c >> 6) & 0x3F))) ;
+				this.buffer.put((byte) (0x80 | (c & 0x3F))) ;
+			} else {
+				this.buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F))) ;
+				this.buffer.put((byte) (0x80 | (c & 0x3F))) ;
+			}
+		}
+	}
+}
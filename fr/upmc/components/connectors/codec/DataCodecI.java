@@ -0,0 +1,126 @@
+package fr.upmc.components.connectors.codec;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The interface <code>DataCodecI</code> defines the binary encoding of the
+ * data of one class exchanged through data connectors between JVMs.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * A codec writes the state of a datum without any class descriptor, the
+ * receiving JVM knowing which codec to use from the codec identifier written
+ * before the datum by <code>DataCodecs</code>.  This identifier is computed
+ * from the format returned by <code>getFormat</code>, which must therefore be
+ * the same in all of the JVMs exchanging the data and change whenever the
+ * encoding changes, so that incompatible codecs are not mixed up.
+ * 
+ * Codecs are registered in <code>DataCodecs</code>, either explicitly or as
+ * service providers of this interface (listed in the file
+ * <code>META-INF/services/fr.upmc.components.connectors.codec.DataCodecI</code>
+ * on the class path, found in <code>resources</code> for the codecs of the
+ * component model, and then requiring a public no-argument constructor).
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public interface		DataCodecI<T>
+{
+	/**
+	 * return the class of the data encoded by this codec; subclasses of this
+	 * class are not encoded by this codec.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	the class of the data encoded by this codec.
+	 */
+	public Class<T>		getDataClass() ;
+
+	/**
+	 * return a description of the encoding, identical in all of the JVMs
+	 * using this codec.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	a description of the encoding.
+	 */
+	public String		getFormat() ;
+
+	/**
+	 * write the state of <code>d</code> to <code>out</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	d != null && d.getClass() == this.getDataClass()
+	 * pre	out != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param d		datum to be encoded.
+	 * @param out	output to write to.
+	 * @throws IOException	if the datum cannot be written.
+	 */
+	public void			encode(T d, DataOutput out) throws IOException ;
+
+	/**
+	 * read from <code>in</code> a datum written by <code>encode</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	in != null
+	 * post	return != null && return.getClass() == this.getDataClass()
+	 * </pre>
+	 *
+	 * @param in	input to read from.
+	 * @return		the datum read.
+	 * @throws IOException	if the datum cannot be read.
+	 */
+	public T			decode(DataInput in) throws IOException ;
+}
@@ -0,0 +1,373 @@
+package fr.upmc.components.connectors.codec;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class <code>DataCodecs</code> holds the codecs registered in the
+ * current JVM and encodes data with them, or with Java serialization for the
+ * classes having no codec.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * An encoded datum is the identifier of its codec, an <code>int</code>,
+ * followed by the encoding of the datum by the codec.  The identifier is the
+ * hash code of the format of the codec, the identifier
+ * <code>JAVA_SERIALIZATION</code> (0) denoting data serialized with Java
+ * serialization, written as their length followed by their bytes.  The same
+ * codecs must hence be registered in the JVMs exchanging data, usually by the
+ * deployment code (for example the constructor of the CVM) or as service
+ * providers of <code>DataCodecI</code>, which are registered when this class
+ * is loaded.  Registering two codecs of different formats with the same
+ * identifier is refused.
+ * 
+ * Data pushed by a <code>DataConnector</code> to a remote component are
+ * replaced by <code>EncodedData</code> when their class has a codec, so that
+ * RMI serializes them through this codec.  Data pulled from a remote
+ * component are returned directly by its inbound port; their class can
+ * define the following method to get the same encoding:
+ * 
+ * <pre>
+ *   protected Object writeReplace() { return DataCodecs.replace(this) ; }
+ * </pre>
+ * 
+ * The socket transport encodes directly the data having a codec, without
+ * Java serialization at all.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			DataCodecs
+{
+	/** identifier of the data encoded with Java serialization.			*/
+	public static final int		JAVA_SERIALIZATION = 0 ;
+
+	/** codecs indexed by the class of their data.						*/
+	protected static final ConcurrentHashMap<Class<?>,DataCodecI<?>>
+						CODECS_BY_CLASS =
+								new ConcurrentHashMap<Class<?>,DataCodecI<?>>() ;
+	/** codecs indexed by their identifier.								*/
+	protected static final ConcurrentHashMap<Integer,DataCodecI<?>>
+						CODECS_BY_ID =
+								new ConcurrentHashMap<Integer,DataCodecI<?>>() ;
+
+	static {
+		for (DataCodecI<?> codec : ServiceLoader.load(DataCodecI.class)) {
+			DataCodecs.register(codec) ;
+		}
+	}
+
+	/**
+	 * return the identifier of the codecs having the format
+	 * <code>format</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	format != null
+	 * post	return != JAVA_SERIALIZATION
+	 * </pre>
+	 *
+	 * @param format	format of a codec.
+	 * @return			the identifier of the codec.
+	 */
+	public static int	idOf(String format)
+	{
+		int id = format.hashCode() ;
+		return id == JAVA_SERIALIZATION ? 1 : id ;
+	}
+
+	/**
+	 * register <code>codec</code>, replacing the codec previously registered
+	 * for the same class if any.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	codec != null
+	 * post	DataCodecs.codecFor(codec.getDataClass()) == codec
+	 * </pre>
+	 *
+	 * @param codec	codec to be registered.
+	 * @return		the identifier of the codec.
+	 * @throws IllegalArgumentException	if another codec has the same identifier.
+	 */
+	public static synchronized int	register(DataCodecI<?> codec)
+	{
+		assert	codec != null ;
+
+		int id = DataCodecs.idOf(codec.getFormat()) ;
+		DataCodecI<?> other = CODECS_BY_ID.get(id) ;
+		if (other != null && !other.getFormat().equals(codec.getFormat())) {
+			throw new IllegalArgumentException(
+							"codecs " + codec.getFormat() + " and " +
+							other.getFormat() + " have the same identifier.") ;
+		}
+		DataCodecs.unregister(codec.getDataClass()) ;
+		CODECS_BY_ID.put(id, codec) ;
+		CODECS_BY_CLASS.put(codec.getDataClass(), codec) ;
+		return id ;
+	}
+
+	/**
+	 * register a <code>SchemaDataCodec</code> for <code>dataClass</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	dataClass != null
+	 * post	DataCodecs.codecFor(dataClass) != null
+	 * </pre>
+	 *
+	 * @param dataClass	class of the data to be encoded.
+	 * @return			the identifier of the codec.
+	 * @throws IllegalArgumentException	if the class has no schema.
+	 */
+	public static <T> int	register(Class<T> dataClass)
+	{
+		return DataCodecs.register(new SchemaDataCodec<T>(dataClass)) ;
+	}
+
+	/**
+	 * unregister the codec of <code>dataClass</code>, if any, its data being
+	 * then serialized with Java serialization.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	dataClass != null
+	 * post	DataCodecs.codecFor(dataClass) == null
+	 * </pre>
+	 *
+	 * @param dataClass	class which codec is unregistered.
+	 */
+	public static synchronized void	unregister(Class<?> dataClass)
+	{
+		DataCodecI<?> codec = CODECS_BY_CLASS.remove(dataClass) ;
+		if (codec != null) {
+			CODECS_BY_ID.remove(DataCodecs.idOf(codec.getFormat())) ;
+		}
+	}
+
+	/**
+	 * return the codec registered for <code>dataClass</code>, or null.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	dataClass != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param dataClass	class of the data.
+	 * @return			the codec of the class or null if none.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> DataCodecI<T>	codecFor(Class<T> dataClass)
+	{
+		return (DataCodecI<T>) CODECS_BY_CLASS.get(dataClass) ;
+	}
+
+	/**
+	 * return true if <code>d</code> is encoded by a registered codec.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param d	datum to be tested.
+	 * @return	true if the class of <code>d</code> has a codec.
+	 */
+	public static boolean	hasCodec(Object d)
+	{
+		return d != null && CODECS_BY_CLASS.containsKey(d.getClass()) ;
+	}
+
+	/**
+	 * return <code>d</code> wrapped in an <code>EncodedData</code> if its
+	 * class has a codec, and <code>d</code> itself otherwise.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null || d == null
+	 * </pre>
+	 *
+	 * @param d	datum to be sent to another JVM.
+	 * @return	the object to be serialized in place of <code>d</code>.
+	 */
+	public static Object	replace(Object d)
+	{
+		return DataCodecs.hasCodec(d) ? new EncodedData(d) : d ;
+	}
+
+	/**
+	 * write the identifier of the codec of <code>d</code> followed by its
+	 * encoding, or the datum serialized with Java serialization if its class
+	 * has no codec.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	d != null && out != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param d		datum to be encoded.
+	 * @param out	output to write to.
+	 * @throws IOException	if the datum cannot be written.
+	 */
+	@SuppressWarnings("unchecked")
+	public static void	encode(Object d, DataOutput out) throws IOException
+	{
+		assert	d != null && out != null ;
+
+		DataCodecI<Object> codec =
+						(DataCodecI<Object>) CODECS_BY_CLASS.get(d.getClass()) ;
+		if (codec != null) {
+			out.writeInt(DataCodecs.idOf(codec.getFormat())) ;
+			codec.encode(d, out) ;
+		} else {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+			ObjectOutputStream oos = new ObjectOutputStream(bytes) ;
+			oos.writeObject(d) ;
+			oos.close() ;
+			out.writeInt(JAVA_SERIALIZATION) ;
+			out.writeInt(bytes.size()) ;
+			out.write(bytes.toByteArray()) ;
+		}
+	}
+
+	/**
+	 * read a datum written by <code>encode</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	in != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param in	input to read from.
+	 * @return		the datum read.
+	 * @throws IOException	if no codec is registered with the identifier read or if the datum cannot be read.
+	 */
+	public static Object	decode(DataInput in) throws IOException
+	{
+		assert	in != null ;
+
+		int id = in.readInt() ;
+		if (id == JAVA_SERIALIZATION) {
+			byte[] b = new byte[in.readInt()] ;
+			in.readFully(b) ;
+			ObjectInputStream ois =
+						new ObjectInputStream(new ByteArrayInputStream(b)) ;
+			try {
+				return ois.readObject() ;
+			} catch (ClassNotFoundException e) {
+				throw new IOException(e) ;
+			} finally {
+				ois.close() ;
+			}
+		}
+		DataCodecI<?> codec = CODECS_BY_ID.get(id) ;
+		if (codec == null) {
+			throw new IOException("no data codec registered with identifier "
+																	+ id) ;
+		}
+		return codec.decode(in) ;
+	}
+
+	/**
+	 * return the bytes written by <code>encode</code> for <code>d</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	d != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param d	datum to be encoded.
+	 * @return	the encoded datum.
+	 * @throws IOException	if the datum cannot be written.
+	 */
+	public static byte[]	toBytes(Object d) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+		DataCodecs.encode(d, new DataOutputStream(bytes)) ;
+		return bytes.toByteArray() ;
+	}
+
+	/**
+	 * return the datum encoded in <code>b</code> by <code>toBytes</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	b != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param b	encoded datum.
+	 * @return	the datum decoded.
+	 * @throws IOException	if the datum cannot be read.
+	 */
+	public static Object	fromBytes(byte[] b) throws IOException
+	{
+		return DataCodecs.decode(
+						new DataInputStream(new ByteArrayInputStream(b))) ;
+	}
+}
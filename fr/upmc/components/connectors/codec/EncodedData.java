@@ -0,0 +1,141 @@
+package fr.upmc.components.connectors.codec;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+
+import fr.upmc.components.interfaces.DataOfferedI;
+import fr.upmc.components.interfaces.DataRequiredI;
+
+/**
+ * The class <code>EncodedData</code> carries a datum through Java
+ * serialization, hence through RMI, encoded by its codec.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * An encoded data is serialized as its class descriptor followed by the
+ * datum encoded by <code>DataCodecs</code>, and resolves to the decoded datum
+ * when deserialized, so the receiver never sees the carrier itself.  The
+ * class implements both data interfaces so that connectors can pass it in
+ * place of the data they carry.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			EncodedData
+implements	Externalizable,
+			DataOfferedI.DataI,
+			DataRequiredI.DataI
+{
+	private static final long serialVersionUID = 1L;
+
+	/** the datum carried.												*/
+	protected Object	data ;
+
+	/**
+	 * constructor used by Java serialization only.
+	 */
+	public				EncodedData()
+	{
+		super() ;
+	}
+
+	/**
+	 * create a carrier for <code>data</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	data != null
+	 * post	this.getData() == data
+	 * </pre>
+	 *
+	 * @param data	the datum carried.
+	 */
+	public				EncodedData(Object data)
+	{
+		super() ;
+
+		assert	data != null ;
+
+		this.data = data ;
+	}
+
+	/**
+	 * @return	the datum carried.
+	 */
+	public Object		getData()
+	{
+		return this.data ;
+	}
+
+	/**
+	 * @see java.io.Externalizable#writeExternal(java.io.ObjectOutput)
+	 */
+	@Override
+	public void			writeExternal(ObjectOutput out) throws IOException
+	{
+		DataCodecs.encode(this.data, out) ;
+	}
+
+	/**
+	 * @see java.io.Externalizable#readExternal(java.io.ObjectInput)
+	 */
+	@Override
+	public void			readExternal(ObjectInput in) throws IOException
+	{
+		this.data = DataCodecs.decode(in) ;
+	}
+
+	/**
+	 * replace the carrier by the datum it carries when deserialized.
+	 * 
+	 * @return	the datum carried.
+	 * @throws ObjectStreamException	never.
+	 */
+	protected Object	readResolve() throws ObjectStreamException
+	{
+		return this.data ;
+	}
+}
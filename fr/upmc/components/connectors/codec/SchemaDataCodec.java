@@ -0,0 +1,349 @@
+package fr.upmc.components.connectors.codec;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The class <code>SchemaDataCodec</code> implements a codec derived from the
+ * fields of a data class, all of which being of a primitive type or strings,
+ * and which has a constructor without parameters.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The schema of a class is the list of its instance fields that are neither
+ * static nor transient, including the inherited ones, ordered from the top
+ * of the class hierarchy down and by name within each class.  A datum is
+ * encoded as the values of these fields in this order, without any tag nor
+ * name: a primitive value takes its size in bytes, as written by
+ * <code>DataOutput</code>, and a string its length followed by its UTF-8
+ * bytes, a length of -1 denoting null.  Hence, a datum carrying one
+ * <code>double</code> is encoded in eight bytes.
+ * 
+ * The codec creates the decoded data with the constructor without
+ * parameters of their class, which may be protected or private to keep it
+ * out of the API of the class, and then sets their fields, final ones
+ * included.  Classes that cannot offer such a constructor must register a
+ * codec of their own through <code>DataCodecs.register(DataCodecI)</code>.
+ * The format of the codec lists the class name and the
+ * schema, so that JVMs having different versions of the class do not share
+ * the same codec identifier.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	fields.length == kinds.length
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			SchemaDataCodec<T>
+implements	DataCodecI<T>
+{
+	/** kind of the string fields, the other ones using their JVM type
+	 *  descriptor.														*/
+	protected static final char		STRING_KIND = 'T' ;
+
+	/** class of the encoded data.										*/
+	protected final Class<T>		dataClass ;
+	/** fields of the schema, in encoding order.						*/
+	protected final Field[]			fields ;
+	/** kind of each field of the schema.								*/
+	protected final char[]			kinds ;
+	/** constructor without parameters of the data class.				*/
+	protected final Constructor<T>	instantiator ;
+	/** format of the codec.											*/
+	protected final String			format ;
+
+	/**
+	 * create the codec of the data class <code>dataClass</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	dataClass != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param dataClass	class of the data to be encoded.
+	 * @throws IllegalArgumentException	if the class has no schema or no constructor without parameters.
+	 */
+	public				SchemaDataCodec(Class<T> dataClass)
+	{
+		super() ;
+
+		assert	dataClass != null ;
+
+		if (!SchemaDataCodec.isEncodable(dataClass)) {
+			throw new IllegalArgumentException(
+							dataClass.getName() + " has no constructor " +
+							"without parameters or has fields that are " +
+							"neither of a primitive type nor strings.") ;
+		}
+		this.dataClass = dataClass ;
+		List<Field> schema = SchemaDataCodec.schemaOf(dataClass) ;
+		this.fields = schema.toArray(new Field[schema.size()]) ;
+		this.kinds = new char[this.fields.length] ;
+		StringBuilder sb = new StringBuilder(dataClass.getName()) ;
+		sb.append('{') ;
+		for (int i = 0 ; i < this.fields.length ; i++) {
+			this.fields[i].setAccessible(true) ;
+			this.kinds[i] = SchemaDataCodec.kindOf(this.fields[i].getType()) ;
+			sb.append(this.fields[i].getName()).append(':').
+											append(this.kinds[i]).append(';') ;
+		}
+		this.format = sb.append('}').toString() ;
+		try {
+			this.instantiator = dataClass.getDeclaredConstructor() ;
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(e) ;
+		}
+		this.instantiator.setAccessible(true) ;
+	}
+
+	/**
+	 * return true if <code>c</code> is a concrete class which has a
+	 * constructor without parameters and which instance fields are all of a
+	 * primitive type or strings.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param c	class to be tested.
+	 * @return	true if a schema codec can be created for <code>c</code>.
+	 */
+	public static boolean	isEncodable(Class<?> c)
+	{
+		assert	c != null ;
+
+		if (c.isInterface() || c.isArray() || c.isPrimitive() ||
+									Modifier.isAbstract(c.getModifiers())) {
+			return false ;
+		}
+		try {
+			c.getDeclaredConstructor() ;
+		} catch (NoSuchMethodException e) {
+			return false ;
+		}
+		for (Field f : SchemaDataCodec.schemaOf(c)) {
+			if (SchemaDataCodec.kindOf(f.getType()) == 0) {
+				return false ;
+			}
+		}
+		return true ;
+	}
+
+	/**
+	 * return the fields of the schema of <code>c</code> in encoding order.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param c	class which schema is returned.
+	 * @return	the fields of the schema of <code>c</code>.
+	 */
+	protected static List<Field>	schemaOf(Class<?> c)
+	{
+		List<Class<?>> hierarchy = new ArrayList<Class<?>>() ;
+		for (Class<?> k = c ; k != null && k != Object.class ;
+													k = k.getSuperclass()) {
+			hierarchy.add(0, k) ;
+		}
+		List<Field> schema = new ArrayList<Field>() ;
+		for (Class<?> k : hierarchy) {
+			Field[] declared = k.getDeclaredFields() ;
+			Arrays.sort(declared, new Comparator<Field>() {
+								@Override
+								public int compare(Field f1, Field f2) {
+									return f1.getName().compareTo(f2.getName()) ;
+								}
+							}) ;
+			for (Field f : declared) {
+				int m = f.getModifiers() ;
+				if (!Modifier.isStatic(m) && !Modifier.isTransient(m)) {
+					schema.add(f) ;
+				}
+			}
+		}
+		return schema ;
+	}
+
+	/**
+	 * return the kind of the fields of type <code>type</code>, or 0 if such
+	 * fields cannot be encoded.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	type != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param type	type of a field.
+	 * @return		the kind of the field, or 0.
+	 */
+	protected static char	kindOf(Class<?> type)
+	{
+		if (type == String.class) {
+			return STRING_KIND ;
+		} else if (type == boolean.class) {
+			return 'Z' ;
+		} else if (type == byte.class) {
+			return 'B' ;
+		} else if (type == short.class) {
+			return 'S' ;
+		} else if (type == char.class) {
+			return 'C' ;
+		} else if (type == int.class) {
+			return 'I' ;
+		} else if (type == long.class) {
+			return 'J' ;
+		} else if (type == float.class) {
+			return 'F' ;
+		} else if (type == double.class) {
+			return 'D' ;
+		} else {
+			return 0 ;
+		}
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.codec.DataCodecI#getDataClass()
+	 */
+	@Override
+	public Class<T>		getDataClass()
+	{
+		return this.dataClass ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.codec.DataCodecI#getFormat()
+	 */
+	@Override
+	public String		getFormat()
+	{
+		return this.format ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.codec.DataCodecI#encode(java.lang.Object, java.io.DataOutput)
+	 */
+	@Override
+	public void			encode(T d, DataOutput out) throws IOException
+	{
+		assert	d != null && d.getClass() == this.dataClass ;
+
+		try {
+			for (int i = 0 ; i < this.fields.length ; i++) {
+				Field f = this.fields[i] ;
+				switch (this.kinds[i]) {
+				case 'Z' : out.writeBoolean(f.getBoolean(d)) ; break ;
+				case 'B' : out.writeByte(f.getByte(d)) ; break ;
+				case 'S' : out.writeShort(f.getShort(d)) ; break ;
+				case 'C' : out.writeChar(f.getChar(d)) ; break ;
+				case 'I' : out.writeInt(f.getInt(d)) ; break ;
+				case 'J' : out.writeLong(f.getLong(d)) ; break ;
+				case 'F' : out.writeFloat(f.getFloat(d)) ; break ;
+				case 'D' : out.writeDouble(f.getDouble(d)) ; break ;
+				default :
+					String s = (String) f.get(d) ;
+					if (s == null) {
+						out.writeInt(-1) ;
+					} else {
+						byte[] b = s.getBytes(StandardCharsets.UTF_8) ;
+						out.writeInt(b.length) ;
+						out.write(b) ;
+					}
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new IOException(e) ;
+		}
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.codec.DataCodecI#decode(java.io.DataInput)
+	 */
+	@Override
+	public T			decode(DataInput in) throws IOException
+	{
+		try {
+			T d = this.instantiator.newInstance() ;
+			for (int i = 0 ; i < this.fields.length ; i++) {
+				Field f = this.fields[i] ;
+				switch (this.kinds[i]) {
+				case 'Z' : f.setBoolean(d, in.readBoolean()) ; break ;
+				case 'B' : f.setByte(d, in.readByte()) ; break ;
+				case 'S' : f.setShort(d, in.readShort()) ; break ;
+				case 'C' : f.setChar(d, in.readChar()) ; break ;
+				case 'I' : f.setInt(d, in.readInt()) ; break ;
+				case 'J' : f.setLong(d, in.readLong()) ; break ;
+				case 'F' : f.setFloat(d, in.readFloat()) ; break ;
+				case 'D' : f.setDouble(d, in.readDouble()) ; break ;
+				default :
+					int length = in.readInt() ;
+					if (length < 0) {
+						f.set(d, null) ;
+					} else {
+						byte[] b = new byte[length] ;
+						in.readFully(b) ;
+						f.set(d, new String(b, StandardCharsets.UTF_8)) ;
+					}
+				}
+			}
+			return d ;
+		} catch (ReflectiveOperationException e) {
+			throw new IOException(e) ;
+		}
+	}
+}
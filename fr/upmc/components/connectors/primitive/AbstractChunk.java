@@ -0,0 +1,346 @@
+package fr.upmc.components.connectors.primitive;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import fr.upmc.components.connectors.codec.DataCodecI;
+import fr.upmc.components.interfaces.DataOfferedI;
+import fr.upmc.components.interfaces.DataRequiredI;
+
+/**
+ * The class <code>AbstractChunk</code> defines the common part of the data
+ * carrying a sequence of values of a primitive type in a preallocated array.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * A chunk is a datum of the data interfaces holding up to
+ * <code>capacity()</code> values, of which the first <code>length()</code>
+ * are significant, so that a stream of samples is passed without boxing each
+ * sample into an object of its own.  Chunks are obtained from the pool of
+ * their class, filled, then sent or returned like any other datum, through
+ * the existing data ports and connectors; the component consuming a chunk
+ * calls <code>release</code> once it has read its values, which returns the
+ * chunk to its pool, so that in a steady state streams allocate no memory.
+ * A chunk must not be used after being released, nor by the producer once
+ * it has been sent.  When the chunk is sent to a remote requiring component,
+ * the data connector releases it once it has been encoded, as the consumer
+ * gets a copy taken from the pool of its own JVM.
+ * 
+ * Between JVMs, chunks are written by the codecs of their class, subclasses
+ * of <code>ChunkCodec</code> declared as service providers of
+ * <code>DataCodecI</code>, as their length followed by their values, and
+ * read into chunks taken from the pool of the receiving JVM.  Chunks are
+ * also externalizable with the same encoding when they are serialized by
+ * Java serialization.  Subclasses only define the array of their values,
+ * its accessors and the reading and writing of the values.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	0 <= length() && length() <= capacity()
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public abstract class	AbstractChunk
+implements	Externalizable,
+			DataOfferedI.DataI,
+			DataRequiredI.DataI
+{
+	private static final long serialVersionUID = 1L;
+
+	/** capacity of the chunks of the pools; must be set before their first
+	 *  use.																*/
+	public static int				DEFAULT_CAPACITY = 1024 ;
+	/** maximum number of free chunks kept by each pool; must be set before
+	 *  their first use.													*/
+	public static int				POOL_SIZE = 256 ;
+
+	/** number of significant values.									*/
+	protected int					length ;
+	/** pool to which the chunk returns when released, or null.			*/
+	protected transient ChunkPool<?>	pool ;
+	/** true while the chunk is free in its pool.							*/
+	protected transient boolean		free ;
+
+	/**
+	 * @return	the number of significant values in the chunk.
+	 */
+	public int			length()
+	{
+		return this.length ;
+	}
+
+	/**
+	 * @return	the maximum number of values in the chunk.
+	 */
+	public abstract int	capacity() ;
+
+	/**
+	 * @return	true if the chunk holds no value.
+	 */
+	public boolean		isEmpty()
+	{
+		return this.length == 0 ;
+	}
+
+	/**
+	 * @return	true if no value can be added to the chunk.
+	 */
+	public boolean		isFull()
+	{
+		return this.length >= this.capacity() ;
+	}
+
+	/**
+	 * set the number of significant values of the array of the values.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	length >= 0 && length <= this.capacity()
+	 * post	this.length() == length
+	 * </pre>
+	 *
+	 * @param length	number of significant values.
+	 */
+	public void			setLength(int length)
+	{
+		assert	length >= 0 && length <= this.capacity() ;
+
+		this.length = length ;
+	}
+
+	/**
+	 * remove all of the values of the chunk.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	this.isEmpty()
+	 * </pre>
+	 */
+	public void			clear()
+	{
+		this.length = 0 ;
+	}
+
+	/**
+	 * return the chunk to the pool it was obtained from, if any, once its
+	 * values have been consumed.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	the chunk has not already been released.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 */
+	public void			release()
+	{
+		assert	!this.free ;
+
+		ChunkPool<?> p = this.pool ;
+		if (p != null) {
+			this.clear() ;
+			p.recycle(this) ;
+		}
+	}
+
+	/**
+	 * write the first <code>length()</code> values of the chunk.
+	 * 
+	 * @param out	output to write to.
+	 * @throws IOException	if the values cannot be written.
+	 */
+	protected abstract void	writeValues(DataOutput out) throws IOException ;
+
+	/**
+	 * read <code>n</code> values into the chunk, growing its array if needed;
+	 * the length is set by the caller.
+	 * 
+	 * @param in	input to read from.
+	 * @param n		number of values to be read.
+	 * @throws IOException	if the values cannot be read.
+	 */
+	protected abstract void	readValues(DataInput in, int n)
+	throws IOException ;
+
+	/**
+	 * @see java.io.Externalizable#writeExternal(java.io.ObjectOutput)
+	 */
+	@Override
+	public void			writeExternal(ObjectOutput out) throws IOException
+	{
+		ChunkCodec.write(this, out) ;
+	}
+
+	/**
+	 * @see java.io.Externalizable#readExternal(java.io.ObjectInput)
+	 */
+	@Override
+	public void			readExternal(ObjectInput in) throws IOException
+	{
+		ChunkCodec.read(this, in) ;
+	}
+
+	/**
+	 * The class <code>ChunkCodec</code> encodes a chunk as its length
+	 * followed by its values, decoding it into a chunk taken from the pool
+	 * of its class; each chunk class declares a subclass with a constructor
+	 * without parameters as service provider.
+	 *
+	 * @version	$Name$ -- $Revision$ -- $Date$
+	 */
+	public static class	ChunkCodec<C extends AbstractChunk>
+	implements	DataCodecI<C>
+	{
+		/** class of the chunks.											*/
+		protected final Class<C>		dataClass ;
+		/** pool providing the decoded chunks.								*/
+		protected final ChunkPool<C>	pool ;
+		/** name of the primitive type of the values.						*/
+		protected final String			valueType ;
+
+		/**
+		 * create a codec for the chunks of <code>dataClass</code>.
+		 * 
+		 * <p><strong>Contract</strong></p>
+		 * 
+		 * <pre>
+		 * pre	dataClass != null && pool != null && valueType != null
+		 * post	true			// no postcondition.
+		 * </pre>
+		 *
+		 * @param dataClass	class of the chunks.
+		 * @param pool		pool providing the decoded chunks.
+		 * @param valueType	name of the primitive type of the values.
+		 */
+		public				ChunkCodec(
+			Class<C> dataClass,
+			ChunkPool<C> pool,
+			String valueType
+			)
+		{
+			super() ;
+
+			assert	dataClass != null && pool != null && valueType != null ;
+
+			this.dataClass = dataClass ;
+			this.pool = pool ;
+			this.valueType = valueType ;
+		}
+
+		/**
+		 * write the length then the values of <code>c</code>.
+		 * 
+		 * @param c		chunk to be written.
+		 * @param out	output to write to.
+		 * @throws IOException	if the chunk cannot be written.
+		 */
+		protected static void	write(AbstractChunk c, DataOutput out)
+		throws IOException
+		{
+			out.writeInt(c.length) ;
+			c.writeValues(out) ;
+		}
+
+		/**
+		 * read into <code>c</code> the values written by <code>write</code>.
+		 * 
+		 * @param c		chunk to be filled.
+		 * @param in	input to read from.
+		 * @throws IOException	if the chunk cannot be read.
+		 */
+		protected static void	read(AbstractChunk c, DataInput in)
+		throws IOException
+		{
+			int n = in.readInt() ;
+			if (n < 0) {
+				throw new IOException("negative chunk length " + n) ;
+			}
+			c.readValues(in, n) ;
+			c.length = n ;
+		}
+
+		/**
+		 * @see fr.upmc.components.connectors.codec.DataCodecI#getDataClass()
+		 */
+		@Override
+		public Class<C>		getDataClass()
+		{
+			return this.dataClass ;
+		}
+
+		/**
+		 * @see fr.upmc.components.connectors.codec.DataCodecI#getFormat()
+		 */
+		@Override
+		public String		getFormat()
+		{
+			return this.dataClass.getName() +
+						"{length:I;values:" + this.valueType + "*}" ;
+		}
+
+		/**
+		 * @see fr.upmc.components.connectors.codec.DataCodecI#encode(java.lang.Object, java.io.DataOutput)
+		 */
+		@Override
+		public void			encode(C d, DataOutput out) throws IOException
+		{
+			write(d, out) ;
+		}
+
+		/**
+		 * decode the values into a chunk taken from the pool.
+		 * 
+		 * @see fr.upmc.components.connectors.codec.DataCodecI#decode(java.io.DataInput)
+		 */
+		@Override
+		public C			decode(DataInput in) throws IOException
+		{
+			C c = this.pool.obtain() ;
+			read(c, in) ;
+			return c ;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package fr.upmc.components.connectors.primitive;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import fr.upmc.components.connectors.buffers.MPMCRingBuffer;
+import fr.upmc.components.connectors.buffers.RingBufferI;
+
+/**
+ * The class <code>ChunkPool</code> keeps the free chunks of one class so that
+ * they are reused rather than allocated for each batch of values.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The free chunks are kept in a lock-free ring buffer, so that chunks can be
+ * obtained and released by any thread.  When the pool is empty, a new chunk
+ * is created, and when it is full, a released chunk is left to the garbage
+ * collector.  Chunks requested with a capacity larger than the capacity of
+ * the pool are created outside of it and never return to it.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	chunkCapacity > 0
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public abstract class	ChunkPool<C extends AbstractChunk>
+{
+	/** free chunks.														*/
+	protected final RingBufferI<AbstractChunk>	freeChunks ;
+	/** capacity of the chunks of the pool.								*/
+	protected final int							chunkCapacity ;
+
+	/**
+	 * create an empty pool.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	size > 0 && chunkCapacity > 0
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param size			maximum number of free chunks kept by the pool.
+	 * @param chunkCapacity	capacity of the chunks of the pool.
+	 */
+	public				ChunkPool(int size, int chunkCapacity)
+	{
+		super() ;
+
+		assert	size > 0 && chunkCapacity > 0 ;
+
+		this.freeChunks = new MPMCRingBuffer<AbstractChunk>(size) ;
+		this.chunkCapacity = chunkCapacity ;
+	}
+
+	/**
+	 * create a new chunk.
+	 * 
+	 * @param capacity	capacity of the chunk.
+	 * @return			a new empty chunk.
+	 */
+	protected abstract C	create(int capacity) ;
+
+	/**
+	 * return an empty chunk of the capacity of the pool.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return.isEmpty() && return.capacity() == this.getChunkCapacity()
+	 * </pre>
+	 *
+	 * @return	an empty chunk.
+	 */
+	@SuppressWarnings("unchecked")
+	public C			obtain()
+	{
+		C c = (C) this.freeChunks.poll() ;
+		if (c == null) {
+			c = this.create(this.chunkCapacity) ;
+			c.pool = this ;
+		} else {
+			c.free = false ;
+		}
+		return c ;
+	}
+
+	/**
+	 * return an empty chunk of at least <code>capacity</code> values.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	capacity >= 0
+	 * post	return.isEmpty() && return.capacity() >= capacity
+	 * </pre>
+	 *
+	 * @param capacity	minimum capacity of the chunk.
+	 * @return			an empty chunk.
+	 */
+	public C			obtain(int capacity)
+	{
+		if (capacity > this.chunkCapacity) {
+			return this.create(capacity) ;
+		} else {
+			return this.obtain() ;
+		}
+	}
+
+	/**
+	 * @return	the capacity of the chunks of the pool.
+	 */
+	public int			getChunkCapacity()
+	{
+		return this.chunkCapacity ;
+	}
+
+	/**
+	 * put a released chunk back into the pool, if it is not full.
+	 * 
+	 * @param c	chunk released, which has been cleared.
+	 */
+	protected void		recycle(AbstractChunk c)
+	{
+		c.free = true ;
+		this.freeChunks.offer(c) ;
+	}
+}
@@ -0,0 +1,153 @@
+package fr.upmc.components.connectors.primitive;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import fr.upmc.components.interfaces.DataOfferedI;
+
+/**
+ * The class <code>ChunkSender</code> coalesces the values produced one by
+ * one by a component into chunks sent through a data push interface.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The producer adds each value to the chunk returned by <code>chunk</code>,
+ * which is never full: when the current chunk has been filled, it is sent
+ * and replaced by an empty one from the pool.  <code>flush</code> sends the
+ * current chunk if it holds values.  The target is typically the data
+ * inbound port of the producer, so that the chunks go through its connector
+ * as any other datum, and the values cost neither an object nor a call each.
+ * A chunk sent is released by its consumer or, when the consumer is remote,
+ * by the data connector once it has encoded the chunk, so that the sender
+ * reuses the chunks of its pool in both cases.
+ * 
+ * A sender is used by a single thread at a time.
+ * 
+ * <pre>
+ * ChunkSender&lt;DoubleChunk&gt; s =
+ *		new ChunkSender&lt;DoubleChunk&gt;(port, DoubleChunk.POOL) ;
+ * for (...) {
+ *		s.chunk().add(sample) ;
+ * }
+ * s.flush() ;
+ * </pre>
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.current == null || !this.current.isFull()
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			ChunkSender<C extends AbstractChunk>
+{
+	/** interface through which the chunks are sent.						*/
+	protected final DataOfferedI.PushI	target ;
+	/** pool providing the chunks.										*/
+	protected final ChunkPool<C>		pool ;
+	/** chunk being filled, or null.										*/
+	protected C							current ;
+
+	/**
+	 * create a sender.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	target != null && pool != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param target	interface through which the chunks are sent.
+	 * @param pool		pool providing the chunks.
+	 */
+	public				ChunkSender(DataOfferedI.PushI target, ChunkPool<C> pool)
+	{
+		super() ;
+
+		assert	target != null && pool != null ;
+
+		this.target = target ;
+		this.pool = pool ;
+	}
+
+	/**
+	 * return the chunk to which the next values are added, sending the
+	 * current one first if it is full.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	!return.isFull()
+	 * </pre>
+	 *
+	 * @return				a chunk which is not full.
+	 * @throws Exception	if sending the full chunk raises one.
+	 */
+	public C			chunk() throws Exception
+	{
+		if (this.current != null && this.current.isFull()) {
+			this.flush() ;
+		}
+		if (this.current == null) {
+			this.current = this.pool.obtain() ;
+		}
+		return this.current ;
+	}
+
+	/**
+	 * send the current chunk if it holds values.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	this.current == null || this.current.isEmpty()
+	 * </pre>
+	 *
+	 * @throws Exception	if sending the chunk raises one.
+	 */
+	public void			flush() throws Exception
+	{
+		if (this.current != null && !this.current.isEmpty()) {
+			C c = this.current ;
+			// the chunk belongs to its consumer, or to the connector when
+			// the consumer is remote, once sent
+			this.current = null ;
+			this.target.send(c) ;
+		}
+	}
+}
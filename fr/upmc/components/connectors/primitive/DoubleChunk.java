@@ -0,0 +1,247 @@
+package fr.upmc.components.connectors.primitive;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The class <code>DoubleChunk</code> implements chunks of <code>double</code>
+ * values.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The values are stored in an array accessible through <code>values</code>,
+ * so that producers and consumers can fill and read it in bulk; see
+ * <code>AbstractChunk</code> for the life cycle of chunks.  The nested class
+ * <code>Codec</code> encodes the chunks between JVMs.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.values != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			DoubleChunk
+extends		AbstractChunk
+{
+	private static final long serialVersionUID = 1L;
+
+	/** pool of the chunks of <code>double</code> values.					*/
+	public static final ChunkPool<DoubleChunk>	POOL =
+		new ChunkPool<DoubleChunk>(POOL_SIZE, DEFAULT_CAPACITY) {
+			@Override
+			protected DoubleChunk	create(int capacity)
+			{
+				return new DoubleChunk(capacity) ;
+			}
+		} ;
+
+	/** values of the chunk, the first <code>length</code> being significant. */
+	protected double[]		values ;
+
+	/**
+	 * constructor used by Java serialization only.
+	 */
+	public				DoubleChunk()
+	{
+		this(0) ;
+	}
+
+	/**
+	 * create an empty chunk which does not belong to a pool.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	capacity >= 0
+	 * post	this.isEmpty() && this.capacity() == capacity
+	 * </pre>
+	 *
+	 * @param capacity	maximum number of values in the chunk.
+	 */
+	public				DoubleChunk(int capacity)
+	{
+		super() ;
+
+		assert	capacity >= 0 ;
+
+		this.values = new double[capacity] ;
+	}
+
+	/**
+	 * return an empty chunk from the pool.
+	 * 
+	 * @return	an empty chunk of capacity <code>DEFAULT_CAPACITY</code>.
+	 */
+	public static DoubleChunk	obtain()
+	{
+		return POOL.obtain() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.primitive.AbstractChunk#capacity()
+	 */
+	@Override
+	public int			capacity()
+	{
+		return this.values.length ;
+	}
+
+	/**
+	 * return the array of the values, of which the first
+	 * <code>length()</code> are significant; a producer filling it directly
+	 * sets the number of significant values with <code>setLength</code>.
+	 * 
+	 * @return	the array of the values.
+	 */
+	public double[]		values()
+	{
+		return this.values ;
+	}
+
+	/**
+	 * add a value at the end of the chunk if it is not full.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param v	value to be added.
+	 * @return	true if the value has been added, false if the chunk is full.
+	 */
+	public boolean		add(double v)
+	{
+		if (this.length >= this.values.length) {
+			return false ;
+		}
+		this.values[this.length++] = v ;
+		return true ;
+	}
+
+	/**
+	 * add at the end of the chunk as many as possible of the
+	 * <code>n</code> values of <code>src</code> starting at index
+	 * <code>offset</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	src != null && offset >= 0 && n >= 0 && offset + n <= src.length
+	 * post	return >= 0 && return <= n
+	 * </pre>
+	 *
+	 * @param src		array of the values to be added.
+	 * @param offset	index of the first value to be added.
+	 * @param n			number of values to be added.
+	 * @return			the number of values added.
+	 */
+	public int			addAll(double[] src, int offset, int n)
+	{
+		assert	src != null && offset >= 0 && n >= 0 &&
+												offset + n <= src.length ;
+
+		int k = Math.min(n, this.values.length - this.length) ;
+		System.arraycopy(src, offset, this.values, this.length, k) ;
+		this.length += k ;
+		return k ;
+	}
+
+	/**
+	 * return the value at index <code>i</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	i >= 0 && i < this.length()
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param i	index of the value.
+	 * @return	the value at index <code>i</code>.
+	 */
+	public double		get(int i)
+	{
+		assert	i >= 0 && i < this.length ;
+
+		return this.values[i] ;
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.primitive.AbstractChunk#writeValues(java.io.DataOutput)
+	 */
+	@Override
+	protected void		writeValues(DataOutput out) throws IOException
+	{
+		for (int i = 0 ; i < this.length ; i++) {
+			out.writeDouble(this.values[i]) ;
+		}
+	}
+
+	/**
+	 * @see fr.upmc.components.connectors.primitive.AbstractChunk#readValues(java.io.DataInput, int)
+	 */
+	@Override
+	protected void		readValues(DataInput in, int n) throws IOException
+	{
+		if (this.values.length < n) {
+			this.values = new double[n] ;
+		}
+		for (int i = 0 ; i < n ; i++) {
+			this.values[i] = in.readDouble() ;
+		}
+	}
+
+	/**
+	 * The class <code>Codec</code> encodes a chunk of <code>double</code>
+	 * values as its length followed by its values.
+	 *
+	 * @version	$Name$ -- $Revision$ -- $Date$
+	 */
+	public static class	Codec
+	extends		ChunkCodec<DoubleChunk>
+	{
+		public			Codec()
+		{
+			super(DoubleChunk.class, POOL, "double") ;
+		}
+	}
+}
@@ -34,14 +34,21 @@ package fr.upmc.components.cvm;
 // The fact that you are presently reading this means that you have had
 // knowledge of the CeCILL-C license and that you accept its terms.
 
-import java.util.Hashtable;
+import java.util.Collection;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import fr.upmc.components.ComponentI;
 import fr.upmc.components.connectors.ConnectionBuilder;
 import fr.upmc.components.cvm.pre.dcc.DynamicComponentCreator;
+import fr.upmc.components.cvm.utils.LocalPortRegistry;
+import fr.upmc.components.cvm.utils.SerialLaneExecutor;
 import fr.upmc.components.ports.PortI;
+import fr.upmc.components.registry.CachingRegistryClient;
+import fr.upmc.components.registry.GlobalRegistryClient;
 
 /**
  * The class <code>AbstractCVM</code> defines the common properties of
@@ -107,14 +114,18 @@ implements	ComponentVirtualMachineI
 	/** initial number of potential entries in the local registry.			*/
 	protected static int					LOCAL_REGISTRY_INIT_SIZE = 1000 ;
 	/** local registry linking port URI to local port objects.				*/
-	protected static final Hashtable<String,PortI>	LOCAL_REGISTRY =
-						new Hashtable<String,PortI>(LOCAL_REGISTRY_INIT_SIZE) ;
+	protected static final LocalPortRegistry	LOCAL_REGISTRY =
+						new LocalPortRegistry(LOCAL_REGISTRY_INIT_SIZE) ;
 
 	/** true if the deployment is completed and false otherwise.			*/
 	protected boolean						deploymentDone ;
 	/** true if the CVM currently running is distributed.					*/
 	public static boolean					isDistributed ;
 
+	/** pool shared by the request handlers of single-threaded components,
+	 *  null if each component has its own thread.							*/
+	protected static ForkJoinPool			SHARED_REQUEST_POOL = null ;
+
 	// ------------------------------------------------------------------------
 	// Constructors
 	// ------------------------------------------------------------------------
@@ -202,10 +213,15 @@ implements	ComponentVirtualMachineI
 			ConnectionBuilder.SINGLETON =
 				new ConnectionBuilder(LOCAL_REGISTRY, null) ;
 		} else {
+			GlobalRegistryClient client =
+							AbstractDistributedCVM.GLOBAL_REGISTRY_CLIENT ;
+			if (AbstractDistributedCVM.CACHE_REGISTRY_LOOKUPS) {
+				client = new CachingRegistryClient(client) ;
+			}
 			ConnectionBuilder.SINGLETON =
-				new ConnectionBuilder(
-						LOCAL_REGISTRY,
-						AbstractDistributedCVM.GLOBAL_REGISTRY_CLIENT) ;
+						new ConnectionBuilder(LOCAL_REGISTRY, client) ;
+			ConnectionBuilder.SINGLETON.getRemoteReferenceCache().
+															registerMBean() ;
 		}
 
 		assert	ConnectionBuilder.SINGLETON != null ;
@@ -224,19 +240,19 @@ implements	ComponentVirtualMachineI
 	 * @param port	port to be published
 	 * @throws Exception 
 	 */
-	public synchronized static void	localPublishPort(PortI port)
+	public static void	localPublishPort(PortI port)
 	throws Exception
 	{
 		assert	port != null ;
-		assert	!LOCAL_REGISTRY.containsKey(port.getPortURI()) ;
 
 		if (AbstractCVM.DEBUG) {
 			System.out.println("locally publishing port " + port.getPortURI()) ;
 		}
 
-		LOCAL_REGISTRY.put(port.getPortURI(), port) ;
+		PortI previous = LOCAL_REGISTRY.publish(port) ;
 
-		assert	LOCAL_REGISTRY.containsKey(port.getPortURI()) ;
+		assert	previous == null :
+					"port URI " + port.getPortURI() + " already published!" ;
 		assert	port == LOCAL_REGISTRY.get(port.getPortURI()) ;
 	}
 
@@ -253,20 +269,243 @@ implements	ComponentVirtualMachineI
 	 * @param port	port to be unpublished
 	 * @throws Exception
 	 */
-	public synchronized static void	localUnpublishPort(PortI port)
+	public static void	localUnpublishPort(PortI port)
 	throws Exception
 	{
 		assert	port != null ;
-		assert	LOCAL_REGISTRY.containsKey(port.getPortURI()) ;
-		assert	port == LOCAL_REGISTRY.get(port.getPortURI()) ;
 
 		if (AbstractCVM.DEBUG) {
 			System.out.println("unpublishing local port " + port.getPortURI()) ;
 		}
 
-		LOCAL_REGISTRY.remove(port.getPortURI()) ;
+		boolean removed = LOCAL_REGISTRY.unpublish(port) ;
+
+		assert	removed :
+					"port " + port.getPortURI() + " not published locally!" ;
+	}
+
+	/**
+	 * publish all of the ports in the local registry at once; if one of the
+	 * port URIs is already used, none of the ports remains published.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ports != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param ports	ports to be published.
+	 * @throws Exception	if one of the port URIs is already published.
+	 */
+	public static void	localPublishPorts(Collection<? extends PortI> ports)
+	throws Exception
+	{
+		assert	ports != null ;
+
+		if (AbstractCVM.DEBUG) {
+			System.out.println("locally publishing " + ports.size() +
+							   " ports") ;
+		}
+
+		PortI previous = LOCAL_REGISTRY.publishAll(ports) ;
+		if (previous != null) {
+			throw new Exception("port URI " + previous.getPortURI() +
+								" already published!") ;
+		}
+	}
+
+	/**
+	 * unpublish all of the ports from the local registry at once.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ports != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param ports	ports to be unpublished.
+	 * @throws Exception
+	 */
+	public static void	localUnpublishPorts(Collection<? extends PortI> ports)
+	throws Exception
+	{
+		assert	ports != null ;
+
+		if (AbstractCVM.DEBUG) {
+			System.out.println("unpublishing " + ports.size() +
+							   " local ports") ;
+		}
+
+		int count = LOCAL_REGISTRY.unpublishAll(ports) ;
+
+		assert	count == ports.size() :
+					(ports.size() - count) + " ports not published locally!" ;
+	}
+
+	/**
+	 * return the locally published ports implementing the interface
+	 * <code>inter</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	inter != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param inter	implemented interface.
+	 * @return		the locally published ports implementing the interface.
+	 */
+	public static Set<PortI>	findLocalPortsByInterface(Class<?> inter)
+	{
+		return LOCAL_REGISTRY.getPortsByInterface(inter) ;
+	}
+
+	/**
+	 * return the locally published ports owned by the component
+	 * <code>owner</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	owner != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param owner	owner component.
+	 * @return		the locally published ports owned by the component.
+	 */
+	public static Set<PortI>	findLocalPortsByOwner(ComponentI owner)
+	{
+		return LOCAL_REGISTRY.getPortsByOwner(owner) ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Shared request pool
+	// ------------------------------------------------------------------------
+
+	/**
+	 * make the single-threaded components created from now on in this JVM
+	 * share a work-stealing pool of <code>parallelism</code> threads instead
+	 * of creating one thread each.
+	 *
+	 * <p><strong>Description</strong></p>
+	 *
+	 * Each such component gets a serial lane (see
+	 * <code>SerialLaneExecutor</code>) as request handler, which preserves
+	 * the guarantee that its requests run one at a time and in order, while
+	 * the lanes of all components are multiplexed onto the shared pool.  The
+	 * thread count then grows with the number of cores rather than with the
+	 * number of components.  Components created with several threads or with
+	 * schedulable threads keep their own executors for these.  This method
+	 * must be called before creating the components, typically at the
+	 * beginning of <code>deploy</code>.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	parallelism > 0
+	 * pre	!AbstractCVM.usesSharedRequestPool()
+	 * post	AbstractCVM.usesSharedRequestPool()
+	 * </pre>
+	 *
+	 * @param parallelism	number of threads of the shared pool.
+	 */
+	public static synchronized void	enableSharedRequestPool(int parallelism)
+	{
+		assert	parallelism > 0 ;
+		assert	!AbstractCVM.usesSharedRequestPool() ;
+
+		// asynchronous (FIFO) mode, as lanes are event-style tasks that are
+		// never joined.
+		SHARED_REQUEST_POOL =
+			new ForkJoinPool(parallelism,
+							 ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+							 null, true) ;
+
+		assert	AbstractCVM.usesSharedRequestPool() ;
+	}
+
+	/**
+	 * enable the shared request pool with one thread per available core.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	!AbstractCVM.usesSharedRequestPool()
+	 * post	AbstractCVM.usesSharedRequestPool()
+	 * </pre>
+	 */
+	public static void	enableSharedRequestPool()
+	{
+		AbstractCVM.enableSharedRequestPool(
+							Runtime.getRuntime().availableProcessors()) ;
+	}
+
+	/**
+	 * return true if single-threaded components share the request pool.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @return	true if single-threaded components share the request pool.
+	 */
+	public static synchronized boolean	usesSharedRequestPool()
+	{
+		return SHARED_REQUEST_POOL != null ;
+	}
+
+	/**
+	 * shut the shared request pool down, if any, once the components have
+	 * been shut down; the lanes still holding tasks run them in the pool
+	 * thread draining them, as the pool refuses their new drains.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	!AbstractCVM.usesSharedRequestPool()
+	 * </pre>
+	 *
+	 * @param now	if true, the threads of the pool are interrupted.
+	 */
+	protected static synchronized void	shutdownSharedRequestPool(boolean now)
+	{
+		if (SHARED_REQUEST_POOL != null) {
+			if (now) {
+				SHARED_REQUEST_POOL.shutdownNow() ;
+			} else {
+				SHARED_REQUEST_POOL.shutdown() ;
+			}
+			SHARED_REQUEST_POOL = null ;
+		}
+
+		assert	!AbstractCVM.usesSharedRequestPool() ;
+	}
+
+	/**
+	 * create a new serial lane on the shared request pool.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	AbstractCVM.usesSharedRequestPool()
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	a new executor service running its tasks serially on the shared pool.
+	 */
+	public static synchronized ExecutorService	createRequestLane()
+	{
+		assert	AbstractCVM.usesSharedRequestPool() ;
 
-		assert	!LOCAL_REGISTRY.containsKey(port.getPortURI()) ;
+		return new SerialLaneExecutor(SHARED_REQUEST_POOL) ;
 	}
 
 	// ------------------------------------------------------------------------
@@ -365,6 +604,7 @@ implements	ComponentVirtualMachineI
 		for(ComponentI c : this.deployedComponents) {
 			c.shutdown() ;
 		}
+		AbstractCVM.shutdownSharedRequestPool(false) ;
 	}
 
 	/**
@@ -376,6 +616,7 @@ implements	ComponentVirtualMachineI
 		for(ComponentI c : this.deployedComponents) {
 			c.shutdownNow() ;
 		}
+		AbstractCVM.shutdownSharedRequestPool(true) ;
 	}
 
 	/**
@@ -37,7 +37,12 @@ package fr.upmc.components.cvm;
 import java.io.File;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import fr.upmc.components.connectors.ConnectionBuilder;
+import fr.upmc.components.connectors.ConnectionSpec;
 import fr.upmc.components.cvm.config.ConfigurationFileParser;
 import fr.upmc.components.cvm.config.ConfigurationParameters;
 import fr.upmc.components.cvm.pre.dcc.DynamicComponentCreator;
@@ -48,6 +53,7 @@ import fr.upmc.components.ports.PortI;
 import fr.upmc.components.registry.GlobalRegistry;
 import fr.upmc.components.registry.GlobalRegistryClient;
 import fr.upmc.components.registry.distributedRegistry.DistributedRegistryClient;
+import fr.upmc.components.transport.socket.SocketTransport;
 
 /**
  * The class <code>AbstractDistributedCVM</code> defines the common properties
@@ -182,6 +188,14 @@ implements	DistributedComponentVirtualMachineI
 	// Registry management
 	// ------------------------------------------------------------------------
 
+	/** true if the ports are published for the socket transport rather
+	 *  than RMI.															*/
+	public static boolean				USE_SOCKET_TRANSPORT = false ;
+
+	/** true if the connection builder caches the answers of the global
+	 *  registry, under leases and until the registry invalidates them.	*/
+	public static boolean				CACHE_REGISTRY_LOOKUPS = true ;
+
 	/** Global registry client; singleton.								*/
 //	public static GlobalRegistryClient	GLOBAL_REGISTRY_CLIENT;
 	public static DistributedRegistryClient GLOBAL_REGISTRY_CLIENT = new DistributedRegistryClient();
@@ -220,7 +234,17 @@ implements	DistributedComponentVirtualMachineI
 		}
 
 		AbstractCVM.localPublishPort((PortI) port) ;
-		if (AbstractCVM.isDistributed) {
+		if (ConnectionBuilder.SINGLETON != null) {
+			// a reference to a previous port with the same URI is stale.
+			ConnectionBuilder.SINGLETON.invalidateRemoteReference(portURI) ;
+		}
+		if (AbstractCVM.isDistributed &&
+							AbstractDistributedCVM.USE_SOCKET_TRANSPORT) {
+			SocketTransport t = SocketTransport.getInstance() ;
+			t.exportPort((PortI) port) ;
+			AbstractDistributedCVM.GLOBAL_REGISTRY_CLIENT.
+					put(portURI, "socket=" + t.getEndpoint()) ;
+		} else if (AbstractCVM.isDistributed) {
 			assert	AbstractDistributedCVM.theRMIRegistry != null ;
 			AbstractDistributedCVM.theRMIRegistry.bind(portURI, port) ;
 			AbstractDistributedCVM.GLOBAL_REGISTRY_CLIENT.
@@ -269,7 +293,14 @@ implements	DistributedComponentVirtualMachineI
 		}
 
 		AbstractCVM.localUnpublishPort((PortI) port) ;
-		if (AbstractCVM.isDistributed) {
+		if (ConnectionBuilder.SINGLETON != null) {
+			ConnectionBuilder.SINGLETON.invalidateRemoteReference(portURI) ;
+		}
+		if (AbstractCVM.isDistributed &&
+							AbstractDistributedCVM.USE_SOCKET_TRANSPORT) {
+			SocketTransport.getInstance().unexportPort(portURI) ;
+			AbstractDistributedCVM.GLOBAL_REGISTRY_CLIENT.remove(portURI) ;
+		} else if (AbstractCVM.isDistributed) {
 			assert	AbstractDistributedCVM.theRMIRegistry != null ;
 			AbstractDistributedCVM.theRMIRegistry.unbind(portURI) ;
 			AbstractDistributedCVM.GLOBAL_REGISTRY_CLIENT.remove(portURI) ;
@@ -298,6 +329,10 @@ implements	DistributedComponentVirtualMachineI
 
 	/**	distributed implementation of a cyclic barrier for assemblies.		*/
 	protected DCVMCyclicBarrierClient	cyclicBarrierClient ;
+	/** connections registered by addConnection, established together
+	 *  by interconnect.													*/
+	protected final List<ConnectionSpec>	connectionsToEstablish =
+											new ArrayList<ConnectionSpec>() ;
 
 	/**
 	 * instantiate the DCVM object.
@@ -502,9 +537,40 @@ implements	DistributedComponentVirtualMachineI
 	}
 
 	/**
-	 * simply check if instantiation of components and the publication of the
-	 * entry points are completed, so it should be called at the beginning of
-	 * the user's own <code>interconnect</code> method.
+	 * register a connection to be established by <code>interconnect</code>
+	 * as if <code>doConnection(otherPortURI, connectorClassName)</code> were
+	 * called on the local port; registering the connections rather than
+	 * doing them one by one allows to resolve all of the remote ports at once.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	!interconnectionDone
+	 * pre	localPortURI != null && otherPortURI != null
+	 * pre	connectorClassName != null
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 *
+	 * @param localPortURI			URI of a port of a component of this JVM.
+	 * @param otherPortURI			URI of the port to connect it to.
+	 * @param connectorClassName	canonical name of the connector class.
+	 */
+	protected void		addConnection(
+		String localPortURI,
+		String otherPortURI,
+		String connectorClassName
+		)
+	{
+		assert	!this.interconnectionDone ;
+
+		this.connectionsToEstablish.add(
+			new ConnectionSpec(localPortURI, otherPortURI, connectorClassName)) ;
+	}
+
+	/**
+	 * establish the connections registered by <code>addConnection</code> in
+	 * one batch, so it should be called at the end of the user's own
+	 * <code>interconnect</code> method.
 	 * 
 	 * <p><strong>Contract</strong></p>
 	 * 
@@ -513,7 +579,7 @@ implements	DistributedComponentVirtualMachineI
 	 * post	interconnectionDone
 	 * </pre>
 	 * 
-	 * @throws Exception 
+	 * @throws Exception	if some of the registered connections failed.
 	 * @see fr.upmc.components.cvm.DistributedComponentVirtualMachineI#interconnect()
 	 */
 	@Override
@@ -521,6 +587,32 @@ implements	DistributedComponentVirtualMachineI
 	{
 		assert	this.instantiationAndPublicationDone ;
 
+		if (!this.connectionsToEstablish.isEmpty()) {
+			Map<ConnectionSpec,Exception> failures =
+					ConnectionBuilder.SINGLETON.connectAll(
+												this.connectionsToEstablish) ;
+			this.connectionsToEstablish.clear() ;
+			if (!failures.isEmpty()) {
+				Exception first = failures.values().iterator().next() ;
+				Exception e = new Exception(failures.size() +
+								" connection(s) failed, first is " +
+								failures.keySet().iterator().next(),
+								first) ;
+				for (Map.Entry<ConnectionSpec,Exception> f :
+														failures.entrySet()) {
+					if (AbstractCVM.DEBUG) {
+						System.out.println("failed " + f.getKey() + ": " +
+													f.getValue()) ;
+					}
+					// the first failure is already the cause.
+					if (f.getValue() != first) {
+						e.addSuppressed(f.getValue()) ;
+					}
+				}
+				throw e ;
+			}
+		}
+
 		this.interconnectionDone = true ;
 	}
 
@@ -558,6 +650,7 @@ implements	DistributedComponentVirtualMachineI
 		this.cyclicBarrierClient.waitBarrier() ;
 		this.cyclicBarrierClient.closeBarrier() ;
 		GLOBAL_REGISTRY_CLIENT.shutdown() ;
+		SocketTransport.shutdownIfStarted() ;
 	}
 
 	/**
@@ -571,5 +664,6 @@ implements	DistributedComponentVirtualMachineI
 		this.cyclicBarrierClient.waitBarrier() ;
 		this.cyclicBarrierClient.closeBarrier() ;
 		GLOBAL_REGISTRY_CLIENT.shutdown() ;
+		SocketTransport.shutdownIfStarted() ;
 	}
 }
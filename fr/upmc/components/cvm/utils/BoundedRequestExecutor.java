@@ -0,0 +1,332 @@
+package fr.upmc.components.cvm.utils;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.upmc.components.OverloadPolicy;
+import fr.upmc.components.exceptions.RequestQueueFullException;
+
+/**
+ * The class <code>BoundedRequestExecutor</code> implements a fixed size
+ * thread pool which queue of pending tasks has a bounded capacity, applying
+ * an <code>OverloadPolicy</code> when a task is submitted while the queue
+ * is full.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Request handlers of components are by default executors with unbounded
+ * queues, so a producer calling a component faster than it can serve grows
+ * its queue until the heap is exhausted.  This executor keeps at most
+ * <code>capacity</code> pending tasks; the overload policy then decides
+ * whether the caller waits, the oldest or the newest task is dropped, or
+ * the submission fails with a <code>RequestQueueFullException</code>.
+ * Dropped tasks that are futures (i.e. submitted through
+ * <code>submit</code>) are cancelled so that no caller waits forever on
+ * them.  Plain runnables (i.e. passed to <code>execute</code>) have no way
+ * to report their loss: <code>DROP_NEWEST</code> rejects them with a
+ * <code>RequestQueueFullException</code> instead of dropping them, and
+ * those evicted by <code>DROP_OLDEST</code> are counted apart as lost.
+ * 
+ * The executor counts dropped, lost and rejected tasks and records the
+ * highest queue depth observed, so that overloaded components can be
+ * spotted.
+ * 
+ * With <code>BLOCK_CALLER</code>, a task of the component submitting a
+ * request to its own full queue would block forever; components using this
+ * policy must not call themselves through their request handler.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.capacity > 0 && this.policy != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			BoundedRequestExecutor
+extends		ThreadPoolExecutor
+{
+	/** maximum number of pending tasks.									*/
+	protected final int				capacity ;
+	/** policy applied when a task is submitted while the queue is full.	*/
+	protected final OverloadPolicy	policy ;
+	/** number of tasks dropped by the <code>DROP_*</code> policies.		*/
+	protected final AtomicLong		droppedCount ;
+	/** number of dropped tasks that were plain runnables, which
+	 *  submitters are not notified of.									*/
+	protected final AtomicLong		lostCount ;
+	/** number of submissions refused by the overload policy.				*/
+	protected final AtomicLong		rejectedCount ;
+	/** highest queue depth observed since the creation.					*/
+	protected volatile int			peakQueueDepth ;
+
+	/**
+	 * create a bounded executor with <code>nbThreads</code> threads and a
+	 * queue of at most <code>capacity</code> pending tasks.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	nbThreads > 0 && capacity > 0 && policy != null
+	 * post	this.getQueueCapacity() == capacity
+	 * </pre>
+	 *
+	 * @param nbThreads	number of threads of the pool.
+	 * @param capacity	maximum number of pending tasks.
+	 * @param policy	policy applied when the queue is full.
+	 */
+	public				BoundedRequestExecutor(
+		int nbThreads,
+		int capacity,
+		OverloadPolicy policy
+		)
+	{
+		super(nbThreads, nbThreads, 0L, TimeUnit.MILLISECONDS,
+			  new ArrayBlockingQueue<Runnable>(capacity),
+			  new OverloadHandler()) ;
+		assert	policy != null ;
+
+		this.capacity = capacity ;
+		this.policy = policy ;
+		this.droppedCount = new AtomicLong(0L) ;
+		this.lostCount = new AtomicLong(0L) ;
+		this.rejectedCount = new AtomicLong(0L) ;
+		this.peakQueueDepth = 0 ;
+	}
+
+	/**
+	 * @see java.util.concurrent.ThreadPoolExecutor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void			execute(Runnable command)
+	{
+		super.execute(command) ;
+		int depth = this.getQueue().size() ;
+		// benign race: the peak is a monitoring hint, not an exact value.
+		if (depth > this.peakQueueDepth) {
+			this.peakQueueDepth = depth ;
+		}
+	}
+
+	/**
+	 * apply the overload policy to a task that could not be queued.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	r != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param r	the task that could not be queued.
+	 * @throws RejectedExecutionException	if the executor is shut down, the policy is <code>FAIL_FAST</code> or a plain runnable would be dropped by <code>DROP_NEWEST</code>.
+	 */
+	protected void		handleOverload(Runnable r)
+	{
+		if (this.isShutdown()) {
+			throw new RejectedExecutionException(
+										"BoundedRequestExecutor shut down.") ;
+		}
+		switch (this.policy) {
+		case BLOCK_CALLER:
+			try {
+				this.getQueue().put(r) ;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt() ;
+				throw new RejectedExecutionException(e) ;
+			}
+			// a shutdown may have occurred while waiting; do not leave the
+			// task in a queue that no thread will drain.
+			if (this.isShutdown() && this.getQueue().remove(r)) {
+				throw new RejectedExecutionException(
+										"BoundedRequestExecutor shut down.") ;
+			}
+			break ;
+		case DROP_OLDEST:
+			// loop rather than resubmit, so that concurrent submitters
+			// refilling the queue cannot grow the stack.
+			while (!this.getQueue().offer(r)) {
+				if (this.isShutdown()) {
+					throw new RejectedExecutionException(
+										"BoundedRequestExecutor shut down.") ;
+				}
+				Runnable oldest = this.getQueue().poll() ;
+				if (oldest != null) {
+					this.drop(oldest) ;
+				}
+			}
+			if (this.isShutdown() && this.getQueue().remove(r)) {
+				throw new RejectedExecutionException(
+										"BoundedRequestExecutor shut down.") ;
+			}
+			break ;
+		case DROP_NEWEST:
+			if (r instanceof Future<?>) {
+				this.drop(r) ;
+			} else {
+				this.reject() ;
+			}
+			break ;
+		case FAIL_FAST:
+			this.reject() ;
+		}
+	}
+
+	/**
+	 * count and refuse a submission.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	false			// always raises an exception.
+	 * </pre>
+	 *
+	 * @throws RequestQueueFullException	always.
+	 */
+	protected void		reject()
+	{
+		this.rejectedCount.incrementAndGet() ;
+		throw new RequestQueueFullException(
+						"request queue full (capacity " + this.capacity + ").") ;
+	}
+
+	/**
+	 * drop a task, cancelling it if it is a future.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	r != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param r	the task to be dropped.
+	 */
+	protected void		drop(Runnable r)
+	{
+		this.droppedCount.incrementAndGet() ;
+		if (r instanceof Future<?>) {
+			((Future<?>) r).cancel(false) ;
+		} else {
+			this.lostCount.incrementAndGet() ;
+		}
+	}
+
+	/**
+	 * @return	the overload policy of this executor.
+	 */
+	public OverloadPolicy	getOverloadPolicy()
+	{
+		return this.policy ;
+	}
+
+	/**
+	 * @return	the maximum number of pending tasks.
+	 */
+	public int			getQueueCapacity()
+	{
+		return this.capacity ;
+	}
+
+	/**
+	 * @return	the current number of pending tasks.
+	 */
+	public int			getQueueDepth()
+	{
+		return this.getQueue().size() ;
+	}
+
+	/**
+	 * @return	the highest number of pending tasks observed.
+	 */
+	public int			getPeakQueueDepth()
+	{
+		return this.peakQueueDepth ;
+	}
+
+	/**
+	 * @return	the number of tasks dropped by the overload policy.
+	 */
+	public long			getDroppedCount()
+	{
+		return this.droppedCount.get() ;
+	}
+
+	/**
+	 * @return	the number of dropped tasks that were plain runnables.
+	 */
+	public long			getLostCount()
+	{
+		return this.lostCount.get() ;
+	}
+
+	/**
+	 * @return	the number of submissions refused by the overload policy.
+	 */
+	public long			getRejectedCount()
+	{
+		return this.rejectedCount.get() ;
+	}
+
+	/**
+	 * The class <code>OverloadHandler</code> forwards the rejections of the
+	 * thread pool to the overload policy of the executor.
+	 *
+	 * @version	$Name$ -- $Revision$ -- $Date$
+	 */
+	protected static class	OverloadHandler
+	implements	RejectedExecutionHandler
+	{
+		/**
+		 * @see java.util.concurrent.RejectedExecutionHandler#rejectedExecution(java.lang.Runnable, java.util.concurrent.ThreadPoolExecutor)
+		 */
+		@Override
+		public void		rejectedExecution(
+			Runnable r,
+			ThreadPoolExecutor executor
+			)
+		{
+			((BoundedRequestExecutor) executor).handleOverload(r) ;
+		}
+	}
+}
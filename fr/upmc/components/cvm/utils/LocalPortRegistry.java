@@ -0,0 +1,416 @@
+package fr.upmc.components.cvm.utils;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+import fr.upmc.components.ComponentI;
+import fr.upmc.components.ports.PortI;
+
+/**
+ * The class <code>LocalPortRegistry</code> implements the registry linking
+ * the URIs of the ports published in the current JVM to the port objects.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The registry is read on each connection and written each time a port is
+ * published or unpublished, possibly by many components at the same time.
+ * It therefore uses a concurrent hash map, so that lookups never lock and
+ * publications lock only the bin of the published URI.  Publishing is
+ * atomic per URI: if two ports are published concurrently under the same
+ * URI, exactly one of them succeeds.
+ * 
+ * The registry also maintains two secondary indexes, giving the published
+ * ports by implemented interface and by owner component.  The indexes are
+ * updated just after the primary map, so a concurrent reader may transiently
+ * see a port in the primary map and not yet in the indexes, or conversely.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			LocalPortRegistry
+{
+	/** published ports indexed by their URI.								*/
+	protected final ConcurrentHashMap<String,PortI>			ports ;
+	/** published ports indexed by their implemented interface.			*/
+	protected final ConcurrentHashMap<Class<?>,Set<PortI>>	portsByInterface ;
+	/** published ports indexed by their owner component.					*/
+	protected final ConcurrentHashMap<ComponentI,Set<PortI>>	portsByOwner ;
+
+	/**
+	 * create an empty registry.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	initialCapacity > 0
+	 * post	this.size() == 0
+	 * </pre>
+	 *
+	 * @param initialCapacity	number of ports expected to be published.
+	 */
+	public				LocalPortRegistry(int initialCapacity)
+	{
+		super() ;
+
+		assert	initialCapacity > 0 ;
+
+		this.ports = new ConcurrentHashMap<String,PortI>(initialCapacity) ;
+		this.portsByInterface = new ConcurrentHashMap<Class<?>,Set<PortI>>() ;
+		this.portsByOwner = new ConcurrentHashMap<ComponentI,Set<PortI>>() ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Lookups
+	// ------------------------------------------------------------------------
+
+	/**
+	 * return the port published under <code>portURI</code>, or null if none.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	portURI != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param portURI	URI of the port.
+	 * @return			the port published under this URI or null if none.
+	 */
+	public PortI		get(String portURI)
+	{
+		return this.ports.get(portURI) ;
+	}
+
+	/**
+	 * return true if a port is published under <code>portURI</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	portURI != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param portURI	URI of the port.
+	 * @return			true if a port is published under this URI.
+	 */
+	public boolean		containsKey(String portURI)
+	{
+		return this.ports.containsKey(portURI) ;
+	}
+
+	/**
+	 * return the number of published ports.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return >= 0
+	 * </pre>
+	 *
+	 * @return	the number of published ports.
+	 */
+	public int			size()
+	{
+		return this.ports.size() ;
+	}
+
+	/**
+	 * return the published ports implementing exactly the interface
+	 * <code>inter</code>; the result is a snapshot taken at the time of the
+	 * call.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	inter != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param inter	implemented interface.
+	 * @return		the published ports implementing the interface.
+	 */
+	public Set<PortI>	getPortsByInterface(Class<?> inter)
+	{
+		assert	inter != null ;
+
+		Set<PortI> s = this.portsByInterface.get(inter) ;
+		if (s == null) {
+			return Collections.emptySet() ;
+		} else {
+			return new HashSet<PortI>(s) ;
+		}
+	}
+
+	/**
+	 * return the published ports owned by <code>owner</code>; the result is a
+	 * snapshot taken at the time of the call.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	owner != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param owner	owner component.
+	 * @return		the published ports owned by the component.
+	 */
+	public Set<PortI>	getPortsByOwner(ComponentI owner)
+	{
+		assert	owner != null ;
+
+		Set<PortI> s = this.portsByOwner.get(owner) ;
+		if (s == null) {
+			return Collections.emptySet() ;
+		} else {
+			return new HashSet<PortI>(s) ;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Publication
+	// ------------------------------------------------------------------------
+
+	/**
+	 * publish <code>port</code> under its URI if no port is already published
+	 * under this URI, and return the already published port otherwise.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	port != null
+	 * post	return != null || this.get(port.getPortURI()) == port
+	 * </pre>
+	 *
+	 * @param port	port to be published.
+	 * @return		null if published, the port already published under the same URI otherwise.
+	 * @throws Exception
+	 */
+	public PortI		publish(PortI port) throws Exception
+	{
+		assert	port != null ;
+
+		PortI previous = this.ports.putIfAbsent(port.getPortURI(), port) ;
+		if (previous == null) {
+			LocalPortRegistry.addToIndex(this.portsByInterface,
+										 port.getImplementedInterface(),
+										 port) ;
+			LocalPortRegistry.addToIndex(this.portsByOwner,
+										 port.getOwner(),
+										 port) ;
+		}
+		return previous ;
+	}
+
+	/**
+	 * unpublish <code>port</code> if it is the port published under its URI.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	port != null
+	 * post	this.get(port.getPortURI()) != port
+	 * </pre>
+	 *
+	 * @param port	port to be unpublished.
+	 * @return		true if the port has been unpublished.
+	 * @throws Exception
+	 */
+	public boolean		unpublish(PortI port) throws Exception
+	{
+		assert	port != null ;
+
+		boolean removed = this.ports.remove(port.getPortURI(), port) ;
+		if (removed) {
+			LocalPortRegistry.removeFromIndex(this.portsByInterface,
+											  port.getImplementedInterface(),
+											  port) ;
+			LocalPortRegistry.removeFromIndex(this.portsByOwner,
+											  port.getOwner(),
+											  port) ;
+		}
+		return removed ;
+	}
+
+	/**
+	 * publish all of the ports in <code>ports</code>; if one of them cannot
+	 * be published because its URI is already used, the ports of the
+	 * collection already published by this call are unpublished and the
+	 * already published port is returned.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ports != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param ports	ports to be published.
+	 * @return		null if all ports have been published, the port preventing the publication otherwise.
+	 * @throws Exception
+	 */
+	public PortI		publishAll(Collection<? extends PortI> ports)
+	throws Exception
+	{
+		assert	ports != null ;
+
+		ArrayList<PortI> done = new ArrayList<PortI>(ports.size()) ;
+		for (PortI p : ports) {
+			PortI previous = this.publish(p) ;
+			if (previous != null) {
+				for (PortI q : done) {
+					this.unpublish(q) ;
+				}
+				return previous ;
+			}
+			done.add(p) ;
+		}
+		return null ;
+	}
+
+	/**
+	 * unpublish all of the ports in <code>ports</code> that are currently
+	 * published.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	ports != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param ports	ports to be unpublished.
+	 * @return		the number of ports actually unpublished.
+	 * @throws Exception
+	 */
+	public int			unpublishAll(Collection<? extends PortI> ports)
+	throws Exception
+	{
+		assert	ports != null ;
+
+		int count = 0 ;
+		for (PortI p : ports) {
+			if (this.unpublish(p)) {
+				count++ ;
+			}
+		}
+		return count ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Secondary indexes management
+	// ------------------------------------------------------------------------
+
+	/**
+	 * add <code>port</code> to the set of <code>key</code> in
+	 * <code>index</code>, atomically creating the set if needed.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	index != null && key != null && port != null
+	 * post	index.get(key).contains(port)
+	 * </pre>
+	 *
+	 * @param index	the index to be updated.
+	 * @param key	the key of the port in the index.
+	 * @param port	the port to be added.
+	 */
+	protected static <K> void	addToIndex(
+		ConcurrentHashMap<K,Set<PortI>> index,
+		K key,
+		final PortI port
+		)
+	{
+		index.compute(key,
+			new BiFunction<K,Set<PortI>,Set<PortI>>() {
+				@Override
+				public Set<PortI> apply(K k, Set<PortI> s)
+				{
+					if (s == null) {
+						s = ConcurrentHashMap.newKeySet() ;
+					}
+					s.add(port) ;
+					return s ;
+				}
+			}) ;
+	}
+
+	/**
+	 * remove <code>port</code> from the set of <code>key</code> in
+	 * <code>index</code>, atomically removing the set when it becomes empty.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	index != null && key != null && port != null
+	 * post	!index.containsKey(key) || !index.get(key).contains(port)
+	 * </pre>
+	 *
+	 * @param index	the index to be updated.
+	 * @param key	the key of the port in the index.
+	 * @param port	the port to be removed.
+	 */
+	protected static <K> void	removeFromIndex(
+		ConcurrentHashMap<K,Set<PortI>> index,
+		K key,
+		final PortI port
+		)
+	{
+		index.computeIfPresent(key,
+			new BiFunction<K,Set<PortI>,Set<PortI>>() {
+				@Override
+				public Set<PortI> apply(K k, Set<PortI> s)
+				{
+					s.remove(port) ;
+					return s.isEmpty() ? null : s ;
+				}
+			}) ;
+	}
+}
@@ -0,0 +1,373 @@
+package fr.upmc.components.cvm.utils;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The class <code>SerialLaneExecutor</code> implements an executor service
+ * that runs its tasks one at a time, in submission order, but without owning
+ * any thread: tasks are executed by the threads of a shared pool.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * A lane gives a single-threaded component the same guarantee as a single
+ * thread executor (no two requests of the component run concurrently and
+ * they run in FIFO order) while many lanes are multiplexed onto the same
+ * work-stealing pool.  When the lane has pending tasks, one drain task is
+ * submitted to the pool; it runs at most <code>MAX_TASKS_PER_TURN</code>
+ * tasks and then resubmits itself if more remain, so that a busy component
+ * cannot monopolise a pool thread.
+ * 
+ * Synchronous calls between components make pool threads block on futures;
+ * the static method <code>awaitResult</code> performs such waits as managed
+ * blocks so that the <code>ForkJoinPool</code> can compensate with spare
+ * threads instead of deadlocking when all of its workers wait.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.pool != null && this.tasks != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			SerialLaneExecutor
+extends		AbstractExecutorService
+{
+	/** maximum number of tasks run by a drain before yielding the thread.	*/
+	public static int				MAX_TASKS_PER_TURN = 64 ;
+
+	/** shared pool which threads execute the tasks of the lane.			*/
+	protected final ExecutorService						pool ;
+	/** tasks submitted and not yet started.								*/
+	protected final ConcurrentLinkedQueue<Runnable>		tasks ;
+	/** true when a drain task is submitted to the pool or running.		*/
+	protected final AtomicBoolean						scheduled ;
+	/** released when the lane is shut down and all of its tasks are done.	*/
+	protected final CountDownLatch						terminated ;
+	/** the task draining the lane in the pool.							*/
+	protected final Runnable							drainer ;
+	/** true when the lane does not accept new tasks anymore.				*/
+	protected volatile boolean							isShutdown ;
+	/** thread currently draining the lane, if any.						*/
+	protected volatile Thread							runner ;
+	/** lock making <code>shutdownNow</code> interrupt the runner only
+	 *  while it drains this lane.											*/
+	protected final Object								runnerLock ;
+
+	/**
+	 * create a lane executing its tasks on the given pool.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	pool != null
+	 * post	!this.isShutdown()
+	 * </pre>
+	 *
+	 * @param pool	shared pool which threads execute the tasks of the lane.
+	 */
+	public				SerialLaneExecutor(ExecutorService pool)
+	{
+		super() ;
+		assert	pool != null ;
+
+		this.pool = pool ;
+		this.tasks = new ConcurrentLinkedQueue<Runnable>() ;
+		this.scheduled = new AtomicBoolean(false) ;
+		this.terminated = new CountDownLatch(1) ;
+		this.isShutdown = false ;
+		this.runner = null ;
+		this.runnerLock = new Object() ;
+		this.drainer = new Runnable() {
+							@Override
+							public void run() {
+								SerialLaneExecutor.this.drain() ;
+							}
+						} ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Task execution
+	// ------------------------------------------------------------------------
+
+	/**
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void			execute(Runnable command)
+	{
+		assert	command != null ;
+
+		synchronized (this.tasks) {
+			if (this.isShutdown) {
+				throw new RejectedExecutionException(
+										"lane has been shut down.") ;
+			}
+			this.tasks.offer(command) ;
+		}
+		this.scheduleDrain() ;
+	}
+
+	/**
+	 * submit the drain task to the pool unless it is already submitted or
+	 * running.
+	 */
+	protected void		scheduleDrain()
+	{
+		if (this.scheduled.compareAndSet(false, true)) {
+			try {
+				this.pool.execute(this.drainer) ;
+			} catch (RejectedExecutionException e) {
+				this.scheduled.set(false) ;
+				throw e ;
+			}
+		}
+	}
+
+	/**
+	 * run at most <code>MAX_TASKS_PER_TURN</code> pending tasks in the
+	 * current pool thread, then reschedule the drain if tasks remain, even
+	 * when a task has raised an error; if the pool refuses the drain because
+	 * it is shut down, the remaining tasks are run in the current thread.
+	 */
+	protected void		drain()
+	{
+		boolean again = true ;
+		while (again) {
+			again = false ;
+			synchronized (this.runnerLock) {
+				this.runner = Thread.currentThread() ;
+			}
+			try {
+				Runnable r ;
+				int n = 0 ;
+				while (n < MAX_TASKS_PER_TURN &&
+										(r = this.tasks.poll()) != null) {
+					try {
+						r.run() ;
+					} catch (RuntimeException e) {
+						// futures capture their own exceptions, so only raw
+						// runnables passed to execute can get here.
+						this.report(e) ;
+					}
+					n++ ;
+				}
+			} finally {
+				synchronized (this.runnerLock) {
+					this.runner = null ;
+					// clear the interrupt set by shutdownNow, the pool
+					// thread is shared with other lanes.
+					Thread.interrupted() ;
+				}
+				this.scheduled.set(false) ;
+				if (!this.tasks.isEmpty()) {
+					if (this.scheduled.compareAndSet(false, true)) {
+						try {
+							this.pool.execute(this.drainer) ;
+						} catch (RejectedExecutionException e) {
+							again = true ;
+						}
+					}
+				} else {
+					this.tryTerminate() ;
+				}
+			}
+		}
+	}
+
+	/**
+	 * report an exception raised by a task to the uncaught exception handler
+	 * of the current thread, which keeps running the lane.
+	 *
+	 * @param e	exception raised by a task.
+	 */
+	protected void		report(Throwable e)
+	{
+		Thread t = Thread.currentThread() ;
+		t.getUncaughtExceptionHandler().uncaughtException(t, e) ;
+	}
+
+	/**
+	 * release the waiters of <code>awaitTermination</code> if the lane is
+	 * shut down and idle.
+	 */
+	protected void		tryTerminate()
+	{
+		if (this.isShutdown && !this.scheduled.get() && this.tasks.isEmpty()) {
+			this.terminated.countDown() ;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Life cycle
+	// ------------------------------------------------------------------------
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#shutdown()
+	 */
+	@Override
+	public void			shutdown()
+	{
+		synchronized (this.tasks) {
+			this.isShutdown = true ;
+		}
+		this.tryTerminate() ;
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#shutdownNow()
+	 */
+	@Override
+	public List<Runnable>	shutdownNow()
+	{
+		ArrayList<Runnable> pending = new ArrayList<Runnable>() ;
+		synchronized (this.tasks) {
+			this.isShutdown = true ;
+			Runnable r ;
+			while ((r = this.tasks.poll()) != null) {
+				pending.add(r) ;
+			}
+		}
+		synchronized (this.runnerLock) {
+			Thread t = this.runner ;
+			if (t != null) {
+				t.interrupt() ;
+			}
+		}
+		this.tryTerminate() ;
+		return pending ;
+	}
+
+	/**
+	 * return the number of tasks waiting in the lane; as the queue of the
+	 * lane is not bounded, this is computed by traversing it and is meant
+	 * for monitoring only.
+	 *
+	 * @return	the number of pending tasks.
+	 */
+	public int			getPendingTaskCount()
+	{
+		return this.tasks.size() ;
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#isShutdown()
+	 */
+	@Override
+	public boolean		isShutdown()
+	{
+		return this.isShutdown ;
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#isTerminated()
+	 */
+	@Override
+	public boolean		isTerminated()
+	{
+		return this.terminated.getCount() == 0 ;
+	}
+
+	/**
+	 * @see java.util.concurrent.ExecutorService#awaitTermination(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean		awaitTermination(long timeout, TimeUnit unit)
+	throws InterruptedException
+	{
+		return this.terminated.await(timeout, unit) ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Blocking on results from pool threads
+	// ------------------------------------------------------------------------
+
+	/**
+	 * wait for the result of a future; when called from a thread of a
+	 * <code>ForkJoinPool</code>, the wait is done as a managed block so that
+	 * the pool can activate a spare thread while this one is blocked.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	f != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param f		future which result is awaited.
+	 * @return		the result of the future.
+	 * @throws InterruptedException	if interrupted while waiting.
+	 * @throws ExecutionException	if the computation threw an exception.
+	 */
+	public static <T> T	awaitResult(final Future<T> f)
+	throws InterruptedException, ExecutionException
+	{
+		assert	f != null ;
+
+		if (!f.isDone() &&
+					Thread.currentThread() instanceof ForkJoinWorkerThread) {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				@Override
+				public boolean block() throws InterruptedException {
+					try {
+						f.get() ;
+					} catch (ExecutionException e) {
+						// rethrown by the get below.
+					}
+					return true ;
+				}
+				@Override
+				public boolean isReleasable() {
+					return f.isDone() ;
+				}
+			}) ;
+		}
+		return f.get() ;
+	}
+}
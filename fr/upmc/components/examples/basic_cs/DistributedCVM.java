@@ -5,7 +5,6 @@ import fr.upmc.components.AbstractComponent;
 import fr.upmc.components.cvm.AbstractDistributedCVM;
 import fr.upmc.components.examples.basic_cs.components.URIConsumer;
 import fr.upmc.components.examples.basic_cs.components.URIProvider;
-import fr.upmc.components.ports.PortI;
 import fr.upmc.components.registry.distributedRegistry.DistributedRegistryClient;
 
 /**
@@ -136,10 +135,9 @@ extends		AbstractDistributedCVM
 
 		} else if (thisJVMURI.equals(CONSUMER_JVM_URI)) {
 
-			// do the connection
-			PortI consumerOutboundPort =
-					uriConsumer.findPortFromURI(URIConsumerOutboundPortURI) ;
-			consumerOutboundPort.doConnection(
+			// register the connection, done by super.interconnect()
+			this.addConnection(
+				URIConsumerOutboundPortURI,
 				URIProviderInboundPortURI,
 				"fr.upmc.components.examples.basic_cs.URIServiceConnector") ;
 
@@ -1,11 +1,14 @@
 package fr.upmc.components.examples.smoothing;
 
 import fr.upmc.components.ComponentI.ComponentTask;
+import fr.upmc.components.connectors.BatchingDataConnector;
 import fr.upmc.components.connectors.DataConnector;
+import fr.upmc.components.connectors.codec.DataCodecs;
 import fr.upmc.components.cvm.AbstractDistributedCVM;
 import fr.upmc.components.examples.smoothing.filter.Filter;
 import fr.upmc.components.examples.smoothing.gauge.Gauge;
 import fr.upmc.components.examples.smoothing.sensor.SensorSimulator;
+import fr.upmc.components.examples.smoothing.sensor.interfaces.SensorData;
 import fr.upmc.components.ports.PortI;
 
 /**
@@ -82,6 +85,9 @@ extends		AbstractDistributedCVM
 	throws Exception
 	{
 		super(args);
+		// sensor data are exchanged between the JVMs, all of which use the
+		// same codec to encode them.
+		DataCodecs.register(SensorData.class) ;
 	}
 
 	/**
@@ -156,15 +162,16 @@ extends		AbstractDistributedCVM
 		} else if (thisJVMURI.equals(SENSOR2_JVMURI)) {
 
 		} else if (thisJVMURI.equals(FILTER1_JVMURI)) {
-			// connect the first sensor simulator to the first filter
+			// connect the first sensor simulator to the first filter, the
+			// sensor data being passed by batches to the remote filter
 			PortI p = this.filter1.findPortFromURI(FILTER_OUBOUNDPORTURI_1) ;
 			p.doConnection(SS_INBOUNDPORTURI_1,
-						   DataConnector.class.getCanonicalName()) ;
+						   BatchingDataConnector.class.getCanonicalName()) ;
 		} else if (thisJVMURI.equals(FILTER2_JVMURI)) {
 			// connect the second sensor simulator to the second filter
 			PortI p = this.filter2.findPortFromURI(FILTER_OUBOUNDPORTURI_2) ;
 			p.doConnection(SS_INBOUNDPORTURI_2,
-						   DataConnector.class.getCanonicalName()) ;
+						   BatchingDataConnector.class.getCanonicalName()) ;
 		} else if (thisJVMURI.equals(GAUGE1_JVMURI)) {
 			// connecting the first filter to the first gauge.
 			PortI p = this.gauge1.findPortFromURI(GAUGE_OUTBOUNDPORTURI_1) ;
@@ -1,8 +1,7 @@
 package fr.upmc.components.examples.smoothing.filter;
 
-import java.util.Vector;
-
 import fr.upmc.components.AbstractComponent;
+import fr.upmc.components.connectors.primitive.DoubleChunk;
 import fr.upmc.components.cvm.AbstractCVM;
 import fr.upmc.components.examples.smoothing.sensor.SensorDataInboundPort;
 import fr.upmc.components.examples.smoothing.sensor.SensorI;
@@ -40,7 +39,12 @@ implements	SensorI
 	// ------------------------------------------------------------------------
 
 	protected final String					filterName ;
-	protected final Vector<Double>			buffer ;
+	/** last values received, in a circular buffer.					*/
+	protected final double[]				window ;
+	/** number of values in the window.									*/
+	protected int							count ;
+	/** index of the next value in the window.							*/
+	protected int							next ;
 	protected final SensorDataOutboundPort	sensorPort ;
 	protected SensorDataInboundPort			filterPort ;
 	protected int							windowSize ;
@@ -71,7 +75,9 @@ implements	SensorI
 		super(true) ;
 		this.filterName = filterName ;
 		this.windowSize = windowSize ;
-		this.buffer = new Vector<Double>() ;
+		this.window = new double[windowSize] ;
+		this.count = 0 ;
+		this.next = 0 ;
 
 		// interfaces and port to the underlying sensor
 		this.addRequiredInterface(SensorDataRequiredI.PullI.class) ;
@@ -116,10 +122,55 @@ implements	SensorI
 	public void			acceptData(SensorDataRequiredI.SensorDataI sd)
 	{
 		System.out.printf("%s: %.4f\n", this.filterName,  sd.getValue()) ;
-		if (this.buffer.size() >= this.windowSize) {
-			this.buffer.remove(0) ;
+		this.addToWindow(sd.getValue()) ;
+	}
+
+	/**
+	 * accept a chunk of samples from a sensor, buffer them and release the
+	 * chunk.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	samples != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param samples	chunk of samples received from the sensor.
+	 */
+	public void			acceptSamples(DoubleChunk samples)
+	{
+		double[] values = samples.values() ;
+		for (int i = 0 ; i < samples.length() ; i++) {
+			this.addToWindow(values[i]) ;
 		}
-		this.buffer.add(sd.getValue()) ;
+		samples.release() ;
+	}
+
+	/**
+	 * add a value to the window, replacing the oldest one when it is full.
+	 * 
+	 * @param v	value to be added.
+	 */
+	protected synchronized void	addToWindow(double v)
+	{
+		this.window[this.next] = v ;
+		this.next = (this.next + 1) % this.window.length ;
+		if (this.count < this.window.length) {
+			this.count++ ;
+		}
+	}
+
+	/**
+	 * @return	the mean of the values in the window.
+	 */
+	protected synchronized double	windowMean()
+	{
+		double mean = 0.0 ;
+		for (int i = 0 ; i < this.count ; i++) {
+			mean += this.window[i] ;
+		}
+		return mean / this.count ;
 	}
 
 	/**
@@ -129,11 +180,7 @@ implements	SensorI
 	public SensorDataOfferedI.SensorDataI	produceSensorData()
 	throws Exception
 	{
-		double mean = 0.0 ;
-		for(Double d : this.buffer) {
-			mean += d ;
-		}
-		return new SensorData(mean / this.buffer.size()) ;
+		return new SensorData(this.windowMean()) ;
 	}
 
 	/**
@@ -143,11 +190,7 @@ implements	SensorI
 	public void			pushSensorData()
 	throws Exception
 	{
-		double mean = 0.0 ;
-		for(Double d : this.buffer) {
-			mean += d ;
-		}
-		this.filterPort.send(new SensorData(mean / this.buffer.size())) ;
+		this.filterPort.send(new SensorData(this.windowMean())) ;
 	}
 
 	/**
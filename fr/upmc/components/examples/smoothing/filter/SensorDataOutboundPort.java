@@ -2,6 +2,7 @@ package fr.upmc.components.examples.smoothing.filter;
 
 import fr.upmc.components.ComponentI;
 import fr.upmc.components.ComponentI.ComponentService;
+import fr.upmc.components.connectors.primitive.DoubleChunk;
 import fr.upmc.components.examples.smoothing.sensor.SensorI;
 import fr.upmc.components.examples.smoothing.sensor.interfaces.SensorData;
 import fr.upmc.components.examples.smoothing.sensor.interfaces.SensorDataRequiredI;
@@ -62,6 +63,18 @@ implements	SensorDataRequiredI.PullI,
 	throws Exception
 	{
 		final Filter ib = (Filter) this.owner ;
+		if (d instanceof DoubleChunk) {
+			final DoubleChunk samples = (DoubleChunk) d ;
+			this.owner.handleRequestAsync(
+					new ComponentService<Void>() {
+						@Override
+						public Void call() throws Exception {
+							ib.acceptSamples(samples) ;
+							return null;
+						}
+					}) ;
+			return ;
+		}
 		final SensorData sd = (SensorData) d ;
 		this.owner.handleRequestAsync(
 				new ComponentService<Void>() {
@@ -72,4 +85,30 @@ implements	SensorDataRequiredI.PullI,
 					}
 				}) ;
 	}
+
+	/**
+	 * accept the sensor data of the batch in a single request to the owner.
+	 * 
+	 * @see fr.upmc.components.interfaces.DataRequiredI.PushI#receiveBatch(fr.upmc.components.interfaces.DataRequiredI.DataI[])
+	 */
+	@Override
+	public void			receiveBatch(final DataRequiredI.DataI[] ds)
+	throws Exception
+	{
+		final Filter ib = (Filter) this.owner ;
+		this.owner.handleRequestAsync(
+				new ComponentService<Void>() {
+					@Override
+					public Void call() throws Exception {
+						for (int i = 0 ; i < ds.length ; i++) {
+							if (ds[i] instanceof DoubleChunk) {
+								ib.acceptSamples((DoubleChunk) ds[i]) ;
+							} else {
+								ib.acceptData((SensorData) ds[i]) ;
+							}
+						}
+						return null;
+					}
+				}) ;
+	}
 }
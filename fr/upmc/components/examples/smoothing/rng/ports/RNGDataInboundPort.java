@@ -1,5 +1,7 @@
 package fr.upmc.components.examples.smoothing.rng.ports;
 
+import java.util.concurrent.CompletableFuture;
+
 import fr.upmc.components.ComponentI;
 import fr.upmc.components.ComponentI.ComponentService;
 import fr.upmc.components.examples.smoothing.rng.interfaces.RNGDataOfferedI;
@@ -61,4 +63,21 @@ implements	RNGDataOfferedI.PullI,
 					}
 				});
 	}
+
+	/**
+	 * @see fr.upmc.components.ports.AbstractDataInboundPort#getAsync()
+	 */
+	@Override
+	public CompletableFuture<DataOfferedI.DataI>	getAsync()
+	{
+		final RNGProducerI rngp = (RNGProducerI) this.owner ;
+		return this.owner.handleRequestCompletable(
+					new ComponentService<DataOfferedI.DataI>() {
+						@Override
+						public DataOfferedI.DataI call() throws Exception
+						{
+							return rngp.produce() ;
+						}
+					}) ;
+	}
 }
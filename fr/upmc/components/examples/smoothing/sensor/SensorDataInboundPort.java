@@ -1,5 +1,7 @@
 package fr.upmc.components.examples.smoothing.sensor;
 
+import java.util.concurrent.CompletableFuture;
+
 import fr.upmc.components.ComponentI;
 import fr.upmc.components.ComponentI.ComponentService;
 import fr.upmc.components.examples.smoothing.sensor.interfaces.SensorDataOfferedI;
@@ -57,4 +59,45 @@ implements	SensorDataOfferedI.PullI,
 						}
 					}) ;
 	}
+
+	/**
+	 * @see fr.upmc.components.ports.AbstractDataInboundPort#getAsync()
+	 */
+	@Override
+	public CompletableFuture<DataOfferedI.DataI>	getAsync()
+	{
+		final SensorI fs = (SensorI) this.owner ;
+		return this.owner.handleRequestCompletable(
+					new ComponentService<DataOfferedI.DataI>() {
+						@Override
+						public DataOfferedI.DataI call() throws Exception
+						{
+							return fs.produceSensorData() ;
+						}
+					}) ;
+	}
+
+	/**
+	 * produce the sensor data of the batch in a single request to the owner.
+	 * 
+	 * @see fr.upmc.components.interfaces.DataOfferedI.PullI#getBatch(int)
+	 */
+	@Override
+	public DataOfferedI.DataI[]	getBatch(final int max) throws Exception
+	{
+		final SensorI fs = (SensorI) this.owner ;
+		return this.owner.handleRequestSync(
+					new ComponentService<DataOfferedI.DataI[]>() {
+						@Override
+						public DataOfferedI.DataI[] call() throws Exception
+						{
+							DataOfferedI.DataI[] ret =
+											new DataOfferedI.DataI[max] ;
+							for (int i = 0 ; i < max ; i++) {
+								ret[i] = fs.produceSensorData() ;
+							}
+							return ret ;
+						}
+					}) ;
+	}
 }
@@ -1,5 +1,7 @@
 package fr.upmc.components.examples.smoothing.sensor.interfaces;
 
+import fr.upmc.components.connectors.codec.DataCodecs;
+
 /**
  * The class <code>SensorData</code> implements the data that can be exchanged
  * through <code>SensorDataOfferedI</code> and <code>SensorDataRequiredI</code>
@@ -11,6 +13,10 @@ package fr.upmc.components.examples.smoothing.sensor.interfaces;
  * numbers.  It implements the <code>SensorDataI</code> of both the offered
  * and the required interfaces so to ease the use of the service.
  * 
+ * When a codec is registered for the class in <code>DataCodecs</code>, sensor
+ * data are serialized by this codec, including when pulled by a remote
+ * component.
+ * 
  * <p><strong>Invariant</strong></p>
  * 
  * <pre>
@@ -30,9 +36,13 @@ implements	SensorDataOfferedI.SensorDataI,
 	protected double	value ;
 
 	public			SensorData(double value)	{ this.value = value; }
+	/** used by the schema codec of the class to create decoded data.	*/
+	protected		SensorData()				{ this(0.0) ; }
 
 	@Override
 	public double	getSensorData()				{ return this.value ; }
 	@Override
 	public double	getValue()					{ return this.value ; }
+
+	protected Object	writeReplace()			{ return DataCodecs.replace(this) ; }
 }
\ No newline at end of file
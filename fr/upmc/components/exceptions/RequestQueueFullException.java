@@ -0,0 +1,34 @@
+package fr.upmc.components.exceptions;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The class <code>RequestQueueFullException</code> is thrown to the caller
+ * when a request is refused because the bounded request queue of a component
+ * using the <code>FAIL_FAST</code> overload policy is full.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			RequestQueueFullException
+extends		RejectedExecutionException
+{
+	private static final long serialVersionUID = 1L;
+
+	public				RequestQueueFullException()
+	{
+		super();
+	}
+
+	public				RequestQueueFullException(String message)
+	{
+		super(message);
+	}
+}
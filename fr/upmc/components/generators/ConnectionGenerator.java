@@ -0,0 +1,745 @@
+package fr.upmc.components.generators;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * The class <code>ConnectionGenerator</code> implements the annotation
+ * processor generating connectors and ports from
+ * <code>GenerateConnection</code> annotations.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The processor is registered as a service in
+ * <code>resources/META-INF/services/javax.annotation.processing.Processor</code>,
+ * which is kept out of the source root so that compiling the component model
+ * itself does not look for a processor not compiled yet; once this file is
+ * packaged with the compiled classes, <code>javac</code> runs the processor
+ * automatically when the component model is on the processor path.  It can
+ * also be named explicitly with the <code>-processor</code> option.  For each annotation, it checks that every
+ * method of the required interface has a counterpart in the offered
+ * interface, and, when an owner is given, that every method of the offered
+ * interface has a public implementation in the owner, and then writes the
+ * source of the generated classes (see <code>GenerateConnection</code>).
+ * Mismatches are reported as compilation errors on the annotated type.
+ * 
+ * Generated sources use fully qualified type names, so that they never
+ * clash with the names used in the package where they are generated.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@SupportedAnnotationTypes({
+	"fr.upmc.components.generators.GenerateConnection",
+	"fr.upmc.components.generators.GenerateConnections"})
+public class			ConnectionGenerator
+extends		AbstractProcessor
+{
+	protected static final String	GENERATE_CONNECTION =
+							"fr.upmc.components.generators.GenerateConnection" ;
+	protected static final String	GENERATE_CONNECTIONS =
+							"fr.upmc.components.generators.GenerateConnections" ;
+
+	protected Elements		elements ;
+	protected Types			types ;
+	protected Filer			filer ;
+	protected Messager		messager ;
+
+	/**
+	 * @see javax.annotation.processing.AbstractProcessor#init(javax.annotation.processing.ProcessingEnvironment)
+	 */
+	@Override
+	public synchronized void	init(ProcessingEnvironment processingEnv)
+	{
+		super.init(processingEnv) ;
+		this.elements = processingEnv.getElementUtils() ;
+		this.types = processingEnv.getTypeUtils() ;
+		this.filer = processingEnv.getFiler() ;
+		this.messager = processingEnv.getMessager() ;
+	}
+
+	/**
+	 * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+	 */
+	@Override
+	public SourceVersion	getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported() ;
+	}
+
+	/**
+	 * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set, javax.annotation.processing.RoundEnvironment)
+	 */
+	@Override
+	public boolean		process(
+		Set<? extends TypeElement> annotations,
+		RoundEnvironment roundEnv
+		)
+	{
+		Set<Element> annotated = new HashSet<Element>() ;
+		for (TypeElement a : annotations) {
+			annotated.addAll(roundEnv.getElementsAnnotatedWith(a)) ;
+		}
+		for (Element e : annotated) {
+			for (AnnotationMirror am : e.getAnnotationMirrors()) {
+				String name = this.qualifiedName(am.getAnnotationType()) ;
+				if (GENERATE_CONNECTION.equals(name)) {
+					this.generate(e, am) ;
+				} else if (GENERATE_CONNECTIONS.equals(name)) {
+					for (AnnotationValue v : this.listValue(am, "value")) {
+						this.generate(e, (AnnotationMirror) v.getValue()) ;
+					}
+				}
+			}
+		}
+		return true ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Analysis of the annotations
+	// ------------------------------------------------------------------------
+
+	/**
+	 * check the connection described by <code>am</code> on the type
+	 * <code>origin</code> and generate its classes.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	origin != null && am != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param origin	the annotated type.
+	 * @param am		a <code>GenerateConnection</code> annotation.
+	 */
+	protected void		generate(Element origin, AnnotationMirror am)
+	{
+		TypeElement required = this.typeValue(am, "required") ;
+		TypeElement offered = this.typeValue(am, "offered") ;
+		TypeElement owner = this.typeValue(am, "owner") ;
+		if (Void.class.getCanonicalName().equals(
+									owner.getQualifiedName().toString())) {
+			owner = null ;
+		}
+		String pkg = this.elements.getPackageOf(origin).
+											getQualifiedName().toString() ;
+
+		String connectorName = this.stringValue(am, "connectorName") ;
+		if (connectorName.isEmpty()) {
+			connectorName = this.baseName(required) + "Connector" ;
+		}
+		String outboundPortName = this.stringValue(am, "outboundPortName") ;
+		if (outboundPortName.isEmpty()) {
+			outboundPortName = this.baseName(required) + "OutboundPort" ;
+		}
+		String inboundPortName = this.stringValue(am, "inboundPortName") ;
+		if (inboundPortName.isEmpty()) {
+			inboundPortName = this.baseName(offered) + "InboundPort" ;
+		}
+
+		// map each required method onto its offered counterpart
+		Map<String,String> r2o = this.mappings(am, "requiredToOffered") ;
+		List<ExecutableElement> requiredMethods =
+											this.interfaceMethods(required) ;
+		List<ExecutableElement> targets = new ArrayList<ExecutableElement>() ;
+		for (ExecutableElement m : requiredMethods) {
+			String target = this.mappedName(r2o, m) ;
+			ExecutableElement t =
+				this.findMethod(this.interfaceMethods(offered), target, m) ;
+			if (t == null) {
+				this.error(origin, am, "no method " + target +
+						   " matching " + m + " of " + required +
+						   " in " + offered) ;
+				return ;
+			}
+			targets.add(t) ;
+		}
+
+		this.writeConnector(origin, pkg, connectorName, required, offered,
+							requiredMethods, targets) ;
+		this.writeOutboundPort(origin, pkg, outboundPortName, required,
+							   requiredMethods) ;
+
+		if (owner != null) {
+			Map<String,String> o2w = this.mappings(am, "offeredToOwner") ;
+			List<ExecutableElement> offeredMethods =
+											this.interfaceMethods(offered) ;
+			List<ExecutableElement> implementations =
+										new ArrayList<ExecutableElement>() ;
+			List<ExecutableElement> candidates =
+							ElementFilter.methodsIn(
+										this.elements.getAllMembers(owner)) ;
+			for (ExecutableElement m : offeredMethods) {
+				String target = this.mappedName(o2w, m) ;
+				ExecutableElement t = this.findMethod(candidates, target, m) ;
+				if (t == null || !t.getModifiers().contains(Modifier.PUBLIC)) {
+					this.error(origin, am, "no public method " + target +
+							   " matching " + m + " of " + offered +
+							   " in " + owner) ;
+					return ;
+				}
+				implementations.add(t) ;
+			}
+			this.writeInboundPort(origin, pkg, inboundPortName, offered,
+								  owner, offeredMethods, implementations) ;
+		}
+	}
+
+	/**
+	 * return the abstract methods of the interface <code>inter</code>,
+	 * including the inherited ones.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	inter != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param inter	an interface.
+	 * @return		its abstract methods.
+	 */
+	protected List<ExecutableElement>	interfaceMethods(TypeElement inter)
+	{
+		List<ExecutableElement> result = new ArrayList<ExecutableElement>() ;
+		for (ExecutableElement m :
+					ElementFilter.methodsIn(this.elements.getAllMembers(inter))) {
+			if (m.getModifiers().contains(Modifier.ABSTRACT)) {
+				result.add(m) ;
+			}
+		}
+		return result ;
+	}
+
+	/**
+	 * find among <code>candidates</code> a method named <code>name</code>
+	 * with the same parameter types as <code>m</code> and a return type
+	 * assignable to the one of <code>m</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	candidates != null && name != null && m != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param candidates	the methods among which to search.
+	 * @param name			the name of the method.
+	 * @param m				the method to be matched.
+	 * @return				the matching method or null if none.
+	 */
+	protected ExecutableElement	findMethod(
+		List<ExecutableElement> candidates,
+		String name,
+		ExecutableElement m
+		)
+	{
+		for (ExecutableElement c : candidates) {
+			if (!c.getSimpleName().contentEquals(name) ||
+					c.getModifiers().contains(Modifier.STATIC) ||
+					c.getParameters().size() != m.getParameters().size()) {
+				continue ;
+			}
+			boolean same = true ;
+			for (int i = 0 ; same && i < m.getParameters().size() ; i++) {
+				same = this.types.isSameType(
+							this.types.erasure(
+								c.getParameters().get(i).asType()),
+							this.types.erasure(
+								m.getParameters().get(i).asType())) ;
+			}
+			if (same && (m.getReturnType().getKind() == TypeKind.VOID ||
+						 this.types.isAssignable(c.getReturnType(),
+												 m.getReturnType()))) {
+				return c ;
+			}
+		}
+		return null ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Generation of the classes
+	// ------------------------------------------------------------------------
+
+	/**
+	 * write the source of the connector calling the methods
+	 * <code>targets</code> of <code>offered</code> to implement the methods
+	 * <code>methods</code> of <code>required</code>.
+	 */
+	protected void		writeConnector(
+		Element origin,
+		String pkg,
+		String name,
+		TypeElement required,
+		TypeElement offered,
+		List<ExecutableElement> methods,
+		List<ExecutableElement> targets
+		)
+	{
+		PrintWriter out = this.openSource(origin, pkg, name) ;
+		if (out == null) {
+			return ;
+		}
+		this.writeHeader(out, origin, pkg,
+						 "connector from <code>" + required.getSimpleName() +
+						 "</code> to <code>" + offered.getSimpleName() +
+						 "</code>") ;
+		out.println("public class\t\t\t" + name) ;
+		out.println("extends\t\tfr.upmc.components.connectors.AbstractConnector") ;
+		out.println("implements\t" + required.getQualifiedName()) ;
+		out.println("{") ;
+		for (int i = 0 ; i < methods.size() ; i++) {
+			ExecutableElement m = methods.get(i) ;
+			this.writeSignature(out, m, false) ;
+			out.println("\t{") ;
+			out.println("\t\t" + this.returnPrefix(m) + "((" +
+						offered.getQualifiedName() + ") this.offering)." +
+						targets.get(i).getSimpleName() + "(" +
+						this.arguments(m) + ") ;") ;
+			out.println("\t}") ;
+		}
+		out.println("}") ;
+		out.close() ;
+	}
+
+	/**
+	 * write the source of the outbound port implementing the methods
+	 * <code>methods</code> of <code>required</code> by calling its connector.
+	 */
+	protected void		writeOutboundPort(
+		Element origin,
+		String pkg,
+		String name,
+		TypeElement required,
+		List<ExecutableElement> methods
+		)
+	{
+		PrintWriter out = this.openSource(origin, pkg, name) ;
+		if (out == null) {
+			return ;
+		}
+		String r = required.getQualifiedName().toString() ;
+		this.writeHeader(out, origin, pkg,
+						 "outbound port for <code>" +
+						 required.getSimpleName() + "</code>") ;
+		out.println("public class\t\t\t" + name) ;
+		out.println("extends\t\tfr.upmc.components.ports.AbstractOutboundPort") ;
+		out.println("implements\t" + r) ;
+		out.println("{") ;
+		out.println("\tprivate static final long serialVersionUID = 1L;") ;
+		out.println() ;
+		out.println("\tpublic\t\t\t\t" + name + "(") ;
+		out.println("\t\tString uri,") ;
+		out.println("\t\tfr.upmc.components.ComponentI owner") ;
+		out.println("\t\t) throws Exception") ;
+		out.println("\t{") ;
+		out.println("\t\tsuper(uri, " + r + ".class, owner) ;") ;
+		out.println("\t}") ;
+		out.println() ;
+		out.println("\tpublic\t\t\t\t" + name + "(") ;
+		out.println("\t\tfr.upmc.components.ComponentI owner") ;
+		out.println("\t\t) throws Exception") ;
+		out.println("\t{") ;
+		out.println("\t\tsuper(" + r + ".class, owner) ;") ;
+		out.println("\t}") ;
+		for (ExecutableElement m : methods) {
+			this.writeSignature(out, m, false) ;
+			out.println("\t{") ;
+			out.println("\t\t" + this.returnPrefix(m) + "((" + r +
+						") this.connector)." + m.getSimpleName() + "(" +
+						this.arguments(m) + ") ;") ;
+			out.println("\t}") ;
+		}
+		out.println("}") ;
+		out.close() ;
+	}
+
+	/**
+	 * write the source of the inbound port implementing the methods
+	 * <code>methods</code> of <code>offered</code> by calling the methods
+	 * <code>implementations</code> of its owner, directly if the owner is
+	 * passive and the requests are neither measured nor traced, so that the
+	 * call allocates nothing, and through <code>handleRequestSync</code>
+	 * otherwise.
+	 */
+	protected void		writeInboundPort(
+		Element origin,
+		String pkg,
+		String name,
+		TypeElement offered,
+		TypeElement owner,
+		List<ExecutableElement> methods,
+		List<ExecutableElement> implementations
+		)
+	{
+		PrintWriter out = this.openSource(origin, pkg, name) ;
+		if (out == null) {
+			return ;
+		}
+		String o = offered.getQualifiedName().toString() ;
+		String w = owner.getQualifiedName().toString() ;
+		this.writeHeader(out, origin, pkg,
+						 "inbound port for <code>" + offered.getSimpleName() +
+						 "</code> owned by <code>" + owner.getSimpleName() +
+						 "</code>") ;
+		out.println("public class\t\t\t" + name) ;
+		out.println("extends\t\tfr.upmc.components.ports.AbstractInboundPort") ;
+		out.println("implements\t" + o) ;
+		out.println("{") ;
+		out.println("\tprivate static final long serialVersionUID = 1L;") ;
+		out.println() ;
+		out.println("\t/** the owner of the port with its actual type.\t\t\t\t\t*/") ;
+		out.println("\tprotected final " + w + "\ttypedOwner ;") ;
+		out.println() ;
+		out.println("\tpublic\t\t\t\t" + name + "(") ;
+		out.println("\t\tString uri,") ;
+		out.println("\t\tfr.upmc.components.ComponentI owner") ;
+		out.println("\t\t) throws Exception") ;
+		out.println("\t{") ;
+		out.println("\t\tsuper(uri, " + o + ".class, owner) ;") ;
+		out.println("\t\tthis.typedOwner = (" + w + ") owner ;") ;
+		out.println("\t}") ;
+		out.println() ;
+		out.println("\tpublic\t\t\t\t" + name + "(") ;
+		out.println("\t\tfr.upmc.components.ComponentI owner") ;
+		out.println("\t\t) throws Exception") ;
+		out.println("\t{") ;
+		out.println("\t\tsuper(" + o + ".class, owner) ;") ;
+		out.println("\t\tthis.typedOwner = (" + w + ") owner ;") ;
+		out.println("\t}") ;
+		for (int i = 0 ; i < methods.size() ; i++) {
+			ExecutableElement m = methods.get(i) ;
+			String call = "o." + implementations.get(i).getSimpleName() +
+						  "(" + this.arguments(m) + ")" ;
+			boolean isVoid = m.getReturnType().getKind() == TypeKind.VOID ;
+			String boxed = this.boxedName(m.getReturnType()) ;
+			this.writeSignature(out, m, true) ;
+			out.println("\t{") ;
+			out.println("\t\tfinal " + w + " o = this.typedOwner ;") ;
+			out.println("\t\tif (!o.isConcurrent() &&") ;
+			out.println("\t\t\t\t!fr.upmc.components.metrics." +
+						"ComponentMetrics.ENABLED &&") ;
+			out.println("\t\t\t\t!fr.upmc.components.tracing." +
+						"Tracer.isEnabled()) {") ;
+			if (isVoid) {
+				out.println("\t\t\t" + call + " ;") ;
+				out.println("\t\t\treturn ;") ;
+			} else {
+				out.println("\t\t\treturn " + call + " ;") ;
+			}
+			out.println("\t\t}") ;
+			out.println("\t\t" + (isVoid ? "" : "return ") +
+						"o.handleRequestSync(") ;
+			out.println("\t\t\tnew fr.upmc.components.ComponentI." +
+						"ComponentService<" + boxed + ">() {") ;
+			out.println("\t\t\t\t@Override") ;
+			out.println("\t\t\t\tpublic " + boxed + " call() throws Exception") ;
+			out.println("\t\t\t\t{") ;
+			if (isVoid) {
+				out.println("\t\t\t\t\t" + call + " ;") ;
+				out.println("\t\t\t\t\treturn null ;") ;
+			} else {
+				out.println("\t\t\t\t\treturn " + call + " ;") ;
+			}
+			out.println("\t\t\t\t}") ;
+			out.println("\t\t\t}) ;") ;
+			out.println("\t}") ;
+		}
+		out.println("}") ;
+		out.close() ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Source writing utilities
+	// ------------------------------------------------------------------------
+
+	/**
+	 * open the generated source file of the class <code>pkg.name</code>, or
+	 * report an error on <code>origin</code> and return null if impossible.
+	 */
+	protected PrintWriter	openSource(Element origin, String pkg, String name)
+	{
+		String fqn = pkg.isEmpty() ? name : pkg + "." + name ;
+		try {
+			return new PrintWriter(
+						this.filer.createSourceFile(fqn, origin).openWriter()) ;
+		} catch (IOException e) {
+			this.messager.printMessage(Diagnostic.Kind.ERROR,
+									   "cannot create " + fqn + ": " + e,
+									   origin) ;
+			return null ;
+		}
+	}
+
+	/**
+	 * write the package declaration and the class comment.
+	 */
+	protected void		writeHeader(
+		PrintWriter out,
+		Element origin,
+		String pkg,
+		String description
+		)
+	{
+		if (!pkg.isEmpty()) {
+			out.println("package " + pkg + ";") ;
+			out.println() ;
+		}
+		out.println("/**") ;
+		out.println(" * Generated " + description + ".") ;
+		out.println(" *") ;
+		out.println(" * <p>Generated by <code>" +
+					ConnectionGenerator.class.getCanonicalName() +
+					"</code> from the annotations of <code>" +
+					((TypeElement) origin).getQualifiedName() +
+					"</code>; do not edit.</p>") ;
+		out.println(" */") ;
+	}
+
+	/**
+	 * write the signature of a method implementing <code>m</code>, with final
+	 * parameters if <code>finalParameters</code> is true.
+	 */
+	protected void		writeSignature(
+		PrintWriter out,
+		ExecutableElement m,
+		boolean finalParameters
+		)
+	{
+		if (!m.getTypeParameters().isEmpty()) {
+			this.messager.printMessage(Diagnostic.Kind.ERROR,
+							"generic methods are not supported: " + m, m) ;
+		}
+		StringBuffer sb = new StringBuffer() ;
+		sb.append("\tpublic " + m.getReturnType() + "\t" +
+				  m.getSimpleName() + "(") ;
+		List<? extends VariableElement> ps = m.getParameters() ;
+		for (int i = 0 ; i < ps.size() ; i++) {
+			if (i > 0) {
+				sb.append(", ") ;
+			}
+			if (finalParameters) {
+				sb.append("final ") ;
+			}
+			sb.append(ps.get(i).asType() + " " + ps.get(i).getSimpleName()) ;
+		}
+		sb.append(")") ;
+		List<? extends TypeMirror> ts = m.getThrownTypes() ;
+		for (int i = 0 ; i < ts.size() ; i++) {
+			sb.append(i == 0 ? " throws " : ", ") ;
+			sb.append(ts.get(i)) ;
+		}
+		out.println() ;
+		out.println("\t@Override") ;
+		out.println(sb.toString()) ;
+	}
+
+	/**
+	 * return the prefix of a statement returning the result of a call to a
+	 * method with the same return type as <code>m</code>.
+	 */
+	protected String	returnPrefix(ExecutableElement m)
+	{
+		return m.getReturnType().getKind() == TypeKind.VOID ? "" : "return " ;
+	}
+
+	/**
+	 * return the list of the parameter names of <code>m</code> as arguments.
+	 */
+	protected String	arguments(ExecutableElement m)
+	{
+		StringBuffer sb = new StringBuffer() ;
+		for (VariableElement p : m.getParameters()) {
+			if (sb.length() > 0) {
+				sb.append(", ") ;
+			}
+			sb.append(p.getSimpleName()) ;
+		}
+		return sb.toString() ;
+	}
+
+	/**
+	 * return the name of the reference type corresponding to <code>t</code>.
+	 */
+	protected String	boxedName(TypeMirror t)
+	{
+		if (t.getKind() == TypeKind.VOID) {
+			return "java.lang.Void" ;
+		} else if (t.getKind().isPrimitive()) {
+			return this.types.boxedClass((javax.lang.model.type.PrimitiveType) t).
+												getQualifiedName().toString() ;
+		} else {
+			return t.toString() ;
+		}
+	}
+
+	/**
+	 * return the simple name of <code>t</code> without its trailing "I".
+	 */
+	protected String	baseName(TypeElement t)
+	{
+		String n = t.getSimpleName().toString() ;
+		if (n.length() > 1 && n.endsWith("I")) {
+			n = n.substring(0, n.length() - 1) ;
+		}
+		return n ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Annotation values utilities
+	// ------------------------------------------------------------------------
+
+	/**
+	 * return the value of the element <code>name</code> of the annotation
+	 * <code>am</code>, taking the default values into account.
+	 */
+	protected AnnotationValue	value(AnnotationMirror am, String name)
+	{
+		for (Map.Entry<? extends ExecutableElement,? extends AnnotationValue> e :
+					this.elements.getElementValuesWithDefaults(am).entrySet()) {
+			if (e.getKey().getSimpleName().contentEquals(name)) {
+				return e.getValue() ;
+			}
+		}
+		return null ;
+	}
+
+	/**
+	 * return the type given by the class element <code>name</code> of
+	 * <code>am</code>.
+	 */
+	protected TypeElement	typeValue(AnnotationMirror am, String name)
+	{
+		TypeMirror t = (TypeMirror) this.value(am, name).getValue() ;
+		return (TypeElement) this.types.asElement(t) ;
+	}
+
+	/**
+	 * return the string element <code>name</code> of <code>am</code>.
+	 */
+	protected String	stringValue(AnnotationMirror am, String name)
+	{
+		return (String) this.value(am, name).getValue() ;
+	}
+
+	/**
+	 * return the array element <code>name</code> of <code>am</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<? extends AnnotationValue>	listValue(
+		AnnotationMirror am,
+		String name
+		)
+	{
+		return (List<? extends AnnotationValue>) this.value(am, name).getValue() ;
+	}
+
+	/**
+	 * return the <code>MethodMapping</code> array element <code>name</code>
+	 * of <code>am</code> as a map from source to target method names.
+	 */
+	protected Map<String,String>	mappings(AnnotationMirror am, String name)
+	{
+		Map<String,String> result = new HashMap<String,String>() ;
+		for (AnnotationValue v : this.listValue(am, name)) {
+			AnnotationMirror mm = (AnnotationMirror) v.getValue() ;
+			result.put(this.stringValue(mm, "from"),
+					   this.stringValue(mm, "to")) ;
+		}
+		return result ;
+	}
+
+	/**
+	 * return the name of the method to which <code>m</code> is forwarded.
+	 */
+	protected String	mappedName(Map<String,String> map, ExecutableElement m)
+	{
+		String n = m.getSimpleName().toString() ;
+		return map.containsKey(n) ? map.get(n) : n ;
+	}
+
+	/**
+	 * return the qualified name of the declared type <code>t</code>.
+	 */
+	protected String	qualifiedName(DeclaredType t)
+	{
+		return ((TypeElement) t.asElement()).getQualifiedName().toString() ;
+	}
+
+	/**
+	 * report a compilation error on the annotation <code>am</code> of
+	 * <code>e</code>.
+	 */
+	protected void		error(Element e, AnnotationMirror am, String message)
+	{
+		this.messager.printMessage(Diagnostic.Kind.ERROR, message, e, am) ;
+	}
+}
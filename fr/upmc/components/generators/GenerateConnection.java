@@ -0,0 +1,104 @@
+package fr.upmc.components.generators;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotation <code>GenerateConnection</code> asks the annotation
+ * processor <code>ConnectionGenerator</code> to generate the connector and
+ * the ports linking a required interface to an offered one.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The annotation can be put on any type, typically the component or the CVM
+ * using the connection, and the classes are generated in the package of this
+ * type.  The following classes are generated:
+ * 
+ * <ul>
+ * <li>a connector, subclass of <code>AbstractConnector</code> implementing
+ *   the required interface by calling the offered one;</li>
+ * <li>an outbound port, subclass of <code>AbstractOutboundPort</code>
+ *   implementing the required interface by calling its connector;</li>
+ * <li>if <code>owner</code> is given, an inbound port, subclass of
+ *   <code>AbstractInboundPort</code> implementing the offered interface by
+ *   calling the methods of its owner component.</li>
+ * </ul>
+ * 
+ * The generated methods call their target directly on a statically typed
+ * reference, so that the JIT compiler can inline the whole call chain.
+ * The generated inbound port calls the implementation methods of a passive
+ * owner directly, without allocating a request, when the requests are
+ * neither measured (<code>ComponentMetrics.ENABLED</code>) nor traced;
+ * otherwise, it passes the calls to its owner through
+ * <code>handleRequestSync</code>, as hand-written ports do, so that the
+ * requests are instrumented and traced.
+ * 
+ * Unless given, the names of the generated classes are derived from the
+ * simple names of the interfaces, without their trailing "I": for a required
+ * interface <code>URIConsumerI</code> and an offered interface
+ * <code>URIProviderI</code>, the classes <code>URIConsumerConnector</code>,
+ * <code>URIConsumerOutboundPort</code> and <code>URIProviderInboundPort</code>
+ * are generated.
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+@Repeatable(GenerateConnections.class)
+public @interface		GenerateConnection
+{
+	/** the required interface, subinterface of <code>RequiredI</code>.	*/
+	Class<?>			required() ;
+	/** the offered interface, subinterface of <code>OfferedI</code>.		*/
+	Class<?>			offered() ;
+	/** the component class owning the inbound port; when not given, no
+	 *  inbound port is generated.										*/
+	Class<?>			owner() default Void.class ;
+	/** required methods forwarded to offered methods of another name.	*/
+	MethodMapping[]		requiredToOffered() default {} ;
+	/** offered methods implemented by owner methods of another name.		*/
+	MethodMapping[]		offeredToOwner() default {} ;
+	/** simple name of the generated connector class.						*/
+	String				connectorName() default "" ;
+	/** simple name of the generated outbound port class.					*/
+	String				outboundPortName() default "" ;
+	/** simple name of the generated inbound port class.					*/
+	String				inboundPortName() default "" ;
+}
@@ -116,6 +116,32 @@ extends		RequiredI
 		 */
 		public void		receive(DataI d)
 		throws Exception  ;
+
+		/**
+		 * the method <code>receiveBatch</code> is called from the offering
+		 * component side to make the requiring side receiving several pieces
+		 * of data at once, in their order in the array; this default
+		 * implementation receives them one by one.
+		 * 
+		 * <p><strong>Contract</strong></p>
+		 * 
+		 * <pre>
+		 * pre	ds != null
+		 * post	true			// no postcondition.
+		 * </pre>
+		 *
+		 * @param ds	the pieces of data sent by the offering component.
+		 * @throws Exception
+		 */
+		public default void	receiveBatch(DataI[] ds)
+		throws Exception
+		{
+			assert	ds != null ;
+
+			for (int i = 0 ; i < ds.length ; i++) {
+				this.receive(ds[i]) ;
+			}
+		}
 	}
 
 	/**
@@ -147,5 +173,57 @@ extends		RequiredI
 		 */
 		public DataI	request()
 		throws Exception ;
+
+		/**
+		 * the method <code>requestBatch</code> is called by the requiring
+		 * component to obtain at most <code>max</code> pieces of data from
+		 * the offering one in a single call; this default implementation
+		 * calls <code>request</code> <code>max</code> times.
+		 * 
+		 * <p><strong>Contract</strong></p>
+		 * 
+		 * <pre>
+		 * pre	max > 0
+		 * post	return != null && return.length > 0 && return.length <= max
+		 * </pre>
+		 *
+		 * @param max	maximum number of pieces of data to be returned.
+		 * @return		the pieces of data produced by the offering component.
+		 * @throws Exception
+		 */
+		public default DataI[]	requestBatch(int max)
+		throws Exception
+		{
+			assert	max > 0 ;
+
+			DataI[] ret = new DataI[max] ;
+			for (int i = 0 ; i < max ; i++) {
+				ret[i] = this.request() ;
+			}
+			return ret ;
+		}
+
+		/**
+		 * the method <code>grantCredits</code> is called by the requiring
+		 * component to allow the offering one to send <code>n</code> more
+		 * pieces of data in the push mode, once it has consumed the previous
+		 * ones; this default implementation ignores the credits, as data
+		 * connections without flow control do.
+		 * 
+		 * <p><strong>Contract</strong></p>
+		 * 
+		 * <pre>
+		 * pre	n > 0
+		 * post	true			// no postcondition.
+		 * </pre>
+		 *
+		 * @param n		number of pieces of data the offering component may send.
+		 * @throws Exception
+		 */
+		public default void	grantCredits(int n)
+		throws Exception
+		{
+			assert	n > 0 ;
+		}
 	}
 }
@@ -0,0 +1,514 @@
+package fr.upmc.components.logging;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The class <code>AsyncBinaryLogger</code> implements an asynchronous logger
+ * writing the messages of many sources to one file in a compact binary
+ * format.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each thread logging messages gets its own <code>LogRingBuffer</code>, so
+ * that <code>log</code> only copies the message into a slot of the buffer,
+ * without locking nor allocating (once the source is known and the buffer
+ * of the thread has grown to the rate of the thread).  Buffers start with
+ * <code>INITIAL_RING_BUFFER_CAPACITY</code> slots which message arrays are
+ * allocated at first use, and a full buffer is replaced by one twice as
+ * large, up to <code>RING_BUFFER_CAPACITY</code> slots, so that the many
+ * short-lived or idle threads of virtual or cached thread pools only hold
+ * small buffers.  The buffer left behind by a thread that moved to a larger
+ * one or that died is dropped by the flusher as soon as it has been
+ * drained.  A daemon flusher thread drains the buffers
+ * periodically, or as soon as one of them is half full,
+ * encodes the records into a direct byte buffer and writes it to the log
+ * file through a <code>FileChannel</code>.  When the buffer of a thread is
+ * full, its messages are dropped and the number of dropped messages is
+ * written in the log, so that a slow disk never slows down components.
+ * 
+ * The file starts with the 8 bytes <code>MAGIC</code>, followed by records
+ * which first byte is a tag:
+ * 
+ * <ul>
+ * <li><code>SOURCE_RECORD</code>: <code>int</code> identifier and name of a
+ *   source in modified UTF-8 (as <code>DataOutput.writeUTF</code>);</li>
+ * <li><code>MESSAGE_RECORD</code>: <code>long</code> time stamp in
+ *   milliseconds, <code>int</code> source identifier and message in
+ *   modified UTF-8;</li>
+ * <li><code>DROPPED_RECORD</code>: <code>long</code> time stamp and
+ *   <code>long</code> number of messages dropped.</li>
+ * </ul>
+ * 
+ * Records of different threads are written in the order the flusher drains
+ * them, not in time stamp order; <code>BinaryLogReader</code> sorts them
+ * when rendering the log.  Messages logged concurrently with
+ * <code>close</code> may be lost.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.channel != null && this.flusher != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			AsyncBinaryLogger
+{
+	/** first bytes of binary log files.									*/
+	public static final byte[]	MAGIC =
+						new byte[]{'B', 'C', 'M', 'B', 'L', 'O', 'G', '1'} ;
+	/** tag of the records declaring a source.							*/
+	public static final byte	SOURCE_RECORD = 'S' ;
+	/** tag of the records holding a message.								*/
+	public static final byte	MESSAGE_RECORD = 'M' ;
+	/** tag of the records counting dropped messages.						*/
+	public static final byte	DROPPED_RECORD = 'X' ;
+
+	/** initial number of slots of the ring buffer of a thread.			*/
+	public static int		INITIAL_RING_BUFFER_CAPACITY = 16 ;
+	/** maximum number of slots of the ring buffer of a thread.			*/
+	public static int		RING_BUFFER_CAPACITY = 1024 ;
+	/** maximum number of characters kept per message.					*/
+	public static int		MAX_MESSAGE_LENGTH = 512 ;
+	/** pause of the flusher when there is nothing to write.				*/
+	public static long		FLUSH_INTERVAL_MILLIS = 5L ;
+	/** size of the byte buffer used to write to the file.					*/
+	public static int		WRITE_BUFFER_SIZE = 1 << 20 ;
+
+	/** channel on the log file.											*/
+	protected final FileChannel								channel ;
+	/** buffer in which the flusher encodes records.						*/
+	protected final ByteBuffer								out ;
+	/** ring buffers of all the threads having logged messages.			*/
+	protected final CopyOnWriteArrayList<LogRingBuffer>		buffers ;
+	/** ring buffer of the current thread.									*/
+	protected final ThreadLocal<LogRingBuffer>				localBuffer ;
+	/** identifiers of the sources.										*/
+	protected final ConcurrentHashMap<String,Integer>		sourceIds ;
+	/** names of the sources, indexed by their identifiers.				*/
+	protected final Vector<String>							sourceNames ;
+	/** number of sources already declared in the file.					*/
+	protected int											declaredSources ;
+	/** thread writing the records to the file.							*/
+	protected final Thread									flusher ;
+	/** hook closing the logger when the JVM exits.						*/
+	protected final Thread									shutdownHook ;
+	/** true when the logger is closed.									*/
+	protected volatile boolean								closed ;
+	/** first error raised when writing to the file, if any.				*/
+	protected volatile IOException							writeError ;
+
+	/**
+	 * create a logger writing to the file <code>f</code>, which is created
+	 * or truncated, and start its flusher thread.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	f != null
+	 * post	!this.isClosed()
+	 * </pre>
+	 *
+	 * @param f				log file.
+	 * @throws IOException	if the file cannot be opened.
+	 */
+	public				AsyncBinaryLogger(File f) throws IOException
+	{
+		super() ;
+		assert	f != null ;
+
+		this.channel = FileChannel.open(f.toPath(),
+										StandardOpenOption.CREATE,
+										StandardOpenOption.WRITE,
+										StandardOpenOption.TRUNCATE_EXISTING) ;
+		this.out = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE) ;
+		this.out.put(MAGIC) ;
+		this.buffers = new CopyOnWriteArrayList<LogRingBuffer>() ;
+		final CopyOnWriteArrayList<LogRingBuffer> all = this.buffers ;
+		this.localBuffer = new ThreadLocal<LogRingBuffer>() {
+					@Override
+					protected LogRingBuffer initialValue() {
+						LogRingBuffer b =
+							new LogRingBuffer(Thread.currentThread(),
+											  Math.min(
+												INITIAL_RING_BUFFER_CAPACITY,
+												RING_BUFFER_CAPACITY),
+											  MAX_MESSAGE_LENGTH) ;
+						all.add(b) ;
+						return b ;
+					}
+				} ;
+		this.sourceIds = new ConcurrentHashMap<String,Integer>() ;
+		this.sourceNames = new Vector<String>() ;
+		this.declaredSources = 0 ;
+		this.closed = false ;
+		this.writeError = null ;
+
+		this.flusher = new Thread("binary-log-flusher") {
+					@Override
+					public void run() {
+						AsyncBinaryLogger.this.flushLoop() ;
+					}
+				} ;
+		this.flusher.setDaemon(true) ;
+		this.flusher.start() ;
+		this.shutdownHook = new Thread() {
+					@Override
+					public void run() {
+						AsyncBinaryLogger.this.close() ;
+					}
+				} ;
+		Runtime.getRuntime().addShutdownHook(this.shutdownHook) ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Producer side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * log <code>message</code> on behalf of <code>source</code>, time stamped
+	 * with <code>System.currentTimeMillis()</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	source != null && message != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param source	name of the source of the message.
+	 * @param message	message to be logged.
+	 * @return			true if the message was queued, false if it was dropped.
+	 */
+	public boolean		log(String source, String message)
+	{
+		assert	source != null && message != null ;
+
+		if (this.closed) {
+			return false ;
+		}
+		Integer id = this.sourceIds.get(source) ;
+		if (id == null) {
+			id = this.registerSource(source) ;
+		}
+		LogRingBuffer b = this.localBuffer.get() ;
+		if (b.isFull() && b.getCapacity() < RING_BUFFER_CAPACITY) {
+			b = this.growLocalBuffer(b) ;
+		}
+		boolean queued =
+				b.offer(System.currentTimeMillis(), id.intValue(), message) ;
+		if (b.size() >= b.getCapacity() >> 1) {
+			// wake up the flusher before the buffer gets full.
+			LockSupport.unpark(this.flusher) ;
+		}
+		return queued ;
+	}
+
+	/**
+	 * replace the full ring buffer of the current thread by a new one twice
+	 * as large, the old one being retired and dropped by the flusher once
+	 * drained; records keep their order as the flusher drains the buffers
+	 * in the order they were created.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	old == this.localBuffer.get()
+	 * post	return.getCapacity() > old.getCapacity()
+	 * </pre>
+	 *
+	 * @param old	current ring buffer of the thread.
+	 * @return		the new ring buffer of the thread.
+	 */
+	protected LogRingBuffer	growLocalBuffer(LogRingBuffer old)
+	{
+		LogRingBuffer b =
+				new LogRingBuffer(old.getOwner(),
+								  Math.min(old.getCapacity() << 1,
+										   RING_BUFFER_CAPACITY),
+								  MAX_MESSAGE_LENGTH) ;
+		this.buffers.add(b) ;
+		old.retire() ;
+		this.localBuffer.set(b) ;
+		return b ;
+	}
+
+	/**
+	 * give an identifier to a new source.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	source != null
+	 * post	this.sourceIds.containsKey(source)
+	 * </pre>
+	 *
+	 * @param source	name of the source.
+	 * @return			the identifier of the source.
+	 */
+	protected synchronized Integer	registerSource(String source)
+	{
+		Integer id = this.sourceIds.get(source) ;
+		if (id == null) {
+			id = Integer.valueOf(this.sourceNames.size()) ;
+			this.sourceNames.add(source) ;
+			this.sourceIds.put(source, id) ;
+		}
+		return id ;
+	}
+
+	/**
+	 * @return	true if the logger is closed.
+	 */
+	public boolean		isClosed()
+	{
+		return this.closed ;
+	}
+
+	/**
+	 * write all of the pending records, stop the flusher and close the file;
+	 * does nothing if the logger is already closed.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	this.isClosed()
+	 * </pre>
+	 *
+	 */
+	public void			close()
+	{
+		synchronized (this) {
+			if (this.closed) {
+				return ;
+			}
+			this.closed = true ;
+		}
+		LockSupport.unpark(this.flusher) ;
+		try {
+			this.flusher.join() ;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt() ;
+		}
+		if (Thread.currentThread() != this.shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(this.shutdownHook) ;
+			} catch (IllegalStateException e) {
+				// the JVM is already shutting down.
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Flusher side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * body of the flusher thread: write the records until the logger is
+	 * closed, then write the remaining ones and close the file.
+	 */
+	protected void		flushLoop()
+	{
+		while (!this.closed) {
+			if (this.flushOnce() == 0) {
+				LockSupport.parkNanos(
+						TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS)) ;
+			}
+		}
+		while (this.flushOnce() > 0) {
+			// drain what has been logged before closing.
+		}
+		try {
+			this.writeOut() ;
+			this.channel.force(false) ;
+			this.channel.close() ;
+		} catch (IOException e) {
+			this.reportError(e) ;
+		}
+	}
+
+	/**
+	 * encode the pending records of all of the buffers and write them to
+	 * the file.
+	 *
+	 * @return	the number of records written.
+	 */
+	protected int		flushOnce()
+	{
+		int n = 0 ;
+		this.writeSourceDeclarations() ;
+		for (LogRingBuffer b : this.buffers) {
+			long dropped = b.takeDroppedCount() ;
+			if (dropped > 0L) {
+				this.ensureRoom(17) ;
+				this.out.put(DROPPED_RECORD) ;
+				this.out.putLong(System.currentTimeMillis()) ;
+				this.out.putLong(dropped) ;
+			}
+			// tested before draining: no record can follow the end of a
+			// producer, so the buffer is then empty once drained.
+			boolean abandoned = b.isAbandoned() ;
+			n += b.drainTo(this.sink) ;
+			if (abandoned && b.isEmpty()) {
+				this.buffers.remove(b) ;
+			}
+		}
+		if (n > 0) {
+			this.writeOut() ;
+		}
+		return n ;
+	}
+
+	/** sink encoding the drained records in the write buffer.			*/
+	protected final LogRingBuffer.RecordSink	sink =
+			new LogRingBuffer.RecordSink() {
+				@Override
+				public boolean accept(
+					long timestamp,
+					int source,
+					char[] text,
+					int length
+					)
+				{
+					AsyncBinaryLogger.this.ensureRoom(15 + 3 * length) ;
+					out.put(MESSAGE_RECORD) ;
+					out.putLong(timestamp) ;
+					out.putInt(source) ;
+					AsyncBinaryLogger.this.putUTF(text, length) ;
+					return true ;
+				}
+			} ;
+
+	/**
+	 * write the declarations of the sources registered since the last call.
+	 */
+	protected void		writeSourceDeclarations()
+	{
+		while (this.declaredSources < this.sourceNames.size()) {
+			String name = this.sourceNames.get(this.declaredSources) ;
+			int length = Math.min(name.length(), MAX_MESSAGE_LENGTH) ;
+			this.ensureRoom(7 + 3 * length) ;
+			this.out.put(SOURCE_RECORD) ;
+			this.out.putInt(this.declaredSources) ;
+			this.putUTF(name.toCharArray(), length) ;
+			this.declaredSources++ ;
+		}
+	}
+
+	/**
+	 * encode characters in the write buffer in modified UTF-8 preceded by
+	 * their length in bytes, as <code>DataOutput.writeUTF</code> does.
+	 *
+	 * @param text		array holding the characters.
+	 * @param length	number of characters to be encoded.
+	 */
+	protected void		putUTF(char[] text, int length)
+	{
+		int lengthPosition = this.out.position() ;
+		this.out.putShort((short) 0) ;
+		for (int i = 0 ; i < length ; i++) {
+			char c = text[i] ;
+			if (c >= 0x0001 && c <= 0x007F) {
+				this.out.put((byte) c) ;
+			} else if (c <= 0x07FF) {
+				this.out.put((byte) (0xC0 | ((c >> 6) & 0x1F))) ;
+				this.out.put((byte) (0x80 | (c & 0x3F))) ;
+			} else {
+				this.out.put((byte) (0xE0 | ((c >> 12) & 0x0F))) ;
+				this.out.put((byte) (0x80 | ((c >> 6) & 0x3F))) ;
+				this.out.put((byte) (0x80 | (c & 0x3F))) ;
+			}
+		}
+		this.out.putShort(lengthPosition,
+			(short) (this.out.position() - lengthPosition - 2)) ;
+	}
+
+	/**
+	 * make sure the write buffer has at least <code>n</code> free bytes,
+	 * writing its content to the file if needed.
+	 *
+	 * @param n	number of bytes needed.
+	 */
+	protected void		ensureRoom(int n)
+	{
+		if (this.out.remaining() < n) {
+			this.writeOut() ;
+		}
+	}
+
+	/**
+	 * write the content of the write buffer to the file; after an error,
+	 * the content is discarded so that the logger keeps draining buffers.
+	 */
+	protected void		writeOut()
+	{
+		this.out.flip() ;
+		try {
+			if (this.writeError == null) {
+				while (this.out.hasRemaining()) {
+					this.channel.write(this.out) ;
+				}
+			}
+		} catch (IOException e) {
+			this.reportError(e) ;
+		}
+		this.out.clear() ;
+	}
+
+	/**
+	 * report the first error raised when writing to the file.
+	 *
+	 * @param e	the error.
+	 */
+	protected void		reportError(IOException e)
+	{
+		if (this.writeError == null) {
+			this.writeError = e ;
+			System.err.println("AsyncBinaryLogger: cannot write log: " + e) ;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package fr.upmc.components.logging;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * The class <code>BinaryLogReader</code> renders the log files written by
+ * <code>AsyncBinaryLogger</code> in the textual format of the execution
+ * logs of components.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each message is printed on one line as its time stamp, the name of its
+ * source and the message, separated by the logging separation character,
+ * so the output can be processed as the logs written by
+ * <code>AbstractComponent#printExecutionLogOnFile</code>.  Messages are
+ * sorted by time stamp, the order of messages with equal time stamps
+ * coming from the same thread being preserved.  The reader can be used
+ * from the command line:
+ * 
+ * <pre>
+ * java fr.upmc.components.logging.BinaryLogReader file [separator]
+ * </pre>
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			BinaryLogReader
+{
+	/**
+	 * The class <code>Entry</code> holds a record read from a log file.
+	 */
+	protected static class	Entry
+	{
+		protected final long	timestamp ;
+		protected final int		source ;
+		protected final String	text ;
+
+		public			Entry(long timestamp, int source, String text)
+		{
+			this.timestamp = timestamp ;
+			this.source = source ;
+			this.text = text ;
+		}
+	}
+
+	/**
+	 * print the messages of the binary log file <code>f</code> on
+	 * <code>ps</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	f != null && ps != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param f				binary log file.
+	 * @param ps			stream on which messages are printed.
+	 * @param separator		character separating the fields of lines.
+	 * @throws IOException	if the file cannot be read or is not a binary log.
+	 */
+	public static void	render(File f, PrintStream ps, char separator)
+	throws IOException
+	{
+		assert	f != null && ps != null ;
+
+		HashMap<Integer,String> sources = new HashMap<Integer,String>() ;
+		ArrayList<Entry> entries = new ArrayList<Entry>() ;
+		DataInputStream in = new DataInputStream(
+						new BufferedInputStream(new FileInputStream(f))) ;
+		try {
+			byte[] magic = new byte[AsyncBinaryLogger.MAGIC.length] ;
+			in.readFully(magic) ;
+			for (int i = 0 ; i < magic.length ; i++) {
+				if (magic[i] != AsyncBinaryLogger.MAGIC[i]) {
+					throw new IOException(f + " is not a binary log file.") ;
+				}
+			}
+			while (true) {
+				int tag ;
+				try {
+					tag = in.readByte() ;
+				} catch (EOFException e) {
+					break ;
+				}
+				if (tag == AsyncBinaryLogger.SOURCE_RECORD) {
+					int id = in.readInt() ;
+					sources.put(id, in.readUTF()) ;
+				} else if (tag == AsyncBinaryLogger.MESSAGE_RECORD) {
+					long timestamp = in.readLong() ;
+					int source = in.readInt() ;
+					entries.add(new Entry(timestamp, source, in.readUTF())) ;
+				} else if (tag == AsyncBinaryLogger.DROPPED_RECORD) {
+					long timestamp = in.readLong() ;
+					long dropped = in.readLong() ;
+					entries.add(new Entry(timestamp, -1,
+								"*** " + dropped + " messages dropped")) ;
+				} else {
+					throw new IOException("unknown record tag " + tag +
+										  " in " + f) ;
+				}
+			}
+		} finally {
+			in.close() ;
+		}
+
+		// stable sort, the order within a thread is kept.
+		Collections.sort(entries, new Comparator<Entry>() {
+					@Override
+					public int compare(Entry e1, Entry e2) {
+						return Long.compare(e1.timestamp, e2.timestamp) ;
+					}
+				}) ;
+		for (Entry e : entries) {
+			String source = e.source < 0 ? "logger" : sources.get(e.source) ;
+			ps.println("" + e.timestamp + separator + source + separator +
+					   e.text) ;
+		}
+	}
+
+	public static void	main(String[] args)
+	{
+		if (args.length < 1 || args.length > 2) {
+			System.err.println(
+					"usage: BinaryLogReader file [separator character]") ;
+			System.exit(1) ;
+		}
+		char separator = args.length == 2 ? args[1].charAt(0) : '|' ;
+		try {
+			BinaryLogReader.render(new File(args[0]), System.out, separator) ;
+		} catch (IOException e) {
+			System.err.println(e.getMessage()) ;
+			System.exit(1) ;
+		}
+	}
+}
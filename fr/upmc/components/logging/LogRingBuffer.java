@@ -0,0 +1,330 @@
+package fr.upmc.components.logging;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <code>LogRingBuffer</code> implements a bounded single-producer
+ * single-consumer queue of log records which slots are reused, so that
+ * logging a message neither blocks nor allocates once the slots have been
+ * used.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each buffer is owned by one producer thread, which calls
+ * <code>offer</code>, and drained by the flusher thread of the logger, which
+ * calls <code>drainTo</code>.  A slot holds the time stamp, the identifier
+ * of the source component and the characters of the message, copied into an
+ * array of the slot allocated at its first use and grown, up to
+ * <code>maxMessageLength</code> characters, when a longer message comes;
+ * longer messages are truncated.  A thread logging a few short messages
+ * hence holds a few small arrays rather than the full capacity.  The
+ * producer publishes a slot by an ordered write of <code>head</code> and the
+ * consumer frees it by an ordered write of <code>tail</code>, hence no lock
+ * is needed.  When the buffer is full, the message is dropped and counted
+ * rather than making the producer wait for the flusher.
+ * 
+ * The producer can <code>retire</code> the buffer when it moves to another
+ * one, telling the consumer that it can drop the buffer once drained.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	0 <= head - tail <= capacity
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			LogRingBuffer
+{
+	/** initial number of characters of the array of a slot.				*/
+	protected static final int	MIN_TEXT_LENGTH = 32 ;
+
+	/** thread producing the records of this buffer.						*/
+	protected final Thread		owner ;
+	/** number of slots, a power of two.									*/
+	protected final int			capacity ;
+	/** mask giving the slot index of a sequence number.					*/
+	protected final int			mask ;
+	/** maximum number of characters kept per message.					*/
+	protected final int			maxMessageLength ;
+	/** time stamps of the records.										*/
+	protected final long[]		timestamps ;
+	/** identifiers of the sources of the records.							*/
+	protected final int[]		sources ;
+	/** lengths of the messages of the records.							*/
+	protected final int[]		lengths ;
+	/** characters of the messages of the records, null for the slots not
+	 *  used yet; only written by the producer.							*/
+	protected final char[][]	texts ;
+	/** sequence number of the next record to be written.					*/
+	protected final AtomicLong	head ;
+	/** sequence number of the next record to be read.						*/
+	protected final AtomicLong	tail ;
+	/** number of records dropped because the buffer was full.				*/
+	protected final AtomicLong	dropped ;
+	/** true when the producer no longer writes in this buffer.			*/
+	protected volatile boolean	retired ;
+
+	/**
+	 * create a ring buffer for the thread <code>owner</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	owner != null && capacity > 0 && Integer.bitCount(capacity) == 1
+	 * pre	maxMessageLength > 0
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param owner				thread producing the records.
+	 * @param capacity			number of slots, a power of two.
+	 * @param maxMessageLength	maximum number of characters kept per message.
+	 */
+	public				LogRingBuffer(
+		Thread owner,
+		int capacity,
+		int maxMessageLength
+		)
+	{
+		super() ;
+		assert	owner != null ;
+		assert	capacity > 0 && Integer.bitCount(capacity) == 1 ;
+		assert	maxMessageLength > 0 ;
+
+		this.owner = owner ;
+		this.capacity = capacity ;
+		this.mask = capacity - 1 ;
+		this.maxMessageLength = maxMessageLength ;
+		this.timestamps = new long[capacity] ;
+		this.sources = new int[capacity] ;
+		this.lengths = new int[capacity] ;
+		this.texts = new char[capacity][] ;
+		this.head = new AtomicLong(0L) ;
+		this.tail = new AtomicLong(0L) ;
+		this.dropped = new AtomicLong(0L) ;
+		this.retired = false ;
+	}
+
+	/**
+	 * append a record to the buffer, or drop it if the buffer is full; must
+	 * only be called by the owner thread.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	Thread.currentThread() == this.owner && message != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param timestamp	time stamp of the record.
+	 * @param source	identifier of the source of the record.
+	 * @param message	message of the record.
+	 * @return			true if the record was appended, false if dropped.
+	 */
+	public boolean		offer(long timestamp, int source, String message)
+	{
+		long h = this.head.get() ;
+		if (h - this.tail.get() >= this.capacity) {
+			this.dropped.incrementAndGet() ;
+			return false ;
+		}
+		int slot = (int) (h & this.mask) ;
+		char[] text = this.texts[slot] ;
+		int length = Math.min(message.length(), this.maxMessageLength) ;
+		if (text == null || text.length < length) {
+			int n = MIN_TEXT_LENGTH ;
+			while (n < length) {
+				n <<= 1 ;
+			}
+			// published to the consumer by the ordered write of head.
+			text = new char[Math.min(n, this.maxMessageLength)] ;
+			this.texts[slot] = text ;
+		}
+		message.getChars(0, length, text, 0) ;
+		this.timestamps[slot] = timestamp ;
+		this.sources[slot] = source ;
+		this.lengths[slot] = length ;
+		this.head.lazySet(h + 1) ;
+		return true ;
+	}
+
+	/**
+	 * pass the pending records to <code>sink</code> in order, up to the
+	 * first one it refuses, and free the slots of the accepted ones; must
+	 * only be called by the consumer thread.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	sink != null
+	 * post	return >= 0
+	 * </pre>
+	 *
+	 * @param sink	receiver of the records.
+	 * @return		the number of records accepted by the sink.
+	 */
+	public int			drainTo(RecordSink sink)
+	{
+		long t = this.tail.get() ;
+		long h = this.head.get() ;
+		int n = 0 ;
+		while (t < h) {
+			int slot = (int) (t & this.mask) ;
+			if (!sink.accept(this.timestamps[slot], this.sources[slot],
+							 this.texts[slot], this.lengths[slot])) {
+				break ;
+			}
+			t++ ;
+			n++ ;
+		}
+		this.tail.lazySet(t) ;
+		return n ;
+	}
+
+	/**
+	 * @return	the number of pending records.
+	 */
+	public int			size()
+	{
+		return (int) (this.head.get() - this.tail.get()) ;
+	}
+
+	/**
+	 * @return	true if no record is pending.
+	 */
+	public boolean		isEmpty()
+	{
+		return this.tail.get() == this.head.get() ;
+	}
+
+	/**
+	 * @return	true if no record can be appended until the consumer drains.
+	 */
+	public boolean		isFull()
+	{
+		return this.head.get() - this.tail.get() >= this.capacity ;
+	}
+
+	/**
+	 * @return	the number of slots of the buffer.
+	 */
+	public int			getCapacity()
+	{
+		return this.capacity ;
+	}
+
+	/**
+	 * mark the buffer as no longer written by its producer; must only be
+	 * called by the owner thread, after its last call to <code>offer</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	Thread.currentThread() == this.owner
+	 * post	this.isRetired()
+	 * </pre>
+	 */
+	public void			retire()
+	{
+		this.retired = true ;
+	}
+
+	/**
+	 * return true if the producer no longer writes in the buffer; as the
+	 * flag is written after the last record, a consumer reading true then
+	 * draining the buffer gets all of its records.
+	 *
+	 * @return	true if the buffer is retired.
+	 */
+	public boolean		isRetired()
+	{
+		return this.retired ;
+	}
+
+	/**
+	 * @return	true if no more record will ever be appended to the buffer.
+	 */
+	public boolean		isAbandoned()
+	{
+		return this.retired || !this.owner.isAlive() ;
+	}
+
+	/**
+	 * return the number of records dropped since the last call and reset
+	 * the count.
+	 *
+	 * @return	the number of dropped records.
+	 */
+	public long			takeDroppedCount()
+	{
+		return this.dropped.getAndSet(0L) ;
+	}
+
+	/**
+	 * @return	the thread producing the records of this buffer.
+	 */
+	public Thread		getOwner()
+	{
+		return this.owner ;
+	}
+
+	/**
+	 * The interface <code>RecordSink</code> is implemented by the receivers
+	 * of the records drained from ring buffers.
+	 *
+	 * @version	$Name$ -- $Revision$ -- $Date$
+	 */
+	public static interface	RecordSink
+	{
+		/**
+		 * receive a record; the characters of the message are only valid
+		 * during the call.
+		 *
+		 * @param timestamp	time stamp of the record.
+		 * @param source	identifier of the source of the record.
+		 * @param text		array holding the characters of the message.
+		 * @param length	number of characters of the message.
+		 * @return			true if the record was accepted, false if it must be kept for later.
+		 */
+		public boolean	accept(
+			long timestamp,
+			int source,
+			char[] text,
+			int length
+			) ;
+	}
+}
@@ -0,0 +1,527 @@
+package fr.upmc.components.metrics;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import fr.upmc.components.AbstractComponent;
+import fr.upmc.components.ComponentI.ComponentService;
+
+/**
+ * The class <code>ComponentMetrics</code> records the metrics of the
+ * requests executed by a component and exposes them both to Java code and,
+ * as a standard MBean, to JMX clients.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Requests submitted through the <code>handleRequest</code> methods are
+ * wrapped by <code>instrument</code> into a service that records the time
+ * spent in the queue of the request handler and the service time before
+ * calling the original request.  Metrics are kept per kind of request: the
+ * requests being most often anonymous classes created in the methods of
+ * inbound ports, a request is named after the class and method enclosing
+ * its definition, which corresponds to the offered interface method
+ * executed, or after its class otherwise.
+ * 
+ * Instrumentation costs two calls to <code>System.nanoTime</code> and a
+ * few atomic increments per request; it can be disabled for all components
+ * by setting <code>ENABLED</code> to false.  The requests executed by the
+ * calling thread are measured by <code>call</code> without allocating
+ * anything, while the requests submitted to an executor are wrapped by
+ * <code>instrument</code>, their submission already allocating a future.  When
+ * <code>REGISTER_MBEANS</code> is true, the metrics of a component are
+ * registered in the platform MBean server when it starts, under the name
+ * <code>fr.upmc.components:type=ComponentMetrics,component=id</code>, and
+ * unregistered when it shuts down.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.owner != null && this.componentId != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			ComponentMetrics
+implements	ComponentMetricsMBean
+{
+	/** true if the requests of components are instrumented.				*/
+	public static boolean	ENABLED = true ;
+	/** true if the metrics of started components are registered in the
+	 *  platform MBean server.											*/
+	public static boolean	REGISTER_MBEANS = true ;
+	/** domain of the JMX names of component metrics.						*/
+	public static final String	JMX_DOMAIN = "fr.upmc.components" ;
+
+	/** component which requests are measured.							*/
+	protected final AbstractComponent	owner ;
+	/** identifier of the component in JMX names and reports.				*/
+	protected final String				componentId ;
+	/** metrics per request name.											*/
+	protected final ConcurrentHashMap<String,RequestMetrics>	byName ;
+	/** cache of the metrics per request class, avoiding to compute the
+	 *  name of a request each time it is submitted.						*/
+	protected final ConcurrentHashMap<Class<?>,RequestMetrics>	byClass ;
+	/** time of creation or of the last reset, from System.nanoTime.		*/
+	protected volatile long				startTime ;
+	/** name under which the metrics are registered, null if they are not.	*/
+	protected ObjectName				registeredName ;
+
+	public				ComponentMetrics(AbstractComponent owner)
+	{
+		super() ;
+		assert	owner != null ;
+
+		this.owner = owner ;
+		this.componentId = owner.getClass().getName() + "@" +
+						Integer.toHexString(System.identityHashCode(owner)) ;
+		this.byName = new ConcurrentHashMap<String,RequestMetrics>() ;
+		this.byClass = new ConcurrentHashMap<Class<?>,RequestMetrics>() ;
+		this.startTime = System.nanoTime() ;
+		this.registeredName = null ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Instrumentation
+	// ------------------------------------------------------------------------
+
+	/**
+	 * return the name of the requests of class <code>c</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param c	class of a request.
+	 * @return	the name of the request.
+	 */
+	public static String	requestName(Class<?> c)
+	{
+		assert	c != null ;
+
+		Method m = c.getEnclosingMethod() ;
+		if (m != null) {
+			return m.getDeclaringClass().getSimpleName() + "." + m.getName() ;
+		} else {
+			return c.getName() ;
+		}
+	}
+
+	/**
+	 * return the metrics of the requests of class <code>c</code>, creating
+	 * them on the first request.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param c	class of a request.
+	 * @return	the metrics of the request.
+	 */
+	protected RequestMetrics	metricsFor(Class<?> c)
+	{
+		RequestMetrics m = this.byClass.get(c) ;
+		if (m == null) {
+			String name = ComponentMetrics.requestName(c) ;
+			m = this.byName.get(name) ;
+			if (m == null) {
+				RequestMetrics created = new RequestMetrics(name) ;
+				m = this.byName.putIfAbsent(name, created) ;
+				if (m == null) {
+					m = created ;
+				}
+			}
+			this.byClass.putIfAbsent(c, m) ;
+		}
+		return m ;
+	}
+
+	/**
+	 * count the submission of <code>request</code> and return a request
+	 * that records its queue wait and service times, and its outcome, when
+	 * executed in place of the original one.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	request != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param request	request submitted to the component.
+	 * @return			the instrumented request.
+	 */
+	public <T> ComponentService<T>	instrument(
+		final ComponentService<T> request
+		)
+	{
+		assert	request != null ;
+
+		final RequestMetrics m = this.metricsFor(request.getClass()) ;
+		m.submitted.incrementAndGet() ;
+		final long submissionTime = System.nanoTime() ;
+		return new ComponentService<T>() {
+					@Override
+					public T call() throws Exception
+					{
+						return ComponentMetrics.measure(
+											m, submissionTime, request) ;
+					}
+				} ;
+	}
+
+	/**
+	 * execute <code>request</code> in the calling thread, counting its
+	 * submission and recording its service time and outcome, with no queue
+	 * wait and without allocating a wrapper.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	request != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param request		request to be executed.
+	 * @return				the result of the request.
+	 * @throws Exception	if the request raises one.
+	 */
+	public <T> T		call(ComponentService<T> request) throws Exception
+	{
+		assert	request != null ;
+
+		RequestMetrics m = this.metricsFor(request.getClass()) ;
+		m.submitted.incrementAndGet() ;
+		return ComponentMetrics.measure(m, System.nanoTime(), request) ;
+	}
+
+	/**
+	 * execute <code>request</code>, recording in <code>m</code> its queue
+	 * wait since <code>submissionTime</code>, its service time and its
+	 * outcome.
+	 * 
+	 * @param m					metrics of the request.
+	 * @param submissionTime	time of the submission, from System.nanoTime.
+	 * @param request			request to be executed.
+	 * @return					the result of the request.
+	 * @throws Exception		if the request raises one.
+	 */
+	protected static <T> T	measure(
+		RequestMetrics m,
+		long submissionTime,
+		ComponentService<T> request
+		) throws Exception
+	{
+		long start = System.nanoTime() ;
+		m.queueWait.record(start - submissionTime) ;
+		boolean succeeded = false ;
+		try {
+			T result = request.call() ;
+			succeeded = true ;
+			return result ;
+		} finally {
+			m.serviceTime.record(System.nanoTime() - start) ;
+			if (succeeded) {
+				m.completed.incrementAndGet() ;
+			} else {
+				m.failed.incrementAndGet() ;
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Pull API
+	// ------------------------------------------------------------------------
+
+	/**
+	 * return the metrics of the request named <code>requestName</code>, or
+	 * null if no such request was submitted.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	requestName != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param requestName	name of a request.
+	 * @return				its metrics or null.
+	 */
+	public RequestMetrics	getRequestMetrics(String requestName)
+	{
+		assert	requestName != null ;
+
+		return this.byName.get(requestName) ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getComponentId()
+	 */
+	@Override
+	public String		getComponentId()
+	{
+		return this.componentId ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getRequestNames()
+	 */
+	@Override
+	public String[]		getRequestNames()
+	{
+		String[] names = this.byName.keySet().toArray(new String[0]) ;
+		Arrays.sort(names) ;
+		return names ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getSubmittedCount()
+	 */
+	@Override
+	public long			getSubmittedCount()
+	{
+		long n = 0L ;
+		for (RequestMetrics m : this.byName.values()) {
+			n += m.getSubmittedCount() ;
+		}
+		return n ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getCompletedCount()
+	 */
+	@Override
+	public long			getCompletedCount()
+	{
+		long n = 0L ;
+		for (RequestMetrics m : this.byName.values()) {
+			n += m.getCompletedCount() ;
+		}
+		return n ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getFailedCount()
+	 */
+	@Override
+	public long			getFailedCount()
+	{
+		long n = 0L ;
+		for (RequestMetrics m : this.byName.values()) {
+			n += m.getFailedCount() ;
+		}
+		return n ;
+	}
+
+	/**
+	 * return the number of requests submitted but not yet terminated;
+	 * requests dropped or refused by the overload policy of a bounded
+	 * request queue are not counted.
+	 * 
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getInFlightCount()
+	 */
+	@Override
+	public long			getInFlightCount()
+	{
+		long n = this.getSubmittedCount() - this.getCompletedCount() -
+				 this.getFailedCount() - this.owner.getOverloadedRequestCount() ;
+		return n < 0L ? 0L : n ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getRequestQueueDepth()
+	 */
+	@Override
+	public int			getRequestQueueDepth()
+	{
+		return this.owner.getRequestQueueDepth() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getThroughput()
+	 */
+	@Override
+	public double		getThroughput()
+	{
+		double elapsed = (System.nanoTime() - this.startTime) / 1.0e9 ;
+		if (elapsed <= 0.0) {
+			return 0.0 ;
+		}
+		return (this.getCompletedCount() + this.getFailedCount()) / elapsed ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getQueueWaitPercentile(java.lang.String, double)
+	 */
+	@Override
+	public long			getQueueWaitPercentile(
+		String requestName,
+		double percentile
+		)
+	{
+		RequestMetrics m = this.byName.get(requestName) ;
+		return m == null ?
+					-1L : m.getQueueWait().getValueAtPercentile(percentile) ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getServiceTimePercentile(java.lang.String, double)
+	 */
+	@Override
+	public long			getServiceTimePercentile(
+		String requestName,
+		double percentile
+		)
+	{
+		RequestMetrics m = this.byName.get(requestName) ;
+		return m == null ?
+					-1L : m.getServiceTime().getValueAtPercentile(percentile) ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#getReport()
+	 */
+	@Override
+	public String		getReport()
+	{
+		StringBuffer sb = new StringBuffer(this.componentId) ;
+		sb.append(" queue depth=").append(this.getRequestQueueDepth()) ;
+		sb.append(" in flight=").append(this.getInFlightCount()) ;
+		sb.append(" throughput=").append(
+				String.format("%.1f", this.getThroughput())).append("/s\n") ;
+		for (String name : this.getRequestNames()) {
+			RequestMetrics m = this.byName.get(name) ;
+			LatencyHistogram w = m.getQueueWait() ;
+			LatencyHistogram s = m.getServiceTime() ;
+			sb.append("  ").append(name) ;
+			sb.append(" submitted=").append(m.getSubmittedCount()) ;
+			sb.append(" completed=").append(m.getCompletedCount()) ;
+			sb.append(" failed=").append(m.getFailedCount()) ;
+			sb.append(" wait(ns) p50=").append(w.getValueAtPercentile(50.0)) ;
+			sb.append(" p99=").append(w.getValueAtPercentile(99.0)) ;
+			sb.append(" max=").append(w.getMax()) ;
+			sb.append(" service(ns) p50=").append(s.getValueAtPercentile(50.0)) ;
+			sb.append(" p99=").append(s.getValueAtPercentile(99.0)) ;
+			sb.append(" max=").append(s.getMax()).append('\n') ;
+		}
+		return sb.toString() ;
+	}
+
+	/**
+	 * @see fr.upmc.components.metrics.ComponentMetricsMBean#reset()
+	 */
+	@Override
+	public void			reset()
+	{
+		for (RequestMetrics m : this.byName.values()) {
+			m.reset() ;
+		}
+		this.startTime = System.nanoTime() ;
+	}
+
+	// ------------------------------------------------------------------------
+	// JMX registration
+	// ------------------------------------------------------------------------
+
+	/**
+	 * register these metrics in the platform MBean server if
+	 * <code>REGISTER_MBEANS</code> is true; failures are reported on the
+	 * standard error but do not prevent the component from running.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 */
+	public synchronized void	registerMBean()
+	{
+		if (!REGISTER_MBEANS || this.registeredName != null) {
+			return ;
+		}
+		try {
+			ObjectName name = new ObjectName(JMX_DOMAIN +
+						":type=ComponentMetrics,component=" +
+						ObjectName.quote(this.componentId)) ;
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer() ;
+			server.registerMBean(this, name) ;
+			this.registeredName = name ;
+		} catch (Exception e) {
+			System.err.println("ComponentMetrics: cannot register " +
+							   this.componentId + ": " + e) ;
+		}
+	}
+
+	/**
+	 * unregister these metrics from the platform MBean server if they were
+	 * registered.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 */
+	public synchronized void	unregisterMBean()
+	{
+		if (this.registeredName == null) {
+			return ;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().
+										unregisterMBean(this.registeredName) ;
+		} catch (Exception e) {
+			System.err.println("ComponentMetrics: cannot unregister " +
+							   this.componentId + ": " + e) ;
+		}
+		this.registeredName = null ;
+	}
+}
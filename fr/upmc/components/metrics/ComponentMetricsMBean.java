@@ -0,0 +1,126 @@
+package fr.upmc.components.metrics;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+/**
+ * The interface <code>ComponentMetricsMBean</code> defines the management
+ * interface through which the request metrics of a component are exposed
+ * to JMX clients.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Times are given in nanoseconds.  Requests are designated by the names
+ * returned by <code>getRequestNames</code>.
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public interface		ComponentMetricsMBean
+{
+	/**
+	 * @return	the identifier of the component.
+	 */
+	public String		getComponentId() ;
+
+	/**
+	 * @return	the names of the requests executed so far by the component.
+	 */
+	public String[]		getRequestNames() ;
+
+	/**
+	 * @return	the number of requests submitted to the component.
+	 */
+	public long			getSubmittedCount() ;
+
+	/**
+	 * @return	the number of requests executed without exception.
+	 */
+	public long			getCompletedCount() ;
+
+	/**
+	 * @return	the number of requests which execution raised an exception.
+	 */
+	public long			getFailedCount() ;
+
+	/**
+	 * @return	the number of requests submitted but not yet terminated.
+	 */
+	public long			getInFlightCount() ;
+
+	/**
+	 * @return	the number of requests waiting in the queue, -1 if unknown.
+	 */
+	public int			getRequestQueueDepth() ;
+
+	/**
+	 * @return	the number of requests terminated per second since the last reset.
+	 */
+	public double		getThroughput() ;
+
+	/**
+	 * return the queue wait time at <code>percentile</code> for the request
+	 * <code>requestName</code>, -1 if no such request was executed.
+	 *
+	 * @param requestName	name of the request.
+	 * @param percentile	percentile between 0 and 100.
+	 * @return				the queue wait time at this percentile.
+	 */
+	public long			getQueueWaitPercentile(
+		String requestName,
+		double percentile
+		) ;
+
+	/**
+	 * return the service time at <code>percentile</code> for the request
+	 * <code>requestName</code>, -1 if no such request was executed.
+	 *
+	 * @param requestName	name of the request.
+	 * @param percentile	percentile between 0 and 100.
+	 * @return				the service time at this percentile.
+	 */
+	public long			getServiceTimePercentile(
+		String requestName,
+		double percentile
+		) ;
+
+	/**
+	 * @return	a textual report of the metrics of all requests.
+	 */
+	public String		getReport() ;
+
+	/**
+	 * forget all of the metrics recorded so far.
+	 */
+	public void			reset() ;
+}
@@ -0,0 +1,248 @@
+package fr.upmc.components.metrics;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class <code>LatencyHistogram</code> implements a lock-free histogram
+ * of durations in nanoseconds, with buckets of logarithmically growing
+ * width in the style of HDR histograms.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Values below <code>2^SUB_BUCKET_BITS</code> have one bucket each; above,
+ * each power of two interval is divided into <code>2^SUB_BUCKET_BITS</code>
+ * buckets of equal width, so that the relative error of a recorded value is
+ * bounded by <code>2^-SUB_BUCKET_BITS</code> (about 3% here) over the whole
+ * range of <code>long</code>.  Recording a value only increments atomic
+ * counters, hence threads executing requests never block on the histogram;
+ * reading percentiles while values are recorded gives an approximation
+ * consistent enough for monitoring purposes.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.counts.length() == NUMBER_OF_BUCKETS
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			LatencyHistogram
+{
+	/** number of bits used to divide each power of two interval.			*/
+	protected static final int	SUB_BUCKET_BITS = 5 ;
+	/** number of buckets in each power of two interval.					*/
+	protected static final int	SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS ;
+	/** total number of buckets, covering all positive long values.		*/
+	protected static final int	NUMBER_OF_BUCKETS =
+								(64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT ;
+
+	/** number of values recorded in each bucket.							*/
+	protected final AtomicLongArray	counts ;
+	/** number of recorded values.											*/
+	protected final AtomicLong		count ;
+	/** sum of the recorded values.										*/
+	protected final AtomicLong		total ;
+	/** maximum recorded value.											*/
+	protected final AtomicLong		max ;
+
+	public				LatencyHistogram()
+	{
+		super() ;
+		this.counts = new AtomicLongArray(NUMBER_OF_BUCKETS) ;
+		this.count = new AtomicLong(0L) ;
+		this.total = new AtomicLong(0L) ;
+		this.max = new AtomicLong(0L) ;
+	}
+
+	/**
+	 * return the index of the bucket in which <code>value</code> is counted.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	value >= 0
+	 * post	return >= 0 && return < NUMBER_OF_BUCKETS
+	 * </pre>
+	 *
+	 * @param value	a non negative value.
+	 * @return		the index of its bucket.
+	 */
+	protected static int	bucketIndex(long value)
+	{
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value ;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value) ;
+		int shift = exponent - SUB_BUCKET_BITS ;
+		int subBucket = (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1)) ;
+		return (shift + 1) * SUB_BUCKET_COUNT + subBucket ;
+	}
+
+	/**
+	 * return the highest value counted in the bucket <code>index</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	index >= 0 && index < NUMBER_OF_BUCKETS
+	 * post	bucketIndex(return) == index
+	 * </pre>
+	 *
+	 * @param index	index of a bucket.
+	 * @return		the highest value of the bucket.
+	 */
+	protected static long	bucketHighestValue(int index)
+	{
+		if (index < SUB_BUCKET_COUNT) {
+			return index ;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1 ;
+		long subBucket = index % SUB_BUCKET_COUNT ;
+		long lowest = (SUB_BUCKET_COUNT + subBucket) << shift ;
+		return lowest + (1L << shift) - 1 ;
+	}
+
+	/**
+	 * record a duration; negative durations, that can be observed when the
+	 * clock is adjusted, are recorded as zero.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	this.getCount() == this.getCount()@pre + 1
+	 * </pre>
+	 *
+	 * @param nanos	duration in nanoseconds.
+	 */
+	public void			record(long nanos)
+	{
+		long value = nanos < 0L ? 0L : nanos ;
+		this.counts.incrementAndGet(bucketIndex(value)) ;
+		this.count.incrementAndGet() ;
+		this.total.addAndGet(value) ;
+		long current = this.max.get() ;
+		while (value > current && !this.max.compareAndSet(current, value)) {
+			current = this.max.get() ;
+		}
+	}
+
+	/**
+	 * @return	the number of recorded values.
+	 */
+	public long			getCount()
+	{
+		return this.count.get() ;
+	}
+
+	/**
+	 * @return	the maximum recorded value, in nanoseconds.
+	 */
+	public long			getMax()
+	{
+		return this.max.get() ;
+	}
+
+	/**
+	 * @return	the mean of the recorded values in nanoseconds, 0 if none.
+	 */
+	public double		getMean()
+	{
+		long n = this.count.get() ;
+		return n == 0L ? 0.0 : ((double) this.total.get()) / n ;
+	}
+
+	/**
+	 * return an upper bound of the value below which <code>percentile</code>
+	 * percent of the recorded values fall, within the precision of the
+	 * buckets.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	percentile >= 0.0 && percentile <= 100.0
+	 * post	return >= 0
+	 * </pre>
+	 *
+	 * @param percentile	percentile to be computed, between 0 and 100.
+	 * @return				the value at this percentile in nanoseconds, 0 if no value was recorded.
+	 */
+	public long			getValueAtPercentile(double percentile)
+	{
+		assert	percentile >= 0.0 && percentile <= 100.0 ;
+
+		long n = this.count.get() ;
+		if (n == 0L) {
+			return 0L ;
+		}
+		long rank = (long) Math.ceil((percentile / 100.0) * n) ;
+		if (rank < 1L) {
+			rank = 1L ;
+		}
+		long seen = 0L ;
+		for (int i = 0 ; i < NUMBER_OF_BUCKETS ; i++) {
+			seen += this.counts.get(i) ;
+			if (seen >= rank) {
+				return Math.min(bucketHighestValue(i), this.max.get()) ;
+			}
+		}
+		return this.max.get() ;
+	}
+
+	/**
+	 * forget all of the recorded values; values recorded concurrently with
+	 * the reset may be partially kept.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 */
+	public void			reset()
+	{
+		for (int i = 0 ; i < NUMBER_OF_BUCKETS ; i++) {
+			this.counts.set(i, 0L) ;
+		}
+		this.count.set(0L) ;
+		this.total.set(0L) ;
+		this.max.set(0L) ;
+	}
+}
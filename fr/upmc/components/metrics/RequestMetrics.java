@@ -0,0 +1,149 @@
+package fr.upmc.components.metrics;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <code>RequestMetrics</code> holds the metrics recorded for one
+ * kind of request of a component, i.e. one method of its offered
+ * interfaces.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The queue wait time is the time between the submission of the request to
+ * the component and the start of its execution; the service time is the
+ * time spent executing it.  Requests which execution raised an exception
+ * are counted as failed, the others as completed; requests submitted but
+ * neither completed nor failed are waiting, executing or were dropped by
+ * an overload policy.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.name != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			RequestMetrics
+{
+	/** name of the request, <code>Class.method</code> of the offered
+	 *  interface implementation submitting it when known.					*/
+	protected final String				name ;
+	/** histogram of the times spent waiting in the request queue.			*/
+	protected final LatencyHistogram	queueWait ;
+	/** histogram of the times spent executing the request.				*/
+	protected final LatencyHistogram	serviceTime ;
+	/** number of submitted requests.										*/
+	protected final AtomicLong			submitted ;
+	/** number of requests executed without exception.						*/
+	protected final AtomicLong			completed ;
+	/** number of requests which execution raised an exception.			*/
+	protected final AtomicLong			failed ;
+
+	public				RequestMetrics(String name)
+	{
+		super() ;
+		assert	name != null ;
+
+		this.name = name ;
+		this.queueWait = new LatencyHistogram() ;
+		this.serviceTime = new LatencyHistogram() ;
+		this.submitted = new AtomicLong(0L) ;
+		this.completed = new AtomicLong(0L) ;
+		this.failed = new AtomicLong(0L) ;
+	}
+
+	/**
+	 * @return	the name of the request.
+	 */
+	public String		getName()
+	{
+		return this.name ;
+	}
+
+	/**
+	 * @return	the histogram of queue wait times.
+	 */
+	public LatencyHistogram	getQueueWait()
+	{
+		return this.queueWait ;
+	}
+
+	/**
+	 * @return	the histogram of service times.
+	 */
+	public LatencyHistogram	getServiceTime()
+	{
+		return this.serviceTime ;
+	}
+
+	/**
+	 * @return	the number of submitted requests.
+	 */
+	public long			getSubmittedCount()
+	{
+		return this.submitted.get() ;
+	}
+
+	/**
+	 * @return	the number of requests executed without exception.
+	 */
+	public long			getCompletedCount()
+	{
+		return this.completed.get() ;
+	}
+
+	/**
+	 * @return	the number of requests which execution raised an exception.
+	 */
+	public long			getFailedCount()
+	{
+		return this.failed.get() ;
+	}
+
+	/**
+	 * forget all of the metrics recorded so far.
+	 */
+	public void			reset()
+	{
+		this.queueWait.reset() ;
+		this.serviceTime.reset() ;
+		this.submitted.set(0L) ;
+		this.completed.set(0L) ;
+		this.failed.set(0L) ;
+	}
+}
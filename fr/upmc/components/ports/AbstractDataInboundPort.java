@@ -34,11 +34,13 @@ package fr.upmc.components.ports;
 // The fact that you are presently reading this means that you have had
 // knowledge of the CeCILL-C license and that you accept its terms.
 
-import java.lang.reflect.Constructor;
+import java.util.concurrent.CompletableFuture;
+
 import fr.upmc.components.AbstractComponent ;
 import fr.upmc.components.ComponentI;
 import fr.upmc.components.connectors.AbstractDataConnector;
 import fr.upmc.components.connectors.ConnectionBuilder;
+import fr.upmc.components.connectors.ConnectorFactoryRegistry;
 import fr.upmc.components.connectors.ConnectorI;
 import fr.upmc.components.connectors.DataConnectorI;
 import fr.upmc.components.cvm.AbstractCVM;
@@ -395,9 +397,8 @@ implements	DataInboundPortI
 		// FIXME: should use a proper state machine model to implement the
 		// connection and disconnection protocol
 
-		Class<?> cc = Class.forName(ccname) ;
-		Constructor<?> c = cc.getConstructor(new Class<?>[]{}) ;
-		ConnectorI connector = (ConnectorI) c.newInstance() ;
+		ConnectorI connector =
+						ConnectorFactoryRegistry.createConnector(ccname) ;
 		ConnectionBuilder.SINGLETON.connectWith(this.getPortURI(),
 												otherPortURI,
 												connector) ;
@@ -471,4 +472,87 @@ implements	DataInboundPortI
 							   d.toString()) ;
 		}
 	}
+
+	/**
+	 * sends several data at once to the connected component in the push mode,
+	 * passing them in one call to the connector.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	ds != null
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @throws Exception 
+	 * 
+	 * @see fr.upmc.components.interfaces.DataOfferedI.PushI#sendBatch(fr.upmc.components.interfaces.DataOfferedI.DataI[])
+	 */
+	@Override
+	public synchronized void	sendBatch(DataOfferedI.DataI[] ds)
+	throws Exception
+	{
+		assert	this.connected() ;
+		assert	ds != null ;
+
+		this.connector.sendBatch(ds) ;
+	}
+
+	/**
+	 * hand the credits granted by the requiring component over to the
+	 * connector, which uses them if it implements a flow control; this method
+	 * is not synchronized as the owner may be blocked in <code>send</code>
+	 * until credits are granted.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	n > 0
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @throws Exception 
+	 * 
+	 * @see fr.upmc.components.interfaces.DataOfferedI.PullI#grantCredits(int)
+	 */
+	@Override
+	public void			grantCredits(int n) throws Exception
+	{
+		assert	this.connected() ;
+		assert	n > 0 ;
+
+		((AbstractDataConnector)this.connector).creditsGranted(n) ;
+	}
+
+	/**
+	 * get the next data in the pull mode without blocking the caller until
+	 * it is available; this default implementation simply calls
+	 * <code>get</code> and returns an already completed future, but
+	 * subclasses can redefine it to hand the request over to their owner
+	 * through <code>handleRequestCompletable</code>.  Completable futures
+	 * being not serializable, this method can only be used locally, typically
+	 * from a data connector in the same JVM as this port.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true				// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	a completable future completed with the next data.
+	 */
+	public CompletableFuture<DataOfferedI.DataI>	getAsync()
+	{
+		CompletableFuture<DataOfferedI.DataI> result =
+								new CompletableFuture<DataOfferedI.DataI>() ;
+		try {
+			result.complete(this.get()) ;
+		} catch (Exception e) {
+			result.completeExceptionally(e) ;
+		}
+		return result ;
+	}
 }
@@ -34,12 +34,13 @@ package fr.upmc.components.ports;
 // The fact that you are presently reading this means that you have had
 // knowledge of the CeCILL-C license and that you accept its terms.
 
-import java.lang.reflect.Constructor;
+import java.util.concurrent.CompletableFuture;
 
 import fr.upmc.components.AbstractComponent;
 import fr.upmc.components.ComponentI;
 import fr.upmc.components.connectors.AbstractDataConnector;
 import fr.upmc.components.connectors.ConnectionBuilder;
+import fr.upmc.components.connectors.ConnectorFactoryRegistry;
 import fr.upmc.components.connectors.ConnectorI;
 import fr.upmc.components.cvm.AbstractCVM;
 import fr.upmc.components.interfaces.DataRequiredI;
@@ -403,9 +404,8 @@ implements	DataOutboundPortI
 		// FIXME: should use a proper state machine model to implement the
 		// connection and disconnection protocol
 
-		Class<?> cc = Class.forName(ccname) ;
-		Constructor<?> c = cc.getConstructor(new Class<?>[]{}) ;
-		ConnectorI connector = (ConnectorI) c.newInstance() ;
+		ConnectorI connector =
+						ConnectorFactoryRegistry.createConnector(ccname) ;
 		ConnectionBuilder.SINGLETON.connectWith(otherPortURI,
 												this.getPortURI(),
 												connector) ;
@@ -472,4 +472,93 @@ implements	DataOutboundPortI
 
 		return ((DataRequiredI.PullI) this.connector).request() ;
 	}
+
+	/**
+	 * called by the requiring component in pull mode to obtain at most
+	 * <code>max</code> pieces of data from the offering one, passing the
+	 * request in one call to the connector.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	max > 0
+	 * post	return != null && return.length > 0 && return.length <= max
+	 * </pre>
+	 * 
+	 * @throws Exception 
+	 * 
+	 * @see fr.upmc.components.interfaces.DataRequiredI.PullI#requestBatch(int)
+	 */
+	@Override
+	public synchronized DataRequiredI.DataI[]	requestBatch(int max)
+	throws Exception
+	{
+		assert	this.connected() ;
+		assert	max > 0 ;
+
+		return ((DataRequiredI.PullI) this.connector).requestBatch(max) ;
+	}
+
+	/**
+	 * called by the requiring component to allow the offering one to push
+	 * <code>n</code> more pieces of data, once it has consumed the previous
+	 * ones; the credits are passed to the offering component by the
+	 * connector, which may coalesce them.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * pre	n > 0
+	 * post	true				// no more postconditions.
+	 * </pre>
+	 * 
+	 * @throws Exception 
+	 * 
+	 * @see fr.upmc.components.interfaces.DataRequiredI.PullI#grantCredits(int)
+	 */
+	@Override
+	public void			grantCredits(int n) throws Exception
+	{
+		assert	this.connected() ;
+		assert	n > 0 ;
+
+		((DataRequiredI.PullI) this.connector).grantCredits(n) ;
+	}
+
+	/**
+	 * request the next datum in the pull mode without blocking the caller
+	 * until it is available; when the connector supports it, the request is
+	 * passed asynchronously to the provider, otherwise an already completed
+	 * future holding the result of <code>request</code> is returned.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	this.connected()
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return	a completable future completed with the next datum.
+	 * @throws Exception 
+	 */
+	public CompletableFuture<DataRequiredI.DataI>	requestAsync()
+	throws Exception
+	{
+		assert	this.connected() ;
+
+		if (this.connector instanceof AbstractDataConnector) {
+			return ((AbstractDataConnector) this.connector).requestAsync() ;
+		} else {
+			CompletableFuture<DataRequiredI.DataI> result =
+								new CompletableFuture<DataRequiredI.DataI>() ;
+			try {
+				result.complete(this.request()) ;
+			} catch (Exception e) {
+				result.completeExceptionally(e) ;
+			}
+			return result ;
+		}
+	}
 }
@@ -40,7 +40,23 @@ import fr.upmc.components.cvm.AbstractDistributedCVM;
 import fr.upmc.components.interfaces.ComponentImplementedI;
 import fr.upmc.components.interfaces.OfferedI;
 
+import fr.upmc.components.tracing.Span;
+import fr.upmc.components.tracing.TraceContext;
+import fr.upmc.components.tracing.TracedInvocationI;
+import fr.upmc.components.tracing.Tracer;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.RemoteObject;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The class <code>AbstractInboundPort</code> partially implements an inbound
@@ -53,7 +69,21 @@ import java.rmi.server.UnicastRemoteObject;
  * with methods that call the corresponding implementation services of their
  * owner component, paying attention to the discipline (synchronised, ...)
  * with which these calls must be made for the given implementation of the
- * component.
+ * component.  These calls are synchronous; only data inbound ports offer a
+ * completable variant, <code>getAsync</code>, built on
+ * <code>ComponentI#handleRequestCompletable</code>.
+ * 
+ * Inbound ports are remote objects, but they are exported to the RMI runtime
+ * only when they need to be reachable from another JVM, that is when they
+ * are published in the distributed registries with <code>publishPort</code>
+ * or when they are passed by reference in a remote call.  Ports that are
+ * only published locally and connected to co-located components are called
+ * directly through Java references and never exported, which avoids the
+ * RMI threads and distributed garbage collection bookkeeping for them.
+ * Setting <code>EXPORT_ON_CREATION</code> to true restores the export of
+ * every inbound port at creation time.  When
+ * <code>AbstractDistributedCVM.USE_SOCKET_TRANSPORT</code> is true, published
+ * ports are exported to the socket transport rather than to RMI.
  * 
  * <p><strong>Invariant</strong></p>
  * 
@@ -67,8 +97,9 @@ import java.rmi.server.UnicastRemoteObject;
  * @version	$Name$ -- $Revision$ -- $Date$
  */
 public abstract class	AbstractInboundPort
-extends		UnicastRemoteObject
-implements	InboundPortI
+extends		RemoteObject
+implements	InboundPortI,
+			TracedInvocationI
 {
 	// ------------------------------------------------------------------------
 	// Note: as this class cannot extend AbstractPort, everything from that
@@ -81,6 +112,15 @@ implements	InboundPortI
 
 	private static final long	serialVersionUID = 1L;
 
+	/** when true, inbound ports are exported to the RMI runtime as soon as
+	 *  they are created rather than when they are first needed remotely.	*/
+	public static boolean		EXPORT_ON_CREATION = false ;
+	/** methods that <code>invokeTraced</code> can call, per implemented
+	 *  interface and per name.											*/
+	protected static final ConcurrentHashMap<Class<?>,Map<String,Method[]>>
+								TRACED_METHODS =
+						new ConcurrentHashMap<Class<?>,Map<String,Method[]>>() ;
+
 	/** the unique identifier used to publish this entry point.				*/
 	protected final String		uri ;
 	/** the interface implemented by this port.								*/
@@ -91,6 +131,8 @@ implements	InboundPortI
 	protected boolean			isPublished = false ;
 	/** the port has been distributedly published.							*/
 	protected boolean			isDistributedlyPublished = false ;
+	/** the port is currently exported to the RMI runtime.					*/
+	protected transient boolean	isExported = false ;
 
 	/**
 	 * create and initialize inbound ports, with a given URI.
@@ -131,6 +173,10 @@ implements	InboundPortI
 		// and not the RequiredI implemented interface
 		assert	OfferedI.class.isAssignableFrom(implementedInterface)
 				|| this instanceof AbstractDataOutboundPort ;
+
+		if (AbstractInboundPort.EXPORT_ON_CREATION) {
+			this.exportPort() ;
+		}
 	}
 
 	/**
@@ -293,6 +339,9 @@ implements	InboundPortI
 	{
 		assert	!this.isPublished() && !this.isDistributedlyPublished() ;
 
+		if (!AbstractDistributedCVM.USE_SOCKET_TRANSPORT) {
+			this.exportPort() ;
+		}
 		AbstractDistributedCVM.publishPort((OfferedI)this) ;
 		this.isPublished = true ;
 		this.isDistributedlyPublished = true ;
@@ -329,10 +378,125 @@ implements	InboundPortI
 
 		this.unpublishPort() ;
 		this.owner.removePort(this) ;
+		this.unexportPort() ;
 
 		assert	!this.isPublished() ;
 	}
 
+	// ------------------------------------------------------------------------
+	// RMI export management
+	// ------------------------------------------------------------------------
+
+	/**
+	 * return true if this port is currently exported to the RMI runtime.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @return	true if this port is currently exported.
+	 */
+	public synchronized boolean	isExported()
+	{
+		return this.isExported ;
+	}
+
+	/**
+	 * export this port to the RMI runtime, on an anonymous TCP port, if it is
+	 * not already exported.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	this.isExported()
+	 * </pre>
+	 *
+	 * @throws RemoteException	if the export fails.
+	 */
+	public synchronized void	exportPort() throws RemoteException
+	{
+		if (!this.isExported) {
+			UnicastRemoteObject.exportObject(this, 0) ;
+			this.isExported = true ;
+		}
+	}
+
+	/**
+	 * remove this port from the RMI runtime if it is exported, so that it
+	 * can no longer be called remotely.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	!this.isExported()
+	 * </pre>
+	 *
+	 * @throws NoSuchObjectException	if the RMI runtime does not know the port.
+	 */
+	public synchronized void	unexportPort() throws NoSuchObjectException
+	{
+		if (this.isExported) {
+			UnicastRemoteObject.unexportObject(this, true) ;
+			this.isExported = false ;
+		}
+	}
+
+	/**
+	 * replace this port by its RMI stub when it is serialised, exporting it
+	 * first if needed; this is what happens when the port is passed by
+	 * reference in a remote call or bound in a RMI registry.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	this.isExported()
+	 * </pre>
+	 *
+	 * @return	the RMI stub of this port.
+	 * @throws ObjectStreamException	if the port cannot be exported.
+	 */
+	protected Object	writeReplace() throws ObjectStreamException
+	{
+		try {
+			this.exportPort() ;
+			return RemoteObject.toStub(this) ;
+		} catch (RemoteException e) {
+			InvalidObjectException ex =
+				new InvalidObjectException("port " + this.uri +
+										   " cannot be exported!") ;
+			ex.initCause(e) ;
+			throw ex ;
+		}
+	}
+
+	/**
+	 * compare ports by identity; <code>RemoteObject</code> compares remote
+	 * references, which change when the port is exported lazily, and ports
+	 * are kept in hash-based collections before and after their export.
+	 * 
+	 * @see java.rmi.server.RemoteObject#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean		equals(Object obj)
+	{
+		return this == obj ;
+	}
+
+	/**
+	 * @see java.rmi.server.RemoteObject#hashCode()
+	 */
+	@Override
+	public int			hashCode()
+	{
+		return System.identityHashCode(this) ;
+	}
+
 	// ------------------------------------------------------------------------
 	// Connection management
 	// ------------------------------------------------------------------------
@@ -404,4 +568,117 @@ implements	InboundPortI
 		// As inbound ports do not hold data about their clients, nothing needs
 		// to be done when disconnecting.
 	}
+
+	// ------------------------------------------------------------------------
+	// Tracing
+	// ------------------------------------------------------------------------
+
+	/**
+	 * execute a service call received from a remote tracing proxy within
+	 * the trace context of the caller, recording it as a span of category
+	 * <code>rmi-server</code>.  Only the methods of the implemented
+	 * interface of the port and of its super-interfaces can be called, so
+	 * that a remote caller cannot reach the methods managing the port
+	 * itself (<code>destroyPort</code>, <code>doDisconnection</code>, ...).
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	methodName != null && parameterTypes != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 * 
+	 * @see fr.upmc.components.tracing.TracedInvocationI#invokeTraced(fr.upmc.components.tracing.TraceContext, java.lang.String, java.lang.Class[], java.lang.Object[])
+	 */
+	@Override
+	public Object		invokeTraced(
+		TraceContext context,
+		String methodName,
+		Class<?>[] parameterTypes,
+		Object[] args
+		) throws Exception
+	{
+		assert	methodName != null && parameterTypes != null ;
+
+		Method m = findTracedMethod(this.implementedInterface, methodName,
+									parameterTypes) ;
+		if (m == null) {
+			throw new RemoteException(
+						methodName + Arrays.toString(parameterTypes) +
+						" is not a method of " +
+						this.implementedInterface.getCanonicalName() + ".") ;
+		}
+		TraceContext previous = Tracer.attach(context) ;
+		Span s = Tracer.startSpan(
+						m.getDeclaringClass().getSimpleName() + "." +
+						methodName, "rmi-server") ;
+		try {
+			return m.invoke(this, args) ;
+		} catch (InvocationTargetException e) {
+			s.setFailed() ;
+			Throwable cause = e.getCause() ;
+			if (cause instanceof Exception) {
+				throw (Exception) cause ;
+			} else if (cause instanceof Error) {
+				throw (Error) cause ;
+			} else {
+				throw e ;
+			}
+		} finally {
+			s.finish() ;
+			Tracer.restore(previous) ;
+		}
+	}
+
+	/**
+	 * return the method of <code>inter</code> or of its super-interfaces
+	 * with the given name and parameter types, or null if there is none;
+	 * the methods of an interface are gathered at its first use.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	inter != null && methodName != null && parameterTypes != null
+	 * post	return == null || return.getDeclaringClass().isAssignableFrom(inter)
+	 * </pre>
+	 *
+	 * @param inter				implemented interface of a port.
+	 * @param methodName		name of the method.
+	 * @param parameterTypes	types of the parameters of the method.
+	 * @return					the method or null if <code>inter</code> has none matching.
+	 */
+	protected static Method	findTracedMethod(
+		Class<?> inter,
+		String methodName,
+		Class<?>[] parameterTypes
+		)
+	{
+		Map<String,Method[]> methods = TRACED_METHODS.get(inter) ;
+		if (methods == null) {
+			HashMap<String,Method[]> byName = new HashMap<String,Method[]>() ;
+			// getMethods includes the methods of the super-interfaces.
+			for (Method m : inter.getMethods()) {
+				Method[] same = byName.get(m.getName()) ;
+				if (same == null) {
+					same = new Method[]{m} ;
+				} else {
+					same = Arrays.copyOf(same, same.length + 1) ;
+					same[same.length - 1] = m ;
+				}
+				byName.put(m.getName(), same) ;
+			}
+			Map<String,Method[]> previous =
+									TRACED_METHODS.putIfAbsent(inter, byName) ;
+			methods = previous == null ? byName : previous ;
+		}
+		Method[] candidates = methods.get(methodName) ;
+		if (candidates != null) {
+			for (Method m : candidates) {
+				if (Arrays.equals(m.getParameterTypes(), parameterTypes)) {
+					return m ;
+				}
+			}
+		}
+		return null ;
+	}
 }
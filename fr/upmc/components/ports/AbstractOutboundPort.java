@@ -34,10 +34,9 @@ package fr.upmc.components.ports;
 // The fact that you are presently reading this means that you have had
 // knowledge of the CeCILL-C license and that you accept its terms.
 
-import java.lang.reflect.Constructor;
-
 import fr.upmc.components.ComponentI;
 import fr.upmc.components.connectors.ConnectionBuilder;
+import fr.upmc.components.connectors.ConnectorFactoryRegistry;
 import fr.upmc.components.connectors.ConnectorI;
 import fr.upmc.components.interfaces.RequiredI;
 
@@ -291,9 +290,8 @@ implements	OutboundPortI
 		// FIXME: should use a proper state machine model to implement the
 		// connection and disconnection protocol
 
-		Class<?> cc = Class.forName(ccname) ;
-		Constructor<?> c = cc.getConstructor(new Class<?>[]{}) ;
-		ConnectorI connector = (ConnectorI) c.newInstance() ;
+		ConnectorI connector =
+						ConnectorFactoryRegistry.createConnector(ccname) ;
 		ConnectionBuilder.SINGLETON.connectWith(otherPortURI,
 												this.getPortURI(),
 												connector) ;
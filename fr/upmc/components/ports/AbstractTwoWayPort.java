@@ -34,11 +34,10 @@ package fr.upmc.components.ports;
 // The fact that you are presently reading this means that you have had
 // knowledge of the CeCILL-C license and that you accept its terms.
 
-import java.lang.reflect.Constructor;
-
 import fr.upmc.components.ComponentI;
 import fr.upmc.components.connectors.AbstractTwoWayConnector;
 import fr.upmc.components.connectors.ConnectionBuilder;
+import fr.upmc.components.connectors.ConnectorFactoryRegistry;
 import fr.upmc.components.connectors.ConnectorI;
 import fr.upmc.components.cvm.AbstractCVM;
 import fr.upmc.components.interfaces.TwoWayI;
@@ -338,9 +337,8 @@ implements	TwoWayPortI
 		// to act as client and server ports.  The connection made here assumes
 		// that the current port is the server port, and the other port is the
 		// client.
-		Class<?> cc = Class.forName(ccname) ;
-		Constructor<?> c = cc.getConstructor(new Class<?>[]{}) ;
-		ConnectorI connector = (ConnectorI) c.newInstance() ;
+		ConnectorI connector =
+						ConnectorFactoryRegistry.createConnector(ccname) ;
 		ConnectionBuilder.SINGLETON.connectWith(this.getPortURI(),
 												otherPortURI,
 												connector) ;
@@ -364,9 +362,8 @@ implements	TwoWayPortI
 
 		// See doConnection; here the connection is made symmetrically to the
 		// one made in doConnection.
-		Class<?> cc = Class.forName(ccname) ;
-		Constructor<?> c = cc.getConstructor(new Class<?>[]{}) ;
-		ConnectorI connector = (ConnectorI) c.newInstance() ;
+		ConnectorI connector =
+						ConnectorFactoryRegistry.createConnector(ccname) ;
 		ConnectionBuilder.SINGLETON.connectWith(otherPortURI,
 												this.getPortURI(),
 												connector) ;
@@ -0,0 +1,248 @@
+package fr.upmc.components.registry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <code>CachingRegistryClient</code> caches, in front of another registry client, the
+ * answers to the lookups made by the current JVM.
+ *
+ * <p><strong>Description</strong></p>
+ * <p>
+ * The bindings of port URIs almost never change once the components are deployed, so each answer
+ * is kept under a lease of <code>LEASE</code> milliseconds during which the lookups of the same key
+ * are answered without any request to the registry. Keys not bound in the registry are cached as
+ * well, under a shorter lease of <code>NEGATIVE_LEASE</code> milliseconds, so that a component
+ * repeatedly looking up a port not yet published waits at most that long to see it.
+ * <p>
+ * The cached value of a key is dropped as soon as the registry pushes its invalidation, which
+ * <code>SimpleRegistry</code> and <code>DistributedRegistry</code> do for all of their clients
+ * when the key is put or removed, and when the key is put or removed through this client. The
+ * leases bound the staleness of the values when invalidations cannot reach the client, for
+ * example when the key is changed on another distributed registry. An answer read while an
+ * invalidation was received is returned but not cached, as it may predate the invalidation.
+ * <p>
+ * Failures to reach the registry are never cached.
+ */
+public class CachingRegistryClient implements GlobalRegistryClient {
+
+	/**
+	 * Lease in milliseconds of the cached values; is configurable.
+	 */
+	public static long LEASE = 60000;
+
+	/**
+	 * Lease in milliseconds of the keys cached as not bound; is configurable.
+	 */
+	public static long NEGATIVE_LEASE = 1000;
+
+	/**
+	 * The class <code>Entry</code> holds a cached answer of the registry until the end of its lease.
+	 */
+	protected static class Entry {
+
+		/**
+		 * Value of the key, or null if the key is not bound.
+		 */
+		protected final String value;
+
+		/**
+		 * Error message of the registry when the key is not bound.
+		 */
+		protected final String error;
+
+		/**
+		 * Time in milliseconds at which the lease ends.
+		 */
+		protected final long expiry;
+
+		public Entry(String value, String error, long expiry) {
+			this.value = value;
+			this.error = error;
+			this.expiry = expiry;
+		}
+	}
+
+	protected final GlobalRegistryClient delegate;
+	protected final ConcurrentHashMap<String, Entry> entries;
+
+	/**
+	 * Number of invalidations received, used to detect the answers that may predate one of them.
+	 */
+	protected final AtomicLong invalidations;
+	protected final AtomicLong hits;
+	protected final AtomicLong misses;
+
+	public CachingRegistryClient(GlobalRegistryClient delegate) {
+		assert delegate != null;
+
+		this.delegate = delegate;
+		this.entries = new ConcurrentHashMap<String, Entry>();
+		this.invalidations = new AtomicLong();
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.delegate.addInvalidationListener(new InvalidationListener() {
+			@Override
+			public void invalidated(String key) {
+				invalidate(key);
+			}
+		});
+	}
+
+	/**
+	 * @return the client to which the requests not answered from the cache are sent.
+	 */
+	public GlobalRegistryClient getDelegate() {
+		return this.delegate;
+	}
+
+	/**
+	 * @return the number of lookups answered from the cache.
+	 */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	/**
+	 * @return the number of lookups sent to the registry.
+	 */
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	/**
+	 * drop the cached answer for <code>key</code>, if any.
+	 *
+	 * @param key key which value has changed in the registry.
+	 */
+	public void invalidate(String key) {
+		this.invalidations.incrementAndGet();
+		this.entries.remove(key);
+	}
+
+	/**
+	 * drop all of the cached answers.
+	 */
+	public void clear() {
+		this.invalidations.incrementAndGet();
+		this.entries.clear();
+	}
+
+	/**
+	 * return the cached answer for <code>key</code> if its lease is not over, otherwise null.
+	 */
+	protected Entry cached(String key) {
+		Entry e = this.entries.get(key);
+		if (e != null && e.expiry - System.currentTimeMillis() <= 0) {
+			this.entries.remove(key, e);
+			e = null;
+		}
+		return e;
+	}
+
+	/**
+	 * cache an answer read by the registry unless an invalidation was received since the request
+	 * was sent, i.e. since the number of invalidations was <code>before</code>.
+	 */
+	protected void cache(String key, String value, String error, long before) {
+		if (value != null && value.startsWith("sync")) {
+			// the key is covered by another distributed registry
+			return;
+		}
+		long lease = value != null ? LEASE : NEGATIVE_LEASE;
+		Entry e = new Entry(value, error, System.currentTimeMillis() + lease);
+		this.entries.put(key, e);
+		if (this.invalidations.get() != before) {
+			this.entries.remove(key, e);
+		}
+	}
+
+	public String sendCommand(String command) throws Exception {
+		return this.delegate.sendCommand(command);
+	}
+
+	/**
+	 * look up a key in the cache, then in the registry if the key is not cached; a key cached as
+	 * not bound raises the same exception as the registry.
+	 */
+	public String lookup(String key) throws Exception {
+		Entry e = this.cached(key);
+		if (e != null) {
+			this.hits.incrementAndGet();
+			if (e.value == null) {
+				throw new Exception(e.error);
+			}
+			return e.value;
+		}
+		this.misses.incrementAndGet();
+		long before = this.invalidations.get();
+		String value;
+		try {
+			value = this.delegate.lookup(key);
+		} catch (IOException ex) {
+			throw ex;
+		} catch (TimeoutException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			this.cache(key, null, ex.getMessage(), before);
+			throw ex;
+		}
+		this.cache(key, value, null, before);
+		return value;
+	}
+
+	/**
+	 * look up the keys not cached with a single batch sent to the registry; as the batch does not
+	 * tell why a key is absent from its result, only the keys found are cached.
+	 */
+	public Map<String, String> lookupAll(List<String> keys) throws Exception {
+		Map<String, String> result = new HashMap<String, String>();
+		List<String> missing = new ArrayList<String>();
+		for (String key : keys) {
+			Entry e = this.cached(key);
+			if (e == null) {
+				missing.add(key);
+			} else {
+				this.hits.incrementAndGet();
+				if (e.value != null) {
+					result.put(key, e.value);
+				}
+			}
+		}
+		if (!missing.isEmpty()) {
+			this.misses.addAndGet(missing.size());
+			long before = this.invalidations.get();
+			Map<String, String> found = this.delegate.lookupAll(missing);
+			for (Map.Entry<String, String> f : found.entrySet()) {
+				this.cache(f.getKey(), f.getValue(), null, before);
+				result.put(f.getKey(), f.getValue());
+			}
+		}
+		return result;
+	}
+
+	public String put(String key, String value) throws Exception {
+		this.invalidate(key);
+		return this.delegate.put(key, value);
+	}
+
+	public void remove(String key) throws Exception {
+		this.invalidate(key);
+		this.delegate.remove(key);
+	}
+
+	public void shutdown() throws Exception {
+		this.clear();
+		this.delegate.shutdown();
+	}
+
+	public void addInvalidationListener(InvalidationListener listener) {
+		this.delegate.addInvalidationListener(listener);
+	}
+}
@@ -5,8 +5,12 @@ import fr.upmc.components.cvm.config.ConfigurationParameters;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.ServerSocket;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,6 +40,12 @@ public abstract class GlobalRegistry {
 	 */
 	public static final boolean DEBUG1 = false;
 
+	/**
+	 * Line pushed to the connected clients, followed by a key, when the key is put or removed so
+	 * that they drop the value they may have cached for it.
+	 */
+	public static final String INVALIDATE = "invalidate";
+
 	/**
 	 * Directory of information, a hashtable with String keys and values.
 	 */
@@ -66,6 +76,12 @@ public abstract class GlobalRegistry {
 	 */
 	public CountDownLatch finished;
 
+	/**
+	 * Output streams of the connected clients, to which invalidations are pushed.
+	 */
+	protected final Set<PrintStream> clientStreams =
+					Collections.newSetFromMap(new ConcurrentHashMap<PrintStream, Boolean>());
+
 	public GlobalRegistry(String configFileName) throws Exception {
 		File configFile = new File(configFileName);
 		ConfigurationFileParser cfp = new ConfigurationFileParser();
@@ -86,4 +102,17 @@ public abstract class GlobalRegistry {
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * push the invalidation of <code>key</code> to all of the connected clients, after it has been
+	 * put or removed; as <code>println</code> is atomic, the line does not mix with the answers
+	 * written concurrently on the same stream.
+	 *
+	 * @param key key which value has changed.
+	 */
+	public void pushInvalidation(String key) {
+		for (PrintStream ps : this.clientStreams) {
+			ps.println(INVALIDATE + " " + key);
+		}
+	}
 }
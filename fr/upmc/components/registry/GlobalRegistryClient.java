@@ -1,19 +1,44 @@
 package fr.upmc.components.registry;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * The interface <code>GlobalRegistryClient</code> defines the function handled by a global registry
  * (simple or distributed).
  */
 public interface GlobalRegistryClient {
 
+	/**
+	 * The interface <code>InvalidationListener</code> is implemented by the objects notified of
+	 * the invalidations pushed by the registry when a key is put or removed.
+	 */
+	interface InvalidationListener {
+
+		void invalidated(String key);
+	}
+
 	String sendCommand(String command) throws Exception;
 
 	String lookup(String key) throws Exception;
 
+	/**
+	 * look up several keys at once, pipelining the requests in bounded
+	 * chunks so that the batch costs one round trip per chunk rather than
+	 * per key; keys that cannot be resolved are simply absent from the result.
+	 */
+	Map<String, String> lookupAll(List<String> keys) throws Exception;
+
 	String put(String key, String value) throws Exception;
 
 	void remove(String key) throws Exception;
 
 	void shutdown() throws Exception;
 
+	/**
+	 * register a listener notified, from the thread reading the answers of the registry, of the
+	 * invalidations pushed by the registry.
+	 */
+	void addInvalidationListener(InvalidationListener listener);
+
 }
@@ -0,0 +1,349 @@
+package fr.upmc.components.registry;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The class <code>RegistryConnection</code> multiplexes the requests of concurrent threads over a
+ * single connection to a registry.
+ *
+ * <p><strong>Description</strong></p>
+ * <p>
+ * The registries answer the requests of a connection one by one and in order, so a request is
+ * identified by its position: a requesting thread writes its request line and queues a future
+ * under the same lock, and a reader thread completes the oldest pending future with each answer
+ * it reads. Concurrent requests hence share the connection without waiting for the answers to
+ * each other, while the protocol and the number of connections per JVM, on which the registries
+ * rely to know when all of the JVMs are connected, are unchanged.
+ * <p>
+ * A request not answered within <code>REQUEST_TIMEOUT</code> milliseconds fails with a
+ * <code>TimeoutException</code>, but its future stays in the pending requests so that its late
+ * answer, if any, is still consumed in order and discarded: the connection, shared with the other
+ * requests and which the registries do not accept to reopen once all of the JVMs are connected,
+ * is kept. When the connection is closed or fails, the pending
+ * requests fail with an <code>IOException</code> and the next request opens a new connection,
+ * which is tried again every <code>RETRY_PERIOD</code> milliseconds until the connection deadline
+ * given at creation.
+ * <p>
+ * The invalidation lines pushed by the registry (<code>GlobalRegistry.INVALIDATE</code>) are not
+ * answers: they are passed to the invalidation listener given at creation, if any.
+ */
+public class RegistryConnection {
+
+	/**
+	 * Timeout in milliseconds of each attempt to connect to a registry; is configurable.
+	 */
+	public static int CONNECT_TIMEOUT = 5000;
+
+	/**
+	 * Timeout in milliseconds of the requests, 0 meaning no timeout; is configurable.
+	 */
+	public static long REQUEST_TIMEOUT = 30000;
+
+	/**
+	 * Time in milliseconds to wait before the next attempt to connect; is configurable.
+	 */
+	public static long RETRY_PERIOD = 200;
+
+	/**
+	 * Maximum number of requests of a batch written before waiting for their answers, so that
+	 * neither the registry nor the client block on full socket buffers; is configurable.
+	 */
+	public static int MAX_PIPELINED_REQUESTS = 64;
+
+	protected final InetAddress host;
+	protected final int port;
+
+	/**
+	 * Time in milliseconds during which failed connection attempts are retried, 0 for a single
+	 * attempt.
+	 */
+	protected final long connectionDeadline;
+
+	/**
+	 * Listener notified of the invalidations pushed by the registry, or null.
+	 */
+	protected final GlobalRegistryClient.InvalidationListener invalidationListener;
+
+	/**
+	 * Lock guarding the socket, the writer and the pending requests, so that requests are queued
+	 * in the order they are written.
+	 */
+	protected final Object lock;
+	protected Socket socket;
+	protected Writer writer;
+	protected final ArrayDeque<CompletableFuture<String>> pending;
+
+	public RegistryConnection(InetAddress host, int port, long connectionDeadline) {
+		this(host, port, connectionDeadline, null);
+	}
+
+	public RegistryConnection(
+					InetAddress host,
+					int port,
+					long connectionDeadline,
+					GlobalRegistryClient.InvalidationListener invalidationListener
+	) {
+		this.host = host;
+		this.port = port;
+		this.connectionDeadline = connectionDeadline;
+		this.invalidationListener = invalidationListener;
+		this.lock = new Object();
+		this.socket = null;
+		this.writer = null;
+		this.pending = new ArrayDeque<CompletableFuture<String>>();
+	}
+
+	/**
+	 * send a request and wait for its answer.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	line != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param line request line, without its line terminator.
+	 * @return the answer line.
+	 * @throws Exception if the connection fails or the request times out.
+	 */
+	public String request(String line) throws Exception {
+		return this.await(this.send(line));
+	}
+
+	/**
+	 * send a request without waiting for its answer.
+	 *
+	 * @param line request line, without its line terminator.
+	 * @return the future answer line.
+	 * @throws IOException if the request cannot be sent.
+	 */
+	public CompletableFuture<String> send(String line) throws IOException {
+		return this.sendAll(Collections.singletonList(line)).get(0);
+	}
+
+	/**
+	 * send several requests at once, without waiting for their answers.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	lines != null
+	 * post	return.size() == lines.size()
+	 * </pre>
+	 *
+	 * @param lines request lines, without their line terminator.
+	 * @return the future answer lines, in the order of the requests.
+	 * @throws IOException if the requests cannot be sent.
+	 */
+	public List<CompletableFuture<String>> sendAll(List<String> lines) throws IOException {
+		assert lines != null;
+
+		List<CompletableFuture<String>> answers = new ArrayList<CompletableFuture<String>>();
+		StringBuilder batch = new StringBuilder();
+		for (String line : lines) {
+			answers.add(new CompletableFuture<String>());
+			batch.append(line).append('\n');
+		}
+		synchronized (this.lock) {
+			this.ensureConnected();
+			this.pending.addAll(answers);
+			try {
+				this.writer.write(batch.toString());
+				this.writer.flush();
+			} catch (IOException e) {
+				this.disconnect(this.socket, e);
+				throw e;
+			}
+		}
+		return answers;
+	}
+
+	/**
+	 * send several requests and wait for their answers, writing them in chunks of at most
+	 * <code>MAX_PIPELINED_REQUESTS</code> requests and waiting for the answers to a chunk before
+	 * writing the next one: a registry answering a large batch written at once could block on
+	 * its full output buffer while the client is still blocked writing the rest of the batch.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	lines != null
+	 * post	return.size() == lines.size()
+	 * </pre>
+	 *
+	 * @param lines request lines, without their line terminator.
+	 * @return the answer lines, in the order of the requests.
+	 * @throws Exception if the connection fails or a request times out.
+	 */
+	public List<String> requestAll(List<String> lines) throws Exception {
+		assert lines != null;
+
+		List<String> result = new ArrayList<String>(lines.size());
+		int chunk = Math.max(1, MAX_PIPELINED_REQUESTS);
+		for (int from = 0; from < lines.size(); from += chunk) {
+			List<CompletableFuture<String>> answers =
+							this.sendAll(lines.subList(from, Math.min(from + chunk, lines.size())));
+			for (CompletableFuture<String> answer : answers) {
+				result.add(this.await(answer));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * wait for an answer, at most <code>REQUEST_TIMEOUT</code> milliseconds; a request that
+	 * times out keeps its place among the pending ones, so its late answer is discarded.
+	 *
+	 * @param answer future answer returned by <code>send</code> or <code>sendAll</code>.
+	 * @return the answer line.
+	 * @throws Exception if the connection failed or the request timed out.
+	 */
+	public String await(CompletableFuture<String> answer) throws Exception {
+		try {
+			if (REQUEST_TIMEOUT > 0) {
+				return answer.get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+			} else {
+				return answer.get();
+			}
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		} catch (TimeoutException e) {
+			TimeoutException timeout = new TimeoutException("No answer from the registry " + host +
+							":" + port + " within " + REQUEST_TIMEOUT + " ms.");
+			// the reader thread will still poll this future with the late answer, but completing
+			// an already completed future has no effect, so the answer is discarded.
+			if (!answer.completeExceptionally(timeout)) {
+				return this.await(answer);
+			}
+			throw timeout;
+		}
+	}
+
+	/**
+	 * open the connection if it is not already opened, retrying until the connection deadline,
+	 * and start the thread reading the answers; called with the lock held.
+	 */
+	protected void ensureConnected() throws IOException {
+		if (this.socket != null) {
+			return;
+		}
+		long deadline = System.currentTimeMillis() + this.connectionDeadline;
+		Socket s = null;
+		while (s == null) {
+			try {
+				s = new Socket();
+				s.connect(new InetSocketAddress(this.host, this.port), CONNECT_TIMEOUT);
+			} catch (IOException e) {
+				s.close();
+				s = null;
+				if (System.currentTimeMillis() + RETRY_PERIOD > deadline) {
+					throw new IOException("Impossible to connect to " + host + ":" + port, e);
+				}
+				try {
+					Thread.sleep(RETRY_PERIOD);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while connecting to " + host + ":" + port);
+				}
+			}
+		}
+		final Socket connected = s;
+		final BufferedReader br =
+						new BufferedReader(new InputStreamReader(connected.getInputStream()));
+		this.writer = new BufferedWriter(new OutputStreamWriter(connected.getOutputStream()));
+		this.socket = connected;
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readAnswers(connected, br);
+			}
+		}, "registry-connection-" + host.getHostName() + ":" + port);
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * read the answers on the socket <code>s</code> until it is closed, completing the pending
+	 * requests in order.
+	 */
+	protected void readAnswers(Socket s, BufferedReader br) {
+		IOException failure;
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				if (line.startsWith(GlobalRegistry.INVALIDATE + " ")) {
+					if (this.invalidationListener != null) {
+						this.invalidationListener.invalidated(
+										line.substring(GlobalRegistry.INVALIDATE.length() + 1));
+					}
+					continue;
+				}
+				CompletableFuture<String> answer;
+				synchronized (this.lock) {
+					answer = this.pending.poll();
+				}
+				if (answer != null) {
+					answer.complete(line);
+				}
+			}
+			failure = new IOException("Connection to " + host + ":" + port + " closed.");
+		} catch (IOException e) {
+			failure = e;
+		}
+		this.disconnect(s, failure);
+	}
+
+	/**
+	 * close the socket <code>s</code> if it is still the current one and fail the pending
+	 * requests with <code>cause</code>.
+	 */
+	protected void disconnect(Socket s, IOException cause) {
+		List<CompletableFuture<String>> failed;
+		synchronized (this.lock) {
+			if (s != this.socket) {
+				return;
+			}
+			this.socket = null;
+			this.writer = null;
+			failed = new ArrayList<CompletableFuture<String>>(this.pending);
+			this.pending.clear();
+		}
+		try {
+			s.close();
+		} catch (IOException e) {
+		}
+		for (CompletableFuture<String> answer : failed) {
+			answer.completeExceptionally(cause);
+		}
+	}
+
+	/**
+	 * close the connection, failing the pending requests.
+	 */
+	public void close() {
+		Socket s;
+		synchronized (this.lock) {
+			s = this.socket;
+		}
+		if (s != null) {
+			this.disconnect(s, new IOException("Connection to " + host + ":" + port + " closed."));
+		}
+	}
+}
@@ -26,6 +26,9 @@ import java.util.concurrent.CountDownLatch;
  * sync <keys coverage> hostname <keys coverage> nok bound! remove <key> ok sync <keys coverage>
  * hostname <keys coverage> nok not_bound! shutdown ok <anything else> nok unkonwn_command!
  * <p>
+ * After a put or a remove, the line "invalidate <key>" is pushed to all of the clients connected to
+ * this registry.
+ * <p>
  * <p>
  * Statics variables DEBUG0 and DEBUG1 are used to provides a log of the registry's action on STDOUT
  */
@@ -173,6 +176,7 @@ public class DistributedRegistry extends GlobalRegistry {
 			try {
 				this.br = new BufferedReader(new InputStreamReader(this.s.getInputStream()));
 				this.ps = new PrintStream(s.getOutputStream(), true);
+				reg.clientStreams.add(this.ps);
 			} catch (IOException e) {
 				e.printStackTrace();
 				if (DEBUG1) {
@@ -203,6 +207,7 @@ public class DistributedRegistry extends GlobalRegistry {
 		public void put(String key, String value) {
 			if (reg.keysCoverage.isIncluded(key)) {
 				new ProcessPut(ps, key, value, reg.directory).run();
+				reg.pushInvalidation(key);
 			} else {
 				sendRegistryCovering(key);
 			}
@@ -222,6 +227,7 @@ public class DistributedRegistry extends GlobalRegistry {
 		public void remove(String key) {
 			if (reg.keysCoverage.isIncluded(key)) {
 				new ProcessRemove(ps, key, reg.directory).run();
+				reg.pushInvalidation(key);
 			} else {
 				sendRegistryCovering(key);
 			}
@@ -278,6 +284,7 @@ public class DistributedRegistry extends GlobalRegistry {
 			// because all
 			// clients will not be able to connect if the transferred key is not completed.
 			reg.connectedClient_count--;
+			reg.clientStreams.remove(this.ps);
 
 			try {
 				this.ps.print("ok");
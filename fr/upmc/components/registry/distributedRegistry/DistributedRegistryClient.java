@@ -1,54 +1,52 @@
 package fr.upmc.components.registry.distributedRegistry;
 
 import fr.upmc.components.registry.GlobalRegistryClient;
+import fr.upmc.components.registry.RegistryConnection;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintStream;
 import java.net.InetAddress;
-import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The class <code>RegistryClient</code> provides a convenient intermediary to send requests to a
- * distributed registry and get answers back.
+ * distributed registry and get answers back. Concurrent requests are multiplexed over the single
+ * connection to the registry by a <code>RegistryConnection</code>.
  */
 public class DistributedRegistryClient implements GlobalRegistryClient {
 
 	/**
 	 * When a distributed registry divides, he creates another ditributed registry and transfere
 	 * half of this keys on it. He may try to transfere his keys before the new registry is up and
-	 * running. In this case, the distributed registry will try several times to connect.
+	 * running. In this case, the distributed registry will retry to connect during this time in
+	 * milliseconds, every <code>RegistryConnection.RETRY_PERIOD</code>; is configurable.
 	 */
-	protected static final int connectionAttempts = 1000;
-
-	/**
-	 * Time to wait before next attempt to connect to a distributed registry.
-	 */
-	protected static final int timeBeforeNextAttempt = 200;
+	public static long CONNECTION_DEADLINE = 200000;
 
 	/**
 	 * Coverage of keys of the distributed registry which this client is connected.
 	 */
-	protected KeysCoverage keysCoverage;
+	protected volatile KeysCoverage keysCoverage;
 
 	/**
 	 * Address of the distributed registry
 	 */
 	protected InetAddress host;
 
-	protected Socket socket;
+	protected RegistryConnection connection;
 
-	protected PrintStream ps;
-
-	protected BufferedReader br;
+	protected final List<InvalidationListener> invalidationListeners =
+					new CopyOnWriteArrayList<InvalidationListener>();
 
 	public DistributedRegistryClient(String hostname, String keysCoverage) {
 		try {
 			this.keysCoverage = new KeysCoverage(keysCoverage);
 			this.host = InetAddress.getByName(hostname);
-			socket = null;
+			connection = null;
 		} catch (UnknownHostException e) {
 			e.printStackTrace();
 		}
@@ -71,31 +69,48 @@ public class DistributedRegistryClient implements GlobalRegistryClient {
 	 * send a command to the registry distributed and return the answere as a string.
 	 */
 	public String sendCommand(String command) throws Exception {
-		String result = null;
-
-		if (this.socket == null) {
-			boolean scanning = true;
-
-			// Retry to connect for a given number of time
-			for (int i = 0; i < connectionAttempts && scanning; i++) {
-				try {
-					socket = new Socket(host, DistributedRegistry.PORT);
-					scanning = false;
-				} catch (IOException e) {
-					Thread.sleep(timeBeforeNextAttempt);
-				}
-			}
-			if (socket == null) {
-				throw new IOException("Connection attempts exceeded. Impossible to connect to " + host + ":"
-								+ DistributedRegistry.PORT);
-			}
+		return this.parseAnswer(this.ensureConnected().request(command));
+	}
 
-			ps = new PrintStream(socket.getOutputStream(), true);
-			br = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+	/**
+	 * return the connection to the distributed registry, creating it if needed; the socket itself
+	 * is opened by the first request.
+	 */
+	protected synchronized RegistryConnection ensureConnected() {
+		if (this.connection == null) {
+			this.connection =
+							new RegistryConnection(host, DistributedRegistry.PORT, CONNECTION_DEADLINE,
+											new InvalidationListener() {
+												@Override
+												public void invalidated(String key) {
+													notifyInvalidation(key);
+												}
+											});
 		}
+		return this.connection;
+	}
+
+	public void addInvalidationListener(InvalidationListener listener) {
+		this.invalidationListeners.add(listener);
+	}
 
-		ps.println(command);
-		result = br.readLine();
+	/**
+	 * notify the registered listeners of the invalidation of a key pushed by the registry.
+	 */
+	protected void notifyInvalidation(String key) {
+		for (InvalidationListener listener : this.invalidationListeners) {
+			listener.invalidated(key);
+		}
+	}
+
+	/**
+	 * extract the value from an answer of the distributed registry; sync answers are returned
+	 * as is so that the caller can refresh its keys coverage.
+	 */
+	protected String parseAnswer(String result) throws Exception {
+		if (result == null) {
+			throw new IOException("Connection to " + host + ":" + DistributedRegistry.PORT + " closed.");
+		}
 
 		String[] tokens = result.split("\\s");
 
@@ -108,11 +123,42 @@ public class DistributedRegistryClient implements GlobalRegistryClient {
 		return tokens.length > 1 ? tokens[1] : tokens[0];
 	}
 
-	public synchronized String lookup(String key) throws Exception {
+	public String lookup(String key) throws Exception {
 		return sendCommand("lookup " + key);
 	}
 
-	public synchronized String put(String key, String value) throws Exception {
+	/**
+	 * look up a batch of keys; the lookup commands are sent in chunks of
+	 * <code>RegistryConnection.MAX_PIPELINED_REQUESTS</code> before waiting for their answers.
+	 * Keys not found here are absent from the result.
+	 */
+	public Map<String, String> lookupAll(List<String> keys) throws Exception {
+		Map<String, String> result = new HashMap<String, String>();
+		if (keys.isEmpty()) {
+			return result;
+		}
+		RegistryConnection c = this.ensureConnected();
+
+		List<String> commands = new ArrayList<String>(keys.size());
+		for (String key : keys) {
+			commands.add("lookup " + key);
+		}
+		List<String> answers = c.requestAll(commands);
+		for (int i = 0; i < keys.size(); i++) {
+			try {
+				String value = this.parseAnswer(answers.get(i));
+				// a sync answer means another registry covers the key
+				if (!value.startsWith("sync")) {
+					result.put(keys.get(i), value);
+				}
+			} catch (Exception e) {
+				// key not bound, reported by the caller when it needs it
+			}
+		}
+		return result;
+	}
+
+	public String put(String key, String value) throws Exception {
 		String result = sendCommand("put " + key + " " + value);
 		String[] tokens = result.split(" ");
 
@@ -125,11 +171,11 @@ public class DistributedRegistryClient implements GlobalRegistryClient {
 		return result;
 	}
 
-	public synchronized void remove(String key) throws Exception {
+	public void remove(String key) throws Exception {
 		sendCommand("remove " + key);
 	}
 
-	public synchronized void shutdown() throws Exception {
+	public void shutdown() throws Exception {
 		sendCommand("shutdown");
 	}
 }
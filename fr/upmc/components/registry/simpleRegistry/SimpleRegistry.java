@@ -37,6 +37,10 @@ import java.util.concurrent.CountDownLatch;
  *                       nok not_bound!
  * shutdown              ok
  * <anything else>       nok unkonwn_command!
+ *
+ * Pushed to all of the clients after a put or a remove:
+ *
+ *                       invalidate <key>
  * </pre>
  * <p>
  * When the static variable <code>DEBUG</code> is set to true, the registry
@@ -180,11 +184,13 @@ public class SimpleRegistry extends GlobalRegistry {
 		protected BufferedReader br;
 		protected PrintStream ps;
 		protected CountDownLatch finished;
+		protected SimpleRegistry registry;
 
 		public ServiceRunnable(
 						Socket s,
 						Hashtable<String, String> directory,
-						CountDownLatch finished
+						CountDownLatch finished,
+						SimpleRegistry registry
 		) {
 			if (DEBUG1) {
 				System.out.println("Registry creating a service runnable");
@@ -192,10 +198,12 @@ public class SimpleRegistry extends GlobalRegistry {
 			this.s = s;
 			this.directory = directory;
 			this.finished = finished;
+			this.registry = registry;
 			try {
 				this.br = new BufferedReader(
 								new InputStreamReader(this.s.getInputStream()));
 				this.ps = new PrintStream(s.getOutputStream(), true);
+				this.registry.clientStreams.add(this.ps);
 			} catch (IOException e) {
 				e.printStackTrace();
 				if (DEBUG1) {
@@ -224,8 +232,10 @@ public class SimpleRegistry extends GlobalRegistry {
 					new ProcessLookup(this.ps, tokens[1], this.directory).run();
 				} else if (tokens[0].equals("put")) {
 					new ProcessPut(this.ps, tokens[1], tokens[2], this.directory).run();
+					this.registry.pushInvalidation(tokens[1]);
 				} else if (tokens[0].equals("remove")) {
 					new ProcessRemove(this.ps, tokens[1], this.directory).run();
+					this.registry.pushInvalidation(tokens[1]);
 				} else {
 					ps.println("nok unkonwn_command!");
 				}
@@ -246,6 +256,7 @@ public class SimpleRegistry extends GlobalRegistry {
 					}
 				}
 			}
+			this.registry.clientStreams.remove(this.ps);
 			try {
 				this.ps.print("ok");
 				this.ps.close();
@@ -311,7 +322,8 @@ public class SimpleRegistry extends GlobalRegistry {
 			try {
 				REQUEST_HANDLER.submit(new ServiceRunnable(ss.accept(),
 								this.directory,
-								this.finished
+								this.finished,
+								this
 				));
 				count++;
 				if (DEBUG1) {
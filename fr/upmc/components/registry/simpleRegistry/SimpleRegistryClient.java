@@ -2,13 +2,14 @@ package fr.upmc.components.registry.simpleRegistry;
 
 import fr.upmc.components.registry.GlobalRegistry;
 import fr.upmc.components.registry.GlobalRegistryClient;
+import fr.upmc.components.registry.RegistryConnection;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintStream;
 import java.net.InetAddress;
-import java.net.Socket;
-import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The class <code>RegistryClient</code> provides a convenient intermediary
@@ -20,14 +21,17 @@ import java.net.UnknownHostException;
  * strings with the format:
  * <p>
  * value ::= rmi=<hostname> | socket=<hostname>:<port>
+ * <p>
+ * The requests of all of the threads of the JVM are multiplexed over its
+ * single connection to the registry by a <code>RegistryConnection</code>, so
+ * that they proceed concurrently instead of waiting for each other.
  */
 public class SimpleRegistryClient implements GlobalRegistryClient {
 
 	protected static int BUFFER_SIZE = 512;
 	protected InetAddress registryHost;
-	protected Socket s;
-	protected PrintStream ps;
-	protected BufferedReader br;
+	protected RegistryConnection connection;
+	protected final List<InvalidationListener> invalidationListeners;
 
 	/**
 	 * create a client, per JVM client object required.
@@ -42,9 +46,9 @@ public class SimpleRegistryClient implements GlobalRegistryClient {
 	public SimpleRegistryClient() {
 		super();
 		this.registryHost = null;
-		this.s = null;
-		this.ps = null;
-		this.br = null;
+		this.connection = null;
+		this.invalidationListeners =
+						new CopyOnWriteArrayList<InvalidationListener>();
 	}
 
 	// ------------------------------------------------------------------------
@@ -67,24 +71,86 @@ public class SimpleRegistryClient implements GlobalRegistryClient {
 	 */
 	public String sendCommand(String command)
 	throws Exception {
-		String result = null;
+		return this.parseAnswer(this.ensureConnected().request(command));
+	}
 
-		if (this.registryHost == null) {
-			try {
-				this.registryHost =
-								InetAddress.getByName(GlobalRegistry.HOSTNAME);
-			} catch (UnknownHostException e) {
-				e.printStackTrace();
-			}
+	/**
+	 * return the connection to the registry, creating it if needed; the
+	 * socket itself is opened by the first request.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return the connection to the registry.
+	 * @throws Exception if the host of the registry is unknown.
+	 */
+	protected synchronized RegistryConnection ensureConnected()
+	throws Exception {
+		if (this.connection == null) {
+			this.registryHost = InetAddress.getByName(GlobalRegistry.HOSTNAME);
+			this.connection = new RegistryConnection(
+								this.registryHost, SimpleRegistry.PORT, 0L,
+								new InvalidationListener() {
+									@Override
+									public void invalidated(String key) {
+										notifyInvalidation(key);
+									}
+								});
 		}
-		if (this.s == null) {
-			this.s = new Socket(this.registryHost, SimpleRegistry.PORT);
-			this.ps = new PrintStream(s.getOutputStream(), true);
-			this.br = new BufferedReader(
-							new InputStreamReader(s.getInputStream()));
+		return this.connection;
+	}
+
+	/**
+	 * register a listener of the invalidations pushed by the registry.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	listener != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param listener listener to be registered.
+	 */
+	public void addInvalidationListener(InvalidationListener listener) {
+		assert listener != null;
+
+		this.invalidationListeners.add(listener);
+	}
+
+	/**
+	 * notify the registered listeners of the invalidation of a key.
+	 *
+	 * @param key key which value has changed in the registry.
+	 */
+	protected void notifyInvalidation(String key) {
+		for (InvalidationListener listener : this.invalidationListeners) {
+			listener.invalidated(key);
+		}
+	}
+
+	/**
+	 * extract the value from an answer of the registry.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param result answer line read from the registry.
+	 * @return the value carried by the answer.
+	 * @throws Exception if the registry answered with an error.
+	 */
+	protected String parseAnswer(String result) throws Exception {
+		if (result == null) {
+			throw new Exception("connection to the registry closed!");
 		}
-		ps.println(command);
-		result = this.br.readLine();
 		String[] tokens = result.split("\\s");
 		if (!tokens[0].equals("ok")) {
 			throw new Exception(result);
@@ -106,10 +172,50 @@ public class SimpleRegistryClient implements GlobalRegistryClient {
 	 * @return result of the request.
 	 * @throws Exception
 	 */
-	public synchronized String lookup(String key) throws Exception {
+	public String lookup(String key) throws Exception {
 		return this.sendCommand("lookup " + key);
 	}
 
+	/**
+	 * send a batch of lookup commands to the registry; the commands are
+	 * written in chunks of <code>RegistryConnection.MAX_PIPELINED_REQUESTS</code>
+	 * before waiting for their answers.
+	 *
+	 * <p><strong>Contract</strong></p>
+	 *
+	 * <pre>
+	 * pre	keys != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param keys keys to be looked up.
+	 * @return map from the keys found in the registry to their values.
+	 * @throws Exception
+	 */
+	public Map<String, String> lookupAll(List<String> keys)
+	throws Exception {
+		assert keys != null;
+
+		Map<String, String> result = new HashMap<String, String>();
+		if (keys.isEmpty()) {
+			return result;
+		}
+		RegistryConnection c = this.ensureConnected();
+		List<String> commands = new ArrayList<String>(keys.size());
+		for (String key : keys) {
+			commands.add("lookup " + key);
+		}
+		List<String> answers = c.requestAll(commands);
+		for (int i = 0; i < keys.size(); i++) {
+			try {
+				result.put(keys.get(i), this.parseAnswer(answers.get(i)));
+			} catch (Exception e) {
+				// key not bound, reported by the caller when it needs it
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * send a put command to the registry.
 	 *
@@ -124,7 +230,7 @@ public class SimpleRegistryClient implements GlobalRegistryClient {
 	 * @param value value (information) associated to the key.
 	 * @throws Exception
 	 */
-	public synchronized String put(String key, String value) throws Exception {
+	public String put(String key, String value) throws Exception {
 		return this.sendCommand("put " + key + " " + value);
 	}
 
@@ -141,7 +247,7 @@ public class SimpleRegistryClient implements GlobalRegistryClient {
 	 * @param key key under which the value to remove is stored.
 	 * @throws Exception
 	 */
-	public synchronized void remove(String key) throws Exception {
+	public void remove(String key) throws Exception {
 		this.sendCommand("remove " + key);
 	}
 
@@ -157,7 +263,7 @@ public class SimpleRegistryClient implements GlobalRegistryClient {
 	 *
 	 * @throws Exception
 	 */
-	public synchronized void shutdown() throws Exception {
+	public void shutdown() throws Exception {
 		this.sendCommand("shutdown");
 	}
 }
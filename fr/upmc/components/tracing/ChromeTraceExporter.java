@@ -0,0 +1,223 @@
+package fr.upmc.components.tracing;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.upmc.components.cvm.AbstractDistributedCVM;
+
+/**
+ * The class <code>ChromeTraceExporter</code> writes finished spans to a
+ * file in the Chrome trace event format, which can be loaded in
+ * <code>chrome://tracing</code> or in the Perfetto user interface.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each span is written as a complete event (phase <code>X</code>) which
+ * process is the JVM and which thread is the executing thread, with the
+ * trace, span and parent span identifiers as arguments.  Files written by
+ * the JVMs of a distributed assembly can be concatenated, after removing
+ * the opening bracket of all but the first one, to get a single view of
+ * the traces; time stamps are epoch times, so the clocks of the hosts
+ * should be synchronised.  The closing bracket of the JSON array is
+ * optional in this format, so a file remains readable even when the JVM
+ * is killed before <code>close</code>.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.out != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			ChromeTraceExporter
+implements	SpanExporter
+{
+	/** writer on the trace file.											*/
+	protected final Writer		out ;
+	/** process identifier of this JVM in the trace events.				*/
+	protected final long		pid ;
+	/** identifiers of the threads which name has been written.			*/
+	protected final Set<Long>	namedThreads ;
+	/** true when the exporter is closed.									*/
+	protected boolean			closed ;
+
+	/**
+	 * create an exporter writing to the file <code>f</code>, which is
+	 * created or truncated.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	f != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param f				trace file.
+	 * @throws IOException	if the file cannot be opened.
+	 */
+	public				ChromeTraceExporter(File f) throws IOException
+	{
+		super() ;
+		assert	f != null ;
+
+		this.out = new BufferedWriter(new OutputStreamWriter(
+						new FileOutputStream(f), StandardCharsets.UTF_8)) ;
+		this.namedThreads =
+				Collections.newSetFromMap(new ConcurrentHashMap<Long,Boolean>()) ;
+		this.closed = false ;
+		String jvmName = ManagementFactory.getRuntimeMXBean().getName() ;
+		long p ;
+		try {
+			p = Long.parseLong(jvmName.substring(0, jvmName.indexOf('@'))) ;
+		} catch (RuntimeException e) {
+			p = jvmName.hashCode() & 0x7FFFFFFFL ;
+		}
+		this.pid = p ;
+		String processName = AbstractDistributedCVM.thisJVMURI != null ?
+								AbstractDistributedCVM.thisJVMURI : jvmName ;
+		this.out.write("[\n") ;
+		this.writeMetadata("process_name", 0L, processName) ;
+	}
+
+	/**
+	 * write a metadata event naming a process or a thread.
+	 *
+	 * @param kind			<code>process_name</code> or <code>thread_name</code>.
+	 * @param tid			thread identifier.
+	 * @param name			name of the process or thread.
+	 * @throws IOException	if the file cannot be written.
+	 */
+	protected void		writeMetadata(String kind, long tid, String name)
+	throws IOException
+	{
+		this.out.write("{\"name\":\"" + kind + "\",\"ph\":\"M\",\"pid\":" +
+					   this.pid + ",\"tid\":" + tid +
+					   ",\"args\":{\"name\":\"" + escape(name) + "\"}},\n") ;
+	}
+
+	/**
+	 * @see fr.upmc.components.tracing.SpanExporter#export(fr.upmc.components.tracing.Span)
+	 */
+	@Override
+	public void			export(Span s)
+	{
+		long tid = s.getThread().getId() ;
+		String event =
+			"{\"name\":\"" + escape(s.getName()) +
+			"\",\"cat\":\"" + escape(s.getCategory()) +
+			"\",\"ph\":\"X\",\"ts\":" + s.getStartMicros() +
+			",\"dur\":" + (s.getDurationNanos() / 1000L) +
+			",\"pid\":" + this.pid + ",\"tid\":" + tid +
+			",\"args\":{\"trace\":\"" +
+				Long.toHexString(s.getContext().getTraceId()) +
+			"\",\"span\":\"" + Long.toHexString(s.getContext().getSpanId()) +
+			"\",\"parent\":\"" + Long.toHexString(s.getParentSpanId()) +
+			"\",\"failed\":" + s.isFailed() + "}},\n" ;
+		synchronized (this) {
+			if (this.closed) {
+				return ;
+			}
+			try {
+				if (this.namedThreads.add(tid)) {
+					this.writeMetadata("thread_name", tid,
+									   s.getThread().getName()) ;
+				}
+				this.out.write(event) ;
+			} catch (IOException e) {
+				this.closed = true ;
+				System.err.println("ChromeTraceExporter: " + e) ;
+			}
+		}
+	}
+
+	/**
+	 * @see fr.upmc.components.tracing.SpanExporter#close()
+	 */
+	@Override
+	public synchronized void	close()
+	{
+		if (!this.closed) {
+			this.closed = true ;
+			try {
+				// metadata event closing the array without a trailing comma.
+				this.out.write("{\"name\":\"trace_end\",\"ph\":\"M\",\"pid\":" +
+							   this.pid + ",\"tid\":0,\"args\":{}}\n]\n") ;
+				this.out.close() ;
+			} catch (IOException e) {
+				System.err.println("ChromeTraceExporter: " + e) ;
+			}
+		}
+	}
+
+	/**
+	 * escape a string to be put in a JSON string literal.
+	 *
+	 * @param s	string to be escaped.
+	 * @return	the escaped string.
+	 */
+	protected static String	escape(String s)
+	{
+		StringBuilder sb = null ;
+		for (int i = 0 ; i < s.length() ; i++) {
+			char c = s.charAt(i) ;
+			if (c == '"' || c == '\\' || c < 0x20) {
+				if (sb == null) {
+					sb = new StringBuilder(s.length() + 8) ;
+					sb.append(s, 0, i) ;
+				}
+				if (c == '"' || c == '\\') {
+					sb.append('\\').append(c) ;
+				} else {
+					sb.append(String.format("\\u%04x", (int) c)) ;
+				}
+			} else if (sb != null) {
+				sb.append(c) ;
+			}
+		}
+		return sb == null ? s : sb.toString() ;
+	}
+}
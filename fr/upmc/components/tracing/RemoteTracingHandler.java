@@ -0,0 +1,177 @@
+package fr.upmc.components.tracing;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import fr.upmc.components.ports.PortI;
+
+/**
+ * The class <code>RemoteTracingHandler</code> implements the invocation
+ * handler of the proxies put around remote references of ports to
+ * propagate trace contexts through RMI.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The proxy implements all of the interfaces of the RMI stub it wraps, so
+ * it can be used in place of the stub by connectors.  Calls to methods of
+ * the component interfaces (i.e. not declared by the port interfaces nor
+ * by <code>Object</code>) are recorded as spans of category
+ * <code>rmi-client</code> and passed to the remote port through
+ * <code>TracedInvocationI#invokeTraced</code> with the context of the
+ * span; the other calls are forwarded as is to the stub.  When tracing is
+ * disabled, all calls are forwarded as is.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.stub != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			RemoteTracingHandler
+implements	InvocationHandler
+{
+	/** remote reference to which calls are forwarded.					*/
+	protected final Object	stub ;
+
+	public				RemoteTracingHandler(Object stub)
+	{
+		super() ;
+		assert	stub != null ;
+
+		this.stub = stub ;
+	}
+
+	/**
+	 * return a proxy tracing the calls made through the remote reference
+	 * <code>stub</code>, or <code>stub</code> itself if the remote object
+	 * does not accept traced invocations.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	stub != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param stub	a remote reference to a port.
+	 * @return		a tracing proxy implementing the interfaces of the stub.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T	wrap(T stub)
+	{
+		assert	stub != null ;
+
+		if (!(stub instanceof TracedInvocationI) ||
+				(Proxy.isProxyClass(stub.getClass()) &&
+					Proxy.getInvocationHandler(stub)
+										instanceof RemoteTracingHandler)) {
+			return stub ;
+		}
+		Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>() ;
+		for (Class<?> c = stub.getClass() ; c != null ; c = c.getSuperclass()) {
+			for (Class<?> i : c.getInterfaces()) {
+				interfaces.add(i) ;
+			}
+		}
+		return (T) Proxy.newProxyInstance(
+						RemoteTracingHandler.class.getClassLoader(),
+						interfaces.toArray(new Class<?>[interfaces.size()]),
+						new RemoteTracingHandler(stub)) ;
+	}
+
+	/**
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	public Object		invoke(Object proxy, Method method, Object[] args)
+	throws Throwable
+	{
+		Class<?> declaring = method.getDeclaringClass() ;
+		if (declaring == Object.class) {
+			String name = method.getName() ;
+			if (name.equals("equals")) {
+				return proxy == args[0] ;
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy) ;
+			} else {
+				return "traced " + this.stub.toString() ;
+			}
+		}
+		if (!Tracer.isEnabled() || PortI.class.isAssignableFrom(declaring)
+				|| declaring == TracedInvocationI.class) {
+			return this.forward(method, args) ;
+		}
+
+		Span s = Tracer.startSpan(
+						declaring.getSimpleName() + "." + method.getName(),
+						"rmi-client") ;
+		try {
+			return ((TracedInvocationI) this.stub).invokeTraced(
+								s.getContext(), method.getName(),
+								method.getParameterTypes(), args) ;
+		} catch (Throwable t) {
+			s.setFailed() ;
+			throw t ;
+		} finally {
+			s.finish() ;
+		}
+	}
+
+	/**
+	 * call <code>method</code> on the stub, rethrowing the exception raised
+	 * by the method itself rather than the reflective wrapper.
+	 *
+	 * @param method	method to be called.
+	 * @param args		arguments of the call.
+	 * @return			the result of the call.
+	 * @throws Throwable	the exception raised by the method.
+	 */
+	protected Object	forward(Method method, Object[] args) throws Throwable
+	{
+		try {
+			return method.invoke(this.stub, args) ;
+		} catch (InvocationTargetException e) {
+			throw e.getCause() ;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package fr.upmc.components.tracing;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+/**
+ * The class <code>Span</code> records the execution of one operation of a
+ * trace: its name, its category, its identifiers, the thread executing it
+ * and its start time and duration.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Spans are created by <code>Tracer.startSpan</code>, which makes the new
+ * span the current context of the thread, and terminated by
+ * <code>finish</code>, which restores the previous context and exports the
+ * span.  Both must be called by the same thread, typically as:
+ * 
+ * <pre>
+ * Span s = Tracer.startSpan("name", "category") ;
+ * try {
+ *     ...
+ * } finally {
+ *     s.finish() ;
+ * }
+ * </pre>
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.name != null && this.context != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			Span
+{
+	/** name of the operation.												*/
+	protected final String			name ;
+	/** category of the operation (client call, request, ...).			*/
+	protected final String			category ;
+	/** identifiers of this span.											*/
+	protected final TraceContext	context ;
+	/** identifier of the parent span, 0 if this span starts its trace.	*/
+	protected final long			parentSpanId ;
+	/** context of the thread before this span started.					*/
+	protected final TraceContext	previous ;
+	/** thread executing the span.										*/
+	protected final Thread			thread ;
+	/** start time in microseconds since the epoch.						*/
+	protected final long			startMicros ;
+	/** start time from <code>System.nanoTime()</code>.					*/
+	protected final long			startNanos ;
+	/** duration in nanoseconds, -1 until the span is finished.			*/
+	protected long					durationNanos ;
+	/** true if the operation terminated by an exception.					*/
+	protected boolean				failed ;
+
+	public				Span(
+		String name,
+		String category,
+		TraceContext context,
+		long parentSpanId,
+		TraceContext previous
+		)
+	{
+		super() ;
+		assert	name != null && category != null && context != null ;
+
+		this.name = name ;
+		this.category = category ;
+		this.context = context ;
+		this.parentSpanId = parentSpanId ;
+		this.previous = previous ;
+		this.thread = Thread.currentThread() ;
+		this.startNanos = System.nanoTime() ;
+		this.startMicros = Tracer.toEpochMicros(this.startNanos) ;
+		this.durationNanos = -1L ;
+		this.failed = false ;
+	}
+
+	/**
+	 * mark the operation as terminated by an exception.
+	 */
+	public void			setFailed()
+	{
+		this.failed = true ;
+	}
+
+	/**
+	 * terminate the span, restore the context of the thread as it was when
+	 * the span started and export the span.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	Thread.currentThread() == this.getThread() && !this.isFinished()
+	 * post	this.isFinished()
+	 * </pre>
+	 *
+	 */
+	public void			finish()
+	{
+		assert	Thread.currentThread() == this.thread ;
+		assert	!this.isFinished() ;
+
+		this.durationNanos = System.nanoTime() - this.startNanos ;
+		Tracer.restore(this.previous) ;
+		Tracer.export(this) ;
+	}
+
+	/**
+	 * @return	true if the span is finished.
+	 */
+	public boolean		isFinished()
+	{
+		return this.durationNanos >= 0L ;
+	}
+
+	public String		getName()			{ return this.name ; }
+	public String		getCategory()		{ return this.category ; }
+	public TraceContext	getContext()		{ return this.context ; }
+	public long			getParentSpanId()	{ return this.parentSpanId ; }
+	public Thread		getThread()			{ return this.thread ; }
+	public long			getStartMicros()	{ return this.startMicros ; }
+	public long			getDurationNanos()	{ return this.durationNanos ; }
+	public boolean		isFailed()			{ return this.failed ; }
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String		toString()
+	{
+		return "span " + this.category + " " + this.name +
+			   " trace=" + Long.toHexString(this.context.getTraceId()) +
+			   " span=" + Long.toHexString(this.context.getSpanId()) +
+			   " parent=" + Long.toHexString(this.parentSpanId) +
+			   " duration(us)=" + (this.durationNanos / 1000L) +
+			   (this.failed ? " failed" : "") ;
+	}
+}
@@ -0,0 +1,69 @@
+package fr.upmc.components.tracing;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+/**
+ * The interface <code>SpanExporter</code> is implemented by the receivers
+ * of the spans finished when tracing is enabled.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * <code>export</code> is called by the thread finishing the span, hence
+ * concurrently from many threads, and must be thread-safe and fast.
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public interface		SpanExporter
+{
+	/**
+	 * receive a finished span.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	s != null && s.isFinished()
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param s	the finished span.
+	 */
+	public void			export(Span s) ;
+
+	/**
+	 * release the resources of the exporter; spans exported afterwards are
+	 * ignored.
+	 */
+	public void			close() ;
+}
@@ -0,0 +1,130 @@
+package fr.upmc.components.tracing;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The class <code>TraceContext</code> identifies a span within a trace and
+ * is passed along service calls, locally or through RMI, so that the spans
+ * created by the callee become children of the span of the caller.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Identifiers are random 64 bits numbers, printed in hexadecimal; zero is
+ * never used, so that it can denote the absence of parent span.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.traceId != 0 && this.spanId != 0
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			TraceContext
+implements	Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** identifier of the trace.											*/
+	protected final long	traceId ;
+	/** identifier of the span.											*/
+	protected final long	spanId ;
+
+	public				TraceContext(long traceId, long spanId)
+	{
+		super() ;
+		assert	traceId != 0L && spanId != 0L ;
+
+		this.traceId = traceId ;
+		this.spanId = spanId ;
+	}
+
+	/**
+	 * @return	a new non zero random identifier.
+	 */
+	protected static long	newId()
+	{
+		long id ;
+		do {
+			id = ThreadLocalRandom.current().nextLong() ;
+		} while (id == 0L) ;
+		return id ;
+	}
+
+	/**
+	 * @return	the context of the first span of a new trace.
+	 */
+	public static TraceContext	newTrace()
+	{
+		return new TraceContext(newId(), newId()) ;
+	}
+
+	/**
+	 * @return	the context of a new span child of this one.
+	 */
+	public TraceContext	newChild()
+	{
+		return new TraceContext(this.traceId, newId()) ;
+	}
+
+	/**
+	 * @return	the identifier of the trace.
+	 */
+	public long			getTraceId()
+	{
+		return this.traceId ;
+	}
+
+	/**
+	 * @return	the identifier of the span.
+	 */
+	public long			getSpanId()
+	{
+		return this.spanId ;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String		toString()
+	{
+		return Long.toHexString(this.traceId) + "/" +
+											Long.toHexString(this.spanId) ;
+	}
+}
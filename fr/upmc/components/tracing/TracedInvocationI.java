@@ -0,0 +1,82 @@
+package fr.upmc.components.tracing;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.rmi.Remote;
+
+/**
+ * The interface <code>TracedInvocationI</code> defines the remote entry
+ * point through which service calls are passed to inbound ports together
+ * with the trace context of the caller.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Plain RMI gives no way to attach data to a call, so the proxies created
+ * by <code>RemoteTracingHandler</code> call <code>invokeTraced</code>
+ * instead of the method of the offered interface, and the port executes
+ * the method within the given trace context.
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public interface		TracedInvocationI
+extends		Remote
+{
+	/**
+	 * execute the method <code>methodName</code> with the given parameter
+	 * types on this object, with <code>context</code> as trace context;
+	 * implementations must restrict the callable methods to those of the
+	 * offered interface, as any caller can pass any method name.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	methodName != null && parameterTypes != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param context			trace context of the caller, possibly null.
+	 * @param methodName		name of the method to be executed.
+	 * @param parameterTypes	parameter types of the method.
+	 * @param args				arguments of the call, null if none.
+	 * @return					the result of the method.
+	 * @throws Exception		the exception thrown by the method, or a <code>RemoteException</code> if the method cannot be called.
+	 */
+	public Object		invokeTraced(
+		TraceContext context,
+		String methodName,
+		Class<?>[] parameterTypes,
+		Object[] args
+		) throws Exception ;
+}
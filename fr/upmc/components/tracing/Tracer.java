@@ -0,0 +1,282 @@
+package fr.upmc.components.tracing;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The class <code>Tracer</code> holds the trace context of each thread and
+ * the global configuration of the tracing facility.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * The current context of a thread is the one of the innermost span it is
+ * executing; it is propagated to the threads of other components by the
+ * request handling methods of <code>AbstractComponent</code>, and to other
+ * JVMs by the proxies that <code>RemoteTracingHandler</code> puts around
+ * remote references of ports.  Tracing is disabled by default; when
+ * enabled, finished spans are passed to the exporter, if any.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			Tracer
+{
+	/** true if service calls are traced.									*/
+	protected static volatile boolean		ENABLED = false ;
+	/** receiver of finished spans, null if spans are not exported.		*/
+	protected static volatile SpanExporter	EXPORTER = null ;
+	/** true once the hook closing the exporter at exit is installed.		*/
+	protected static boolean				SHUTDOWN_HOOK_INSTALLED = false ;
+
+	/** trace context of each thread.										*/
+	protected static final ThreadLocal<TraceContext>	CURRENT =
+										new ThreadLocal<TraceContext>() ;
+
+	/** epoch time in microseconds when the tracer was loaded.				*/
+	protected static final long	BASE_EPOCH_MICROS =
+										System.currentTimeMillis() * 1000L ;
+	/** value of System.nanoTime() when the tracer was loaded.			*/
+	protected static final long	BASE_NANOS = System.nanoTime() ;
+
+	// ------------------------------------------------------------------------
+	// Configuration
+	// ------------------------------------------------------------------------
+
+	/**
+	 * enable tracing, exporting the finished spans to <code>exporter</code>,
+	 * or not exporting them if it is null; a previous exporter is closed,
+	 * and the current one is closed when the JVM exits.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	Tracer.isEnabled()
+	 * </pre>
+	 *
+	 * @param exporter	receiver of the finished spans or null.
+	 */
+	public static synchronized void	enable(SpanExporter exporter)
+	{
+		SpanExporter previous = EXPORTER ;
+		EXPORTER = exporter ;
+		ENABLED = true ;
+		if (previous != null && previous != exporter) {
+			previous.close() ;
+		}
+		if (!SHUTDOWN_HOOK_INSTALLED) {
+			SHUTDOWN_HOOK_INSTALLED = true ;
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+						@Override
+						public void run() {
+							Tracer.disable() ;
+						}
+					}) ;
+		}
+	}
+
+	/**
+	 * enable tracing, exporting the finished spans in the Chrome trace event
+	 * format to the file <code>f</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	f != null
+	 * post	Tracer.isEnabled()
+	 * </pre>
+	 *
+	 * @param f				file receiving the spans.
+	 * @throws IOException	if the file cannot be opened.
+	 */
+	public static void	enable(File f) throws IOException
+	{
+		Tracer.enable(new ChromeTraceExporter(f)) ;
+	}
+
+	/**
+	 * disable tracing and close the exporter.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	!Tracer.isEnabled()
+	 * </pre>
+	 *
+	 */
+	public static synchronized void	disable()
+	{
+		ENABLED = false ;
+		SpanExporter previous = EXPORTER ;
+		EXPORTER = null ;
+		if (previous != null) {
+			previous.close() ;
+		}
+	}
+
+	/**
+	 * @return	true if service calls are traced.
+	 */
+	public static boolean	isEnabled()
+	{
+		return ENABLED ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Context management
+	// ------------------------------------------------------------------------
+
+	/**
+	 * @return	the trace context of the current thread, null if none.
+	 */
+	public static TraceContext	current()
+	{
+		return CURRENT.get() ;
+	}
+
+	/**
+	 * make <code>context</code> the context of the current thread, typically
+	 * when executing an operation on behalf of a caller in another thread.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	Tracer.current() == context
+	 * </pre>
+	 *
+	 * @param context	context to be attached, possibly null.
+	 * @return			the previous context of the thread, to be restored.
+	 */
+	public static TraceContext	attach(TraceContext context)
+	{
+		TraceContext previous = CURRENT.get() ;
+		if (context == null) {
+			CURRENT.remove() ;
+		} else {
+			CURRENT.set(context) ;
+		}
+		return previous ;
+	}
+
+	/**
+	 * restore the context of the current thread as returned by
+	 * <code>attach</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	Tracer.current() == previous
+	 * </pre>
+	 *
+	 * @param previous	context to be restored, possibly null.
+	 */
+	public static void	restore(TraceContext previous)
+	{
+		Tracer.attach(previous) ;
+	}
+
+	/**
+	 * start a span as a child of the span currently executed by the thread,
+	 * or as the first span of a new trace if there is none, and make it the
+	 * current context of the thread until it is finished.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	name != null && category != null
+	 * post	Tracer.current() == return.getContext()
+	 * </pre>
+	 *
+	 * @param name		name of the operation.
+	 * @param category	category of the operation.
+	 * @return			the new span.
+	 */
+	public static Span	startSpan(String name, String category)
+	{
+		TraceContext parent = CURRENT.get() ;
+		TraceContext context ;
+		long parentSpanId ;
+		if (parent == null) {
+			context = TraceContext.newTrace() ;
+			parentSpanId = 0L ;
+		} else {
+			context = parent.newChild() ;
+			parentSpanId = parent.getSpanId() ;
+		}
+		Span s = new Span(name, category, context, parentSpanId, parent) ;
+		CURRENT.set(context) ;
+		return s ;
+	}
+
+	/**
+	 * pass a finished span to the exporter, if any; exporting errors are
+	 * ignored so that tracing never makes a call fail.
+	 *
+	 * @param s	a finished span.
+	 */
+	protected static void	export(Span s)
+	{
+		SpanExporter e = EXPORTER ;
+		if (e != null) {
+			try {
+				e.export(s) ;
+			} catch (RuntimeException ex) {
+				// tracing must not interfere with the traced calls.
+			}
+		}
+	}
+
+	/**
+	 * convert a time given by <code>System.nanoTime()</code> into an epoch
+	 * time in microseconds.
+	 *
+	 * @param nanos	a time from <code>System.nanoTime()</code>.
+	 * @return		the corresponding epoch time in microseconds.
+	 */
+	public static long	toEpochMicros(long nanos)
+	{
+		return BASE_EPOCH_MICROS + (nanos - BASE_NANOS) / 1000L ;
+	}
+}
@@ -0,0 +1,361 @@
+package fr.upmc.components.transport.socket;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+
+import fr.upmc.components.connectors.codec.DataCodecs;
+import fr.upmc.components.connectors.codec.EncodedData;
+import fr.upmc.components.interfaces.DataOfferedI;
+import fr.upmc.components.interfaces.DataRequiredI;
+import fr.upmc.components.ports.PortI;
+
+/**
+ * The class <code>SocketCodec</code> encodes the arguments, results and
+ * exceptions of the calls made through the socket transport.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each value is written as a one byte tag followed by its content.  Boxed
+ * primitive values, strings and byte arrays have a compact binary encoding,
+ * avoiding the class descriptors and handles written by Java serialization
+ * which is only used, as a fallback, for the other serializable objects.
+ * Ports exported by the socket transport, and proxies to remote ports, are
+ * passed by reference, as RMI does for remote objects: they are written as
+ * the endpoint of the transport exporting them and their URI, and read as a
+ * proxy or as the port itself when it is exported by the current JVM.
+ * Objects which class has a codec registered in <code>DataCodecs</code>,
+ * possibly wrapped in an <code>EncodedData</code> by a data connector, are
+ * written by their codec.  The arrays of data passed by the batch methods
+ * of the data interfaces are written as their component type and length
+ * followed by each of their elements, so that these are written by their
+ * codec as well.
+ * 
+ * As the values are read from frames sent by another JVM, every length read
+ * is checked against the bytes remaining in the frame before allocating
+ * anything, and the component type of an array of data is loaded without
+ * being initialised and must be a data interface type.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	true
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			SocketCodec
+{
+	public static final byte	NULL = 0 ;
+	public static final byte	BOOLEAN = 1 ;
+	public static final byte	BYTE = 2 ;
+	public static final byte	SHORT = 3 ;
+	public static final byte	CHAR = 4 ;
+	public static final byte	INT = 5 ;
+	public static final byte	LONG = 6 ;
+	public static final byte	FLOAT = 7 ;
+	public static final byte	DOUBLE = 8 ;
+	public static final byte	STRING = 9 ;
+	public static final byte	BYTES = 10 ;
+	public static final byte	PORT = 11 ;
+	public static final byte	OBJECT = 12 ;
+	public static final byte	DATA = 13 ;
+	public static final byte	DATA_ARRAY = 14 ;
+
+	/**
+	 * write the string <code>s</code> as its length followed by its UTF-8
+	 * bytes, without the 64KB limit of <code>writeUTF</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	out != null && s != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param out	stream to write to.
+	 * @param s		string to be written.
+	 * @throws IOException
+	 */
+	public static void	writeString(DataOutputStream out, String s)
+	throws IOException
+	{
+		byte[] b = s.getBytes(StandardCharsets.UTF_8) ;
+		out.writeInt(b.length) ;
+		out.write(b) ;
+	}
+
+	/**
+	 * read a length written before <code>n</code> elements of at least
+	 * <code>minElementSize</code> bytes each, checking it against the bytes
+	 * remaining in <code>in</code>, which must read a frame held in memory,
+	 * so that a forged length cannot make the reader allocate more than the
+	 * frame.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	in != null && minElementSize > 0
+	 * post	return >= 0
+	 * </pre>
+	 *
+	 * @param in				stream to read from.
+	 * @param minElementSize	minimum size in bytes of each element.
+	 * @return					the length read.
+	 * @throws IOException		if the length is negative or exceeds the frame.
+	 */
+	public static int	readLength(DataInputStream in, int minElementSize)
+	throws IOException
+	{
+		assert	minElementSize > 0 ;
+
+		int n = in.readInt() ;
+		if (n < 0 || (long) n * minElementSize > in.available()) {
+			throw new IOException("invalid length " + n + " with " +
+								  in.available() + " bytes left in the frame.") ;
+		}
+		return n ;
+	}
+
+	/**
+	 * read a string written by <code>writeString</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	in != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param in	stream to read from.
+	 * @return		the string read.
+	 * @throws IOException
+	 */
+	public static String	readString(DataInputStream in) throws IOException
+	{
+		byte[] b = new byte[SocketCodec.readLength(in, 1)] ;
+		in.readFully(b) ;
+		return new String(b, StandardCharsets.UTF_8) ;
+	}
+
+	/**
+	 * write the value <code>v</code> preceded by its tag.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	out != null && t != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param out	stream to write to.
+	 * @param v		value to be written, possibly null.
+	 * @param t		transport through which the value is sent.
+	 * @throws Exception	if the value can be neither encoded nor serialized.
+	 */
+	public static void	writeValue(
+		DataOutputStream out,
+		Object v,
+		SocketTransport t
+		) throws Exception
+	{
+		if (v == null) {
+			out.writeByte(NULL) ;
+		} else if (v instanceof Integer) {
+			out.writeByte(INT) ;
+			out.writeInt((Integer) v) ;
+		} else if (v instanceof Long) {
+			out.writeByte(LONG) ;
+			out.writeLong((Long) v) ;
+		} else if (v instanceof Double) {
+			out.writeByte(DOUBLE) ;
+			out.writeDouble((Double) v) ;
+		} else if (v instanceof Boolean) {
+			out.writeByte(BOOLEAN) ;
+			out.writeBoolean((Boolean) v) ;
+		} else if (v instanceof String) {
+			out.writeByte(STRING) ;
+			SocketCodec.writeString(out, (String) v) ;
+		} else if (v instanceof byte[]) {
+			byte[] b = (byte[]) v ;
+			out.writeByte(BYTES) ;
+			out.writeInt(b.length) ;
+			out.write(b) ;
+		} else if (v instanceof Float) {
+			out.writeByte(FLOAT) ;
+			out.writeFloat((Float) v) ;
+		} else if (v instanceof Byte) {
+			out.writeByte(BYTE) ;
+			out.writeByte((Byte) v) ;
+		} else if (v instanceof Short) {
+			out.writeByte(SHORT) ;
+			out.writeShort((Short) v) ;
+		} else if (v instanceof Character) {
+			out.writeByte(CHAR) ;
+			out.writeChar((Character) v) ;
+		} else if (Proxy.isProxyClass(v.getClass()) &&
+					Proxy.getInvocationHandler(v) instanceof SocketPortProxy) {
+			SocketPortProxy h = (SocketPortProxy) Proxy.getInvocationHandler(v) ;
+			out.writeByte(PORT) ;
+			SocketCodec.writeString(out, h.getEndpoint()) ;
+			SocketCodec.writeString(out, h.getPortURI()) ;
+		} else if (v instanceof PortI &&
+						t.isExported((PortI) v)) {
+			out.writeByte(PORT) ;
+			SocketCodec.writeString(out, t.getEndpoint()) ;
+			SocketCodec.writeString(out, ((PortI) v).getPortURI()) ;
+		} else if (v instanceof EncodedData) {
+			out.writeByte(DATA) ;
+			DataCodecs.encode(((EncodedData) v).getData(), out) ;
+		} else if (DataCodecs.hasCodec(v)) {
+			out.writeByte(DATA) ;
+			DataCodecs.encode(v, out) ;
+		} else if (v instanceof DataOfferedI.DataI[] ||
+									v instanceof DataRequiredI.DataI[]) {
+			Object[] a = (Object[]) v ;
+			out.writeByte(DATA_ARRAY) ;
+			SocketCodec.writeString(out,
+									a.getClass().getComponentType().getName()) ;
+			out.writeInt(a.length) ;
+			for (int i = 0 ; i < a.length ; i++) {
+				SocketCodec.writeValue(out, a[i], t) ;
+			}
+		} else if (v instanceof Serializable) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+			ObjectOutputStream oos = new ObjectOutputStream(bytes) ;
+			oos.writeObject(v) ;
+			oos.close() ;
+			out.writeByte(OBJECT) ;
+			out.writeInt(bytes.size()) ;
+			bytes.writeTo(out) ;
+		} else {
+			throw new NotSerializableException(v.getClass().getName()) ;
+		}
+	}
+
+	/**
+	 * read a value written by <code>writeValue</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	in != null && t != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param in	stream to read from.
+	 * @param t		transport through which the value was received.
+	 * @return		the value read, possibly null.
+	 * @throws Exception	if the value cannot be decoded.
+	 */
+	public static Object	readValue(DataInputStream in, SocketTransport t)
+	throws Exception
+	{
+		byte tag = in.readByte() ;
+		switch (tag) {
+		case NULL :
+			return null ;
+		case BOOLEAN :
+			return in.readBoolean() ;
+		case BYTE :
+			return in.readByte() ;
+		case SHORT :
+			return in.readShort() ;
+		case CHAR :
+			return in.readChar() ;
+		case INT :
+			return in.readInt() ;
+		case LONG :
+			return in.readLong() ;
+		case FLOAT :
+			return in.readFloat() ;
+		case DOUBLE :
+			return in.readDouble() ;
+		case STRING :
+			return SocketCodec.readString(in) ;
+		case BYTES :
+			byte[] b = new byte[SocketCodec.readLength(in, 1)] ;
+			in.readFully(b) ;
+			return b ;
+		case PORT :
+			String endpoint = SocketCodec.readString(in) ;
+			String portURI = SocketCodec.readString(in) ;
+			return t.getReference(endpoint, portURI) ;
+		case OBJECT :
+			byte[] o = new byte[SocketCodec.readLength(in, 1)] ;
+			in.readFully(o) ;
+			ObjectInputStream ois =
+						new ObjectInputStream(new ByteArrayInputStream(o)) ;
+			try {
+				return ois.readObject() ;
+			} finally {
+				ois.close() ;
+			}
+		case DATA :
+			return DataCodecs.decode(in) ;
+		case DATA_ARRAY :
+			String name = SocketCodec.readString(in) ;
+			ClassLoader cl = Thread.currentThread().getContextClassLoader() ;
+			if (cl == null) {
+				cl = SocketCodec.class.getClassLoader() ;
+			}
+			Class<?> component = Class.forName(name, false, cl) ;
+			if (!DataOfferedI.DataI.class.isAssignableFrom(component) &&
+					!DataRequiredI.DataI.class.isAssignableFrom(component)) {
+				throw new IOException(name + " is not a data type.") ;
+			}
+			// each element is at least its tag
+			Object[] a = (Object[]) Array.newInstance(
+									component, SocketCodec.readLength(in, 1)) ;
+			for (int i = 0 ; i < a.length ; i++) {
+				a[i] = SocketCodec.readValue(in, t) ;
+			}
+			return a ;
+		default :
+			throw new IOException("unknown value tag " + tag) ;
+		}
+	}
+}
@@ -0,0 +1,499 @@
+package fr.upmc.components.transport.socket;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.rmi.ConnectException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class <code>SocketConnection</code> implements one TCP connection of
+ * the socket transport, over which the calls to all of the ports exported
+ * by the JVM at the other end are multiplexed, in both directions.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Messages are exchanged as frames made of a four bytes length, a one byte
+ * frame type, an eight bytes request identifier and a payload.  Requests are
+ * not waited for before sending the next ones: each caller registers the
+ * identifier of its request among the pending ones and the responses, which
+ * may come back in any order, are matched to their request by identifier.
+ * 
+ * The channel is non-blocking.  Reads are done by the selector thread of
+ * the transport, which extracts the complete frames and hands them over
+ * without decoding their payload.  Frames are written directly by the
+ * sending thread as long as the socket accepts them; when it does not, they
+ * are queued and written by the selector thread when the socket becomes
+ * writable again.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.transport != null && this.channel != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			SocketConnection
+{
+	/** first frame sent on a connection, giving the endpoint of the sender.	*/
+	public static final byte	HELLO = 0 ;
+	/** call of a method on an exported port.								*/
+	public static final byte	REQUEST = 1 ;
+	/** normal result of a request.											*/
+	public static final byte	RESPONSE = 2 ;
+	/** exception raised by a request.										*/
+	public static final byte	ERROR = 3 ;
+	/** request for the interfaces implemented by an exported port.			*/
+	public static final byte	DESCRIBE = 4 ;
+	/** size of the frame header after the length: type and identifier.		*/
+	public static final int		HEADER_SIZE = 9 ;
+	/** maximum length of a frame, after its length field; a connection
+	 *  receiving a longer frame is closed, and longer frames are refused
+	 *  when sent.															*/
+	public static final int		MAX_FRAME_SIZE = 64 << 20 ;
+
+	/**
+	 * The class <code>FrameTooLargeException</code> is raised when sending
+	 * a frame longer than <code>MAX_FRAME_SIZE</code>; the connection is
+	 * left open.
+	 */
+	public static class	FrameTooLargeException
+	extends		IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		public			FrameTooLargeException(String message)
+		{
+			super(message) ;
+		}
+	}
+
+	/**
+	 * The class <code>Frame</code> holds a frame received on a connection.
+	 *
+	 * @version	$Name$ -- $Revision$ -- $Date$
+	 */
+	public static class	Frame
+	{
+		public final byte	type ;
+		public final long	id ;
+		public final byte[]	payload ;
+
+		public			Frame(byte type, long id, byte[] payload)
+		{
+			super() ;
+			this.type = type ;
+			this.id = id ;
+			this.payload = payload ;
+		}
+
+		public DataInputStream	input()
+		{
+			return new DataInputStream(new ByteArrayInputStream(this.payload)) ;
+		}
+	}
+
+	/**
+	 * The class <code>FrameBuilder</code> accumulates the content of a frame
+	 * and gives it as a buffer ready to be written, without copying it.
+	 *
+	 * @version	$Name$ -- $Revision$ -- $Date$
+	 */
+	public static class	FrameBuilder
+	extends		ByteArrayOutputStream
+	{
+		public final DataOutputStream	out ;
+
+		public			FrameBuilder(byte type, long id) throws IOException
+		{
+			super(128) ;
+			this.out = new DataOutputStream(this) ;
+			this.out.writeInt(0) ;
+			this.out.writeByte(type) ;
+			this.out.writeLong(id) ;
+		}
+
+		public ByteBuffer	toByteBuffer()
+		{
+			ByteBuffer b = ByteBuffer.wrap(this.buf, 0, this.count) ;
+			b.putInt(0, this.count - 4) ;
+			return b ;
+		}
+	}
+
+	/** transport owning this connection.									*/
+	protected final SocketTransport		transport ;
+	/** non-blocking channel of the connection.								*/
+	protected final SocketChannel		channel ;
+	/** endpoint of the transport at the other end, null until known.		*/
+	protected volatile String			endpoint ;
+	/** selection key of the channel, null until registered.				*/
+	protected volatile SelectionKey		key ;
+	/** bytes read but not yet consumed as frames.							*/
+	protected ByteBuffer				readBuffer ;
+	/** frames waiting for the socket to become writable.					*/
+	protected final ArrayDeque<ByteBuffer>	writeQueue ;
+	/** requests sent and waiting for their response, by identifier.		*/
+	protected final ConcurrentHashMap<Long,CompletableFuture<Frame>>	pending ;
+	protected volatile boolean			open ;
+
+	public				SocketConnection(
+		SocketTransport transport,
+		SocketChannel channel,
+		String endpoint
+		)
+	{
+		super() ;
+		assert	transport != null && channel != null ;
+
+		this.transport = transport ;
+		this.channel = channel ;
+		this.endpoint = endpoint ;
+		this.key = null ;
+		this.readBuffer = ByteBuffer.allocate(SocketTransport.BUFFER_SIZE) ;
+		this.writeQueue = new ArrayDeque<ByteBuffer>() ;
+		this.pending = new ConcurrentHashMap<Long,CompletableFuture<Frame>>() ;
+		this.open = true ;
+	}
+
+	public String		getEndpoint()
+	{
+		return this.endpoint ;
+	}
+
+	public boolean		isOpen()
+	{
+		return this.open ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Selector thread side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * register the channel with <code>selector</code>, to be called by the
+	 * selector thread.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	selector != null
+	 * post	this.key != null
+	 * </pre>
+	 *
+	 * @param selector	selector of the transport.
+	 * @throws IOException
+	 */
+	public void			register(Selector selector) throws IOException
+	{
+		synchronized (this.writeQueue) {
+			int ops = SelectionKey.OP_READ ;
+			if (!this.writeQueue.isEmpty()) {
+				ops |= SelectionKey.OP_WRITE ;
+			}
+			this.key = this.channel.register(selector, ops, this) ;
+		}
+	}
+
+	/**
+	 * read the available bytes and process the complete frames, to be
+	 * called by the selector thread when the channel is readable.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @throws IOException	if the connection is broken.
+	 */
+	public void			readReady() throws IOException
+	{
+		if (this.channel.read(this.readBuffer) < 0) {
+			throw new EOFException("connection closed by " + this.endpoint) ;
+		}
+		this.readBuffer.flip() ;
+		int needed = 0 ;
+		while (this.readBuffer.remaining() >= 4) {
+			int length = this.readBuffer.getInt(this.readBuffer.position()) ;
+			if (length < HEADER_SIZE) {
+				throw new IOException("malformed frame of length " + length) ;
+			}
+			// also keeps 4 + length from overflowing.
+			if (length > MAX_FRAME_SIZE) {
+				throw new IOException("frame of length " + length +
+								" from " + this.endpoint +
+								" exceeds the maximum " + MAX_FRAME_SIZE) ;
+			}
+			if (this.readBuffer.remaining() < 4 + length) {
+				needed = 4 + length ;
+				break ;
+			}
+			this.readBuffer.getInt() ;
+			byte type = this.readBuffer.get() ;
+			long id = this.readBuffer.getLong() ;
+			byte[] payload = new byte[length - HEADER_SIZE] ;
+			this.readBuffer.get(payload) ;
+			this.handleFrame(new Frame(type, id, payload)) ;
+		}
+		this.readBuffer.compact() ;
+		if (needed > this.readBuffer.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocate(needed) ;
+			this.readBuffer.flip() ;
+			larger.put(this.readBuffer) ;
+			this.readBuffer = larger ;
+		}
+	}
+
+	/**
+	 * write the queued frames, to be called by the selector thread when the
+	 * channel is writable.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @throws IOException	if the connection is broken.
+	 */
+	public void			writeReady() throws IOException
+	{
+		synchronized (this.writeQueue) {
+			while (!this.writeQueue.isEmpty()) {
+				ByteBuffer b = this.writeQueue.peek() ;
+				this.channel.write(b) ;
+				if (b.hasRemaining()) {
+					return ;
+				}
+				this.writeQueue.poll() ;
+			}
+			this.key.interestOps(SelectionKey.OP_READ) ;
+		}
+	}
+
+	/**
+	 * process a frame received on the connection: responses complete their
+	 * pending request, requests are handed over to the transport.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	f != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param f				frame received.
+	 * @throws IOException	if the frame is malformed.
+	 */
+	protected void		handleFrame(Frame f) throws IOException
+	{
+		switch (f.type) {
+		case HELLO :
+			this.endpoint = SocketCodec.readString(f.input()) ;
+			this.transport.connectionIdentified(this) ;
+			break ;
+		case RESPONSE :
+		case ERROR :
+			CompletableFuture<Frame> call = this.pending.remove(f.id) ;
+			if (call != null) {
+				call.complete(f) ;
+			}
+			break ;
+		case REQUEST :
+		case DESCRIBE :
+			this.transport.dispatch(this, f) ;
+			break ;
+		default :
+			throw new IOException("unknown frame type " + f.type) ;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Sending side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * send a frame, writing it directly if the socket accepts it or else
+	 * queueing it for the selector thread.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	frame != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param frame			frame to be sent.
+	 * @throws IOException	if the connection is closed or broken, or the frame longer than <code>MAX_FRAME_SIZE</code>.
+	 */
+	public void			send(ByteBuffer frame) throws IOException
+	{
+		if (!this.open) {
+			throw new ConnectException("connection to " + this.endpoint +
+																" closed") ;
+		}
+		if (frame.remaining() - 4 > MAX_FRAME_SIZE) {
+			throw new FrameTooLargeException("frame of length " +
+								(frame.remaining() - 4) +
+								" exceeds the maximum " + MAX_FRAME_SIZE) ;
+		}
+		synchronized (this.writeQueue) {
+			if (this.writeQueue.isEmpty()) {
+				this.channel.write(frame) ;
+				if (!frame.hasRemaining()) {
+					return ;
+				}
+			}
+			this.writeQueue.add(frame) ;
+			SelectionKey k = this.key ;
+			if (k != null) {
+				k.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE) ;
+				k.selector().wakeup() ;
+			}
+		}
+	}
+
+	/**
+	 * send a request frame and return the future completed by its response.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	frame != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param id			identifier of the request.
+	 * @param frame			frame of the request.
+	 * @return				the future completed by the response frame.
+	 * @throws IOException	if the connection is closed or broken.
+	 */
+	public CompletableFuture<Frame>	request(long id, ByteBuffer frame)
+	throws IOException
+	{
+		CompletableFuture<Frame> f = new CompletableFuture<Frame>() ;
+		this.pending.put(id, f) ;
+		try {
+			this.send(frame) ;
+		} catch (IOException e) {
+			this.pending.remove(id) ;
+			throw e ;
+		}
+		if (!this.open) {
+			// closed concurrently, possibly before the pending requests
+			// were failed.
+			this.failPending(null) ;
+		}
+		return f ;
+	}
+
+	/**
+	 * give up waiting for the response to the request <code>id</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param id	identifier of the request.
+	 */
+	public void			cancel(long id)
+	{
+		this.pending.remove(id) ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Closing
+	// ------------------------------------------------------------------------
+
+	/**
+	 * close the connection, failing the pending requests with a
+	 * <code>ConnectException</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	!this.isOpen()
+	 * </pre>
+	 *
+	 * @param cause	reason of the closing, null if normal.
+	 */
+	public void			close(Exception cause)
+	{
+		synchronized (this) {
+			if (!this.open) {
+				return ;
+			}
+			this.open = false ;
+		}
+		try {
+			this.channel.close() ;
+		} catch (IOException e) {
+			;
+		}
+		this.transport.connectionClosed(this) ;
+		this.failPending(cause) ;
+	}
+
+	protected void		failPending(Exception cause)
+	{
+		for (Long id : this.pending.keySet()) {
+			CompletableFuture<Frame> f = this.pending.remove(id) ;
+			if (f != null) {
+				f.completeExceptionally(
+					new ConnectException("connection to " + this.endpoint +
+														" closed", cause)) ;
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package fr.upmc.components.transport.socket;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * The class <code>SocketPortProxy</code> implements the invocation handler
+ * of the proxies standing for remote ports exported by the socket transport
+ * of another JVM, as RMI stubs do for ports exported to RMI.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * A proxy implements the public interfaces of the remote port and forwards
+ * each call to the transport, which sends it on the connection to the JVM
+ * exporting the port and waits for the result.  The methods of
+ * <code>Object</code> are executed locally, two proxies being equal when
+ * they designate the same port of the same transport.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.endpoint != null && this.portURI != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			SocketPortProxy
+implements	InvocationHandler
+{
+	/** transport through which the calls are sent.						*/
+	protected final SocketTransport	transport ;
+	/** endpoint, as host:port, of the transport exporting the port.		*/
+	protected final String			endpoint ;
+	/** URI of the remote port.											*/
+	protected final String			portURI ;
+
+	public				SocketPortProxy(
+		SocketTransport transport,
+		String endpoint,
+		String portURI
+		)
+	{
+		super() ;
+		assert	transport != null ;
+		assert	endpoint != null && portURI != null ;
+
+		this.transport = transport ;
+		this.endpoint = endpoint ;
+		this.portURI = portURI ;
+	}
+
+	public String		getEndpoint()
+	{
+		return this.endpoint ;
+	}
+
+	public String		getPortURI()
+	{
+		return this.portURI ;
+	}
+
+	/**
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	public Object		invoke(Object proxy, Method method, Object[] args)
+	throws Throwable
+	{
+		if (method.getDeclaringClass() == Object.class) {
+			String name = method.getName() ;
+			if (name.equals("equals")) {
+				Object other = args[0] ;
+				if (other == null || !Proxy.isProxyClass(other.getClass())) {
+					return false ;
+				}
+				InvocationHandler h = Proxy.getInvocationHandler(other) ;
+				return h instanceof SocketPortProxy &&
+						this.endpoint.equals(((SocketPortProxy) h).endpoint) &&
+						this.portURI.equals(((SocketPortProxy) h).portURI) ;
+			} else if (name.equals("hashCode")) {
+				return this.portURI.hashCode() ;
+			} else {
+				return "socket proxy to " + this.portURI + "@" + this.endpoint ;
+			}
+		}
+		return this.transport.invoke(this.endpoint, this.portURI,
+									 method, args) ;
+	}
+}
@@ -0,0 +1,990 @@
+package fr.upmc.components.transport.socket;
+
+// Copyright Jacques Malenfant, Univ. Pierre et Marie Curie.
+// 
+// Jacques.Malenfant@lip6.fr
+// 
+// This software is a computer program whose purpose is to provide a
+// basic component programming model to program with components
+// distributed applications in the Java programming language.
+// 
+// This software is governed by the CeCILL-C license under French law and
+// abiding by the rules of distribution of free software.  You can use,
+// modify and/ or redistribute the software under the terms of the
+// CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+// URL "http://www.cecill.info".
+// 
+// As a counterpart to the access to the source code and  rights to copy,
+// modify and redistribute granted by the license, users are provided only
+// with a limited warranty  and the software's author,  the holder of the
+// economic rights,  and the successive licensors  have only  limited
+// liability. 
+// 
+// In this respect, the user's attention is drawn to the risks associated
+// with loading,  using,  modifying and/or developing or reproducing the
+// software by the user in light of its specific status of free software,
+// that may mean  that it is complicated to manipulate,  and  that  also
+// therefore means  that it is reserved for developers  and  experienced
+// professionals having in-depth computer knowledge. Users are therefore
+// encouraged to load and test the software's suitability as regards their
+// requirements in conditions enabling the security of their systems and/or 
+// data to be ensured and,  more generally, to use and operate it in the 
+// same conditions as regards security. 
+// 
+// The fact that you are presently reading this means that you have had
+// knowledge of the CeCILL-C license and that you accept its terms.
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.upmc.components.cvm.AbstractCVM;
+import fr.upmc.components.cvm.AbstractDistributedCVM;
+import fr.upmc.components.ports.PortI;
+
+/**
+ * The class <code>SocketTransport</code> implements a transport of the calls
+ * to remote ports over plain TCP connections, as an alternative to RMI for
+ * the ports published as <code>socket=host:port</code> in the global
+ * registry.
+ *
+ * <p><strong>Description</strong></p>
+ * 
+ * Each JVM has at most one transport, created on first use by
+ * <code>getInstance</code>, which listens on the port <code>PORT</code> (any
+ * free port when 0) and is identified by its endpoint
+ * <code>host:port</code>.  Ports are made callable from other JVMs with
+ * <code>exportPort</code>, and the ports of other JVMs are obtained with
+ * <code>lookup</code> as dynamic proxies implementing their interfaces.
+ * 
+ * All of the calls between two JVMs are multiplexed over one TCP connection:
+ * the first frame sent on a new connection gives the endpoint of its
+ * initiator, so that the accepting side uses the same connection for its
+ * own calls in the other direction.  Requests are pipelined: a caller sends
+ * its request and waits for the response matching its identifier, while
+ * other callers may send theirs on the same connection in the meantime.
+ * One selector thread does all of the reads and the pending writes; the
+ * requests received are executed by a pool of at most
+ * <code>MAX_DISPATCH_THREADS</code> daemon threads, the result or exception
+ * being sent back as the response, so that peers cannot make the transport
+ * create any number of threads.  The requests received while all of these
+ * threads are busy wait in a queue, hence the bound must exceed the number
+ * of requests that may block at the same time waiting for other requests
+ * to this JVM, as callbacks do.
+ * 
+ * Calls are encoded by <code>SocketCodec</code> as the port URI, a method
+ * key made of the method name and parameter types, and the arguments.  On
+ * the exporting side, methods are found by key in a table built once per
+ * port class from its remote interfaces, i.e. the public interfaces
+ * extending <code>Remote</code> and their super-interfaces, so that the
+ * transport exposes the same methods as RMI and no other public method of
+ * the port class.  Failures of the transport itself are raised as
+ * <code>RemoteException</code>, in particular
+ * <code>NoSuchObjectException</code> when the port is no longer exported,
+ * so that callers handle them as they do for RMI.
+ * 
+ * <p><strong>Invariant</strong></p>
+ * 
+ * <pre>
+ * invariant	this.getEndpoint() != null
+ * </pre>
+ * 
+ * @version	$Name$ -- $Revision$ -- $Date$
+ */
+public class			SocketTransport
+implements	Runnable
+{
+	/** port on which the transport listens, 0 for any free port.			*/
+	public static int		PORT = 0 ;
+	/** host name advertised in the endpoint, the one of the DCVM if null.	*/
+	public static String	HOSTNAME = null ;
+	/** maximum time in milliseconds to wait for a response, 0 for ever.	*/
+	public static long		CALL_TIMEOUT = 0 ;
+	/** initial size of the read buffers of the connections.				*/
+	public static int		BUFFER_SIZE = 64 * 1024 ;
+	/** maximum number of threads executing the requests received, which
+	 *  must be set before the transport is created.						*/
+	public static int		MAX_DISPATCH_THREADS = 256 ;
+
+	/** transport of the current JVM, null until first used.				*/
+	protected static SocketTransport	SINGLETON ;
+
+	/** endpoint of this transport, as host:port.							*/
+	protected final String				endpoint ;
+	protected final ServerSocketChannel	serverChannel ;
+	protected final Selector			selector ;
+	protected final Thread				selectorThread ;
+	/** executor of the requests received.									*/
+	protected final ExecutorService		dispatcher ;
+	/** ports exported by this transport, by URI.							*/
+	protected final ConcurrentHashMap<String,PortI>			exportedPorts ;
+	/** connections to the other transports, by endpoint.					*/
+	protected final ConcurrentHashMap<String,SocketConnection>	connections ;
+	/** connections waiting to be registered by the selector thread.		*/
+	protected final ConcurrentLinkedQueue<SocketConnection>	toRegister ;
+	/** method tables of the exported port classes, by method key.			*/
+	protected final ConcurrentHashMap<Class<?>,Map<String,Method>>	methodTables ;
+	/** public interfaces of the exported port classes.						*/
+	protected final ConcurrentHashMap<Class<?>,String[]>	interfaceNames ;
+	/** keys of the methods called through proxies.							*/
+	protected final ConcurrentHashMap<Method,String>		methodKeys ;
+	protected final AtomicLong			nextRequestId ;
+	protected volatile boolean			closed ;
+
+	/**
+	 * create a transport listening on <code>port</code> and advertising
+	 * <code>hostname</code> in its endpoint.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	hostname != null && port >= 0
+	 * post	this.getEndpoint() != null
+	 * </pre>
+	 *
+	 * @param hostname		host name under which other JVMs reach this one.
+	 * @param port			port to listen on, 0 for any free port.
+	 * @throws IOException	if the server socket cannot be opened.
+	 */
+	public				SocketTransport(String hostname, int port)
+	throws IOException
+	{
+		super() ;
+		assert	hostname != null && port >= 0 ;
+
+		this.serverChannel = ServerSocketChannel.open() ;
+		this.serverChannel.bind(new InetSocketAddress(port)) ;
+		this.serverChannel.configureBlocking(false) ;
+		this.selector = Selector.open() ;
+		this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT) ;
+		this.endpoint = hostname + ":" +
+							this.serverChannel.socket().getLocalPort() ;
+
+		this.exportedPorts = new ConcurrentHashMap<String,PortI>() ;
+		this.connections = new ConcurrentHashMap<String,SocketConnection>() ;
+		this.toRegister = new ConcurrentLinkedQueue<SocketConnection>() ;
+		this.methodTables =
+					new ConcurrentHashMap<Class<?>,Map<String,Method>>() ;
+		this.interfaceNames = new ConcurrentHashMap<Class<?>,String[]>() ;
+		this.methodKeys = new ConcurrentHashMap<Method,String>() ;
+		this.nextRequestId = new AtomicLong() ;
+		this.closed = false ;
+
+		final AtomicInteger count = new AtomicInteger() ;
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(
+			MAX_DISPATCH_THREADS, MAX_DISPATCH_THREADS,
+			60L, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "socket-transport-" +
+												count.incrementAndGet()) ;
+					t.setDaemon(true) ;
+					return t ;
+				}
+			}) ;
+		// idle threads end, as with a cached pool.
+		pool.allowCoreThreadTimeOut(true) ;
+		this.dispatcher = pool ;
+		this.selectorThread = new Thread(this, "socket-transport-selector") ;
+		this.selectorThread.setDaemon(true) ;
+		this.selectorThread.start() ;
+	}
+
+	/**
+	 * return the transport of the current JVM, creating it on first call.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @return				the transport of the current JVM.
+	 * @throws IOException	if the server socket cannot be opened.
+	 */
+	public static synchronized SocketTransport	getInstance()
+	throws IOException
+	{
+		if (SINGLETON == null || SINGLETON.closed) {
+			String hostname = HOSTNAME ;
+			if (hostname == null) {
+				hostname = AbstractDistributedCVM.thisHostname != null ?
+									AbstractDistributedCVM.thisHostname
+								:	"localhost" ;
+			}
+			SINGLETON = new SocketTransport(hostname, PORT) ;
+		}
+		return SINGLETON ;
+	}
+
+	/**
+	 * shut down the transport of the current JVM if it has been created.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 */
+	public static synchronized void	shutdownIfStarted()
+	{
+		if (SINGLETON != null) {
+			SINGLETON.shutdown() ;
+			SINGLETON = null ;
+		}
+	}
+
+	public String		getEndpoint()
+	{
+		return this.endpoint ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Exporting side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * make <code>port</code> callable from other JVMs under its URI.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	port != null
+	 * post	this.isExported(port)
+	 * </pre>
+	 *
+	 * @param port			port to be exported.
+	 * @throws Exception	if a port is already exported under the same URI.
+	 */
+	public void			exportPort(PortI port) throws Exception
+	{
+		assert	port != null ;
+
+		PortI previous = this.exportedPorts.putIfAbsent(port.getPortURI(), port) ;
+		if (previous != null && previous != port) {
+			throw new Exception("port " + port.getPortURI() +
+												" is already exported!") ;
+		}
+	}
+
+	/**
+	 * stop exporting the port <code>portURI</code>; later calls to it from
+	 * other JVMs raise a <code>NoSuchObjectException</code>.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	portURI != null
+	 * post	this.getExportedPort(portURI) == null
+	 * </pre>
+	 *
+	 * @param portURI	URI of the port.
+	 * @return			true if the port was exported.
+	 */
+	public boolean		unexportPort(String portURI)
+	{
+		return this.exportedPorts.remove(portURI) != null ;
+	}
+
+	/**
+	 * return true if <code>port</code> is exported by this transport.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	port != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param port			a port.
+	 * @return				true if the port is exported by this transport.
+	 * @throws Exception
+	 */
+	public boolean		isExported(PortI port) throws Exception
+	{
+		return this.exportedPorts.get(port.getPortURI()) == port ;
+	}
+
+	public PortI		getExportedPort(String portURI)
+	{
+		return this.exportedPorts.get(portURI) ;
+	}
+
+	/**
+	 * hand over a request frame received on <code>c</code> to the pool of
+	 * threads executing the requests.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null && f != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param c	connection on which the request was received.
+	 * @param f	request frame.
+	 */
+	protected void		dispatch(final SocketConnection c, final SocketConnection.Frame f)
+	{
+		this.dispatcher.execute(
+			new Runnable() {
+				@Override
+				public void run() {
+					SocketTransport.this.serve(c, f) ;
+				}
+			}) ;
+	}
+
+	/**
+	 * execute a request and send back its response.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null && f != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param c	connection on which the request was received.
+	 * @param f	request frame.
+	 */
+	protected void		serve(SocketConnection c, SocketConnection.Frame f)
+	{
+		SocketConnection.FrameBuilder response ;
+		try {
+			try {
+				response = new SocketConnection.FrameBuilder(
+											SocketConnection.RESPONSE, f.id) ;
+				DataInputStream in = f.input() ;
+				String portURI = SocketCodec.readString(in) ;
+				PortI port = this.exportedPorts.get(portURI) ;
+				if (port == null) {
+					throw new NoSuchObjectException("port " + portURI +
+						" is not exported by the socket transport " +
+						this.endpoint) ;
+				}
+				if (f.type == SocketConnection.DESCRIBE) {
+					String[] names = this.interfaceNamesOf(port.getClass()) ;
+					response.out.writeInt(names.length) ;
+					for (String name : names) {
+						SocketCodec.writeString(response.out, name) ;
+					}
+				} else {
+					Method m = this.methodTableOf(port.getClass()).
+											get(SocketCodec.readString(in)) ;
+					if (m == null) {
+						throw new RemoteException("unknown method called on " +
+															portURI) ;
+					}
+					Object[] args = new Object[SocketCodec.readLength(in, 1)] ;
+					for (int i = 0 ; i < args.length ; i++) {
+						args[i] = SocketCodec.readValue(in, this) ;
+					}
+					Object result ;
+					try {
+						result = m.invoke(port, args) ;
+					} catch (InvocationTargetException e) {
+						throw e.getCause() ;
+					}
+					SocketCodec.writeValue(response.out, result, this) ;
+				}
+			} catch (Throwable t) {
+				response = new SocketConnection.FrameBuilder(
+											SocketConnection.ERROR, f.id) ;
+				try {
+					SocketCodec.writeValue(response.out, t, this) ;
+				} catch (Exception e) {
+					// the exception or one of its fields is not serializable.
+					response = new SocketConnection.FrameBuilder(
+											SocketConnection.ERROR, f.id) ;
+					SocketCodec.writeValue(response.out,
+										   new RemoteException(t.toString()),
+										   this) ;
+				}
+			}
+			try {
+				c.send(response.toByteBuffer()) ;
+			} catch (SocketConnection.FrameTooLargeException e) {
+				// tell the caller rather than letting it wait for a timeout.
+				response = new SocketConnection.FrameBuilder(
+											SocketConnection.ERROR, f.id) ;
+				SocketCodec.writeValue(response.out,
+									   new RemoteException(e.getMessage()),
+									   this) ;
+				c.send(response.toByteBuffer()) ;
+			}
+		} catch (Exception e) {
+			if (AbstractCVM.DEBUG) {
+				System.out.println("socket transport: cannot answer to " +
+										c.getEndpoint() + ": " + e) ;
+			}
+		}
+	}
+
+	/**
+	 * return the table of the methods of the remote interfaces of the port
+	 * class <code>c</code> by method key, building it on first call.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param c	class of an exported port.
+	 * @return	its methods by key.
+	 */
+	protected Map<String,Method>	methodTableOf(Class<?> c)
+	{
+		Map<String,Method> table = this.methodTables.get(c) ;
+		if (table == null) {
+			table = new HashMap<String,Method>() ;
+			for (Class<?> i : SocketTransport.remoteInterfacesOf(c)) {
+				for (Method m : i.getMethods()) {
+					table.put(SocketTransport.methodKey(m), m) ;
+				}
+			}
+			this.methodTables.putIfAbsent(c, table) ;
+		}
+		return table ;
+	}
+
+	/**
+	 * return the names of the remote interfaces implemented by the port
+	 * class <code>c</code>, computing them on first call.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param c	class of an exported port.
+	 * @return	the names of its public interfaces.
+	 */
+	protected String[]	interfaceNamesOf(Class<?> c)
+	{
+		String[] names = this.interfaceNames.get(c) ;
+		if (names == null) {
+			List<String> l = new ArrayList<String>() ;
+			for (Class<?> i : SocketTransport.remoteInterfacesOf(c)) {
+				l.add(i.getName()) ;
+			}
+			names = l.toArray(new String[l.size()]) ;
+			this.interfaceNames.putIfAbsent(c, names) ;
+		}
+		return names ;
+	}
+
+	/**
+	 * return the public interfaces of the class <code>c</code> that extend
+	 * <code>Remote</code>, together with their public super-interfaces.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param c	class of an exported port.
+	 * @return	its remote interfaces.
+	 */
+	protected static Set<Class<?>>	remoteInterfacesOf(Class<?> c)
+	{
+		Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>() ;
+		for (Class<?> k = c ; k != null ; k = k.getSuperclass()) {
+			SocketTransport.addInterfaces(interfaces, k.getInterfaces()) ;
+		}
+		Set<Class<?>> remote = new LinkedHashSet<Class<?>>() ;
+		for (Class<?> i : interfaces) {
+			if (Remote.class.isAssignableFrom(i)) {
+				SocketTransport.addInterfaces(remote, new Class<?>[]{i}) ;
+			}
+		}
+		Iterator<Class<?>> it = remote.iterator() ;
+		while (it.hasNext()) {
+			if (!Modifier.isPublic(it.next().getModifiers())) {
+				it.remove() ;
+			}
+		}
+		return remote ;
+	}
+
+	protected static void	addInterfaces(
+		Set<Class<?>> interfaces,
+		Class<?>[] toAdd
+		)
+	{
+		for (Class<?> i : toAdd) {
+			if (interfaces.add(i)) {
+				SocketTransport.addInterfaces(interfaces, i.getInterfaces()) ;
+			}
+		}
+	}
+
+	/**
+	 * return the key identifying the method <code>m</code> in requests,
+	 * made of its name and parameter types.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	m != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param m	a method.
+	 * @return	its key.
+	 */
+	public static String	methodKey(Method m)
+	{
+		StringBuilder sb = new StringBuilder(m.getName()).append('(') ;
+		Class<?>[] parameters = m.getParameterTypes() ;
+		for (int i = 0 ; i < parameters.length ; i++) {
+			if (i > 0) {
+				sb.append(',') ;
+			}
+			sb.append(parameters[i].getName()) ;
+		}
+		return sb.append(')').toString() ;
+	}
+
+	// ------------------------------------------------------------------------
+	// Calling side
+	// ------------------------------------------------------------------------
+
+	/**
+	 * return a proxy to the port <code>portURI</code> exported by the
+	 * transport at <code>endpoint</code>, implementing the public interfaces
+	 * of the port that can be loaded in the current JVM.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	endpoint != null && portURI != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param endpoint		endpoint, as host:port, of the exporting transport.
+	 * @param portURI		URI of the port.
+	 * @return				a proxy to the port.
+	 * @throws Exception	if the port is not exported at this endpoint.
+	 */
+	public Object		lookup(String endpoint, String portURI)
+	throws Exception
+	{
+		SocketConnection c = this.connectionTo(endpoint) ;
+		long id = this.nextRequestId.incrementAndGet() ;
+		SocketConnection.FrameBuilder request =
+				new SocketConnection.FrameBuilder(SocketConnection.DESCRIBE, id) ;
+		SocketCodec.writeString(request.out, portURI) ;
+		DataInputStream in =
+				this.awaitResponse(c, id, c.request(id, request.toByteBuffer())) ;
+
+		ClassLoader cl = Thread.currentThread().getContextClassLoader() ;
+		if (cl == null) {
+			cl = SocketTransport.class.getClassLoader() ;
+		}
+		// each name is at least its length
+		int n = SocketCodec.readLength(in, 4) ;
+		List<Class<?>> interfaces = new ArrayList<Class<?>>(n) ;
+		for (int i = 0 ; i < n ; i++) {
+			String name = SocketCodec.readString(in) ;
+			try {
+				interfaces.add(Class.forName(name, false, cl)) ;
+			} catch (ClassNotFoundException e) {
+				// not usable here, as it would not be with an RMI stub.
+			}
+		}
+		return Proxy.newProxyInstance(
+						cl,
+						interfaces.toArray(new Class<?>[interfaces.size()]),
+						new SocketPortProxy(this, endpoint, portURI)) ;
+	}
+
+	/**
+	 * return the port itself if it is exported by this transport, or else
+	 * a proxy to it.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	endpoint != null && portURI != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param endpoint		endpoint, as host:port, of the exporting transport.
+	 * @param portURI		URI of the port.
+	 * @return				the port or a proxy to it.
+	 * @throws Exception	if the port is not exported at this endpoint.
+	 */
+	public Object		getReference(String endpoint, String portURI)
+	throws Exception
+	{
+		if (this.endpoint.equals(endpoint)) {
+			PortI p = this.exportedPorts.get(portURI) ;
+			if (p == null) {
+				throw new NoSuchObjectException(portURI) ;
+			}
+			return p ;
+		}
+		return this.lookup(endpoint, portURI) ;
+	}
+
+	/**
+	 * call <code>method</code> with <code>args</code> on the port
+	 * <code>portURI</code> exported at <code>endpoint</code> and wait for
+	 * the result.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	endpoint != null && portURI != null && method != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param endpoint		endpoint, as host:port, of the exporting transport.
+	 * @param portURI		URI of the port.
+	 * @param method		method called.
+	 * @param args			arguments of the call, null if none.
+	 * @return				the result of the call.
+	 * @throws Exception	the exception raised by the call or a
+	 * 						<code>RemoteException</code> if the transport fails.
+	 */
+	public Object		invoke(
+		String endpoint,
+		String portURI,
+		Method method,
+		Object[] args
+		) throws Exception
+	{
+		String key = this.methodKeys.get(method) ;
+		if (key == null) {
+			key = SocketTransport.methodKey(method) ;
+			this.methodKeys.putIfAbsent(method, key) ;
+		}
+		SocketConnection c = this.connectionTo(endpoint) ;
+		long id = this.nextRequestId.incrementAndGet() ;
+		SocketConnection.FrameBuilder request =
+				new SocketConnection.FrameBuilder(SocketConnection.REQUEST, id) ;
+		SocketCodec.writeString(request.out, portURI) ;
+		SocketCodec.writeString(request.out, key) ;
+		int n = args == null ? 0 : args.length ;
+		request.out.writeInt(n) ;
+		for (int i = 0 ; i < n ; i++) {
+			SocketCodec.writeValue(request.out, args[i], this) ;
+		}
+		DataInputStream in =
+				this.awaitResponse(c, id, c.request(id, request.toByteBuffer())) ;
+		return SocketCodec.readValue(in, this) ;
+	}
+
+	/**
+	 * wait for the response to the request <code>id</code>, returning its
+	 * payload or throwing the exception it carries.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null && response != null
+	 * post	return != null
+	 * </pre>
+	 *
+	 * @param c				connection on which the request was sent.
+	 * @param id			identifier of the request.
+	 * @param response		future completed by the response frame.
+	 * @return				the payload of a normal response.
+	 * @throws Exception	the exception carried by an error response or a
+	 * 						<code>RemoteException</code> if the transport fails.
+	 */
+	protected DataInputStream	awaitResponse(
+		SocketConnection c,
+		long id,
+		CompletableFuture<SocketConnection.Frame> response
+		) throws Exception
+	{
+		SocketConnection.Frame f ;
+		try {
+			if (CALL_TIMEOUT > 0) {
+				f = response.get(CALL_TIMEOUT, TimeUnit.MILLISECONDS) ;
+			} else {
+				f = response.get() ;
+			}
+		} catch (TimeoutException e) {
+			c.cancel(id) ;
+			throw new RemoteException("no response from " + c.getEndpoint() +
+									  " after " + CALL_TIMEOUT + " ms") ;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() ;
+			throw cause instanceof Exception ?
+						(Exception) cause
+					:	new RemoteException("call failed", cause) ;
+		}
+		DataInputStream in = f.input() ;
+		if (f.type == SocketConnection.ERROR) {
+			Object t = SocketCodec.readValue(in, this) ;
+			if (t instanceof Exception) {
+				throw (Exception) t ;
+			} else if (t instanceof Error) {
+				throw (Error) t ;
+			} else {
+				throw new RemoteException("call failed: " + t) ;
+			}
+		}
+		return in ;
+	}
+
+	/**
+	 * return the open connection to the transport at <code>endpoint</code>,
+	 * opening it if needed.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	endpoint != null
+	 * post	return != null && return.isOpen()
+	 * </pre>
+	 *
+	 * @param endpoint		endpoint, as host:port, of a transport.
+	 * @return				the connection to this transport.
+	 * @throws IOException	if the connection cannot be opened.
+	 */
+	protected SocketConnection	connectionTo(String endpoint)
+	throws IOException
+	{
+		SocketConnection c = this.connections.get(endpoint) ;
+		if (c != null && c.isOpen()) {
+			return c ;
+		}
+		synchronized (this.connections) {
+			c = this.connections.get(endpoint) ;
+			if (c != null && c.isOpen()) {
+				return c ;
+			}
+			if (this.closed) {
+				throw new java.rmi.ConnectException("socket transport closed") ;
+			}
+			int colon = endpoint.lastIndexOf(':') ;
+			SocketChannel channel ;
+			try {
+				channel = SocketChannel.open(new InetSocketAddress(
+								endpoint.substring(0, colon),
+								Integer.parseInt(endpoint.substring(colon + 1)))) ;
+			} catch (IOException e) {
+				throw new java.rmi.ConnectException(
+									"cannot connect to " + endpoint, e) ;
+			}
+			channel.socket().setTcpNoDelay(true) ;
+			channel.configureBlocking(false) ;
+			c = new SocketConnection(this, channel, endpoint) ;
+			this.connections.put(endpoint, c) ;
+			SocketConnection.FrameBuilder hello =
+				new SocketConnection.FrameBuilder(SocketConnection.HELLO, 0L) ;
+			SocketCodec.writeString(hello.out, this.endpoint) ;
+			c.send(hello.toByteBuffer()) ;
+			this.toRegister.add(c) ;
+			this.selector.wakeup() ;
+			return c ;
+		}
+	}
+
+	/**
+	 * record the connection <code>c</code>, accepted from another transport
+	 * which endpoint is now known, as the connection to use to call it.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null && c.getEndpoint() != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param c	connection accepted from another transport.
+	 */
+	protected void		connectionIdentified(SocketConnection c)
+	{
+		synchronized (this.connections) {
+			SocketConnection previous = this.connections.get(c.getEndpoint()) ;
+			if (previous == null || !previous.isOpen()) {
+				this.connections.put(c.getEndpoint(), c) ;
+			}
+		}
+	}
+
+	/**
+	 * forget the connection <code>c</code> which has been closed.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	c != null
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @param c	closed connection.
+	 */
+	protected void		connectionClosed(SocketConnection c)
+	{
+		if (c.getEndpoint() != null) {
+			this.connections.remove(c.getEndpoint(), c) ;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Selector thread
+	// ------------------------------------------------------------------------
+
+	/**
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void			run()
+	{
+		while (!this.closed) {
+			try {
+				this.selector.select() ;
+			} catch (IOException e) {
+				break ;
+			}
+			SocketConnection r ;
+			while ((r = this.toRegister.poll()) != null) {
+				try {
+					r.register(this.selector) ;
+				} catch (IOException e) {
+					r.close(e) ;
+				}
+			}
+			if (!this.selector.isOpen()) {
+				break ;
+			}
+			Iterator<SelectionKey> it = this.selector.selectedKeys().iterator() ;
+			while (it.hasNext()) {
+				SelectionKey k = it.next() ;
+				it.remove() ;
+				SocketConnection c = (SocketConnection) k.attachment() ;
+				try {
+					if (c == null) {
+						if (k.isAcceptable()) {
+							this.accept() ;
+						}
+					} else {
+						if (k.isReadable()) {
+							c.readReady() ;
+						}
+						if (k.isValid() && k.isWritable()) {
+							c.writeReady() ;
+						}
+					}
+				} catch (IOException e) {
+					if (c != null) {
+						c.close(e) ;
+					}
+				} catch (CancelledKeyException e) {
+					if (c != null) {
+						c.close(null) ;
+					}
+				}
+			}
+		}
+		for (SelectionKey k : this.selector.keys()) {
+			if (k.attachment() instanceof SocketConnection) {
+				((SocketConnection) k.attachment()).close(null) ;
+			}
+		}
+		try {
+			this.serverChannel.close() ;
+			this.selector.close() ;
+		} catch (IOException e) {
+			;
+		}
+	}
+
+	/**
+	 * accept a connection from another transport.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 *
+	 * @throws IOException
+	 */
+	protected void		accept() throws IOException
+	{
+		SocketChannel channel = this.serverChannel.accept() ;
+		if (channel != null) {
+			channel.socket().setTcpNoDelay(true) ;
+			channel.configureBlocking(false) ;
+			new SocketConnection(this, channel, null).register(this.selector) ;
+		}
+	}
+
+	/**
+	 * close the transport and all of its connections.
+	 * 
+	 * <p><strong>Contract</strong></p>
+	 * 
+	 * <pre>
+	 * pre	true			// no precondition.
+	 * post	true			// no postcondition.
+	 * </pre>
+	 */
+	public void			shutdown()
+	{
+		this.closed = true ;
+		// the selector thread closes the connections registered with it.
+		this.selector.wakeup() ;
+		if (Thread.currentThread() != this.selectorThread) {
+			try {
+				this.selectorThread.join(1000L) ;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt() ;
+			}
+		}
+		for (SocketConnection c : this.connections.values()) {
+			c.close(null) ;
+		}
+		this.dispatcher.shutdown() ;
+	}
+}